@@ -104,16 +104,20 @@ public class FullTextIndex extends RebuildableIndex {
     private final JdbcTemplate jdbcTemplate;
     private final String source;
     private final FacetsConfig facetsConfig;
+    private final long commitIntervalMillis;
+    private final Stopwatch sinceCommit = Stopwatch.createStarted();
 
     @Autowired FullTextIndex(
             @Qualifier("whoisSlaveDataSource") final DataSource dataSource,
             @Value("${whois.source}") final String source,
             @Value("${dir.fulltext.index:}") final String indexDir,
-            @Value("${fulltext.search.max.concurrent:10}") final int maxConcurrentSearches) {
+            @Value("${fulltext.search.max.concurrent:10}") final int maxConcurrentSearches,
+            @Value("${fulltext.index.commit.interval.msecs:60000}") final long commitIntervalMillis) {
         super(LOGGER, indexDir, maxConcurrentSearches);
         this.jdbcTemplate = new JdbcTemplate(dataSource);
         this.source = source;
         this.facetsConfig = new FacetsConfig();
+        this.commitIntervalMillis = commitIntervalMillis;
     }
 
     @PostConstruct
@@ -205,7 +209,11 @@ public class FullTextIndex extends RebuildableIndex {
         updateMetadata(indexWriter, source, maxSerial);
     }
 
-    @Scheduled(fixedDelayString = "${fulltext.index.update.interval.msecs:60000}" )
+    /**
+     * Tail the serials; changes are searchable once applied, and committed every
+     * <code>fulltext.index.commit.interval.msecs</code>, so they survive a restart.
+     */
+    @Scheduled(fixedDelayString = "${fulltext.index.update.interval.msecs:1000}" )
     public void scheduledUpdate() {
         if (!isEnabled()) {
             return;
@@ -216,6 +224,11 @@ public class FullTextIndex extends RebuildableIndex {
         } catch (DataAccessException e) {
             LOGGER.warn("Unable to update fulltext index due to {}: {}", e.getClass(), e.getMessage());
         }
+
+        if (sinceCommit.elapsed(TimeUnit.MILLISECONDS) >= commitIntervalMillis) {
+            commit();
+            sinceCommit.reset().start();
+        }
     }
 
     @Override
@@ -15,17 +15,16 @@ import net.ripe.db.whois.query.domain.QueryException;
 import org.apache.commons.lang.StringUtils;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.facet.taxonomy.FacetLabel;
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader;
 import org.apache.lucene.facet.taxonomy.TaxonomyWriter;
-import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexableField;
-import org.apache.lucene.index.ReaderManager;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.RAMDirectory;
@@ -43,6 +42,10 @@ import java.util.concurrent.Semaphore;
 
 import static org.apache.lucene.util.IOUtils.closeWhileHandlingException;
 
+/**
+ * Searches use near-real-time searchers on the index writer, so changes are visible to searches as soon as they are
+ * written, whether committed or not, and searches never wait for writes.
+ */
 public class IndexTemplate implements Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(IndexTemplate.class);
 
@@ -51,7 +54,7 @@ public class IndexTemplate implements Closeable {
     private final Semaphore updateLock = new Semaphore(1);
 
     private IndexWriter indexWriter;
-    private ReaderManager readerManager;
+    private volatile SearcherTaxonomyManager searcherManager;
     private DirectoryTaxonomyWriter taxonomyWriter;
     private IndexWriterConfig config;
 
@@ -82,24 +85,51 @@ public class IndexTemplate implements Closeable {
         updateLock.acquireUninterruptibly();
 
         try {
-            closeWhileHandlingException(readerManager, indexWriter, taxonomyWriter, index, taxonomy);
+            closeWhileHandlingException(searcherManager, indexWriter, taxonomyWriter, index, taxonomy);
         } finally {
             updateLock.release();
         }
     }
 
+    /**
+     * Write and commit.
+     */
     public void write(final WriteCallback writeCallback) throws IOException {
+        write(writeCallback, true);
+    }
+
+    /**
+     * Write without committing; the changes are visible to searches straight away, and committed by the next
+     * {@link #commit()} or commit on write. A failure rolls back all uncommitted changes.
+     */
+    public void apply(final WriteCallback writeCallback) throws IOException {
+        write(writeCallback, false);
+    }
+
+    public void commit() throws IOException {
         updateLock.acquireUninterruptibly();
 
         try {
-            writeCallback.write(indexWriter, taxonomyWriter);
-            taxonomyWriter.prepareCommit();
-            indexWriter.prepareCommit();
+            commitWriters();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Unexpected", e);
+            rollback();
+            throw e;
+        } finally {
+            updateLock.release();
+        }
+    }
 
-            taxonomyWriter.commit();
-            indexWriter.commit();
+    private void write(final WriteCallback writeCallback, final boolean commit) throws IOException {
+        updateLock.acquireUninterruptibly();
+
+        try {
+            writeCallback.write(indexWriter, taxonomyWriter);
+            if (commit) {
+                commitWriters();
+            }
 
-            readerManager.maybeRefresh();
+            searcherManager.maybeRefresh();
         } catch (IOException | RuntimeException e) {
             LOGGER.error("Unexpected", e);
             rollback();
@@ -113,6 +143,15 @@ public class IndexTemplate implements Closeable {
         }
     }
 
+    private void commitWriters() throws IOException {
+        // the taxonomy is committed first, so committed documents never refer to uncommitted categories
+        taxonomyWriter.prepareCommit();
+        indexWriter.prepareCommit();
+
+        taxonomyWriter.commit();
+        indexWriter.commit();
+    }
+
     private void rollback() throws IOException {
         try {
             indexWriter.rollback();
@@ -123,7 +162,8 @@ public class IndexTemplate implements Closeable {
     }
 
     private void createNewWriters() throws IOException {
-        closeWhileHandlingException(taxonomyWriter, indexWriter);
+        // searches still holding a searcher of the old writers release it on their own
+        closeWhileHandlingException(searcherManager, taxonomyWriter, indexWriter);
         taxonomyWriter = new DirectoryTaxonomyWriter(taxonomy);
         addFacetCategories(taxonomyWriter);
 
@@ -133,7 +173,7 @@ public class IndexTemplate implements Closeable {
         taxonomyWriter.commit();
         indexWriter.commit();
 
-        readerManager = new ReaderManager(indexWriter, true);
+        searcherManager = new SearcherTaxonomyManager(indexWriter, true, null, taxonomyWriter);
     }
 
     private static void addFacetCategories(final TaxonomyWriter taxonomyWriter) throws IOException {
@@ -144,27 +184,34 @@ public class IndexTemplate implements Closeable {
     }
 
     public <T> T read(final ReadCallback<T> readCallback) throws IOException {
-        DirectoryReader indexReader = null;
-        TaxonomyReader taxonomyReader = null;
+        return search((final IndexReader indexReader, final TaxonomyReader taxonomyReader, final IndexSearcher indexSearcher) ->
+                readCallback.read(indexReader, taxonomyReader));
+    }
 
-        try {
-            indexReader = readerManager.acquire();
-            taxonomyReader = new DirectoryTaxonomyReader(taxonomy);
+    public <T> T search(final SearchCallback<T> searchCallback) throws IOException {
+        SearcherTaxonomyManager searcherManager;
+        SearcherTaxonomyManager.SearcherAndTaxonomy searcherAndTaxonomy;
+        while (true) {
+            searcherManager = this.searcherManager;
+            try {
+                searcherAndTaxonomy = searcherManager.acquire();
+                break;
+            } catch (AlreadyClosedException e) {
+                // writers were replaced after a rollback
+                if (searcherManager == this.searcherManager) {
+                    throw e;
+                }
+            }
+        }
 
-            return readCallback.read(indexReader, taxonomyReader);
+        try {
+            final IndexSearcher indexSearcher = searcherAndTaxonomy.searcher;
+            return searchCallback.search(indexSearcher.getIndexReader(), searcherAndTaxonomy.taxonomyReader, indexSearcher);
         } finally {
-            closeWhileHandlingException(taxonomyReader);
-            readerManager.release(indexReader);
+            searcherManager.release(searcherAndTaxonomy);
         }
     }
 
-    public <T> T search(final SearchCallback<T> searchCallback) throws IOException {
-        return read((final IndexReader indexReader, final TaxonomyReader taxonomyReader) -> {
-            final IndexSearcher indexSearcher = new IndexSearcher(indexReader);
-            return searchCallback.search(indexReader, taxonomyReader, indexSearcher);
-        });
-    }
-
     public interface WriteCallback {
         void write(IndexWriter indexWriter, TaxonomyWriter taxonomyWriter) throws IOException;
     }
@@ -66,6 +66,9 @@ public abstract class RebuildableIndex {
         update(this::update);
     }
 
+    /**
+     * Apply changes without committing them; they are visible to searches straight away.
+     */
     public final void update(IndexTemplate.WriteCallback writeCallback) {
         if (!updateLock.tryAcquire()) {
             logger.warn("Indexing in progress, skipping update for {}", indexDir);
@@ -73,7 +76,7 @@ public abstract class RebuildableIndex {
         }
 
         try {
-            index.write(writeCallback);
+            index.apply(writeCallback);
         } catch (IOException e) {
             logger.error("Updating index: {}", indexDir, e);
         } finally {
@@ -81,6 +84,21 @@ public abstract class RebuildableIndex {
         }
     }
 
+    public final void commit() {
+        if (!updateLock.tryAcquire()) {
+            logger.debug("Indexing in progress, skipping commit for {}", indexDir);
+            return;
+        }
+
+        try {
+            index.commit();
+        } catch (IOException e) {
+            logger.error("Committing index: {}", indexDir, e);
+        } finally {
+            updateLock.release();
+        }
+    }
+
     public void delete(final Query query) {
         if (!updateLock.tryAcquire()) {
             logger.warn("Indexing in progress, skipping delete for {}", query.toString());
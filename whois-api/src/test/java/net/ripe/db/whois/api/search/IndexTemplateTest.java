@@ -260,6 +260,43 @@ public class IndexTemplateTest {
         }
     }
 
+    @Test
+    public void apply_visible_before_commit() throws IOException {
+        subject.apply(new IndexTemplate.WriteCallback() {
+            @Override
+            public void write(final IndexWriter indexWriter, final TaxonomyWriter taxonomyWriter) throws IOException {
+                addDoc(indexWriter, "title", "isbn");
+            }
+        });
+
+        assertThat(numDocs(), is(1));
+
+        subject.commit();
+        subject.apply(new IndexTemplate.WriteCallback() {
+            @Override
+            public void write(final IndexWriter indexWriter, final TaxonomyWriter taxonomyWriter) throws IOException {
+                addDoc(indexWriter, "title", "isbn");
+            }
+        });
+
+        assertThat(numDocs(), is(2));
+
+        try {
+            subject.apply(new IndexTemplate.WriteCallback() {
+                @Override
+                public void write(final IndexWriter indexWriter, final TaxonomyWriter taxonomyWriter) throws IOException {
+                    throw new IOException();
+                }
+            });
+
+            fail("Expected exception");
+        } catch (IOException ignored) {
+        }
+
+        // uncommitted changes are rolled back
+        assertThat(numDocs(), is(1));
+    }
+
     int numDocs() throws IOException {
         return subject.read(new IndexTemplate.ReadCallback<Integer>() {
             @Override
@@ -0,0 +1,16 @@
+package net.ripe.db.whois.common.dao;
+
+import net.ripe.db.whois.common.source.SourceConfiguration;
+
+/**
+ * Notified in-process once a transaction that wrote to the serials table has been committed.
+ */
+public interface SerialChangeListener {
+
+    /**
+     * Called after commit, on the committing thread. Implementations should hand off any work that touches the database.
+     *
+     * @param sourceConfiguration the source that was written to.
+     */
+    void serialsCommitted(SourceConfiguration sourceConfiguration);
+}
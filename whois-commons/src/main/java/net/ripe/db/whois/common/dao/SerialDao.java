@@ -3,6 +3,8 @@ package net.ripe.db.whois.common.dao;
 import net.ripe.db.whois.common.domain.serials.SerialEntry;
 import net.ripe.db.whois.common.domain.serials.SerialRange;
 
+import java.util.List;
+
 public interface SerialDao {
 
     SerialRange getSerials();
@@ -11,5 +13,10 @@ public interface SerialDao {
 
     SerialEntry getByIdForNrtm(int serialId);
 
+    /**
+     * @return the existing serials between <code>serialBegin</code> and <code>serialEnd</code> (inclusive), in serial order.
+     */
+    List<SerialEntry> getByIdRangeForNrtm(int serialBegin, int serialEnd);
+
     Integer getAgeOfExactOrNextExistingSerial(int serialId);
 }
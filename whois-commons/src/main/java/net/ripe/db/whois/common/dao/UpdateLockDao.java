@@ -1,5 +1,28 @@
 package net.ripe.db.whois.common.dao;
 
+import java.util.Set;
+
 public interface UpdateLockDao {
+    /**
+     * Serialise against all other updates, until the transaction ends.
+     */
     void setUpdateLock();
+
+    /**
+     * Lock <code>exclusiveKeys</code> exclusively and <code>sharedKeys</code> shared, until the transaction ends.
+     * Updates locking a key exclusively are serialised against all other updates locking the same key.
+     */
+    void setKeyLocks(Set<String> exclusiveKeys, Set<String> sharedKeys);
+
+    /**
+     * Keys sharing a lock are serialised as if they were the same key.
+     *
+     * @return the lock taken for <code>key</code> by {@link #setKeyLocks}.
+     */
+    int getKeyLock(String key);
+
+    /**
+     * Serialise writes after taking key locks, so serials are committed in the order they are created.
+     */
+    void setWriteLock();
 }
@@ -30,9 +30,12 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Primary;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.dao.RecoverableDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
@@ -40,13 +43,13 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.sql.DataSource;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.MessageFormat;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -60,13 +63,44 @@ public class JdbcRpslObjectDao implements RpslObjectDao {
 
     private static final List<AttributeType> RELATED_TO_ATTRIBUTES = Lists.newArrayList(AttributeType.ADMIN_C, AttributeType.AUTHOR, AttributeType.ORG, AttributeType.PING_HDL, AttributeType.TECH_C, AttributeType.ZONE_C);
 
+    // objects are looked up in chunks, so the statement text only depends on the chunk size and can be reused
+    private static final int LOAD_CHUNK_SIZE = 100;
+    private static final String[] LOAD_QUERIES = createChunkQueries("SELECT object_id, object, sequence_id");
+    // the object is only selected if the cached version (the first parameter) is no longer current
+    private static final String[] CACHED_LOAD_QUERIES = createChunkQueries("SELECT object_id, IF(sequence_id = ?, NULL, object), sequence_id");
+
+    private static String[] createChunkQueries(final String select) {
+        final String[] queries = new String[LOAD_CHUNK_SIZE + 1];
+        final StringBuilder queryBuilder = new StringBuilder();
+        for (int size = 1; size <= LOAD_CHUNK_SIZE; size++) {
+            if (queryBuilder.length() > 0) {
+                // UNION ALL is much faster than IN
+                queryBuilder.append(" UNION ALL ");
+            }
+
+            queryBuilder.append(select).append(" " +
+                    "FROM last " +
+                    "WHERE object_id = ? " +
+                    "AND sequence_id != 0");
+
+            queries[size] = queryBuilder.toString();
+        }
+
+        return queries;
+    }
+
     private final JdbcTemplate jdbcTemplate;
     private final SourceContext sourceContext;
+    private final RpslObjectCache rpslObjectCache;
+    private final RpslObjectRowMapper rowMapper = new RpslObjectRowMapper();
 
     @Autowired
-    public JdbcRpslObjectDao(@Qualifier("sourceAwareDataSource") final DataSource dataSource, final SourceContext sourceContext) {
+    public JdbcRpslObjectDao(@Qualifier("sourceAwareDataSource") final DataSource dataSource,
+                             final SourceContext sourceContext,
+                             final RpslObjectCache rpslObjectCache) {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
         this.sourceContext = sourceContext;
+        this.rpslObjectCache = rpslObjectCache;
     }
 
     @Override
@@ -94,23 +128,18 @@ public class JdbcRpslObjectDao implements RpslObjectDao {
             }
         }
 
-        final List<RpslObject> rpslObjects = Lists.newArrayList(loadedObjects.values());
-        Collections.sort(rpslObjects, new Comparator<RpslObject>() {
-            final List<Integer> requestedIds = Lists.newArrayList(Iterables.transform(proxy, input -> input.getObjectId()));
-
-            @Override
-            public int compare(final RpslObject o1, final RpslObject o2) {
-                return requestedIds.indexOf(o1.getObjectId()) - requestedIds.indexOf(o2.getObjectId());
-            }
-        });
-
         // TODO [AK] Return result rather than adding all to the collection
-        result.addAll(rpslObjects);
+        for (final Identifiable identifiable : proxy) {
+            // remove so an object requested more than once is only returned once, in the position it was first requested
+            final RpslObject rpslObject = loadedObjects.remove(identifiable.getObjectId());
+            if (rpslObject != null) {
+                result.add(rpslObject);
+            }
+        }
     }
 
     private Set<Integer> loadObjects(final List<Identifiable> proxy, final Map<Integer, RpslObject> loadedObjects) {
-        final StringBuilder queryBuilder = new StringBuilder();
-        final List<Integer> objectIds = Lists.newArrayListWithExpectedSize(proxy.size());
+        final Set<Integer> objectIds = Sets.newLinkedHashSetWithExpectedSize(proxy.size());
         for (final Identifiable identifiable : proxy) {
             final Integer objectId = identifiable.getObjectId();
             if (loadedObjects.containsKey(objectId)) {
@@ -120,35 +149,28 @@ public class JdbcRpslObjectDao implements RpslObjectDao {
             if (identifiable instanceof RpslObject) {
                 loadedObjects.put(objectId, (RpslObject) identifiable);
             } else {
-                if (queryBuilder.length() > 0) {
-                    // UNION ALL is much faster than IN
-                    queryBuilder.append(" UNION ALL ");
-                }
-
-                queryBuilder.append("" +
-                        "SELECT object_id, object " +
-                        "FROM last " +
-                        "WHERE object_id = ? " +
-                        "AND sequence_id != 0");
-
                 objectIds.add(objectId);
             }
         }
 
-        final List<RpslObject> rpslObjects = jdbcTemplate.query(
-                queryBuilder.toString(),
-                new PreparedStatementSetter() {
-                    @Override
-                    public void setValues(final PreparedStatement ps) throws SQLException {
-                        for (int i = 0; i < objectIds.size(); i++) {
-                            ps.setInt(i + 1, objectIds.get(i));
-                        }
-                    }
-                },
-                new RpslObjectRowMapper());
+        final CIString source = sourceContext.getCurrentSource().getName();
+        for (final List<Integer> chunk : Iterables.partition(objectIds, LOAD_CHUNK_SIZE)) {
+            if (rpslObjectCache.isEnabled()) {
+                loadCachedObjects(source, chunk, loadedObjects);
+                continue;
+            }
 
-        for (final RpslObject rpslObject : rpslObjects) {
-            loadedObjects.put(rpslObject.getObjectId(), rpslObject);
+            jdbcTemplate.query(
+                    LOAD_QUERIES[chunk.size()],
+                    new ObjectIdsSetter(chunk),
+                    new RowCallbackHandler() {
+                        @Override
+                        public void processRow(final ResultSet rs) throws SQLException {
+                            // decode each row as it is read, without collecting the rows first
+                            final RpslObject rpslObject = rowMapper.mapRow(rs, 0);
+                            loadedObjects.put(rpslObject.getObjectId(), rpslObject);
+                        }
+                    });
         }
 
         if (proxy.size() == loadedObjects.size()) {
@@ -166,9 +188,97 @@ public class JdbcRpslObjectDao implements RpslObjectDao {
         return differences;
     }
 
+    /**
+     * Load the objects in one statement, which only selects the objects without their current version in the cache.
+     */
+    private void loadCachedObjects(final CIString source, final List<Integer> objectIds, final Map<Integer, RpslObject> loadedObjects) {
+        final Map<Integer, RpslObjectCache.CachedObject> cachedObjects = getCachedObjects(source, objectIds);
+        jdbcTemplate.query(
+                CACHED_LOAD_QUERIES[objectIds.size()],
+                new ObjectIdsSetter(objectIds, cachedObjects),
+                new RowCallbackHandler() {
+                    @Override
+                    public void processRow(final ResultSet rs) throws SQLException {
+                        final RpslObject rpslObject = mapCachedRow(source, cachedObjects, rs);
+                        loadedObjects.put(rpslObject.getObjectId(), rpslObject);
+                    }
+                });
+    }
+
+    private Map<Integer, RpslObjectCache.CachedObject> getCachedObjects(final CIString source, final List<Integer> objectIds) {
+        final Map<Integer, RpslObjectCache.CachedObject> result = Maps.newHashMapWithExpectedSize(objectIds.size());
+        for (final Integer objectId : objectIds) {
+            final RpslObjectCache.CachedObject cachedObject = rpslObjectCache.get(source, objectId);
+            if (cachedObject != null) {
+                result.put(objectId, cachedObject);
+            }
+        }
+
+        return result;
+    }
+
+    private RpslObject mapCachedRow(final CIString source, final Map<Integer, RpslObjectCache.CachedObject> cachedObjects, final ResultSet rs) throws SQLException {
+        final int objectId = rs.getInt(1);
+        final byte[] object = rs.getBytes(2);
+        if (object == null) {
+            rpslObjectCache.recordHit();
+            return cachedObjects.get(objectId).getRpslObject();
+        }
+
+        rpslObjectCache.recordMiss();
+        final RpslObject rpslObject = RpslObject.parse(objectId, object);
+        rpslObjectCache.put(source, rs.getInt(3), rpslObject);
+        return rpslObject;
+    }
+
+    private static final class ObjectIdsSetter implements PreparedStatementSetter {
+        private final List<Integer> objectIds;
+        private final Map<Integer, RpslObjectCache.CachedObject> cachedObjects;
+
+        private ObjectIdsSetter(final List<Integer> objectIds) {
+            this(objectIds, null);
+        }
+
+        /**
+         * @param cachedObjects if not null, each object id is preceded by the sequence id of its cached version (0 if
+         *                      not cached, which never matches).
+         */
+        private ObjectIdsSetter(final List<Integer> objectIds, @Nullable final Map<Integer, RpslObjectCache.CachedObject> cachedObjects) {
+            this.objectIds = objectIds;
+            this.cachedObjects = cachedObjects;
+        }
+
+        @Override
+        public void setValues(final PreparedStatement ps) throws SQLException {
+            int index = 1;
+            for (final Integer objectId : objectIds) {
+                if (cachedObjects != null) {
+                    final RpslObjectCache.CachedObject cachedObject = cachedObjects.get(objectId);
+                    ps.setInt(index++, cachedObject == null ? 0 : cachedObject.getSequenceId());
+                }
+                ps.setInt(index++, objectId);
+            }
+        }
+    }
+
     @Override
     public RpslObject getById(final int objectId) {
-        return JdbcRpslObjectOperations.getObjectById(jdbcTemplate, objectId);
+        if (!rpslObjectCache.isEnabled()) {
+            return JdbcRpslObjectOperations.getObjectById(jdbcTemplate, objectId);
+        }
+
+        final CIString source = sourceContext.getCurrentSource().getName();
+        final List<Integer> objectIds = Collections.singletonList(objectId);
+        final Map<Integer, RpslObjectCache.CachedObject> cachedObjects = getCachedObjects(source, objectIds);
+        return DataAccessUtils.requiredSingleResult(jdbcTemplate.query(
+                CACHED_LOAD_QUERIES[1],
+                new ObjectIdsSetter(objectIds, cachedObjects),
+                new RowMapper<RpslObject>() {
+                    @Override
+                    public RpslObject mapRow(final ResultSet rs, final int rowNum) throws SQLException {
+                        return mapCachedRow(source, cachedObjects, rs);
+                    }
+                }));
     }
 
     @Override
@@ -205,12 +315,23 @@ public class JdbcRpslObjectDao implements RpslObjectDao {
 
     @Override
     public List<RpslObject> getByKeys(final ObjectType type, final Collection<CIString> searchKeys) {
-        final List<RpslObject> result = new ArrayList<>(searchKeys.size());
-
+        final List<Identifiable> proxy = new ArrayList<>(searchKeys.size());
         for (final CIString searchKey : searchKeys) {
-            try {
-                result.add(getByKey(type, searchKey));
-            } catch (EmptyResultDataAccessException ignored) {
+            final RpslObjectInfo rpslObjectInfo = findByKeyOrNull(type, searchKey);
+            if (rpslObjectInfo != null) {
+                proxy.add(rpslObjectInfo);
+            }
+        }
+
+        // objects are loaded in chunks rather than one by one
+        final Map<Integer, RpslObject> loadedObjects = Maps.newHashMapWithExpectedSize(proxy.size());
+        loadObjects(proxy, loadedObjects);
+
+        final List<RpslObject> result = new ArrayList<>(proxy.size());
+        for (final Identifiable identifiable : proxy) {
+            final RpslObject rpslObject = loadedObjects.get(identifiable.getObjectId());
+            if (rpslObject != null) {
+                result.add(rpslObject);
             }
         }
 
@@ -514,34 +514,47 @@ public class JdbcRpslObjectOperations {
 
     //   [TP] If operation is delete return the previous version of the object [needed by NRTM],
     //        otherwise return the exact version which is either in history or in last
-    private static SerialEntry getSerialEntryWithBlobsForNrtm(final JdbcTemplate jdbcTemplate, final int serialId) {
-        return jdbcTemplate.queryForObject("" +
-                "SELECT serials.operation, " +
-                "       serials.atlast, " +
-                "       serials.object_id, " +
-                "       IF(serials.operation = 2, " +
-                "                rdp_history.object, " +
-                "                COALESCE(legacy_history.object, last.object)) as object " +
-                "FROM   serials " +
-                "       LEFT JOIN last " +
-                "              ON last.object_id = serials.object_id" +
-                "                 AND last.sequence_id = serials.sequence_id  " +
-                "       LEFT JOIN history legacy_history " +
-                "              ON legacy_history.object_id = serials.object_id " +
-                "                 AND legacy_history.sequence_id = serials.sequence_id " +
-                "       LEFT JOIN history rdp_history " +
-                "              ON rdp_history.object_id = serials.object_id " +
-                "                 AND rdp_history.sequence_id = serials.sequence_id - 1 " +
-                "WHERE  serials.serial_id = ?", new RowMapper<SerialEntry>() {
-            @Override
-            public SerialEntry mapRow(ResultSet rs, int rowNum) throws SQLException {
-                try {
-                    return SerialEntry.createSerialEntryWithoutTimestamps
-                            (Operation.getByCode(rs.getInt(1)), rs.getBoolean(2), rs.getInt(3), rs.getBytes(4));
-                } catch (RuntimeException e) {
-                    throw new IllegalStateException("Failed at serial_id " + serialId, e);
-                }
+    private static final String SERIAL_ENTRY_WITH_BLOBS_FOR_NRTM_QUERY = "" +
+            "SELECT serials.operation, " +
+            "       serials.atlast, " +
+            "       serials.object_id, " +
+            "       IF(serials.operation = 2, " +
+            "                rdp_history.object, " +
+            "                COALESCE(legacy_history.object, last.object)) as object, " +
+            "       serials.serial_id " +
+            "FROM   serials " +
+            "       LEFT JOIN last " +
+            "              ON last.object_id = serials.object_id" +
+            "                 AND last.sequence_id = serials.sequence_id  " +
+            "       LEFT JOIN history legacy_history " +
+            "              ON legacy_history.object_id = serials.object_id " +
+            "                 AND legacy_history.sequence_id = serials.sequence_id " +
+            "       LEFT JOIN history rdp_history " +
+            "              ON rdp_history.object_id = serials.object_id " +
+            "                 AND rdp_history.sequence_id = serials.sequence_id - 1 ";
+
+    private static final RowMapper<SerialEntry> SERIAL_ENTRY_WITH_BLOBS_FOR_NRTM_ROW_MAPPER = new RowMapper<SerialEntry>() {
+        @Override
+        public SerialEntry mapRow(ResultSet rs, int rowNum) throws SQLException {
+            final int serialId = rs.getInt(5);
+            try {
+                return SerialEntry.createSerialEntryWithoutTimestamps
+                        (serialId, Operation.getByCode(rs.getInt(1)), rs.getBoolean(2), rs.getInt(3), rs.getBytes(4));
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Failed at serial_id " + serialId, e);
             }
-        }, serialId);
+        }
+    };
+
+    private static SerialEntry getSerialEntryWithBlobsForNrtm(final JdbcTemplate jdbcTemplate, final int serialId) {
+        return jdbcTemplate.queryForObject(SERIAL_ENTRY_WITH_BLOBS_FOR_NRTM_QUERY +
+                "WHERE  serials.serial_id = ?", SERIAL_ENTRY_WITH_BLOBS_FOR_NRTM_ROW_MAPPER, serialId);
+    }
+
+    // all existing serials in [serialBegin, serialEnd], in serial order
+    public static List<SerialEntry> getSerialEntriesForNrtm(final JdbcTemplate jdbcTemplate, final int serialBegin, final int serialEnd) {
+        return jdbcTemplate.query(SERIAL_ENTRY_WITH_BLOBS_FOR_NRTM_QUERY +
+                "WHERE  serials.serial_id BETWEEN ? AND ? " +
+                "ORDER BY serials.serial_id", SERIAL_ENTRY_WITH_BLOBS_FOR_NRTM_ROW_MAPPER, serialBegin, serialEnd);
     }
 }
@@ -49,12 +49,15 @@ public class JdbcRpslObjectUpdateDao implements RpslObjectUpdateDao {
 
     private final JdbcTemplate jdbcTemplate;
     private final DateTimeProvider dateTimeProvider;
+    private final SerialChangePublisher serialChangePublisher;
 
     @Autowired
     public JdbcRpslObjectUpdateDao(@Qualifier("sourceAwareDataSource") final DataSource dataSource,
-                                   final DateTimeProvider dateTimeProvider) {
+                                   final DateTimeProvider dateTimeProvider,
+                                   final SerialChangePublisher serialChangePublisher) {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
         this.dateTimeProvider = dateTimeProvider;
+        this.serialChangePublisher = serialChangePublisher;
     }
 
     @Override
@@ -177,6 +180,7 @@ public class JdbcRpslObjectUpdateDao implements RpslObjectUpdateDao {
         deleteFromTables(jdbcTemplate, rpslObjectInfo);
         copyToHistoryAndUpdateSerials(jdbcTemplate, rpslObjectInfo);
         deleteFromLastAndUpdateSerials(dateTimeProvider, jdbcTemplate, rpslObjectInfo);
+        serialChangePublisher.serialsChanged();
 
         return new RpslObjectUpdateInfo(rpslObjectInfo.getObjectId(), 0, rpslObjectInfo.getObjectType(), rpslObjectInfo.getKey());
     }
@@ -208,6 +212,7 @@ public class JdbcRpslObjectUpdateDao implements RpslObjectUpdateDao {
         }
 
         final int newSequenceId = updateLastAndUpdateSerials(dateTimeProvider, jdbcTemplate, updateInfo, rpslObject);
+        serialChangePublisher.serialsChanged();
         return new RpslObjectUpdateInfo(objectId, newSequenceId, objectType, pkey);
     }
 
@@ -219,6 +224,7 @@ public class JdbcRpslObjectUpdateDao implements RpslObjectUpdateDao {
         insertIntoTables(jdbcTemplate, rpslObjectInfo, object);
         copyToHistoryAndUpdateSerials(jdbcTemplate, rpslObjectInfo);
         final int newSequenceId = updateLastAndUpdateSerials(dateTimeProvider, jdbcTemplate, rpslObjectInfo, object);
+        serialChangePublisher.serialsChanged();
 
         return new RpslObjectUpdateInfo(rpslObjectInfo.getObjectId(), newSequenceId, rpslObjectInfo.getObjectType(), rpslObjectInfo.getKey());
     }
@@ -228,6 +234,7 @@ public class JdbcRpslObjectUpdateDao implements RpslObjectUpdateDao {
         final RpslObjectUpdateInfo rpslObjectInfo = insertIntoLastAndUpdateSerials(dateTimeProvider, jdbcTemplate, object);
 
         insertIntoTables(jdbcTemplate, rpslObjectInfo, object);
+        serialChangePublisher.serialsChanged();
         return rpslObjectInfo;
     }
 
@@ -1,5 +1,6 @@
 package net.ripe.db.whois.common.dao.jdbc;
 
+import com.google.common.collect.Maps;
 import net.ripe.db.whois.common.dao.UpdateLockDao;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -9,9 +10,19 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.sql.DataSource;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
 
+/**
+ * Keys are hashed onto the rows of the update_key_lock table, which are always locked in ascending order so updates
+ * locking overlapping sets of keys cannot deadlock. Keys sharing a row are serialised as if they were the same key.
+ */
 @Repository
 class JdbcUpdateLockDao implements UpdateLockDao {
+    // number of rows in update_key_lock
+    static final int KEY_LOCK_SLOTS = 1000;
+
     private final JdbcTemplate jdbcTemplate;
 
     @Autowired
@@ -22,11 +33,54 @@ class JdbcUpdateLockDao implements UpdateLockDao {
     @Override
     @Transactional(propagation = Propagation.MANDATORY)
     public void setUpdateLock() {
+        checkIsolationLevel();
+
+        jdbcTemplate.queryForList("SELECT slot_id FROM update_key_lock ORDER BY slot_id FOR UPDATE", Integer.class);
+        jdbcTemplate.queryForObject("SELECT global_lock FROM update_lock WHERE global_lock = 0 FOR UPDATE", Integer.class);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void setKeyLocks(final Set<String> exclusiveKeys, final Set<String> sharedKeys) {
+        checkIsolationLevel();
+
+        final SortedMap<Integer, Boolean> slots = Maps.newTreeMap();
+        for (final String sharedKey : sharedKeys) {
+            slots.put(getSlot(sharedKey), false);
+        }
+
+        for (final String exclusiveKey : exclusiveKeys) {
+            slots.put(getSlot(exclusiveKey), true);
+        }
+
+        for (final Map.Entry<Integer, Boolean> slot : slots.entrySet()) {
+            if (slot.getValue()) {
+                jdbcTemplate.queryForObject("SELECT slot_id FROM update_key_lock WHERE slot_id = ? FOR UPDATE", Integer.class, slot.getKey());
+            } else {
+                jdbcTemplate.queryForObject("SELECT slot_id FROM update_key_lock WHERE slot_id = ? LOCK IN SHARE MODE", Integer.class, slot.getKey());
+            }
+        }
+    }
+
+    @Override
+    public int getKeyLock(final String key) {
+        return getSlot(key);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void setWriteLock() {
+        jdbcTemplate.queryForObject("SELECT global_lock FROM update_lock WHERE global_lock = 0 FOR UPDATE", Integer.class);
+    }
+
+    static int getSlot(final String key) {
+        return Math.floorMod(key.hashCode(), KEY_LOCK_SLOTS);
+    }
+
+    private void checkIsolationLevel() {
         final String isolationLevel = jdbcTemplate.queryForObject("select @@tx_isolation", String.class);
         if (!isolationLevel.equals("READ-COMMITTED")) {
             throw new IllegalStateException("Invalid isolation level: " + isolationLevel);
         }
-
-        jdbcTemplate.queryForObject("SELECT global_lock FROM update_lock WHERE global_lock = 0 FOR UPDATE", Integer.class);
     }
 }
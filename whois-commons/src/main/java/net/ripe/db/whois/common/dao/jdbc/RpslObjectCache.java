@@ -0,0 +1,164 @@
+package net.ripe.db.whois.common.dao.jdbc;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import net.ripe.db.whois.common.domain.CIString;
+import net.ripe.db.whois.common.rpsl.AttributeType;
+import net.ripe.db.whois.common.rpsl.RpslAttribute;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.CheckForNull;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of parsed objects, keyed by source and object id, each with the sequence id of the cached version.
+ * <p/>
+ * Every change to an object increments its sequence id in the last table, so a cached version never has to be
+ * invalidated: objects are read together with their current sequence id, a cached version is only used while it is
+ * current, and it is replaced once a newer version is loaded.
+ * The cache is bounded by the (approximate) size of the cached objects in bytes, and disabled when that size is 0.
+ * <p/>
+ * A lookup is only known to be a hit once the cached version has been checked against the database, so hits and misses
+ * are recorded by the caller.
+ */
+@Component
+public class RpslObjectCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RpslObjectCache.class);
+
+    private final Cache<ObjectKey, CachedObject> cache;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    @Autowired
+    public RpslObjectCache(@Value("${rpsl.object.cache.bytes:0}") final long maximumBytes) {
+        if (maximumBytes > 0) {
+            LOGGER.info("Caching up to {} bytes of objects", maximumBytes);
+            this.cache = CacheBuilder.newBuilder()
+                    .maximumWeight(maximumBytes)
+                    .weigher(new Weigher<ObjectKey, CachedObject>() {
+                        @Override
+                        public int weigh(final ObjectKey key, final CachedObject value) {
+                            return getSize(value.rpslObject);
+                        }
+                    })
+                    .recordStats()
+                    .build();
+        } else {
+            this.cache = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * @return the cached version of the object, which may no longer be current.
+     */
+    @CheckForNull
+    public CachedObject get(final CIString source, final int objectId) {
+        // not getIfPresent(), which would count a stale version as a hit
+        return cache.asMap().get(new ObjectKey(source, objectId));
+    }
+
+    /**
+     * Record a lookup that found the current version in the cache.
+     */
+    public void recordHit() {
+        hitCount.increment();
+    }
+
+    /**
+     * Record a lookup that found no version, or a stale version, in the cache.
+     */
+    public void recordMiss() {
+        missCount.increment();
+    }
+
+    public void put(final CIString source, final int sequenceId, final RpslObject rpslObject) {
+        // build the lazily created attribute index before other threads can see the object
+        rpslObject.findAttributes(AttributeType.SOURCE);
+        cache.put(new ObjectKey(source, rpslObject.getObjectId()), new CachedObject(sequenceId, rpslObject));
+    }
+
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    public long size() {
+        return cache == null ? 0 : cache.size();
+    }
+
+    public CacheStats stats() {
+        if (cache == null) {
+            return new CacheStats(0, 0, 0, 0, 0, 0);
+        }
+
+        return new CacheStats(hitCount.sum(), missCount.sum(), 0, 0, 0, cache.stats().evictionCount());
+    }
+
+    static int getSize(final RpslObject rpslObject) {
+        int size = 0;
+        for (final RpslAttribute attribute : rpslObject.getAttributes()) {
+            size += attribute.getKey().length() + attribute.getValueLength() + 2;
+        }
+        return size;
+    }
+
+    public static final class CachedObject {
+        private final int sequenceId;
+        private final RpslObject rpslObject;
+
+        private CachedObject(final int sequenceId, final RpslObject rpslObject) {
+            this.sequenceId = sequenceId;
+            this.rpslObject = rpslObject;
+        }
+
+        public int getSequenceId() {
+            return sequenceId;
+        }
+
+        public RpslObject getRpslObject() {
+            return rpslObject;
+        }
+    }
+
+    private static final class ObjectKey {
+        private final CIString source;
+        private final int objectId;
+
+        private ObjectKey(final CIString source, final int objectId) {
+            this.source = source;
+            this.objectId = objectId;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            final ObjectKey that = (ObjectKey) o;
+            return objectId == that.objectId && source.equals(that.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, objectId);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package net.ripe.db.whois.common.dao.jdbc;
+
+import net.ripe.db.whois.common.jmx.JmxBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+
+@Component
+@ManagedResource(objectName = JmxBase.OBJECT_NAME_BASE + "RpslObjectCache", description = "Whois cache of parsed objects")
+public class RpslObjectCacheJmx extends JmxBase {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RpslObjectCacheJmx.class);
+
+    private final RpslObjectCache rpslObjectCache;
+
+    @Autowired
+    public RpslObjectCacheJmx(final RpslObjectCache rpslObjectCache) {
+        super(LOGGER);
+        this.rpslObjectCache = rpslObjectCache;
+    }
+
+    @ManagedAttribute(description = "Is the cache enabled (rpsl.object.cache.bytes)")
+    public boolean isEnabled() {
+        return rpslObjectCache.isEnabled();
+    }
+
+    @ManagedAttribute(description = "Number of cached objects")
+    public long getSize() {
+        return rpslObjectCache.size();
+    }
+
+    @ManagedAttribute(description = "Number of lookups that found a cached object")
+    public long getHitCount() {
+        return rpslObjectCache.stats().hitCount();
+    }
+
+    @ManagedAttribute(description = "Number of lookups that had to load the object from the database")
+    public long getMissCount() {
+        return rpslObjectCache.stats().missCount();
+    }
+
+    @ManagedAttribute(description = "Ratio of lookups that found a cached object")
+    public double getHitRate() {
+        return rpslObjectCache.stats().hitRate();
+    }
+
+    @ManagedAttribute(description = "Number of objects evicted to stay within the maximum size")
+    public long getEvictionCount() {
+        return rpslObjectCache.stats().evictionCount();
+    }
+
+    @ManagedOperation(description = "Remove all objects from the cache")
+    public String invalidateAll() {
+        return invokeOperation("Invalidate object cache", "", new Callable<String>() {
+            @Override
+            public String call() {
+                rpslObjectCache.invalidateAll();
+                return "Object cache invalidated";
+            }
+        });
+    }
+}
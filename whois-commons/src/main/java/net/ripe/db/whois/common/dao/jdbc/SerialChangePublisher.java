@@ -0,0 +1,90 @@
+package net.ripe.db.whois.common.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import net.ripe.db.whois.common.dao.SerialChangeListener;
+import net.ripe.db.whois.common.source.SourceConfiguration;
+import net.ripe.db.whois.common.source.SourceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Publishes writes to the serials table to the {@link SerialChangeListener}s once the surrounding transaction has
+ * been committed, so in-memory caches can catch up immediately instead of waiting for their next poll.
+ * <p/>
+ * All serials written in one transaction result in a single notification per source.
+ */
+@Component
+public class SerialChangePublisher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SerialChangePublisher.class);
+
+    private final SourceContext sourceContext;
+    private List<SerialChangeListener> listeners = Collections.emptyList();
+
+    @Autowired
+    public SerialChangePublisher(final SourceContext sourceContext) {
+        this.sourceContext = sourceContext;
+    }
+
+    @Autowired(required = false)
+    void setListeners(final List<SerialChangeListener> listeners) {
+        this.listeners = Lists.newArrayList(listeners);
+    }
+
+    public void serialsChanged() {
+        if (listeners.isEmpty()) {
+            return;
+        }
+
+        final SourceConfiguration sourceConfiguration = sourceContext.getCurrentSourceConfiguration();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            notifyListeners(sourceConfiguration);
+            return;
+        }
+
+        for (final TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof AfterCommitNotification && ((AfterCommitNotification) synchronization).getPublisher() == this) {
+                ((AfterCommitNotification) synchronization).sourceConfigurations.add(sourceConfiguration);
+                return;
+            }
+        }
+
+        final AfterCommitNotification notification = new AfterCommitNotification();
+        notification.sourceConfigurations.add(sourceConfiguration);
+        TransactionSynchronizationManager.registerSynchronization(notification);
+    }
+
+    private void notifyListeners(final SourceConfiguration sourceConfiguration) {
+        for (final SerialChangeListener listener : listeners) {
+            try {
+                listener.serialsCommitted(sourceConfiguration);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to notify {} of serial changes in {}", listener, sourceConfiguration, e);
+            }
+        }
+    }
+
+    private final class AfterCommitNotification extends TransactionSynchronizationAdapter {
+        private final Set<SourceConfiguration> sourceConfigurations = Sets.newLinkedHashSet();
+
+        SerialChangePublisher getPublisher() {
+            return SerialChangePublisher.this;
+        }
+
+        @Override
+        public void afterCommit() {
+            for (final SourceConfiguration sourceConfiguration : sourceConfigurations) {
+                notifyListeners(sourceConfiguration);
+            }
+        }
+    }
+}
@@ -3,31 +3,49 @@ package net.ripe.db.whois.common.domain.serials;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 
 public class SerialEntry {
+    final private int serialId;
     final private Operation operation;
     final private boolean atLast;
 
     final private int lastTimestamp;
     final private int historyTimestamp;
 
-    private RpslObject rpslObject;
+    final private RpslObject rpslObject;
 
     public SerialEntry(final Operation operation, final boolean atLast, final int lastTimestamp, final int historyTimestamp) {
+        this(0, operation, atLast, lastTimestamp, historyTimestamp, null);
+    }
+
+    public SerialEntry(final Operation operation, final boolean atLast, final int objectId, final int lastTimestamp, final int historyTimestamp, final byte[] blob) {
+        this(0, operation, atLast, objectId, lastTimestamp, historyTimestamp, blob);
+    }
+
+    public SerialEntry(final int serialId, final Operation operation, final boolean atLast, final int objectId, final int lastTimestamp, final int historyTimestamp, final byte[] blob) {
+        this(serialId, operation, atLast, lastTimestamp, historyTimestamp, RpslObject.parse(objectId, blob));
+    }
+
+    private SerialEntry(final int serialId, final Operation operation, final boolean atLast, final int lastTimestamp, final int historyTimestamp, final RpslObject rpslObject) {
+        this.serialId = serialId;
         this.operation = operation;
         this.atLast = atLast;
         this.lastTimestamp = lastTimestamp;
         this.historyTimestamp = historyTimestamp;
-        rpslObject = null;
-    }
-
-    public SerialEntry(final Operation operation, final boolean atLast, final int objectId, final int lastTimestamp, final int historyTimestamp, final byte[] blob) {
-        this(operation, atLast, lastTimestamp, historyTimestamp);
-        rpslObject = RpslObject.parse(objectId, blob);
+        this.rpslObject = rpslObject;
     }
 
     public static SerialEntry createSerialEntryWithoutTimestamps(final Operation operation, final boolean atLast, final int objectId, final byte[] blob){
         return new SerialEntry(operation, atLast, objectId, 0, 0, blob);
     }
 
+    public static SerialEntry createSerialEntryWithoutTimestamps(final int serialId, final Operation operation, final boolean atLast, final int objectId, final byte[] blob){
+        return new SerialEntry(serialId, operation, atLast, objectId, 0, 0, blob);
+    }
+
+    /** @return the serial id of entries read for NRTM, 0 otherwise */
+    public int getSerialId() {
+        return serialId;
+    }
+
     public RpslObject getRpslObject() {
         return rpslObject;
     }
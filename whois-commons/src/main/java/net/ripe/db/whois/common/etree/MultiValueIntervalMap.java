@@ -8,22 +8,35 @@ import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+/**
+ * An {@link IntervalMap} that allows multiple values per interval. The value sets stored in
+ * the wrapped map are never modified in place, so wrapping a {@link PersistentNestedIntervalMap}
+ * keeps its snapshots isolated from later modifications.
+ *
+ * @param <K> the type of the interval (must implement {@link Interval}).
+ * @param <V> the type of the values to store.
+ */
 public final class MultiValueIntervalMap<K extends Interval<K>, V> implements IntervalMap<K, V> {
     private final IntervalMap<K, SortedSet<V>> wrapped;
 
     public MultiValueIntervalMap() {
-        this.wrapped = new NestedIntervalMap<>();
+        this(new NestedIntervalMap<K, SortedSet<V>>());
+    }
+
+    public MultiValueIntervalMap(final IntervalMap<K, SortedSet<V>> wrapped) {
+        this.wrapped = wrapped;
     }
 
     @Override
     public void put(K key, V value) {
-        SortedSet<V> set = CollectionHelper.uniqueResult(wrapped.findExact(key));
-        if (set == null) {
-            set = new TreeSet<>();
-            wrapped.put(key, set);
+        final SortedSet<V> set = CollectionHelper.uniqueResult(wrapped.findExact(key));
+        if (set != null && set.contains(value)) {
+            return;
         }
 
-        set.add(value);
+        final SortedSet<V> updated = set == null ? new TreeSet<V>() : new TreeSet<>(set);
+        updated.add(value);
+        wrapped.put(key, updated);
     }
 
     @Override
@@ -38,10 +51,17 @@ public final class MultiValueIntervalMap<K extends Interval<K>, V> implements In
             return;
         }
 
-        set.remove(value);
+        if (!set.contains(value)) {
+            return;
+        }
+
+        final SortedSet<V> updated = new TreeSet<>(set);
+        updated.remove(value);
 
-        if (set.isEmpty()) {
+        if (updated.isEmpty()) {
             wrapped.remove(key);
+        } else {
+            wrapped.put(key, updated);
         }
     }
 
@@ -129,6 +129,10 @@ public final class NestedIntervalMap<K extends Interval<K>, V> implements Interv
         children.clear();
     }
 
+    ChildNodeMap<K, V> getChildren() {
+        return children;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
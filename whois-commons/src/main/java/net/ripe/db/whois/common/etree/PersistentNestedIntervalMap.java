@@ -0,0 +1,407 @@
+package net.ripe.db.whois.common.etree;
+
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.collect.CollectionHelper;
+import net.ripe.db.whois.common.ip.Interval;
+import org.apache.commons.lang.Validate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A path-copying variant of {@link NestedIntervalMap}. Nodes are never modified
+ * once created: every {@link #put(Interval, Object)} or {@link #remove(Interval)}
+ * copies only the nodes on the path from the root to the modified node, and
+ * publishes the new root with a single volatile write.
+ * <p/>
+ * Readers never block and never see a partially applied modification. A
+ * {@link #snapshot()} is an O(1) operation that pins the current version of the
+ * map; it will not observe any later modifications.
+ * <p/>
+ * Children of each node are kept in an array sorted on the upper-bound of their
+ * intervals, so lookups are a binary search per nesting level.
+ * <p/>
+ * <strong>Note that modifications are not synchronized.</strong> There must be at
+ * most one thread modifying the map at any time, reads are safe from any thread.
+ *
+ * @param <K> the type of the interval (must implement {@link Interval}).
+ * @param <V> the type of the values to store.
+ */
+public final class PersistentNestedIntervalMap<K extends Interval<K>, V> implements SnapshotIntervalMap<K, V> {
+
+    @SuppressWarnings("rawtypes")
+    private static final Node[] NO_NODES = new Node[0];
+
+    private final boolean readOnly;
+    private volatile Node<K, V>[] roots;
+
+    /**
+     * Construct an empty {@link PersistentNestedIntervalMap}.
+     */
+    public PersistentNestedIntervalMap() {
+        this(PersistentNestedIntervalMap.<K, V>noNodes(), false);
+    }
+
+    private PersistentNestedIntervalMap(final Node<K, V>[] roots, final boolean readOnly) {
+        this.roots = roots;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Construct a new {@link PersistentNestedIntervalMap} with (key, values) of
+     * <code>source</code> copied. Building a large map in a
+     * {@link NestedIntervalMap} and copying it is considerably cheaper than
+     * inserting every interval into a {@link PersistentNestedIntervalMap}.
+     *
+     * @param source the source to copy.
+     */
+    public static <K extends Interval<K>, V> PersistentNestedIntervalMap<K, V> copyOf(final NestedIntervalMap<K, V> source) {
+        return new PersistentNestedIntervalMap<>(copyOf(source.getChildren()), false);
+    }
+
+    @Override
+    public IntervalMap<K, V> snapshot() {
+        return new PersistentNestedIntervalMap<>(roots, true);
+    }
+
+    @Override
+    public void put(final K key, final V value) {
+        Validate.notNull(key);
+        Validate.notNull(value);
+        checkModifiable();
+        roots = put(roots, key, value);
+    }
+
+    @Override
+    public void remove(final K key) {
+        Validate.notNull(key);
+        checkModifiable();
+        roots = remove(roots, key);
+    }
+
+    @Override
+    public void remove(final K key, final V value) {
+        Validate.notNull(key);
+        Validate.notNull(value);
+
+        if (value.equals(CollectionHelper.uniqueResult(findExact(key)))) {
+            remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        checkModifiable();
+        roots = noNodes();
+    }
+
+    @Override
+    public List<V> findFirstLessSpecific(final K key) {
+        Validate.notNull(key);
+        final List<Node<K, V>> list = internalFindAllLessSpecific(roots, key);
+        return list.isEmpty() ? Collections.<V>emptyList() : mapToValues(list.get(list.size() - 1));
+    }
+
+    @Override
+    public List<V> findExact(final K key) {
+        Validate.notNull(key);
+        return mapToValues(internalFindExact(roots, key));
+    }
+
+    @Override
+    public List<V> findExactOrFirstLessSpecific(final K key) {
+        Validate.notNull(key);
+        return mapToValues(internalFindExactOrFirstLessSpecific(roots, key));
+    }
+
+    @Override
+    public List<V> findAllLessSpecific(final K key) {
+        Validate.notNull(key);
+        return mapToValues(internalFindAllLessSpecific(roots, key));
+    }
+
+    @Override
+    public List<V> findExactAndAllLessSpecific(final K key) {
+        Validate.notNull(key);
+        return mapToValues(internalFindExactAndAllLessSpecific(roots, key));
+    }
+
+    @Override
+    public List<V> findFirstMoreSpecific(final K key) {
+        Validate.notNull(key);
+        final Node<K, V>[] nodes = roots;
+        final List<Node<K, V>> result = new ArrayList<>();
+        final Node<K, V> container = internalFindExactOrFirstLessSpecific(nodes, key);
+        findFirstMoreSpecific(result, container == null ? nodes : container.children, key);
+        return mapToValues(result);
+    }
+
+    @Override
+    public List<V> findAllMoreSpecific(final K key) {
+        Validate.notNull(key);
+        final List<Node<K, V>> result = internalFindExactAndAllMoreSpecific(roots, key);
+        if (!result.isEmpty() && result.get(0).interval.equals(key)) {
+            return mapToValues(result.subList(1, result.size()));
+        } else {
+            return mapToValues(result);
+        }
+    }
+
+    @Override
+    public List<V> findExactAndAllMoreSpecific(final K key) {
+        Validate.notNull(key);
+        return mapToValues(internalFindExactAndAllMoreSpecific(roots, key));
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(roots);
+    }
+
+    private void checkModifiable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Snapshot cannot be modified");
+        }
+    }
+
+    private List<V> mapToValues(final Node<K, V> node) {
+        if (node == null) {
+            return Collections.emptyList();
+        }
+
+        return Arrays.asList(node.value);
+    }
+
+    private List<V> mapToValues(final Collection<Node<K, V>> nodes) {
+        final List<V> result = Lists.newArrayListWithExpectedSize(nodes.size());
+        for (final Node<K, V> node : nodes) {
+            result.add(node.value);
+        }
+        return result;
+    }
+
+    private Node<K, V> internalFindExactOrFirstLessSpecific(final Node<K, V>[] nodes, final K range) {
+        final List<Node<K, V>> list = internalFindExactAndAllLessSpecific(nodes, range);
+        return list.isEmpty() ? null : list.get(list.size() - 1);
+    }
+
+    private Node<K, V> internalFindExact(final Node<K, V>[] nodes, final K range) {
+        final Node<K, V> last = internalFindExactOrFirstLessSpecific(nodes, range);
+        return last != null && last.interval.equals(range) ? last : null;
+    }
+
+    private List<Node<K, V>> internalFindAllLessSpecific(final Node<K, V>[] nodes, final K range) {
+        final List<Node<K, V>> result = internalFindExactAndAllLessSpecific(nodes, range);
+        if (!result.isEmpty() && result.get(result.size() - 1).interval.equals(range)) {
+            return result.subList(0, result.size() - 1);
+        }
+        return result;
+    }
+
+    private List<Node<K, V>> internalFindExactAndAllLessSpecific(final Node<K, V>[] nodes, final K range) {
+        final List<Node<K, V>> result = new ArrayList<>();
+        Node<K, V>[] current = nodes;
+        for (int index = indexOfChildContaining(current, range); index >= 0; index = indexOfChildContaining(current, range)) {
+            result.add(current[index]);
+            current = current[index].children;
+        }
+        return result;
+    }
+
+    private List<Node<K, V>> internalFindExactAndAllMoreSpecific(final Node<K, V>[] nodes, final K range) {
+        final List<Node<K, V>> result = new ArrayList<>();
+        final Node<K, V> containing = internalFindExactOrFirstLessSpecific(nodes, range);
+        if (containing == null) {
+            findExactAndAllMoreSpecific(result, nodes, range);
+        } else {
+            if (containing.interval.equals(range)) {
+                result.add(containing);
+            }
+            findExactAndAllMoreSpecific(result, containing.children, range);
+        }
+        return result;
+    }
+
+    private static <K extends Interval<K>, V> void findExactAndAllMoreSpecific(final List<Node<K, V>> result, final Node<K, V>[] nodes, final K range) {
+        for (int index = ceilingIndex(nodes, range.singletonIntervalAtLowerBound()); index < nodes.length; index++) {
+            final Node<K, V> node = nodes[index];
+            if (range.contains(node.interval)) {
+                result.add(node);
+                addAllChildrenToList(result, node.children);
+            } else if (range.intersects(node.interval)) {
+                findExactAndAllMoreSpecific(result, node.children, range);
+            } else {
+                break;
+            }
+        }
+    }
+
+    private static <K extends Interval<K>, V> void findFirstMoreSpecific(final List<Node<K, V>> result, final Node<K, V>[] nodes, final K range) {
+        for (int index = ceilingIndex(nodes, range.singletonIntervalAtLowerBound()); index < nodes.length; index++) {
+            final Node<K, V> node = nodes[index];
+            if (range.contains(node.interval)) {
+                result.add(node);
+            } else if (range.intersects(node.interval)) {
+                findFirstMoreSpecific(result, node.children, range);
+            } else {
+                break;
+            }
+        }
+    }
+
+    private static <K extends Interval<K>, V> void addAllChildrenToList(final List<Node<K, V>> result, final Node<K, V>[] nodes) {
+        for (final Node<K, V> node : nodes) {
+            result.add(node);
+            addAllChildrenToList(result, node.children);
+        }
+    }
+
+    private static <K extends Interval<K>, V> Node<K, V>[] put(final Node<K, V>[] nodes, final K range, final V value) {
+        final int containing = indexOfChildContaining(nodes, range);
+        if (containing >= 0) {
+            final Node<K, V> node = nodes[containing];
+            final Node<K, V>[] result = nodes.clone();
+            if (node.interval.equals(range)) {
+                result[containing] = new Node<>(range, value, node.children);
+            } else {
+                result[containing] = new Node<>(node.interval, node.value, put(node.children, range, value));
+            }
+            return result;
+        }
+
+        final List<K> intersections = getIntersectingChildren(nodes, range);
+        if (!intersections.isEmpty()) {
+            throw new IntersectingIntervalException(range, intersections);
+        }
+
+        // siblings contained in the new interval become its children
+        final int from = ceilingIndex(nodes, range.singletonIntervalAtLowerBound());
+        int to = from;
+        while (to < nodes.length && range.contains(nodes[to].interval)) {
+            to++;
+        }
+
+        final Node<K, V>[] result = newNodes(nodes.length - (to - from) + 1);
+        System.arraycopy(nodes, 0, result, 0, from);
+        result[from] = new Node<>(range, value, copyOfRange(nodes, from, to));
+        System.arraycopy(nodes, to, result, from + 1, nodes.length - to);
+        return result;
+    }
+
+    private static <K extends Interval<K>, V> Node<K, V>[] remove(final Node<K, V>[] nodes, final K range) {
+        final int containing = indexOfChildContaining(nodes, range);
+        if (containing < 0) {
+            return nodes;
+        }
+
+        final Node<K, V> node = nodes[containing];
+        if (node.interval.equals(range)) {
+            // children of the removed node take its place
+            final Node<K, V>[] children = node.children;
+            final Node<K, V>[] result = newNodes(nodes.length - 1 + children.length);
+            System.arraycopy(nodes, 0, result, 0, containing);
+            System.arraycopy(children, 0, result, containing, children.length);
+            System.arraycopy(nodes, containing + 1, result, containing + children.length, nodes.length - containing - 1);
+            return result;
+        }
+
+        final Node<K, V>[] children = remove(node.children, range);
+        if (children == node.children) {
+            return nodes;
+        }
+
+        final Node<K, V>[] result = nodes.clone();
+        result[containing] = new Node<>(node.interval, node.value, children);
+        return result;
+    }
+
+    private static <K extends Interval<K>, V> List<K> getIntersectingChildren(final Node<K, V>[] nodes, final K range) {
+        List<K> result = Collections.emptyList();
+        final int lowerCandidate = ceilingIndex(nodes, range.singletonIntervalAtLowerBound());
+        if (lowerCandidate < nodes.length && intersectsButNotContained(range, nodes[lowerCandidate].interval)) {
+            result = new ArrayList<>(result);
+            result.add(nodes[lowerCandidate].interval);
+        }
+        final int upperCandidate = ceilingIndex(nodes, range);
+        if (upperCandidate < nodes.length && intersectsButNotContained(range, nodes[upperCandidate].interval)) {
+            result = new ArrayList<>(result);
+            result.add(nodes[upperCandidate].interval);
+        }
+        return result;
+    }
+
+    private static <K extends Interval<K>> boolean intersectsButNotContained(final K left, final K right) {
+        return left.intersects(right) && !left.contains(right) && !right.contains(left);
+    }
+
+    private static <K extends Interval<K>, V> int indexOfChildContaining(final Node<K, V>[] nodes, final K range) {
+        final int index = ceilingIndex(nodes, range.singletonIntervalAtLowerBound());
+        return index < nodes.length && nodes[index].interval.contains(range) ? index : -1;
+    }
+
+    /*
+     * Index of the first node with an upper-bound greater than or equal to the upper-bound of
+     * the given interval, or nodes.length if there is no such node.
+     */
+    private static <K extends Interval<K>, V> int ceilingIndex(final Node<K, V>[] nodes, final K interval) {
+        int low = 0;
+        int high = nodes.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (nodes[mid].interval.compareUpperBound(interval) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static <K extends Interval<K>, V> Node<K, V>[] copyOf(final ChildNodeMap<K, V> source) {
+        final Collection<InternalNode<K, V>> values = source.values();
+        final Node<K, V>[] result = newNodes(values.size());
+        int index = 0;
+        for (final InternalNode<K, V> node : values) {
+            result[index++] = new Node<>(node.getInterval(), node.getValue(), copyOf(node.getChildren()));
+        }
+        return result;
+    }
+
+    private static <K extends Interval<K>, V> Node<K, V>[] copyOfRange(final Node<K, V>[] nodes, final int from, final int to) {
+        return from == to ? PersistentNestedIntervalMap.<K, V>noNodes() : Arrays.copyOfRange(nodes, from, to);
+    }
+
+    private static <K extends Interval<K>, V> Node<K, V>[] newNodes(final int size) {
+        return size == 0 ? PersistentNestedIntervalMap.<K, V>noNodes() : PersistentNestedIntervalMap.<K, V>allocate(size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K extends Interval<K>, V> Node<K, V>[] allocate(final int size) {
+        return (Node<K, V>[]) new Node[size];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K extends Interval<K>, V> Node<K, V>[] noNodes() {
+        return (Node<K, V>[]) NO_NODES;
+    }
+
+    private static final class Node<K extends Interval<K>, V> {
+        private final K interval;
+        private final V value;
+        private final Node<K, V>[] children;
+
+        private Node(final K interval, final V value, final Node<K, V>[] children) {
+            this.interval = interval;
+            this.value = value;
+            this.children = children;
+        }
+
+        @Override
+        public String toString() {
+            return "Node(" + interval + ", " + value + ", " + Arrays.toString(children) + ")";
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package net.ripe.db.whois.common.etree;
+
+import net.ripe.db.whois.common.ip.Interval;
+
+/**
+ * An {@link IntervalMap} that can hand out immutable snapshots of its current
+ * contents. Modifications made after a snapshot is taken are not visible in that
+ * snapshot, so snapshots can be read from any thread without synchronization.
+ *
+ * @param <K> the type of the interval (must implement {@link Interval}).
+ * @param <V> the type of the values to store.
+ */
+public interface SnapshotIntervalMap<K extends Interval<?>, V> extends IntervalMap<K, V> {
+
+    /**
+     * @return an unmodifiable view of the current contents of this map, unaffected by later modifications.
+     */
+    IntervalMap<K, V> snapshot();
+}
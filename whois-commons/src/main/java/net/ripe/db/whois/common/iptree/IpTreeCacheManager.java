@@ -1,5 +1,6 @@
 package net.ripe.db.whois.common.iptree;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import net.ripe.db.whois.common.dao.jdbc.domain.ObjectTypeIds;
@@ -9,7 +10,8 @@ import net.ripe.db.whois.common.etree.IntersectingIntervalException;
 import net.ripe.db.whois.common.etree.IntervalMap;
 import net.ripe.db.whois.common.etree.MultiValueIntervalMap;
 import net.ripe.db.whois.common.etree.NestedIntervalMap;
-import net.ripe.db.whois.common.etree.SynchronizedIntervalMap;
+import net.ripe.db.whois.common.etree.PersistentNestedIntervalMap;
+import net.ripe.db.whois.common.etree.SnapshotIntervalMap;
 import net.ripe.db.whois.common.ip.Interval;
 import net.ripe.db.whois.common.ip.Ipv4Resource;
 import net.ripe.db.whois.common.ip.Ipv6Resource;
@@ -17,20 +19,28 @@ import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.attrs.Domain;
 import net.ripe.db.whois.common.source.SourceConfiguration;
 import net.ripe.db.whois.common.source.SourceContext;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedSet;
 import java.util.concurrent.Semaphore;
 
 import static net.ripe.db.whois.common.domain.serials.Operation.UPDATE;
@@ -47,11 +57,22 @@ public class IpTreeCacheManager {
 
     private final JdbcTemplate jdbcTemplate;
     private final SourceContext sourceContext;
+    private final boolean packedIpv4Trees;
+    private final boolean packedIpv6Trees;
+    private final String snapshotDir;
 
     @Autowired
-    public IpTreeCacheManager(@Qualifier("sourceAwareDataSource") final DataSource dataSource, final SourceContext sourceContext) {
+    public IpTreeCacheManager(
+            @Qualifier("sourceAwareDataSource") final DataSource dataSource,
+            final SourceContext sourceContext,
+            @Value("${iptree.packed.ipv4:false}") final boolean packedIpv4Trees,
+            @Value("${iptree.packed.ipv6:false}") final boolean packedIpv6Trees,
+            @Value("${dir.iptree.snapshot:}") final String snapshotDir) {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
         this.sourceContext = sourceContext;
+        this.packedIpv4Trees = packedIpv4Trees;
+        this.packedIpv6Trees = packedIpv6Trees;
+        this.snapshotDir = snapshotDir;
     }
 
     private static final class IpTreeUpdate {
@@ -76,24 +97,101 @@ public class IpTreeCacheManager {
     private static final class CacheEntry {
         final SourceConfiguration sourceConfiguration;
         final Semaphore updateLock = new Semaphore(1);
-        NestedIntervalMaps nestedIntervalMaps = new NestedIntervalMaps();
 
-        private CacheEntry(final SourceConfiguration sourceConfiguration) {
+        // only modified while holding updateLock
+        PersistentIntervalMaps persistentIntervalMaps;
+
+        // published for readers, always a consistent snapshot of all trees
+        volatile NestedIntervalMaps nestedIntervalMaps;
+
+        private CacheEntry(final SourceConfiguration sourceConfiguration, final boolean packedIpv4Trees, final boolean packedIpv6Trees) {
             this.sourceConfiguration = sourceConfiguration;
+            this.persistentIntervalMaps = new MutableIntervalMaps().toPersistentIntervalMaps(packedIpv4Trees, packedIpv6Trees);
+            this.nestedIntervalMaps = persistentIntervalMaps.snapshot(Long.MIN_VALUE);
         }
     }
 
-    static class NestedIntervalMaps {
-        final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4TreeCache = SynchronizedIntervalMap.synchronizedMap(new NestedIntervalMap<Ipv4Resource, Ipv4Entry>());
-        final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6TreeCache = SynchronizedIntervalMap.synchronizedMap(new NestedIntervalMap<Ipv6Resource, Ipv6Entry>());
-        final IntervalMap<Ipv4Resource, Ipv4RouteEntry> ipv4RouteTreeCache = SynchronizedIntervalMap.synchronizedMap(new MultiValueIntervalMap<Ipv4Resource, Ipv4RouteEntry>());
-        final IntervalMap<Ipv6Resource, Ipv6RouteEntry> ipv6RouteTreeCache = SynchronizedIntervalMap.synchronizedMap(new MultiValueIntervalMap<Ipv6Resource, Ipv6RouteEntry>());
-        final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4DomainTreeCache = SynchronizedIntervalMap.synchronizedMap(new NestedIntervalMap<Ipv4Resource, Ipv4Entry>());
-        final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6DomainTreeCache = SynchronizedIntervalMap.synchronizedMap(new NestedIntervalMap<Ipv6Resource, Ipv6Entry>());
+    /**
+     * Immutable snapshot of all trees for a source, together with the last serial applied to them.
+     */
+    static final class NestedIntervalMaps {
+        private final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4TreeCache;
+        private final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6TreeCache;
+        private final IntervalMap<Ipv4Resource, Ipv4RouteEntry> ipv4RouteTreeCache;
+        private final IntervalMap<Ipv6Resource, Ipv6RouteEntry> ipv6RouteTreeCache;
+        private final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4DomainTreeCache;
+        private final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6DomainTreeCache;
+
+        final long lastSerial;
+
+        private NestedIntervalMaps(final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4TreeCache,
+                                   final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6TreeCache,
+                                   final IntervalMap<Ipv4Resource, Ipv4RouteEntry> ipv4RouteTreeCache,
+                                   final IntervalMap<Ipv6Resource, Ipv6RouteEntry> ipv6RouteTreeCache,
+                                   final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4DomainTreeCache,
+                                   final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6DomainTreeCache,
+                                   final long lastSerial) {
+            this.ipv4TreeCache = ipv4TreeCache;
+            this.ipv6TreeCache = ipv6TreeCache;
+            this.ipv4RouteTreeCache = ipv4RouteTreeCache;
+            this.ipv6RouteTreeCache = ipv6RouteTreeCache;
+            this.ipv4DomainTreeCache = ipv4DomainTreeCache;
+            this.ipv6DomainTreeCache = ipv6DomainTreeCache;
+            this.lastSerial = lastSerial;
+        }
+
+        IntervalMap<Ipv4Resource, Ipv4Entry> getIpv4TreeCache() {
+            return ipv4TreeCache;
+        }
+
+        IntervalMap<Ipv6Resource, Ipv6Entry> getIpv6TreeCache() {
+            return ipv6TreeCache;
+        }
+
+        IntervalMap<Ipv4Resource, Ipv4RouteEntry> getIpv4RouteTreeCache() {
+            return ipv4RouteTreeCache;
+        }
 
-        volatile long lastSerial = Long.MIN_VALUE;
+        IntervalMap<Ipv6Resource, Ipv6RouteEntry> getIpv6RouteTreeCache() {
+            return ipv6RouteTreeCache;
+        }
 
-        void update(final Iterable<IpTreeUpdate> updates, final long lastSerial, final CacheEntry cacheEntry) {
+        IntervalMap<Ipv4Resource, Ipv4Entry> getIpv4DomainTreeCache() {
+            return ipv4DomainTreeCache;
+        }
+
+        IntervalMap<Ipv6Resource, Ipv6Entry> getIpv6DomainTreeCache() {
+            return ipv6DomainTreeCache;
+        }
+    }
+
+    /**
+     * Applies updates to the trees of a source. Used both to build trees from scratch (on mutable maps)
+     * and to apply serial batches to the path-copying maps behind the published snapshots.
+     */
+    private static class IntervalMapsUpdater {
+        final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4TreeCache;
+        final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6TreeCache;
+        final IntervalMap<Ipv4Resource, Ipv4RouteEntry> ipv4RouteTreeCache;
+        final IntervalMap<Ipv6Resource, Ipv6RouteEntry> ipv6RouteTreeCache;
+        final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4DomainTreeCache;
+        final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6DomainTreeCache;
+
+        IntervalMapsUpdater(final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4TreeCache,
+                            final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6TreeCache,
+                            final IntervalMap<Ipv4Resource, Ipv4RouteEntry> ipv4RouteTreeCache,
+                            final IntervalMap<Ipv6Resource, Ipv6RouteEntry> ipv6RouteTreeCache,
+                            final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4DomainTreeCache,
+                            final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6DomainTreeCache) {
+            this.ipv4TreeCache = ipv4TreeCache;
+            this.ipv6TreeCache = ipv6TreeCache;
+            this.ipv4RouteTreeCache = ipv4RouteTreeCache;
+            this.ipv6RouteTreeCache = ipv6RouteTreeCache;
+            this.ipv4DomainTreeCache = ipv4DomainTreeCache;
+            this.ipv6DomainTreeCache = ipv6DomainTreeCache;
+        }
+
+        void update(final Iterable<IpTreeUpdate> updates, final CacheEntry cacheEntry) {
             for (final IpTreeUpdate ipTreeUpdate : updates) {
                 try {
                     update(ipTreeUpdate);
@@ -103,8 +201,6 @@ public class IpTreeCacheManager {
                     LOGGER.info("Unable to update object {}: {}", ipTreeUpdate, e.getMessage());
                 }
             }
-
-            this.lastSerial = lastSerial;
         }
 
         private void update(final IpTreeUpdate ipTreeUpdate) {
@@ -151,60 +247,167 @@ public class IpTreeCacheManager {
                     intervalMap.remove(ipEntry.getKey(), ipEntry);
             }
         }
+    }
 
-        IntervalMap<Ipv4Resource, Ipv4Entry> getIpv4TreeCache() {
-            return ipv4TreeCache;
+    /**
+     * Mutable trees used to build all trees for a source from scratch, before converting them to {@link PersistentIntervalMaps}.
+     */
+    private static final class MutableIntervalMaps extends IntervalMapsUpdater {
+        private final NestedIntervalMap<Ipv4Resource, Ipv4Entry> ipv4Tree;
+        private final NestedIntervalMap<Ipv6Resource, Ipv6Entry> ipv6Tree;
+        private final NestedIntervalMap<Ipv4Resource, SortedSet<Ipv4RouteEntry>> ipv4RouteTree;
+        private final NestedIntervalMap<Ipv6Resource, SortedSet<Ipv6RouteEntry>> ipv6RouteTree;
+        private final NestedIntervalMap<Ipv4Resource, Ipv4Entry> ipv4DomainTree;
+        private final NestedIntervalMap<Ipv6Resource, Ipv6Entry> ipv6DomainTree;
+
+        MutableIntervalMaps() {
+            this(new NestedIntervalMap<Ipv4Resource, Ipv4Entry>(),
+                    new NestedIntervalMap<Ipv6Resource, Ipv6Entry>(),
+                    new NestedIntervalMap<Ipv4Resource, SortedSet<Ipv4RouteEntry>>(),
+                    new NestedIntervalMap<Ipv6Resource, SortedSet<Ipv6RouteEntry>>(),
+                    new NestedIntervalMap<Ipv4Resource, Ipv4Entry>(),
+                    new NestedIntervalMap<Ipv6Resource, Ipv6Entry>());
         }
 
-        IntervalMap<Ipv6Resource, Ipv6Entry> getIpv6TreeCache() {
-            return ipv6TreeCache;
+        private MutableIntervalMaps(final NestedIntervalMap<Ipv4Resource, Ipv4Entry> ipv4Tree,
+                                    final NestedIntervalMap<Ipv6Resource, Ipv6Entry> ipv6Tree,
+                                    final NestedIntervalMap<Ipv4Resource, SortedSet<Ipv4RouteEntry>> ipv4RouteTree,
+                                    final NestedIntervalMap<Ipv6Resource, SortedSet<Ipv6RouteEntry>> ipv6RouteTree,
+                                    final NestedIntervalMap<Ipv4Resource, Ipv4Entry> ipv4DomainTree,
+                                    final NestedIntervalMap<Ipv6Resource, Ipv6Entry> ipv6DomainTree) {
+            super(ipv4Tree, ipv6Tree, new MultiValueIntervalMap<>(ipv4RouteTree), new MultiValueIntervalMap<>(ipv6RouteTree), ipv4DomainTree, ipv6DomainTree);
+            this.ipv4Tree = ipv4Tree;
+            this.ipv6Tree = ipv6Tree;
+            this.ipv4RouteTree = ipv4RouteTree;
+            this.ipv6RouteTree = ipv6RouteTree;
+            this.ipv4DomainTree = ipv4DomainTree;
+            this.ipv6DomainTree = ipv6DomainTree;
         }
 
-        IntervalMap<Ipv4Resource, Ipv4RouteEntry> getIpv4RouteTreeCache() {
-            return ipv4RouteTreeCache;
-        }
-
-        IntervalMap<Ipv6Resource, Ipv6RouteEntry> getIpv6RouteTreeCache() {
-            return ipv6RouteTreeCache;
+        PersistentIntervalMaps toPersistentIntervalMaps(final boolean packedIpv4Trees, final boolean packedIpv6Trees) {
+            return new PersistentIntervalMaps(
+                    packedIpv4Trees ? PackedIpv4IntervalMap.copyOf(ipv4Tree) : PersistentNestedIntervalMap.copyOf(ipv4Tree),
+                    packedIpv6Trees ? PackedIpv6IntervalMap.copyOf(ipv6Tree) : PersistentNestedIntervalMap.copyOf(ipv6Tree),
+                    PersistentNestedIntervalMap.copyOf(ipv4RouteTree),
+                    PersistentNestedIntervalMap.copyOf(ipv6RouteTree),
+                    packedIpv4Trees ? PackedIpv4IntervalMap.copyOf(ipv4DomainTree) : PersistentNestedIntervalMap.copyOf(ipv4DomainTree),
+                    packedIpv6Trees ? PackedIpv6IntervalMap.copyOf(ipv6DomainTree) : PersistentNestedIntervalMap.copyOf(ipv6DomainTree));
         }
+    }
 
-        IntervalMap<Ipv4Resource, Ipv4Entry> getIpv4DomainTreeCache() {
-            return ipv4DomainTreeCache;
+    /**
+     * Trees of a source behind the published snapshots; the next version is built here while readers keep using the current one.
+     */
+    private static final class PersistentIntervalMaps extends IntervalMapsUpdater {
+        private final SnapshotIntervalMap<Ipv4Resource, Ipv4Entry> ipv4Tree;
+        private final SnapshotIntervalMap<Ipv6Resource, Ipv6Entry> ipv6Tree;
+        private final PersistentNestedIntervalMap<Ipv4Resource, SortedSet<Ipv4RouteEntry>> ipv4RouteTree;
+        private final PersistentNestedIntervalMap<Ipv6Resource, SortedSet<Ipv6RouteEntry>> ipv6RouteTree;
+        private final SnapshotIntervalMap<Ipv4Resource, Ipv4Entry> ipv4DomainTree;
+        private final SnapshotIntervalMap<Ipv6Resource, Ipv6Entry> ipv6DomainTree;
+
+        private PersistentIntervalMaps(final SnapshotIntervalMap<Ipv4Resource, Ipv4Entry> ipv4Tree,
+                                       final SnapshotIntervalMap<Ipv6Resource, Ipv6Entry> ipv6Tree,
+                                       final PersistentNestedIntervalMap<Ipv4Resource, SortedSet<Ipv4RouteEntry>> ipv4RouteTree,
+                                       final PersistentNestedIntervalMap<Ipv6Resource, SortedSet<Ipv6RouteEntry>> ipv6RouteTree,
+                                       final SnapshotIntervalMap<Ipv4Resource, Ipv4Entry> ipv4DomainTree,
+                                       final SnapshotIntervalMap<Ipv6Resource, Ipv6Entry> ipv6DomainTree) {
+            super(ipv4Tree, ipv6Tree, new MultiValueIntervalMap<>(ipv4RouteTree), new MultiValueIntervalMap<>(ipv6RouteTree), ipv4DomainTree, ipv6DomainTree);
+            this.ipv4Tree = ipv4Tree;
+            this.ipv6Tree = ipv6Tree;
+            this.ipv4RouteTree = ipv4RouteTree;
+            this.ipv6RouteTree = ipv6RouteTree;
+            this.ipv4DomainTree = ipv4DomainTree;
+            this.ipv6DomainTree = ipv6DomainTree;
         }
 
-        IntervalMap<Ipv6Resource, Ipv6Entry> getIpv6DomainTreeCache() {
-            return ipv6DomainTreeCache;
+        NestedIntervalMaps snapshot(final long lastSerial) {
+            return new NestedIntervalMaps(
+                    ipv4Tree.snapshot(),
+                    ipv6Tree.snapshot(),
+                    new MultiValueIntervalMap<>(ipv4RouteTree.snapshot()),
+                    new MultiValueIntervalMap<>(ipv6RouteTree.snapshot()),
+                    ipv4DomainTree.snapshot(),
+                    ipv6DomainTree.snapshot(),
+                    lastSerial);
         }
     }
 
-    private final Map<CIString, CacheEntry> cache = Maps.newHashMap();
+    private final Map<CIString, CacheEntry> cache = Maps.newConcurrentMap();
 
     void rebuild(final SourceConfiguration sourceConfiguration) {
-        final CIString source = sourceConfiguration.getSource().getName();
-        final CacheEntry existingEntry = cache.get(source);
+        final CacheEntry cacheEntry = createCacheEntry(sourceConfiguration);
+        rebuild(sourceConfiguration.getJdbcTemplate(), cacheEntry);
+        cache.put(sourceConfiguration.getSource().getName(), cacheEntry);
+        writeSnapshot(cacheEntry);
+    }
+
+    /**
+     * Load the trees for a source from its snapshot on local disk and replay the serials written since,
+     * or rebuild them from the database if there is no usable snapshot.
+     */
+    void load(final SourceConfiguration sourceConfiguration) {
+        if (!isSnapshotEnabled()) {
+            rebuild(sourceConfiguration);
+            return;
+        }
+
+        final CacheEntry cacheEntry = createCacheEntry(sourceConfiguration);
+        final JdbcTemplate jdbcTemplate = sourceConfiguration.getJdbcTemplate();
+        if (!loadSnapshot(jdbcTemplate, cacheEntry)) {
+            rebuild(sourceConfiguration);
+            return;
+        }
+
+        update(jdbcTemplate, cacheEntry);
+        cache.put(sourceConfiguration.getSource().getName(), cacheEntry);
+    }
+
+    private CacheEntry createCacheEntry(final SourceConfiguration sourceConfiguration) {
+        final CacheEntry existingEntry = cache.get(sourceConfiguration.getSource().getName());
         if (existingEntry != null && !sourceConfiguration.equals(existingEntry.sourceConfiguration)) {
             throw new IllegalArgumentException(String.format("Cannot rebuild %s using different source configuration: %s", existingEntry.sourceConfiguration, sourceConfiguration));
         }
 
-        final CacheEntry cacheEntry = new CacheEntry(sourceConfiguration);
-        rebuild(sourceConfiguration.getJdbcTemplate(), cacheEntry);
-        cache.put(source, cacheEntry);
+        return new CacheEntry(sourceConfiguration, packedIpv4Trees, packedIpv6Trees);
     }
 
     public void update(final SourceConfiguration sourceConfiguration) {
         update(sourceConfiguration, sourceConfiguration.getJdbcTemplate());
     }
 
+    /**
+     * Update the trees before an update is validated against them. Unlike {@link #update(SourceConfiguration)} this
+     * waits for a concurrent update to finish, as that may have started before an update of another thread committed,
+     * and the trees would miss the parent or child it created.
+     */
     public void updateTransactional(final SourceConfiguration sourceConfiguration) {
-        update(sourceConfiguration, this.jdbcTemplate);
+        updateWaiting(sourceConfiguration, this.jdbcTemplate);
     }
 
-    private void update(final SourceConfiguration sourceConfiguration, final JdbcTemplate jdbcTemplate) {
-        final CIString source = sourceConfiguration.getSource().getName();
-        final CacheEntry cacheEntry = cache.get(source);
-        if (cacheEntry == null) {
-            throw new IllegalArgumentException(String.format("No cached ipTree for source: %s", source));
+    /**
+     * Update the trees with serials that were just committed, using the database they were written to.
+     * Unlike {@link #update(SourceConfiguration)} this waits for a concurrent update to finish, as that may have
+     * started before the commit and would miss the new serials.
+     */
+    void updateAfterCommit(final SourceConfiguration sourceConfiguration) {
+        updateWaiting(sourceConfiguration, sourceConfiguration.getJdbcTemplate());
+    }
+
+    private void updateWaiting(final SourceConfiguration sourceConfiguration, final JdbcTemplate jdbcTemplate) {
+        final CacheEntry cacheEntry = getCacheEntry(sourceConfiguration);
+        cacheEntry.updateLock.acquireUninterruptibly();
+        try {
+            update(jdbcTemplate, cacheEntry);
+        } catch (DataAccessException e) {
+            LOGGER.warn("Unable to update {} due to {}", sourceConfiguration, e.getMessage());
+        } finally {
+            cacheEntry.updateLock.release();
         }
+    }
+
+    private void update(final SourceConfiguration sourceConfiguration, final JdbcTemplate jdbcTemplate) {
+        final CacheEntry cacheEntry = getCacheEntry(sourceConfiguration);
 
         // don't wait here if other thread is already busy updating the tree
         if (cacheEntry.updateLock.tryAcquire()) {
@@ -218,6 +421,16 @@ public class IpTreeCacheManager {
         }
     }
 
+    private CacheEntry getCacheEntry(final SourceConfiguration sourceConfiguration) {
+        final CIString source = sourceConfiguration.getSource().getName();
+        final CacheEntry cacheEntry = cache.get(source);
+        if (cacheEntry == null) {
+            throw new IllegalArgumentException(String.format("No cached ipTree for source: %s", source));
+        }
+
+        return cacheEntry;
+    }
+
     private void update(final JdbcTemplate jdbcTemplate, final CacheEntry cacheEntry) {
         final long fromExclusive = cacheEntry.nestedIntervalMaps.lastSerial;
         final long toInclusive = getLastSerial(jdbcTemplate);
@@ -273,7 +486,9 @@ public class IpTreeCacheManager {
                     ObjectTypeIds.getId(DOMAIN)
             );
 
-            cacheEntry.nestedIntervalMaps.update(ipTreeUpdates, toInclusive, cacheEntry);
+            final PersistentIntervalMaps persistentIntervalMaps = cacheEntry.persistentIntervalMaps;
+            persistentIntervalMaps.update(ipTreeUpdates, cacheEntry);
+            cacheEntry.nestedIntervalMaps = persistentIntervalMaps.snapshot(toInclusive);
         }
     }
 
@@ -281,12 +496,7 @@ public class IpTreeCacheManager {
         final Map<SourceConfiguration, Long> lastSerials = Maps.newHashMap();
 
         for (final CacheEntry cacheEntry : cache.values()) {
-            cacheEntry.updateLock.acquireUninterruptibly();
-            try {
-                lastSerials.put(cacheEntry.sourceConfiguration, cacheEntry.nestedIntervalMaps.lastSerial);
-            } finally {
-                cacheEntry.updateLock.release();
-            }
+            lastSerials.put(cacheEntry.sourceConfiguration, cacheEntry.nestedIntervalMaps.lastSerial);
         }
 
         return lastSerials;
@@ -305,7 +515,7 @@ public class IpTreeCacheManager {
     }
 
     private void rebuild(final JdbcTemplate jdbcTemplate, final CacheEntry cacheEntry) {
-        final NestedIntervalMaps nestedIntervalMaps = new NestedIntervalMaps();
+        final MutableIntervalMaps mutableIntervalMaps = new MutableIntervalMaps();
 
         final long toInclusive = getLastSerial(jdbcTemplate);
 
@@ -380,9 +590,88 @@ public class IpTreeCacheManager {
                 }
         ));
 
-        nestedIntervalMaps.update(ipTreeUpdates, toInclusive, cacheEntry);
+        mutableIntervalMaps.update(ipTreeUpdates, cacheEntry);
+
+        final PersistentIntervalMaps persistentIntervalMaps = mutableIntervalMaps.toPersistentIntervalMaps(packedIpv4Trees, packedIpv6Trees);
+        cacheEntry.persistentIntervalMaps = persistentIntervalMaps;
+        cacheEntry.nestedIntervalMaps = persistentIntervalMaps.snapshot(toInclusive);
+    }
+
+    @PreDestroy
+    public void writeSnapshots() {
+        for (final CacheEntry cacheEntry : cache.values()) {
+            writeSnapshot(cacheEntry);
+        }
+    }
+
+    private boolean isSnapshotEnabled() {
+        return StringUtils.isNotBlank(snapshotDir);
+    }
+
+    private Path getSnapshotFile(final CIString source) {
+        return Paths.get(snapshotDir, source.toLowerCase() + ".iptree");
+    }
+
+    private void writeSnapshot(final CacheEntry cacheEntry) {
+        if (!isSnapshotEnabled()) {
+            return;
+        }
+
+        final CIString source = cacheEntry.sourceConfiguration.getSource().getName();
+        final Path snapshotFile = getSnapshotFile(source);
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            final NestedIntervalMaps nestedIntervalMaps = cacheEntry.nestedIntervalMaps;
+            IpTreeSnapshotFile.write(snapshotFile, source, nestedIntervalMaps.lastSerial,
+                    nestedIntervalMaps.getIpv4TreeCache(),
+                    nestedIntervalMaps.getIpv6TreeCache(),
+                    nestedIntervalMaps.getIpv4RouteTreeCache(),
+                    nestedIntervalMaps.getIpv6RouteTreeCache(),
+                    nestedIntervalMaps.getIpv4DomainTreeCache(),
+                    nestedIntervalMaps.getIpv6DomainTreeCache());
+            LOGGER.info("Wrote IP tree snapshot {} in {}", snapshotFile, stopwatch);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write IP tree snapshot {} due to {}", snapshotFile, e.getMessage());
+        }
+    }
+
+    private boolean loadSnapshot(final JdbcTemplate jdbcTemplate, final CacheEntry cacheEntry) {
+        final CIString source = cacheEntry.sourceConfiguration.getSource().getName();
+        final Path snapshotFile = getSnapshotFile(source);
+        if (!Files.isRegularFile(snapshotFile)) {
+            LOGGER.info("No IP tree snapshot {}, rebuilding {}", snapshotFile, source);
+            return false;
+        }
+
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final MutableIntervalMaps mutableIntervalMaps = new MutableIntervalMaps();
+        final long lastSerial;
+        try {
+            lastSerial = IpTreeSnapshotFile.read(snapshotFile, source,
+                    mutableIntervalMaps.ipv4TreeCache,
+                    mutableIntervalMaps.ipv6TreeCache,
+                    mutableIntervalMaps.ipv4RouteTreeCache,
+                    mutableIntervalMaps.ipv6RouteTreeCache,
+                    mutableIntervalMaps.ipv4DomainTreeCache,
+                    mutableIntervalMaps.ipv6DomainTreeCache);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read IP tree snapshot {} due to {}, rebuilding {}", snapshotFile, e.getMessage(), source);
+            return false;
+        }
+
+        // a snapshot ahead of the database means the database was reloaded, replaying serials would give wrong trees
+        final long databaseSerial = getLastSerial(jdbcTemplate);
+        if (lastSerial > databaseSerial) {
+            LOGGER.info("IP tree snapshot {} is ahead of database; serial in snapshot: {}; serial in DB: {}", snapshotFile, lastSerial, databaseSerial);
+            return false;
+        }
 
-        cacheEntry.nestedIntervalMaps = nestedIntervalMaps;
+        final PersistentIntervalMaps persistentIntervalMaps = mutableIntervalMaps.toPersistentIntervalMaps(packedIpv4Trees, packedIpv6Trees);
+        cacheEntry.persistentIntervalMaps = persistentIntervalMaps;
+        cacheEntry.nestedIntervalMaps = persistentIntervalMaps.snapshot(lastSerial);
+        LOGGER.info("Loaded IP tree snapshot {} at serial {} in {}", snapshotFile, lastSerial, stopwatch);
+        return true;
     }
 
     private long getLastSerial(final JdbcTemplate jdbcTemplate) {
@@ -0,0 +1,197 @@
+package net.ripe.db.whois.common.iptree;
+
+import net.ripe.db.whois.common.domain.CIString;
+import net.ripe.db.whois.common.etree.IntervalMap;
+import net.ripe.db.whois.common.ip.Ipv4Resource;
+import net.ripe.db.whois.common.ip.Ipv6Resource;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Compact binary snapshot of the IP trees of a source, together with the last serial applied to them.
+ * <p/>
+ * Entries are written in pre-order (every entry before its more specifics), so reading them back into
+ * empty trees never has to move existing nodes. Snapshots are written to a temporary file first and then
+ * moved in place, so a reader never sees a partially written file.
+ */
+final class IpTreeSnapshotFile {
+    private static final int MAGIC = 0x49505452;
+    private static final int VERSION = 1;
+
+    private IpTreeSnapshotFile() {
+    }
+
+    static void write(final Path file,
+                      final CIString source,
+                      final long lastSerial,
+                      final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4Tree,
+                      final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6Tree,
+                      final IntervalMap<Ipv4Resource, Ipv4RouteEntry> ipv4RouteTree,
+                      final IntervalMap<Ipv6Resource, Ipv6RouteEntry> ipv6RouteTree,
+                      final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4DomainTree,
+                      final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6DomainTree) throws IOException {
+        final Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, source.toString());
+            out.writeLong(lastSerial);
+
+            writeIpv4Entries(out, ipv4Tree.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE));
+            writeIpv6Entries(out, ipv6Tree.findExactAndAllMoreSpecific(Ipv6Resource.MAX_RANGE));
+
+            final List<Ipv4RouteEntry> ipv4RouteEntries = ipv4RouteTree.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE);
+            out.writeInt(ipv4RouteEntries.size());
+            for (final Ipv4RouteEntry entry : ipv4RouteEntries) {
+                writeIpv4Resource(out, entry.getKey());
+                out.writeInt(entry.getObjectId());
+                writeString(out, entry.getOrigin());
+            }
+
+            final List<Ipv6RouteEntry> ipv6RouteEntries = ipv6RouteTree.findExactAndAllMoreSpecific(Ipv6Resource.MAX_RANGE);
+            out.writeInt(ipv6RouteEntries.size());
+            for (final Ipv6RouteEntry entry : ipv6RouteEntries) {
+                writeIpv6Resource(out, entry.getKey());
+                out.writeInt(entry.getObjectId());
+                writeString(out, entry.getOrigin());
+            }
+
+            writeIpv4Entries(out, ipv4DomainTree.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE));
+            writeIpv6Entries(out, ipv6DomainTree.findExactAndAllMoreSpecific(Ipv6Resource.MAX_RANGE));
+        }
+
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a snapshot into the given (empty) trees.
+     *
+     * @return the last serial applied to the trees in the snapshot.
+     * @throws IOException if the file cannot be read, or is not a snapshot of <code>source</code>.
+     */
+    static long read(final Path file,
+                     final CIString source,
+                     final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4Tree,
+                     final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6Tree,
+                     final IntervalMap<Ipv4Resource, Ipv4RouteEntry> ipv4RouteTree,
+                     final IntervalMap<Ipv6Resource, Ipv6RouteEntry> ipv6RouteTree,
+                     final IntervalMap<Ipv4Resource, Ipv4Entry> ipv4DomainTree,
+                     final IntervalMap<Ipv6Resource, Ipv6Entry> ipv6DomainTree) throws IOException {
+        final ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException(String.format("Unsupported IP tree snapshot: %s", file));
+            }
+
+            final String snapshotSource = readString(in);
+            if (!source.equals(snapshotSource)) {
+                throw new IOException(String.format("IP tree snapshot %s is for source %s, not %s", file, snapshotSource, source));
+            }
+
+            final long lastSerial = in.getLong();
+
+            readIpv4Entries(in, ipv4Tree);
+            readIpv6Entries(in, ipv6Tree);
+
+            for (int count = in.getInt(); count > 0; count--) {
+                final Ipv4Resource key = readIpv4Resource(in);
+                ipv4RouteTree.put(key, new Ipv4RouteEntry(key, in.getInt(), readString(in)));
+            }
+
+            for (int count = in.getInt(); count > 0; count--) {
+                final Ipv6Resource key = readIpv6Resource(in);
+                ipv6RouteTree.put(key, new Ipv6RouteEntry(key, in.getInt(), readString(in)));
+            }
+
+            readIpv4Entries(in, ipv4DomainTree);
+            readIpv6Entries(in, ipv6DomainTree);
+
+            if (in.hasRemaining()) {
+                throw new IOException(String.format("Trailing data in IP tree snapshot: %s", file));
+            }
+
+            return lastSerial;
+        } catch (RuntimeException e) {
+            throw new IOException(String.format("Corrupt IP tree snapshot: %s", file), e);
+        }
+    }
+
+    private static void writeIpv4Entries(final DataOutputStream out, final List<Ipv4Entry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (final Ipv4Entry entry : entries) {
+            writeIpv4Resource(out, entry.getKey());
+            out.writeInt(entry.getObjectId());
+        }
+    }
+
+    private static void writeIpv6Entries(final DataOutputStream out, final List<Ipv6Entry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (final Ipv6Entry entry : entries) {
+            writeIpv6Resource(out, entry.getKey());
+            out.writeInt(entry.getObjectId());
+        }
+    }
+
+    private static void readIpv4Entries(final ByteBuffer in, final IntervalMap<Ipv4Resource, Ipv4Entry> tree) {
+        for (int count = in.getInt(); count > 0; count--) {
+            final Ipv4Resource key = readIpv4Resource(in);
+            tree.put(key, new Ipv4Entry(key, in.getInt()));
+        }
+    }
+
+    private static void readIpv6Entries(final ByteBuffer in, final IntervalMap<Ipv6Resource, Ipv6Entry> tree) {
+        for (int count = in.getInt(); count > 0; count--) {
+            final Ipv6Resource key = readIpv6Resource(in);
+            tree.put(key, new Ipv6Entry(key, in.getInt()));
+        }
+    }
+
+    private static void writeIpv4Resource(final DataOutputStream out, final Ipv4Resource resource) throws IOException {
+        out.writeInt((int) resource.begin());
+        out.writeInt((int) resource.end());
+    }
+
+    private static Ipv4Resource readIpv4Resource(final ByteBuffer in) {
+        final long begin = in.getInt() & 0xFFFFFFFFL;
+        final long end = in.getInt() & 0xFFFFFFFFL;
+        return new Ipv4Resource(begin, end);
+    }
+
+    private static void writeIpv6Resource(final DataOutputStream out, final Ipv6Resource resource) throws IOException {
+        out.writeLong(resource.beginMsb());
+        out.writeLong(resource.beginLsb());
+        out.writeLong(resource.endMsb());
+        out.writeLong(resource.endLsb());
+    }
+
+    private static Ipv6Resource readIpv6Resource(final ByteBuffer in) {
+        return new Ipv6Resource(in.getLong(), in.getLong(), in.getLong(), in.getLong());
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer in) {
+        final byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -5,6 +5,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import net.ripe.db.whois.common.dao.SerialChangeListener;
 import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.source.Source;
 import net.ripe.db.whois.common.source.SourceConfiguration;
@@ -20,6 +21,7 @@ import javax.annotation.PreDestroy;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -28,7 +30,7 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
-public class IpTreeUpdater {
+public class IpTreeUpdater implements SerialChangeListener {
     private static final Logger LOGGER = LoggerFactory.getLogger(IpTreeUpdater.class);
 
     public static final int TREE_UPDATE_IN_SECONDS = 10;
@@ -40,6 +42,9 @@ public class IpTreeUpdater {
 
     private ExecutorService executorService;
 
+    // sources with a pushed update queued, so a burst of commits results in a single update
+    private final ConcurrentMap<CIString, Boolean> pendingUpdates = Maps.newConcurrentMap();
+
     @Autowired
     public IpTreeUpdater(final IpTreeCacheManager ipTreeCacheManager) {
         this.ipTreeCacheManager = ipTreeCacheManager;
@@ -85,7 +90,7 @@ public class IpTreeUpdater {
             }
         });
 
-        rebuild();
+        load();
     }
 
     @PreDestroy
@@ -107,6 +112,20 @@ public class IpTreeUpdater {
         LOGGER.info("Finished building IP trees in {}", stopwatch);
     }
 
+    public void load() {
+        LOGGER.info("Loading IP trees");
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+
+        invokeAll(sourceConfigurationForSlave, new OperationCallback() {
+            @Override
+            public void execute(final SourceConfiguration sourceConfiguration) {
+                ipTreeCacheManager.load(sourceConfiguration);
+            }
+        });
+
+        LOGGER.info("Finished loading IP trees in {}", stopwatch);
+    }
+
     public void rebuild(final String source) {
         for (SourceConfiguration sourceConfiguration : Iterables.filter(sourceConfigurationForSlave, input -> input.getSource().getName().contains(source))) {
             LOGGER.info("Rebuilding IP trees for {}", sourceConfiguration);
@@ -126,6 +145,40 @@ public class IpTreeUpdater {
         });
     }
 
+    /**
+     * Apply committed serials right away instead of waiting for the next scheduled update, which remains as a fallback
+     * for changes made by other nodes.
+     */
+    @Override
+    public void serialsCommitted(final SourceConfiguration sourceConfiguration) {
+        final CIString source = sourceConfiguration.getSource().getName();
+        if (!isUpdated(source) || pendingUpdates.putIfAbsent(source, Boolean.TRUE) != null) {
+            return;
+        }
+
+        executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                pendingUpdates.remove(source);
+                try {
+                    ipTreeCacheManager.updateAfterCommit(sourceConfiguration);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Unexpected", e);
+                }
+            }
+        });
+    }
+
+    private boolean isUpdated(final CIString source) {
+        for (final SourceConfiguration sourceConfiguration : sourceConfigurationForSlave) {
+            if (sourceConfiguration.getSource().getName().equals(source)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     public void updateTransactional() {
         ipTreeCacheManager.updateTransactional(sourceContext.getCurrentSourceConfiguration());
     }
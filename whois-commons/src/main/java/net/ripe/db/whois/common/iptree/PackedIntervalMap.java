@@ -0,0 +1,610 @@
+package net.ripe.db.whois.common.iptree;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import net.ripe.db.whois.common.collect.CollectionHelper;
+import net.ripe.db.whois.common.etree.IntersectingIntervalException;
+import net.ripe.db.whois.common.etree.IntervalMap;
+import net.ripe.db.whois.common.etree.SnapshotIntervalMap;
+import net.ripe.db.whois.common.ip.IpInterval;
+import org.apache.commons.lang.Validate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * An {@link IntervalMap} for IP entries backed by sorted primitive arrays instead of node objects. Subclasses define
+ * how the bounds of the keys are stored, see {@link PackedIpv4IntervalMap} and {@link PackedIpv6IntervalMap}.
+ * <p/>
+ * Entries are stored in pre-order (begin ascending, end descending, the natural order of the keys), together with the
+ * index of their closest enclosing entry. Less specific lookups are a binary search followed by a walk up the parent
+ * indexes, more specific lookups are a binary search followed by a scan of a contiguous range.
+ * <p/>
+ * The entries are kept in two layers: a large base, and a small delta of the entries added since the base was built
+ * together with the positions of the base entries removed since. Modifications are collected and merged into a new
+ * delta when the map is read or a {@link #snapshot()} is taken, which only copies the delta. The delta is merged into
+ * a new base once it outgrows the square root of the base, so a single modification doesn't copy every entry.
+ * <p/>
+ * <strong>Note that this implementation is not synchronized.</strong> There must be at most one thread using a
+ * modifiable map at any time; snapshots can be read from any thread.
+ */
+abstract class PackedIntervalMap<K extends IpInterval<K> & Comparable<K>, V extends IpEntry<K>> implements SnapshotIntervalMap<K, V> {
+    private static final int MAX_PENDING_CHANGES = 1000;
+    private static final int MIN_DELTA_SIZE = 64;
+
+    private final boolean readOnly;
+    private volatile State<K> state;
+
+    // modified entries, a null value indicates the entry was removed
+    private final NavigableMap<K, V> pendingChanges = Maps.newTreeMap();
+
+    PackedIntervalMap(final State<K> state, final boolean readOnly) {
+        this.state = state;
+        this.readOnly = readOnly;
+    }
+
+    abstract V createEntry(K key, int objectId);
+
+    abstract IntervalMap<K, V> createSnapshot(State<K> state);
+
+    static <K extends IpInterval<K> & Comparable<K>> State<K> stateOf(final Keys<K> empty, final List<? extends IpEntry<K>> entries) {
+        final Index.Builder<K> builder = new Index.Builder<>(empty, entries.size());
+        for (final IpEntry<K> entry : entries) {
+            builder.add(entry.getKey(), entry.getObjectId());
+        }
+        return new State<>(builder.build());
+    }
+
+    @Override
+    public IntervalMap<K, V> snapshot() {
+        return createSnapshot(state());
+    }
+
+    @Override
+    public void put(final K key, final V value) {
+        Validate.notNull(key);
+        Validate.notNull(value);
+        Validate.isTrue(key.equals(value.getKey()), "key does not match entry");
+        checkModifiable();
+
+        final List<K> intersections = getIntersecting(key);
+        if (!intersections.isEmpty()) {
+            throw new IntersectingIntervalException(key, intersections);
+        }
+
+        pendingChanges.put(key, value);
+        if (pendingChanges.size() >= MAX_PENDING_CHANGES) {
+            state();
+        }
+    }
+
+    @Override
+    public void remove(final K key) {
+        Validate.notNull(key);
+        checkModifiable();
+
+        pendingChanges.put(key, null);
+        if (pendingChanges.size() >= MAX_PENDING_CHANGES) {
+            state();
+        }
+    }
+
+    @Override
+    public void remove(final K key, final V value) {
+        Validate.notNull(key);
+        Validate.notNull(value);
+
+        if (value.equals(CollectionHelper.uniqueResult(findExact(key)))) {
+            remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        checkModifiable();
+        pendingChanges.clear();
+        state = new State<>(state.base.empty());
+    }
+
+    @Override
+    public List<V> findFirstLessSpecific(final K key) {
+        Validate.notNull(key);
+        final List<V> lessSpecific = findExactAndAllLessSpecific(state(), key);
+        int last = lessSpecific.size() - 1;
+        if (last >= 0 && lessSpecific.get(last).getKey().equals(key)) {
+            last--;
+        }
+        return last < 0 ? Collections.<V>emptyList() : Collections.singletonList(lessSpecific.get(last));
+    }
+
+    @Override
+    public List<V> findExact(final K key) {
+        Validate.notNull(key);
+        if (pendingChanges.containsKey(key)) {
+            final V entry = pendingChanges.get(key);
+            return entry == null ? Collections.<V>emptyList() : Collections.singletonList(entry);
+        }
+
+        final State<K> current = state;
+        for (final Index<K> index : current.layers) {
+            final int found = index.findExact(key);
+            if (found >= 0 && current.isLive(index, found)) {
+                return Collections.singletonList(entry(index, found));
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<V> findExactOrFirstLessSpecific(final K key) {
+        Validate.notNull(key);
+        final List<V> lessSpecific = findExactAndAllLessSpecific(state(), key);
+        return lessSpecific.isEmpty() ? lessSpecific : Collections.singletonList(lessSpecific.get(lessSpecific.size() - 1));
+    }
+
+    @Override
+    public List<V> findAllLessSpecific(final K key) {
+        Validate.notNull(key);
+        final List<V> lessSpecific = findExactAndAllLessSpecific(state(), key);
+        final int last = lessSpecific.size() - 1;
+        if (last >= 0 && lessSpecific.get(last).getKey().equals(key)) {
+            return lessSpecific.subList(0, last);
+        }
+        return lessSpecific;
+    }
+
+    @Override
+    public List<V> findExactAndAllLessSpecific(final K key) {
+        Validate.notNull(key);
+        return findExactAndAllLessSpecific(state(), key);
+    }
+
+    @Override
+    public List<V> findFirstMoreSpecific(final K key) {
+        Validate.notNull(key);
+        final State<K> current = state();
+
+        final List<V> baseEntries = findFirstMoreSpecific(current, current.base, key);
+        final List<V> deltaEntries = findFirstMoreSpecific(current, current.delta, key);
+        if (baseEntries.isEmpty() || deltaEntries.isEmpty()) {
+            return baseEntries.isEmpty() ? deltaEntries : baseEntries;
+        }
+
+        // an entry of one layer may be nested inside an entry of the other
+        final List<V> result = Lists.newArrayList();
+        for (final V entry : merge(baseEntries, deltaEntries)) {
+            if (result.isEmpty() || !result.get(result.size() - 1).getKey().contains(entry.getKey())) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<V> findAllMoreSpecific(final K key) {
+        Validate.notNull(key);
+        return findMoreSpecific(state(), key, false);
+    }
+
+    @Override
+    public List<V> findExactAndAllMoreSpecific(final K key) {
+        Validate.notNull(key);
+        return findMoreSpecific(state(), key, true);
+    }
+
+    @Override
+    public String toString() {
+        final State<K> current = state();
+
+        final List<V> entries = Lists.newArrayList();
+        for (int i = 0; i < current.base.size(); i++) {
+            if (current.isLive(current.base, i)) {
+                entries.add(entry(current.base, i));
+            }
+        }
+        final List<V> deltaEntries = Lists.newArrayList();
+        for (int i = 0; i < current.delta.size(); i++) {
+            deltaEntries.add(entry(current.delta, i));
+        }
+        return merge(entries, deltaEntries).toString();
+    }
+
+    private List<V> findExactAndAllLessSpecific(final State<K> current, final K key) {
+        List<V> result = Collections.emptyList();
+        for (final Index<K> index : current.layers) {
+            final List<V> entries = Lists.newArrayList();
+            for (int i = index.findExactOrFirstLessSpecific(key); i >= 0; i = index.parents[i]) {
+                if (current.isLive(index, i)) {
+                    entries.add(entry(index, i));
+                }
+            }
+            result = merge(result, Lists.reverse(entries));
+        }
+        return result;
+    }
+
+    private List<V> findFirstMoreSpecific(final State<K> current, final Index<K> index, final K key) {
+        final List<V> result = Lists.newArrayList();
+        final int to = index.firstIndexWithBeginAfterEnd(key, 0);
+        int i = index.firstIndexNotBefore(key);
+        while (i < to) {
+            if (index.endsWithin(i, key) && !index.isExact(i, key) && current.isLive(index, i)) {
+                result.add(entry(index, i));
+                // skip all entries nested inside this one
+                i = index.firstIndexWithBeginAfterEnd(i, i + 1);
+            } else {
+                i++;
+            }
+        }
+        return result;
+    }
+
+    private List<V> findMoreSpecific(final State<K> current, final K key, final boolean includeExact) {
+        List<V> result = Collections.emptyList();
+        for (final Index<K> index : current.layers) {
+            final List<V> entries = Lists.newArrayList();
+            final int to = index.firstIndexWithBeginAfterEnd(key, 0);
+            for (int i = index.firstIndexNotBefore(key); i < to; i++) {
+                if (index.endsWithin(i, key) && (includeExact || !index.isExact(i, key)) && current.isLive(index, i)) {
+                    entries.add(entry(index, i));
+                }
+            }
+            result = merge(result, entries);
+        }
+        return result;
+    }
+
+    /*
+     * Merges two lists of entries in pre-order.
+     */
+    private List<V> merge(final List<V> left, final List<V> right) {
+        if (left.isEmpty() || right.isEmpty()) {
+            return left.isEmpty() ? right : left;
+        }
+
+        final List<V> result = Lists.newArrayListWithCapacity(left.size() + right.size());
+        int i = 0;
+        int j = 0;
+        while (i < left.size() && j < right.size()) {
+            if (left.get(i).getKey().compareTo(right.get(j).getKey()) < 0) {
+                result.add(left.get(i++));
+            } else {
+                result.add(right.get(j++));
+            }
+        }
+        result.addAll(left.subList(i, left.size()));
+        result.addAll(right.subList(j, right.size()));
+        return result;
+    }
+
+    private V entry(final Index<K> index, final int i) {
+        return createEntry(index.keys.get(i), index.objectIds[i]);
+    }
+
+    private void checkModifiable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Snapshot cannot be modified");
+        }
+    }
+
+    /*
+     * Entries that intersect the key without one containing the other. Such an entry contains either the
+     * lower or the upper bound of the key, and every entry containing an address is an ancestor of the
+     * last entry starting at or before that address.
+     */
+    private List<K> getIntersecting(final K key) {
+        List<K> result = Collections.emptyList();
+
+        final State<K> current = state;
+        for (final Index<K> index : current.layers) {
+            for (final K address : Arrays.asList(key.singletonIntervalAtLowerBound(), key)) {
+                for (int i = index.firstIndexWithBeginAfterEnd(address, 0) - 1; i >= 0; i = index.parents[i]) {
+                    final K candidate = index.keys.get(i);
+                    if (intersectsButNotContained(key, candidate) && current.isLive(index, i) && !pendingChanges.containsKey(candidate)) {
+                        result = Lists.newArrayList(result);
+                        result.add(candidate);
+                    }
+                }
+            }
+        }
+
+        for (final Map.Entry<K, V> pendingChange : pendingChanges.entrySet()) {
+            if (pendingChange.getValue() != null && intersectsButNotContained(key, pendingChange.getKey())) {
+                result = Lists.newArrayList(result);
+                result.add(pendingChange.getKey());
+            }
+        }
+
+        return result;
+    }
+
+    private static <K extends IpInterval<K>> boolean intersectsButNotContained(final K left, final K right) {
+        return left.intersects(right) && !left.contains(right) && !right.contains(left);
+    }
+
+    /*
+     * Merges the pending changes (if any) into a new delta, and the delta into a new base once it has grown too large.
+     */
+    private State<K> state() {
+        if (pendingChanges.isEmpty()) {
+            return state;
+        }
+
+        final State<K> current = state;
+        final Index<K> delta = current.delta;
+        final Index.Builder<K> builder = new Index.Builder<>(delta.keys, delta.size() + pendingChanges.size());
+        final int[] removed = Arrays.copyOf(current.removed, current.removed.length + pendingChanges.size());
+        int nrRemoved = current.removed.length;
+
+        int i = 0;
+        for (final Map.Entry<K, V> pendingChange : pendingChanges.entrySet()) {
+            final K key = pendingChange.getKey();
+
+            for (; i < delta.size() && delta.keys.compareTo(i, key) < 0; i++) {
+                builder.add(delta, i);
+            }
+
+            // a key is either in the delta or live in the base
+            if (i < delta.size() && delta.isExact(i, key)) {
+                i++;
+            } else {
+                final int found = current.base.findExact(key);
+                if (found >= 0 && current.isLive(current.base, found)) {
+                    removed[nrRemoved++] = found;
+                }
+            }
+
+            final V entry = pendingChange.getValue();
+            if (entry != null) {
+                builder.add(key, entry.getObjectId());
+            }
+        }
+
+        for (; i < delta.size(); i++) {
+            builder.add(delta, i);
+        }
+
+        final int[] sortedRemoved = Arrays.copyOf(removed, nrRemoved);
+        Arrays.sort(sortedRemoved);
+
+        State<K> merged = new State<>(current.base, sortedRemoved, builder.build());
+        if (merged.delta.size() + nrRemoved > Math.max(MIN_DELTA_SIZE, Math.sqrt(current.base.size()))) {
+            merged = merged.compact();
+        }
+
+        pendingChanges.clear();
+        state = merged;
+        return merged;
+    }
+
+    /**
+     * The entries of a map: the live entries of the base, and the entries of the delta.
+     */
+    static final class State<K extends IpInterval<K> & Comparable<K>> {
+        private final Index<K> base;
+        private final int[] removed;
+        private final Index<K> delta;
+        private final List<Index<K>> layers;
+
+        State(final Index<K> base) {
+            this(base, new int[0], base.empty());
+        }
+
+        private State(final Index<K> base, final int[] removed, final Index<K> delta) {
+            this.base = base;
+            this.removed = removed;
+            this.delta = delta;
+            this.layers = Arrays.asList(base, delta);
+        }
+
+        boolean isLive(final Index<K> index, final int i) {
+            return index != base || removed.length == 0 || Arrays.binarySearch(removed, i) < 0;
+        }
+
+        State<K> compact() {
+            final Index.Builder<K> builder = new Index.Builder<>(base.keys, base.size() - removed.length + delta.size());
+
+            int j = 0;
+            K deltaKey = delta.size() > 0 ? delta.keys.get(0) : null;
+            for (int i = 0, r = 0; i < base.size(); i++) {
+                if (r < removed.length && removed[r] == i) {
+                    r++;
+                    continue;
+                }
+
+                while (deltaKey != null && base.keys.compareTo(i, deltaKey) > 0) {
+                    builder.add(delta, j++);
+                    deltaKey = j < delta.size() ? delta.keys.get(j) : null;
+                }
+
+                builder.add(base, i);
+            }
+
+            for (; j < delta.size(); j++) {
+                builder.add(delta, j);
+            }
+
+            return new State<>(builder.build());
+        }
+    }
+
+    static final class Index<K extends IpInterval<K> & Comparable<K>> {
+        final Keys<K> keys;
+        final int[] objectIds;
+        final int[] parents;
+
+        private Index(final Keys<K> keys, final int[] objectIds) {
+            this.keys = keys;
+            this.objectIds = objectIds;
+            this.parents = new int[objectIds.length];
+
+            final int[] stack = new int[objectIds.length];
+            int top = -1;
+            for (int i = 0; i < objectIds.length; i++) {
+                while (top >= 0 && keys.compareBeginToEnd(i, stack[top]) > 0) {
+                    top--;
+                }
+                if (top >= 0 && keys.compareEnds(stack[top], i) < 0) {
+                    throw new IllegalArgumentException(String.format("%s intersects with %s", keys.get(i), keys.get(stack[top])));
+                }
+                parents[i] = top >= 0 ? stack[top] : -1;
+                stack[++top] = i;
+            }
+        }
+
+        Index<K> empty() {
+            return new Builder<>(keys, 0).build();
+        }
+
+        int size() {
+            return objectIds.length;
+        }
+
+        boolean isExact(final int i, final K key) {
+            return keys.compareTo(i, key) == 0;
+        }
+
+        boolean endsWithin(final int i, final K key) {
+            return keys.compareEnds(i, key) <= 0;
+        }
+
+        boolean contains(final int i, final K key) {
+            return keys.compareTo(i, key) <= 0 && keys.compareEnds(i, key) >= 0;
+        }
+
+        int findExact(final K key) {
+            final int i = firstIndexNotBefore(key);
+            return i < size() && isExact(i, key) ? i : -1;
+        }
+
+        /*
+         * Index of the most specific entry containing the key, or -1.
+         */
+        int findExactOrFirstLessSpecific(final K key) {
+            int i = firstIndexNotBefore(key);
+            if (i < size() && isExact(i, key)) {
+                return i;
+            }
+
+            for (i = i - 1; i >= 0; i = parents[i]) {
+                if (contains(i, key)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        /*
+         * Index of the first entry not ordered before the key, or size().
+         */
+        int firstIndexNotBefore(final K key) {
+            int low = 0;
+            int high = size() - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (keys.compareTo(mid, key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        /*
+         * Index of the first entry (starting at from) with a begin after the end of the key, or size().
+         */
+        int firstIndexWithBeginAfterEnd(final K key, final int from) {
+            int low = from;
+            int high = size() - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (keys.compareBeginToEnd(mid, key) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        /*
+         * Index of the first entry (starting at from) with a begin after the end of entry i, or size().
+         */
+        int firstIndexWithBeginAfterEnd(final int i, final int from) {
+            int low = from;
+            int high = size() - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (keys.compareBeginToEnd(mid, i) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        static final class Builder<K extends IpInterval<K> & Comparable<K>> {
+            private final Keys.Builder<K> keys;
+            private final int[] objectIds;
+            private int size;
+
+            Builder(final Keys<K> keys, final int capacity) {
+                this.keys = keys.builder(capacity);
+                this.objectIds = new int[capacity];
+            }
+
+            void add(final K key, final int objectId) {
+                keys.add(key);
+                objectIds[size++] = objectId;
+            }
+
+            void add(final Index<K> index, final int i) {
+                keys.add(index.keys, i);
+                objectIds[size++] = index.objectIds[i];
+            }
+
+            Index<K> build() {
+                return new Index<>(keys.build(), Arrays.copyOf(objectIds, size));
+            }
+        }
+    }
+
+    /**
+     * The bounds of the keys in an index, compared without creating key objects.
+     */
+    abstract static class Keys<K> {
+        abstract K get(int i);
+
+        /**
+         * @return the pre-order comparison of key i with <code>key</code>.
+         */
+        abstract int compareTo(int i, K key);
+
+        abstract int compareEnds(int i, K key);
+
+        abstract int compareEnds(int i, int j);
+
+        /**
+         * @return the comparison of the begin of key i with the end of <code>key</code>.
+         */
+        abstract int compareBeginToEnd(int i, K key);
+
+        abstract int compareBeginToEnd(int i, int j);
+
+        abstract Builder<K> builder(int capacity);
+
+        abstract static class Builder<K> {
+            abstract void add(K key);
+
+            abstract void add(Keys<K> keys, int i);
+
+            abstract Keys<K> build();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package net.ripe.db.whois.common.iptree;
+
+import net.ripe.db.whois.common.etree.IntervalMap;
+import net.ripe.db.whois.common.ip.Ipv4Resource;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * A {@link PackedIntervalMap} for IPv4 entries, storing the begin and end of each key in parallel <code>long</code>
+ * arrays.
+ */
+public final class PackedIpv4IntervalMap extends PackedIntervalMap<Ipv4Resource, Ipv4Entry> {
+
+    public PackedIpv4IntervalMap() {
+        this(stateOf(Ipv4Keys.EMPTY, Collections.<Ipv4Entry>emptyList()), false);
+    }
+
+    private PackedIpv4IntervalMap(final State<Ipv4Resource> state, final boolean readOnly) {
+        super(state, readOnly);
+    }
+
+    /**
+     * Construct a new {@link PackedIpv4IntervalMap} with the entries of <code>source</code> copied.
+     *
+     * @param source the source to copy.
+     */
+    public static PackedIpv4IntervalMap copyOf(final IntervalMap<Ipv4Resource, Ipv4Entry> source) {
+        return new PackedIpv4IntervalMap(stateOf(Ipv4Keys.EMPTY, source.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE)), false);
+    }
+
+    @Override
+    Ipv4Entry createEntry(final Ipv4Resource key, final int objectId) {
+        return new Ipv4Entry(key, objectId);
+    }
+
+    @Override
+    IntervalMap<Ipv4Resource, Ipv4Entry> createSnapshot(final State<Ipv4Resource> state) {
+        return new PackedIpv4IntervalMap(state, true);
+    }
+
+    private static final class Ipv4Keys extends Keys<Ipv4Resource> {
+        static final Ipv4Keys EMPTY = new Ipv4Keys(new long[0], new long[0]);
+
+        private final long[] begins;
+        private final long[] ends;
+
+        private Ipv4Keys(final long[] begins, final long[] ends) {
+            this.begins = begins;
+            this.ends = ends;
+        }
+
+        @Override
+        Ipv4Resource get(final int i) {
+            return new Ipv4Resource(begins[i], ends[i]);
+        }
+
+        @Override
+        int compareTo(final int i, final Ipv4Resource key) {
+            final int result = Long.compare(begins[i], key.begin());
+            return result != 0 ? result : Long.compare(key.end(), ends[i]);
+        }
+
+        @Override
+        int compareEnds(final int i, final Ipv4Resource key) {
+            return Long.compare(ends[i], key.end());
+        }
+
+        @Override
+        int compareEnds(final int i, final int j) {
+            return Long.compare(ends[i], ends[j]);
+        }
+
+        @Override
+        int compareBeginToEnd(final int i, final Ipv4Resource key) {
+            return Long.compare(begins[i], key.end());
+        }
+
+        @Override
+        int compareBeginToEnd(final int i, final int j) {
+            return Long.compare(begins[i], ends[j]);
+        }
+
+        @Override
+        Keys.Builder<Ipv4Resource> builder(final int capacity) {
+            return new Keys.Builder<Ipv4Resource>() {
+                private final long[] builderBegins = new long[capacity];
+                private final long[] builderEnds = new long[capacity];
+                private int size;
+
+                @Override
+                void add(final Ipv4Resource key) {
+                    builderBegins[size] = key.begin();
+                    builderEnds[size++] = key.end();
+                }
+
+                @Override
+                void add(final Keys<Ipv4Resource> keys, final int i) {
+                    final Ipv4Keys ipv4Keys = (Ipv4Keys) keys;
+                    builderBegins[size] = ipv4Keys.begins[i];
+                    builderEnds[size++] = ipv4Keys.ends[i];
+                }
+
+                @Override
+                Keys<Ipv4Resource> build() {
+                    return new Ipv4Keys(Arrays.copyOf(builderBegins, size), Arrays.copyOf(builderEnds, size));
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package net.ripe.db.whois.common.iptree;
+
+import net.ripe.db.whois.common.etree.IntervalMap;
+import net.ripe.db.whois.common.ip.Ipv6Resource;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static net.ripe.db.whois.common.ip.Ipv6Resource.compare;
+
+/**
+ * A {@link PackedIntervalMap} for IPv6 entries, storing each bound of a key as its most and least significant 64 bits
+ * in parallel <code>long</code> arrays. All comparisons are unsigned 128-bit comparisons on those longs, so lookups
+ * never need {@link java.math.BigInteger}.
+ */
+public final class PackedIpv6IntervalMap extends PackedIntervalMap<Ipv6Resource, Ipv6Entry> {
+
+    public PackedIpv6IntervalMap() {
+        this(stateOf(Ipv6Keys.EMPTY, Collections.<Ipv6Entry>emptyList()), false);
+    }
+
+    private PackedIpv6IntervalMap(final State<Ipv6Resource> state, final boolean readOnly) {
+        super(state, readOnly);
+    }
+
+    /**
+     * Construct a new {@link PackedIpv6IntervalMap} with the entries of <code>source</code> copied.
+     *
+     * @param source the source to copy.
+     */
+    public static PackedIpv6IntervalMap copyOf(final IntervalMap<Ipv6Resource, Ipv6Entry> source) {
+        return new PackedIpv6IntervalMap(stateOf(Ipv6Keys.EMPTY, source.findExactAndAllMoreSpecific(Ipv6Resource.MAX_RANGE)), false);
+    }
+
+    @Override
+    Ipv6Entry createEntry(final Ipv6Resource key, final int objectId) {
+        return new Ipv6Entry(key, objectId);
+    }
+
+    @Override
+    IntervalMap<Ipv6Resource, Ipv6Entry> createSnapshot(final State<Ipv6Resource> state) {
+        return new PackedIpv6IntervalMap(state, true);
+    }
+
+    private static final class Ipv6Keys extends Keys<Ipv6Resource> {
+        static final Ipv6Keys EMPTY = new Ipv6Keys(new long[0], new long[0], new long[0], new long[0]);
+
+        private final long[] beginMsbs;
+        private final long[] beginLsbs;
+        private final long[] endMsbs;
+        private final long[] endLsbs;
+
+        private Ipv6Keys(final long[] beginMsbs, final long[] beginLsbs, final long[] endMsbs, final long[] endLsbs) {
+            this.beginMsbs = beginMsbs;
+            this.beginLsbs = beginLsbs;
+            this.endMsbs = endMsbs;
+            this.endLsbs = endLsbs;
+        }
+
+        @Override
+        Ipv6Resource get(final int i) {
+            return new Ipv6Resource(beginMsbs[i], beginLsbs[i], endMsbs[i], endLsbs[i]);
+        }
+
+        @Override
+        int compareTo(final int i, final Ipv6Resource key) {
+            final int result = compare(beginMsbs[i], beginLsbs[i], key.beginMsb(), key.beginLsb());
+            return result != 0 ? result : compare(key.endMsb(), key.endLsb(), endMsbs[i], endLsbs[i]);
+        }
+
+        @Override
+        int compareEnds(final int i, final Ipv6Resource key) {
+            return compare(endMsbs[i], endLsbs[i], key.endMsb(), key.endLsb());
+        }
+
+        @Override
+        int compareEnds(final int i, final int j) {
+            return compare(endMsbs[i], endLsbs[i], endMsbs[j], endLsbs[j]);
+        }
+
+        @Override
+        int compareBeginToEnd(final int i, final Ipv6Resource key) {
+            return compare(beginMsbs[i], beginLsbs[i], key.endMsb(), key.endLsb());
+        }
+
+        @Override
+        int compareBeginToEnd(final int i, final int j) {
+            return compare(beginMsbs[i], beginLsbs[i], endMsbs[j], endLsbs[j]);
+        }
+
+        @Override
+        Keys.Builder<Ipv6Resource> builder(final int capacity) {
+            return new Keys.Builder<Ipv6Resource>() {
+                private final long[] builderBeginMsbs = new long[capacity];
+                private final long[] builderBeginLsbs = new long[capacity];
+                private final long[] builderEndMsbs = new long[capacity];
+                private final long[] builderEndLsbs = new long[capacity];
+                private int size;
+
+                @Override
+                void add(final Ipv6Resource key) {
+                    builderBeginMsbs[size] = key.beginMsb();
+                    builderBeginLsbs[size] = key.beginLsb();
+                    builderEndMsbs[size] = key.endMsb();
+                    builderEndLsbs[size++] = key.endLsb();
+                }
+
+                @Override
+                void add(final Keys<Ipv6Resource> keys, final int i) {
+                    final Ipv6Keys ipv6Keys = (Ipv6Keys) keys;
+                    builderBeginMsbs[size] = ipv6Keys.beginMsbs[i];
+                    builderBeginLsbs[size] = ipv6Keys.beginLsbs[i];
+                    builderEndMsbs[size] = ipv6Keys.endMsbs[i];
+                    builderEndLsbs[size++] = ipv6Keys.endLsbs[i];
+                }
+
+                @Override
+                Keys<Ipv6Resource> build() {
+                    return new Ipv6Keys(
+                            Arrays.copyOf(builderBeginMsbs, size),
+                            Arrays.copyOf(builderBeginLsbs, size),
+                            Arrays.copyOf(builderEndMsbs, size),
+                            Arrays.copyOf(builderEndLsbs, size));
+                }
+            };
+        }
+    }
+}
@@ -34,6 +34,28 @@ CREATE TABLE `mailupdates` (
 ) ENGINE=InnoDB AUTO_INCREMENT=467880 DEFAULT CHARSET=latin1;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `mail_outbox`
+--
+
+DROP TABLE IF EXISTS `mail_outbox`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `mail_outbox` (
+  `id` int(10) unsigned NOT NULL AUTO_INCREMENT,
+  `recipient` varchar(256) NOT NULL,
+  `digest` char(64) NOT NULL,
+  `message` longblob NOT NULL,
+  `attempts` int(10) unsigned NOT NULL DEFAULT '0',
+  `next_attempt` int(10) unsigned NOT NULL,
+  `claim_uuid` varchar(80) DEFAULT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `mail_outbox_digest_idx` (`digest`),
+  KEY `mail_outbox_next_attempt_idx` (`next_attempt`),
+  KEY `mail_outbox_claim_uuid_idx` (`claim_uuid`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `version`
 --
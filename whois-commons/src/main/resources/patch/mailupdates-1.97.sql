@@ -0,0 +1,17 @@
+DROP TABLE IF EXISTS `mail_outbox`;
+CREATE TABLE `mail_outbox` (
+  `id` int(10) unsigned NOT NULL AUTO_INCREMENT,
+  `recipient` varchar(256) NOT NULL,
+  `digest` char(64) NOT NULL,
+  `message` longblob NOT NULL,
+  `attempts` int(10) unsigned NOT NULL DEFAULT '0',
+  `next_attempt` int(10) unsigned NOT NULL,
+  `claim_uuid` varchar(80) DEFAULT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `mail_outbox_digest_idx` (`digest`),
+  KEY `mail_outbox_next_attempt_idx` (`next_attempt`),
+  KEY `mail_outbox_claim_uuid_idx` (`claim_uuid`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+TRUNCATE version;
+INSERT INTO version VALUES ('mailupdates-1.97');
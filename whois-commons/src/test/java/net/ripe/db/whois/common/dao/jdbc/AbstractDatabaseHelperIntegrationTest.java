@@ -50,6 +50,8 @@ public abstract class AbstractDatabaseHelperIntegrationTest extends AbstractJUni
         System.setProperty("grs.sources", "TEST-GRS");
         System.setProperty("grs.sources.dummify", "TEST-GRS");
         System.setProperty("api.rest.baseurl", "http://rest-test.db.ripe.net");
+        // audit logs are checked as soon as the request completes
+        System.setProperty("audit.log.queue.size", "0");
 
         // allow setting Origin header
         System.setProperty("sun.net.http.allowRestrictedHeaders", "true");
@@ -1,9 +1,11 @@
 package net.ripe.db.whois.common.dao.jdbc;
 
+import com.google.common.collect.Lists;
 import net.ripe.db.whois.common.IntegrationTest;
 import net.ripe.db.whois.common.dao.RpslObjectDao;
 import net.ripe.db.whois.common.dao.RpslObjectInfo;
 import net.ripe.db.whois.common.domain.CIString;
+import net.ripe.db.whois.common.domain.Identifiable;
 import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.common.source.Source;
@@ -43,6 +45,29 @@ public class JdbcRpslObjectDaoIntegrationTest extends AbstractDaoIntegrationTest
         sourceContext.removeCurrentSource();
     }
 
+    @Test
+    public void load_in_requested_order() {
+        final List<RpslObject> objects = Lists.newArrayList();
+        for (int i = 0; i < 250; i++) {
+            objects.add(databaseHelper.addObject("mntner: TEST" + i + "-MNT"));
+        }
+        Collections.reverse(objects);
+
+        final List<Identifiable> proxy = Lists.newArrayList();
+        for (final RpslObject object : objects) {
+            proxy.add(new RpslObjectInfo(object.getObjectId(), object.getType(), object.getKey()));
+        }
+        proxy.add(proxy.get(0));
+
+        final List<RpslObject> result = Lists.newArrayList();
+        subject.load(proxy, result);
+
+        assertThat(result, hasSize(250));
+        for (int i = 0; i < objects.size(); i++) {
+            assertThat(result.get(i).getObjectId(), is(objects.get(i).getObjectId()));
+        }
+    }
+
     @Test
     public void findSingleAsBlockUsingSingleBlockQuery() throws Exception {
         databaseHelper.addObject("as-block:AS31066-AS31066");
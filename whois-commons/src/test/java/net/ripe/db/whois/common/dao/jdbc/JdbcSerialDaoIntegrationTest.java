@@ -15,7 +15,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
@@ -144,6 +146,27 @@ public class JdbcSerialDaoIntegrationTest extends AbstractDaoIntegrationTest {
         assertThat(subject.getByIdForNrtm(3).getRpslObject(), is(object3));
     }
 
+    @Test
+    public void getSerialEntriesForNrtm_range() {
+        final RpslObject object1 = databaseHelper.addObject("aut-num: AS1\ndescr: first");
+        final RpslObject object2 = databaseHelper.updateObject("aut-num: AS1\ndescr: second");
+        databaseHelper.deleteObject(object2);
+        final RpslObject object3 = databaseHelper.addObject("aut-num: AS2\ndescr: other");
+
+        final List<SerialEntry> serialEntries = subject.getByIdRangeForNrtm(2, 10);
+
+        assertThat(serialEntries, hasSize(3));
+        assertThat(serialEntries.get(0).getSerialId(), is(2));
+        assertThat(serialEntries.get(0).getRpslObject(), is(object2));
+        assertThat(serialEntries.get(1).getSerialId(), is(3));
+        assertThat(serialEntries.get(1).getOperation(), is(Operation.DELETE));
+        assertThat(serialEntries.get(1).getRpslObject(), is(object2));
+        assertThat(serialEntries.get(2).getSerialId(), is(4));
+        assertThat(serialEntries.get(2).getRpslObject(), is(object3));
+        assertThat(subject.getByIdRangeForNrtm(5, 10), hasSize(0));
+        assertThat(subject.getByIdForNrtm(1).getRpslObject(), is(object1));
+    }
+
     @Test
     public void getAgeOfExactOrNextExistingSerial_normal_scenario() {
         //10 mins error range to give build machine enough time to run
@@ -0,0 +1,74 @@
+package net.ripe.db.whois.common.dao.jdbc;
+
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import org.junit.Test;
+
+import static net.ripe.db.whois.common.domain.CIString.ciString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class RpslObjectCacheTest {
+    private final RpslObject object = RpslObject.parse(1, "mntner: TEST-MNT\nsource: TEST");
+
+    @Test
+    public void lookup_by_source_and_object_id() {
+        final RpslObjectCache subject = new RpslObjectCache(1024);
+
+        subject.put(ciString("TEST"), 2, object);
+
+        final RpslObjectCache.CachedObject cachedObject = subject.get(ciString("test"), 1);
+        assertThat(cachedObject.getRpslObject(), sameInstance(object));
+        assertThat(cachedObject.getSequenceId(), is(2));
+        assertThat(subject.get(ciString("TEST"), 2), nullValue());
+        assertThat(subject.get(ciString("RIPE"), 1), nullValue());
+    }
+
+    @Test
+    public void stats_recorded_by_caller() {
+        final RpslObjectCache subject = new RpslObjectCache(1024);
+
+        subject.put(ciString("TEST"), 2, object);
+        subject.get(ciString("TEST"), 1);
+        subject.get(ciString("TEST"), 2);
+        assertThat(subject.stats().requestCount(), is(0L));
+
+        subject.recordHit();
+        subject.recordMiss();
+        subject.recordMiss();
+        assertThat(subject.stats().hitCount(), is(1L));
+        assertThat(subject.stats().missCount(), is(2L));
+    }
+
+    @Test
+    public void newer_version_replaces_cached_version() {
+        final RpslObjectCache subject = new RpslObjectCache(1024);
+
+        subject.put(ciString("TEST"), 2, object);
+        subject.put(ciString("TEST"), 3, object);
+
+        assertThat(subject.size(), is(1L));
+        assertThat(subject.get(ciString("TEST"), 1).getSequenceId(), is(3));
+    }
+
+    @Test
+    public void bounded_by_size() {
+        final RpslObjectCache subject = new RpslObjectCache(RpslObjectCache.getSize(object));
+
+        subject.put(ciString("TEST"), 1, object);
+        final RpslObject other = RpslObject.parse(2, "mntner: TEST-MNT\nsource: TEST");
+        subject.put(ciString("TEST"), 1, other);
+
+        assertThat(subject.size(), is(1L));
+        assertThat(subject.get(ciString("TEST"), 2).getRpslObject(), sameInstance(other));
+    }
+
+    @Test
+    public void disabled() {
+        final RpslObjectCache subject = new RpslObjectCache(0);
+
+        assertThat(subject.isEnabled(), is(false));
+        assertThat(subject.size(), is(0L));
+    }
+}
@@ -0,0 +1,79 @@
+package net.ripe.db.whois.common.dao.jdbc;
+
+import net.ripe.db.whois.common.dao.SerialChangeListener;
+import net.ripe.db.whois.common.source.SourceConfiguration;
+import net.ripe.db.whois.common.source.SourceContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SerialChangePublisherTest {
+    @Mock SourceContext sourceContext;
+    @Mock SourceConfiguration sourceConfiguration;
+    @Mock SerialChangeListener listener;
+
+    private SerialChangePublisher subject;
+
+    @Before
+    public void setUp() {
+        when(sourceContext.getCurrentSourceConfiguration()).thenReturn(sourceConfiguration);
+
+        subject = new SerialChangePublisher(sourceContext);
+        subject.setListeners(Collections.singletonList(listener));
+    }
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void notify_immediately_without_transaction() {
+        subject.serialsChanged();
+
+        verify(listener).serialsCommitted(sourceConfiguration);
+    }
+
+    @Test
+    public void notify_once_after_commit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        subject.serialsChanged();
+        subject.serialsChanged();
+        verifyZeroInteractions(listener);
+
+        for (final TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+
+        verify(listener, times(1)).serialsCommitted(sourceConfiguration);
+    }
+
+    @Test
+    public void no_notification_on_rollback() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        subject.serialsChanged();
+
+        for (final TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+
+        verifyZeroInteractions(listener);
+    }
+}
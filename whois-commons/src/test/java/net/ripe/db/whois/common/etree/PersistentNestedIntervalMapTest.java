@@ -0,0 +1,132 @@
+package net.ripe.db.whois.common.etree;
+
+import net.ripe.db.whois.common.ip.Ipv4Resource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class PersistentNestedIntervalMapTest {
+
+    private PersistentNestedIntervalMap<Ipv4Resource, Ipv4Resource> subject = new PersistentNestedIntervalMap<>();
+    private Ipv4Resource N1_12 = new Ipv4Resource(1, 12);
+    private Ipv4Resource N1_4 = new Ipv4Resource(1, 4);
+    private Ipv4Resource N5_10 = new Ipv4Resource(5, 10);
+    private Ipv4Resource N3_3 = new Ipv4Resource(3, 3);
+    private Ipv4Resource N5_8 = new Ipv4Resource(5, 8);
+    private Ipv4Resource N9_10 = new Ipv4Resource(9, 10);
+
+    @Before
+    public void setup() {
+        subject.put(N1_12, N1_12);
+        subject.put(N3_3, N3_3);
+        subject.put(N5_10, N5_10);
+        subject.put(N1_4, N1_4);
+        subject.put(N9_10, N9_10);
+    }
+
+    @Test
+    public void lookups() {
+        assertThat(subject.findExact(N1_4), contains(N1_4));
+        assertThat(subject.findExactAndAllLessSpecific(N3_3), contains(N1_12, N1_4, N3_3));
+        assertThat(subject.findFirstLessSpecific(N3_3), contains(N1_4));
+        assertThat(subject.findFirstMoreSpecific(N1_12), contains(N1_4, N5_10));
+        assertThat(subject.findAllMoreSpecific(N1_12), contains(N1_4, N3_3, N5_10, N9_10));
+        assertThat(subject.findExactOrFirstLessSpecific(N5_8), contains(N5_10));
+    }
+
+    @Test
+    public void remove_promotes_children() {
+        subject.remove(N1_4);
+
+        assertThat(subject.findExact(N1_4), empty());
+        assertThat(subject.findFirstMoreSpecific(N1_12), contains(N3_3, N5_10));
+        assertThat(subject.findFirstLessSpecific(N3_3), contains(N1_12));
+    }
+
+    @Test
+    public void remove_with_value() {
+        subject.remove(N1_4, N3_3);
+        assertThat(subject.findExact(N1_4), contains(N1_4));
+
+        subject.remove(N1_4, N1_4);
+        assertThat(subject.findExact(N1_4), empty());
+    }
+
+    @Test
+    public void replace_keeps_children() {
+        subject.put(N1_4, N3_3);
+
+        assertThat(subject.findExact(N1_4), contains(N3_3));
+        assertThat(subject.findFirstMoreSpecific(N1_4), contains(N3_3));
+    }
+
+    @Test
+    public void intersecting_interval() {
+        try {
+            subject.put(new Ipv4Resource(4, 5), N1_12);
+            fail();
+        } catch (IntersectingIntervalException e) {
+            assertThat(e.getIntersections(), contains(N1_4, N5_10));
+        }
+    }
+
+    @Test
+    public void snapshot_unaffected_by_modifications() {
+        final IntervalMap<Ipv4Resource, Ipv4Resource> snapshot = subject.snapshot();
+
+        subject.put(N5_8, N5_8);
+        subject.remove(N1_4);
+        subject.put(N9_10, N1_12);
+
+        assertThat(snapshot.findAllMoreSpecific(N1_12), contains(N1_4, N3_3, N5_10, N9_10));
+        assertThat(snapshot.findExact(N9_10), contains(N9_10));
+        assertThat(subject.findAllMoreSpecific(N1_12), contains(N3_3, N5_10, N5_8, N9_10));
+        assertThat(subject.findExact(N9_10), contains(N1_12));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshot_is_read_only() {
+        subject.snapshot().put(N5_8, N5_8);
+    }
+
+    @Test
+    public void clear() {
+        final IntervalMap<Ipv4Resource, Ipv4Resource> snapshot = subject.snapshot();
+
+        subject.clear();
+
+        assertThat(subject.findExact(N1_12), empty());
+        assertThat(snapshot.findExact(N1_12), contains(N1_12));
+    }
+
+    @Test
+    public void copy_of_nested_interval_map() {
+        final Random random = new Random(1);
+        final NestedIntervalMap<Ipv4Resource, Ipv4Resource> source = new NestedIntervalMap<>();
+        final PersistentNestedIntervalMap<Ipv4Resource, Ipv4Resource> persistent = new PersistentNestedIntervalMap<>();
+        for (int i = 0; i < 1000; i++) {
+            final long begin = random.nextInt(10000);
+            final Ipv4Resource key = new Ipv4Resource(begin, begin + random.nextInt(100));
+            try {
+                source.put(key, key);
+                persistent.put(key, key);
+            } catch (IntersectingIntervalException ignored) {
+                // both maps reject the same intervals
+            }
+        }
+
+        final PersistentNestedIntervalMap<Ipv4Resource, Ipv4Resource> copy = PersistentNestedIntervalMap.copyOf(source);
+
+        final Ipv4Resource all = new Ipv4Resource(0, 20000);
+        assertEquals(source.findAllMoreSpecific(all), copy.findAllMoreSpecific(all));
+        assertEquals(source.findAllMoreSpecific(all), persistent.findAllMoreSpecific(all));
+        assertEquals(source.findFirstMoreSpecific(all), persistent.findFirstMoreSpecific(all));
+    }
+}
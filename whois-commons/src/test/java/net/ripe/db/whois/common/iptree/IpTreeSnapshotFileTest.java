@@ -0,0 +1,108 @@
+package net.ripe.db.whois.common.iptree;
+
+import net.ripe.db.whois.common.domain.CIString;
+import net.ripe.db.whois.common.etree.MultiValueIntervalMap;
+import net.ripe.db.whois.common.etree.NestedIntervalMap;
+import net.ripe.db.whois.common.ip.Ipv4Resource;
+import net.ripe.db.whois.common.ip.Ipv6Resource;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static net.ripe.db.whois.common.domain.CIString.ciString;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IpTreeSnapshotFileTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Ipv4Entry inetnum = new Ipv4Entry(Ipv4Resource.parse("10.0.0.0/8"), 1);
+    private final Ipv4Entry moreSpecificInetnum = new Ipv4Entry(Ipv4Resource.parse("10.1.0.0/16"), 2);
+    private final Ipv4Entry highInetnum = new Ipv4Entry(Ipv4Resource.parse("255.255.255.0/24"), 3);
+    private final Ipv6Entry inet6num = new Ipv6Entry(Ipv6Resource.parse("2001:db8::/32"), 4);
+    private final Ipv4RouteEntry route = Ipv4RouteEntry.parse("10.0.0.0/8AS3333", 5);
+    private final Ipv4RouteEntry otherOriginRoute = Ipv4RouteEntry.parse("10.0.0.0/8AS3334", 6);
+    private final Ipv6RouteEntry route6 = Ipv6RouteEntry.parse("ffff::/16AS3333", 7);
+    private final Ipv4Entry domain = new Ipv4Entry(Ipv4Resource.parse("193.0.0.0/24"), 8);
+
+    private Path file;
+
+    @Before
+    public void setup() throws IOException {
+        file = folder.getRoot().toPath().resolve("test.iptree");
+
+        final NestedIntervalMap<Ipv4Resource, Ipv4Entry> ipv4Tree = new NestedIntervalMap<>();
+        ipv4Tree.put(inetnum.getKey(), inetnum);
+        ipv4Tree.put(moreSpecificInetnum.getKey(), moreSpecificInetnum);
+        ipv4Tree.put(highInetnum.getKey(), highInetnum);
+
+        final NestedIntervalMap<Ipv6Resource, Ipv6Entry> ipv6Tree = new NestedIntervalMap<>();
+        ipv6Tree.put(inet6num.getKey(), inet6num);
+
+        final MultiValueIntervalMap<Ipv4Resource, Ipv4RouteEntry> ipv4RouteTree = new MultiValueIntervalMap<>();
+        ipv4RouteTree.put(route.getKey(), route);
+        ipv4RouteTree.put(otherOriginRoute.getKey(), otherOriginRoute);
+
+        final MultiValueIntervalMap<Ipv6Resource, Ipv6RouteEntry> ipv6RouteTree = new MultiValueIntervalMap<>();
+        ipv6RouteTree.put(route6.getKey(), route6);
+
+        final NestedIntervalMap<Ipv4Resource, Ipv4Entry> ipv4DomainTree = new NestedIntervalMap<>();
+        ipv4DomainTree.put(domain.getKey(), domain);
+
+        IpTreeSnapshotFile.write(file, ciString("TEST"), 42, ipv4Tree, ipv6Tree, ipv4RouteTree, ipv6RouteTree, ipv4DomainTree, new NestedIntervalMap<Ipv6Resource, Ipv6Entry>());
+    }
+
+    @Test
+    public void write_and_read() throws IOException {
+        final NestedIntervalMap<Ipv4Resource, Ipv4Entry> ipv4Tree = new NestedIntervalMap<>();
+        final NestedIntervalMap<Ipv6Resource, Ipv6Entry> ipv6Tree = new NestedIntervalMap<>();
+        final MultiValueIntervalMap<Ipv4Resource, Ipv4RouteEntry> ipv4RouteTree = new MultiValueIntervalMap<>();
+        final MultiValueIntervalMap<Ipv6Resource, Ipv6RouteEntry> ipv6RouteTree = new MultiValueIntervalMap<>();
+        final NestedIntervalMap<Ipv4Resource, Ipv4Entry> ipv4DomainTree = new NestedIntervalMap<>();
+        final NestedIntervalMap<Ipv6Resource, Ipv6Entry> ipv6DomainTree = new NestedIntervalMap<>();
+
+        final long lastSerial = IpTreeSnapshotFile.read(file, ciString("test"), ipv4Tree, ipv6Tree, ipv4RouteTree, ipv6RouteTree, ipv4DomainTree, ipv6DomainTree);
+
+        assertThat(lastSerial, is(42L));
+        assertThat(ipv4Tree.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE), contains(inetnum, moreSpecificInetnum, highInetnum));
+        assertThat(ipv4Tree.findExact(moreSpecificInetnum.getKey()).get(0).getObjectId(), is(2));
+        assertThat(ipv6Tree.findExactAndAllMoreSpecific(Ipv6Resource.MAX_RANGE), contains(inet6num));
+        assertThat(ipv4RouteTree.findExact(route.getKey()), contains(route, otherOriginRoute));
+        assertThat(ipv6RouteTree.findExactAndAllMoreSpecific(Ipv6Resource.MAX_RANGE), contains(route6));
+        assertThat(ipv4DomainTree.findExactAndAllMoreSpecific(Ipv4Resource.MAX_RANGE), contains(domain));
+        assertThat(ipv6DomainTree.findExactAndAllMoreSpecific(Ipv6Resource.MAX_RANGE), empty());
+        assertThat(Files.exists(file.resolveSibling("test.iptree.tmp")), is(false));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_other_source() throws IOException {
+        read(file, ciString("RIPE"));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_truncated() throws IOException {
+        final byte[] bytes = Files.readAllBytes(file);
+        final Path truncated = folder.newFile().toPath();
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 3));
+
+        read(truncated, ciString("TEST"));
+    }
+
+    private static long read(final Path file, final CIString source) throws IOException {
+        return IpTreeSnapshotFile.read(file, source,
+                new NestedIntervalMap<Ipv4Resource, Ipv4Entry>(),
+                new NestedIntervalMap<Ipv6Resource, Ipv6Entry>(),
+                new MultiValueIntervalMap<Ipv4Resource, Ipv4RouteEntry>(),
+                new MultiValueIntervalMap<Ipv6Resource, Ipv6RouteEntry>(),
+                new NestedIntervalMap<Ipv4Resource, Ipv4Entry>(),
+                new NestedIntervalMap<Ipv6Resource, Ipv6Entry>());
+    }
+}
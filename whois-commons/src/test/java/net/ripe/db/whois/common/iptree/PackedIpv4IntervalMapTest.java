@@ -0,0 +1,157 @@
+package net.ripe.db.whois.common.iptree;
+
+import net.ripe.db.whois.common.etree.IntersectingIntervalException;
+import net.ripe.db.whois.common.etree.IntervalMap;
+import net.ripe.db.whois.common.etree.NestedIntervalMap;
+import net.ripe.db.whois.common.ip.Ipv4Resource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class PackedIpv4IntervalMapTest {
+
+    private PackedIpv4IntervalMap subject = new PackedIpv4IntervalMap();
+    private Ipv4Entry N1_12 = new Ipv4Entry(new Ipv4Resource(1, 12), 1);
+    private Ipv4Entry N1_4 = new Ipv4Entry(new Ipv4Resource(1, 4), 2);
+    private Ipv4Entry N5_10 = new Ipv4Entry(new Ipv4Resource(5, 10), 3);
+    private Ipv4Entry N3_3 = new Ipv4Entry(new Ipv4Resource(3, 3), 4);
+    private Ipv4Entry N5_8 = new Ipv4Entry(new Ipv4Resource(5, 8), 5);
+    private Ipv4Entry N9_10 = new Ipv4Entry(new Ipv4Resource(9, 10), 6);
+
+    @Before
+    public void setup() {
+        for (final Ipv4Entry entry : new Ipv4Entry[]{N1_12, N3_3, N5_10, N1_4, N9_10}) {
+            subject.put(entry.getKey(), entry);
+        }
+    }
+
+    @Test
+    public void lookups() {
+        assertThat(subject.findExact(N1_4.getKey()), contains(N1_4));
+        assertThat(subject.findExactAndAllLessSpecific(N3_3.getKey()), contains(N1_12, N1_4, N3_3));
+        assertThat(subject.findFirstLessSpecific(N3_3.getKey()), contains(N1_4));
+        assertThat(subject.findFirstMoreSpecific(N1_12.getKey()), contains(N1_4, N5_10));
+        assertThat(subject.findAllMoreSpecific(N1_12.getKey()), contains(N1_4, N3_3, N5_10, N9_10));
+        assertThat(subject.findExactOrFirstLessSpecific(N5_8.getKey()), contains(N5_10));
+    }
+
+    @Test
+    public void object_id_preserved() {
+        assertEquals(3, subject.findExact(N5_10.getKey()).get(0).getObjectId());
+    }
+
+    @Test
+    public void remove_promotes_children() {
+        subject.remove(N1_4.getKey());
+
+        assertThat(subject.findExact(N1_4.getKey()), empty());
+        assertThat(subject.findFirstMoreSpecific(N1_12.getKey()), contains(N3_3, N5_10));
+        assertThat(subject.findFirstLessSpecific(N3_3.getKey()), contains(N1_12));
+    }
+
+    @Test
+    public void intersecting_interval() {
+        try {
+            final Ipv4Resource key = new Ipv4Resource(4, 5);
+            subject.put(key, new Ipv4Entry(key, 7));
+            fail();
+        } catch (IntersectingIntervalException e) {
+            assertThat(e.getIntersections(), contains(N1_4.getKey(), N5_10.getKey()));
+        }
+    }
+
+    @Test
+    public void intersecting_pending_interval() {
+        subject.put(N5_8.getKey(), N5_8);
+        try {
+            final Ipv4Resource key = new Ipv4Resource(7, 9);
+            subject.put(key, new Ipv4Entry(key, 7));
+            fail();
+        } catch (IntersectingIntervalException e) {
+            assertThat(e.getIntersections(), containsInAnyOrder(N5_8.getKey(), N9_10.getKey()));
+        }
+    }
+
+    @Test
+    public void snapshot_unaffected_by_modifications() {
+        final IntervalMap<Ipv4Resource, Ipv4Entry> snapshot = subject.snapshot();
+
+        subject.put(N5_8.getKey(), N5_8);
+        subject.remove(N1_4.getKey());
+
+        assertThat(snapshot.findAllMoreSpecific(N1_12.getKey()), contains(N1_4, N3_3, N5_10, N9_10));
+        assertThat(subject.findAllMoreSpecific(N1_12.getKey()), contains(N3_3, N5_10, N5_8, N9_10));
+    }
+
+    @Test
+    public void copy_modified() {
+        final PackedIpv4IntervalMap copy = PackedIpv4IntervalMap.copyOf(subject);
+        final Ipv4Entry replaced = new Ipv4Entry(N5_10.getKey(), 7);
+
+        copy.remove(N1_4.getKey());
+        copy.put(N5_8.getKey(), N5_8);
+        copy.put(N5_10.getKey(), replaced);
+
+        assertThat(copy.findFirstMoreSpecific(N1_12.getKey()), contains(N3_3, replaced));
+        assertThat(copy.findExactAndAllLessSpecific(N5_8.getKey()), contains(N1_12, replaced, N5_8));
+        assertEquals(7, copy.findExact(N5_10.getKey()).get(0).getObjectId());
+        assertThat(copy.findAllMoreSpecific(N1_12.getKey()), contains(N3_3, replaced, N5_8, N9_10));
+        assertThat(subject.findAllMoreSpecific(N1_12.getKey()), contains(N1_4, N3_3, N5_10, N9_10));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshot_is_read_only() {
+        subject.snapshot().remove(N1_12.getKey());
+    }
+
+    @Test
+    public void same_results_as_nested_interval_map() {
+        final Random random = new Random(1);
+        final NestedIntervalMap<Ipv4Resource, Ipv4Entry> nested = new NestedIntervalMap<>();
+        final PackedIpv4IntervalMap packed = new PackedIpv4IntervalMap();
+        for (int i = 0; i < 5000; i++) {
+            final long begin = random.nextInt(10000);
+            final Ipv4Resource key = new Ipv4Resource(begin, begin + random.nextInt(100));
+            if (random.nextInt(4) == 0) {
+                nested.remove(key);
+                packed.remove(key);
+                continue;
+            }
+
+            final Ipv4Entry entry = new Ipv4Entry(key, i);
+            try {
+                nested.put(key, entry);
+                packed.put(key, entry);
+            } catch (IntersectingIntervalException ignored) {
+                // both maps reject the same intervals
+            }
+        }
+
+        for (final IntervalMap<Ipv4Resource, Ipv4Entry> map : new IntervalMap[]{packed, packed.snapshot(), PackedIpv4IntervalMap.copyOf(nested)}) {
+            for (int i = 0; i < 1000; i++) {
+                final long begin = random.nextInt(10000);
+                final Ipv4Resource key = new Ipv4Resource(begin, begin + random.nextInt(500));
+                assertSameEntries(nested.findExactAndAllLessSpecific(key), map.findExactAndAllLessSpecific(key));
+                assertSameEntries(nested.findFirstLessSpecific(key), map.findFirstLessSpecific(key));
+                assertSameEntries(nested.findFirstMoreSpecific(key), map.findFirstMoreSpecific(key));
+                assertSameEntries(nested.findAllMoreSpecific(key), map.findAllMoreSpecific(key));
+            }
+        }
+    }
+
+    private static void assertSameEntries(final List<Ipv4Entry> expected, final List<Ipv4Entry> actual) {
+        assertEquals(expected, actual);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getObjectId(), actual.get(i).getObjectId());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package net.ripe.db.whois.common.iptree;
+
+import net.ripe.db.whois.common.etree.IntersectingIntervalException;
+import net.ripe.db.whois.common.etree.IntervalMap;
+import net.ripe.db.whois.common.ip.Ipv6Resource;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class PackedIpv6IntervalMapTest {
+
+    private PackedIpv6IntervalMap subject = new PackedIpv6IntervalMap();
+    private Ipv6Entry N2001 = entry("2001::/16", 1);
+    private Ipv6Entry N2001_DB8 = entry("2001:db8::/32", 2);
+    private Ipv6Entry N2001_DB8_1 = entry("2001:db8:1::/48", 3);
+    private Ipv6Entry N2001_DB9 = entry("2001:db9::/32", 4);
+    private Ipv6Entry NFFFF = entry("ffff::/16", 5);
+
+    private static Ipv6Entry entry(final String prefix, final int objectId) {
+        return new Ipv6Entry(Ipv6Resource.parse(prefix), objectId);
+    }
+
+    @Before
+    public void setup() {
+        for (final Ipv6Entry entry : new Ipv6Entry[]{N2001_DB8_1, N2001, NFFFF, N2001_DB8, N2001_DB9}) {
+            subject.put(entry.getKey(), entry);
+        }
+    }
+
+    @Test
+    public void lookups() {
+        assertThat(subject.findExact(N2001_DB8.getKey()), contains(N2001_DB8));
+        assertThat(subject.findExactAndAllLessSpecific(Ipv6Resource.parse("2001:db8:1:2::/64")), contains(N2001, N2001_DB8, N2001_DB8_1));
+        assertThat(subject.findFirstLessSpecific(N2001_DB8.getKey()), contains(N2001));
+        assertThat(subject.findFirstMoreSpecific(Ipv6Resource.parse("::/0")), contains(N2001, NFFFF));
+        assertThat(subject.findAllMoreSpecific(N2001.getKey()), contains(N2001_DB8, N2001_DB8_1, N2001_DB9));
+        assertThat(subject.findExactOrFirstLessSpecific(Ipv6Resource.parse("ffff:1::/32")), contains(NFFFF));
+    }
+
+    @Test
+    public void unsigned_comparison() {
+        assertThat(subject.findExactAndAllMoreSpecific(Ipv6Resource.parse("8000::/1")), contains(NFFFF));
+        assertThat(subject.findExactAndAllMoreSpecific(Ipv6Resource.parse("::/1")), contains(N2001, N2001_DB8, N2001_DB8_1, N2001_DB9));
+    }
+
+    @Test
+    public void object_id_preserved() {
+        assertEquals(3, subject.findExact(N2001_DB8_1.getKey()).get(0).getObjectId());
+    }
+
+    @Test
+    public void remove_promotes_children() {
+        subject.remove(N2001_DB8.getKey());
+
+        assertThat(subject.findExact(N2001_DB8.getKey()), empty());
+        assertThat(subject.findFirstMoreSpecific(N2001.getKey()), contains(N2001_DB8_1, N2001_DB9));
+    }
+
+    @Test
+    public void intersecting_interval() {
+        try {
+            final Ipv6Resource key = Ipv6Resource.parse("2001:db8:1::/48").singletonIntervalAtLowerBound();
+            final Ipv6Resource intersecting = new Ipv6Resource(key.beginMsb() - 1, 0, key.beginMsb(), key.beginLsb());
+            subject.put(intersecting, new Ipv6Entry(intersecting, 6));
+            fail();
+        } catch (IntersectingIntervalException e) {
+            assertThat(e.getIntersections(), contains(N2001_DB8_1.getKey()));
+        }
+    }
+
+    @Test
+    public void snapshot_unaffected_by_modifications() {
+        final IntervalMap<Ipv6Resource, Ipv6Entry> snapshot = subject.snapshot();
+
+        subject.remove(N2001_DB9.getKey());
+
+        assertThat(snapshot.findExact(N2001_DB9.getKey()), contains(N2001_DB9));
+        assertThat(subject.findExact(N2001_DB9.getKey()), empty());
+    }
+
+    @Test
+    public void copy_of() {
+        final PackedIpv6IntervalMap copy = PackedIpv6IntervalMap.copyOf(subject);
+
+        assertThat(copy.findAllMoreSpecific(Ipv6Resource.MAX_RANGE), contains(N2001, N2001_DB8, N2001_DB8_1, N2001_DB9, NFFFF));
+    }
+}
@@ -1,6 +1,5 @@
 package net.ripe.db.whois.nrtm;
 
-import com.google.common.util.concurrent.Uninterruptibles;
 import joptsimple.OptionException;
 import net.ripe.db.whois.common.aspects.RetryFor;
 import net.ripe.db.whois.common.dao.SerialDao;
@@ -8,16 +7,13 @@ import net.ripe.db.whois.common.domain.serials.SerialEntry;
 import net.ripe.db.whois.common.domain.serials.SerialRange;
 import net.ripe.db.whois.common.pipeline.ChannelUtil;
 import net.ripe.db.whois.common.rpsl.AttributeType;
-import net.ripe.db.whois.common.rpsl.Dummifier;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import org.apache.commons.lang.StringUtils;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelException;
-import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.channel.ChannelLocal;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
@@ -29,8 +25,10 @@ import org.springframework.core.task.TaskRejectedException;
 import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.scheduling.TaskScheduler;
 
+import java.util.Date;
+import java.util.List;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class NrtmQueryHandler extends SimpleChannelUpstreamHandler {
@@ -40,9 +38,13 @@ public class NrtmQueryHandler extends SimpleChannelUpstreamHandler {
     static final int SECONDS_PER_DAY = 60 * 60 * 24;
     static final int HISTORY_AGE_LIMIT = 14 * SECONDS_PER_DAY;
 
+    // serials read from the database in one query
+    private static final int SERIAL_CHUNK_SIZE = 1000;
+
     private final SerialDao serialDao;
-    private final Dummifier dummifier;
+    private final NrtmSerialCache serialCache;
     private final TaskScheduler clientSynchronisationScheduler;
+    private final NrtmSerialCommitNotifier serialCommitNotifier;
 
     private final NrtmLog nrtmLog;
     private final String applicationVersion;
@@ -52,6 +54,7 @@ public class NrtmQueryHandler extends SimpleChannelUpstreamHandler {
     private final boolean keepaliveEndOfStream;
 
     private volatile ScheduledFuture<?> scheduledFuture;
+    private volatile MirrorStream mirrorStream;
 
     static final String TERMS_AND_CONDITIONS = "" +
             "% The RIPE Database is subject to Terms and Conditions.\n" +
@@ -59,8 +62,9 @@ public class NrtmQueryHandler extends SimpleChannelUpstreamHandler {
 
     public NrtmQueryHandler(
             @Qualifier("jdbcSlaveSerialDao") final SerialDao serialDao,
-            @Qualifier("dummifierNrtm") final Dummifier dummifier,
+            final NrtmSerialCache serialCache,
             @Qualifier("clientSynchronisationScheduler") final TaskScheduler clientSynchronisationScheduler,
+            final NrtmSerialCommitNotifier serialCommitNotifier,
             final NrtmLog nrtmLog,
             @Value("${application.version}") final String applicationVersion,
             @Value("${whois.source}") final String source,
@@ -68,8 +72,9 @@ public class NrtmQueryHandler extends SimpleChannelUpstreamHandler {
             @Value("${nrtm.update.interval:60}") final long updateInterval,
             @Value("${nrtm.keepalive.end.of.stream:false}") final boolean keepaliveEndOfStream) {
         this.serialDao = serialDao;
-        this.dummifier = dummifier;
+        this.serialCache = serialCache;
         this.clientSynchronisationScheduler = clientSynchronisationScheduler;
+        this.serialCommitNotifier = serialCommitNotifier;
         this.nrtmLog = nrtmLog;
         this.applicationVersion = applicationVersion;
         this.source = source;
@@ -80,7 +85,7 @@ public class NrtmQueryHandler extends SimpleChannelUpstreamHandler {
 
     @Override
     public void messageReceived(final ChannelHandlerContext ctx, final MessageEvent e) {
-        if (isKeepAlive()) {
+        if (mirrorStream != null) {
             return;
         }
 
@@ -123,10 +128,11 @@ public class NrtmQueryHandler extends SimpleChannelUpstreamHandler {
 
             if (query.isKeepalive()) {
                 handleMirrorQueryWithKeepalive(query, channel);
-                return;
             } else {
                 handleMirrorQuery(query, channel);
             }
+
+            return;
         } else if (query.isInfoQuery()) {
             switch (query.getQueryOption()) {
                 case SOURCES:
@@ -141,10 +147,6 @@ public class NrtmQueryHandler extends SimpleChannelUpstreamHandler {
         channel.write(ChannelBuffers.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
     }
 
-    private boolean isKeepAlive() {
-        return scheduledFuture != null;
-    }
-
     private Query parseQueryString(final String queryString) {
         try {
             return new Query(source, nonAuthSource, queryString);
@@ -154,14 +156,14 @@ public class NrtmQueryHandler extends SimpleChannelUpstreamHandler {
     }
 
     void handleMirrorQueryWithKeepalive(final Query query, final Channel channel) {
-        final Runnable instance = new Runnable() {
-            private int serial = query.getSerialBegin();
+        final MirrorStream stream = new MirrorStream(query, channel);
+        mirrorStream = stream;
 
+        final Runnable instance = new Runnable() {
             @Override
             public void run() {
                 try {
-                    final SerialRange range = serialDao.getSerials();
-                    serial = writeSerials(serial, range.getEnd(), query, channel);
+                    stream.resume(serialDao.getSerials().getEnd());
                 } catch (ChannelException e) {
                     LOGGER.debug("writeSerials: closed channel");
                 } catch (Exception e) {
@@ -177,62 +179,24 @@ public class NrtmQueryHandler extends SimpleChannelUpstreamHandler {
             LOGGER.warn("Unable to schedule keepalive instance ({})", e.getMessage());
             throw e;
         }
+
+        serialCommitNotifier.register(stream);
     }
 
     private void handleMirrorQuery(final Query query, final Channel channel) {
-        for (int serial = query.getSerialBegin(); serial <= query.getSerialEnd(); ) {
-            serial = writeSerials(serial, query.getSerialEnd(), query, channel);
-            if (serial <= query.getSerialEnd()) {
-                Uninterruptibles.sleepUninterruptibly(1, TimeUnit.SECONDS);
-            }
-        }
-
-        writeMessage(channel, String.format("%%END %s", query.getSource()));
+        final MirrorStream stream = new MirrorStream(query, channel);
+        mirrorStream = stream;
+        stream.resume(query.getSerialEnd());
     }
 
-    private int writeSerials(final int begin, final int end, final Query query, final Channel channel) {
-        final int version = query.getVersion();
-        int serial = begin;
-        boolean written = false;
-
-        while (serial <= end) {
-
-            if (PendingWrites.isPending(channel)) {
-                Uninterruptibles.sleepUninterruptibly(1, TimeUnit.SECONDS);
-                continue;
-            }
-
-            final SerialEntry serialEntry = readSerial(serial);
-
-            if (serialEntry != null && isSerialEntryQueriedSourceType(query.getSource(), serialEntry.getRpslObject())) {
-                if (dummifier.isAllowed(version, serialEntry.getRpslObject())) {
-                    final String operation = serialEntry.getOperation().toString();
-                    final String message;
-                    if (version == NrtmServer.NRTM_VERSION) {
-                        message = operation + " " + serial;
-                    } else {
-                        message = operation;
-                    }
-
-                    writeMessage(channel, message);
-                    writeMessage(channel, dummifier.dummify(version, serialEntry.getRpslObject()).toString().trim());
-                    written = true;
-                }
-            }
-
-            serial++;
-        }
-
-        if (written && query.isKeepalive() && keepaliveEndOfStream) {
-            writeMessage(channel, String.format("%%END %d - %d", begin, end));
+    @RetryFor(attempts = 10, value = CannotGetJdbcConnectionException.class)
+    private List<NrtmSerialCache.CachedSerial> readSerials(final int serialBegin, final int serialEnd) {
+        final List<NrtmSerialCache.CachedSerial> cachedSerials = serialCache.getRange(serialBegin, serialEnd);
+        if (cachedSerials != null) {
+            return cachedSerials;
         }
 
-        return serial;
-    }
-
-    @RetryFor(attempts = 10, value = CannotGetJdbcConnectionException.class)
-    private SerialEntry readSerial(final int serial) {
-        return serialDao.getByIdForNrtm(serial);
+        return serialCache.putRange(serialDao.getByIdRangeForNrtm(serialBegin, serialEnd));
     }
 
     private boolean isRequestedSerialInRange(final Query query, final SerialRange range) {
@@ -266,20 +230,31 @@ public class NrtmQueryHandler extends SimpleChannelUpstreamHandler {
 
     @Override
     public void channelConnected(final ChannelHandlerContext ctx, final ChannelStateEvent e) throws Exception {
-        PendingWrites.add(ctx.getChannel());
-
         writeMessage(ctx.getChannel(), TERMS_AND_CONDITIONS);
 
         super.channelConnected(ctx, e);
     }
 
+    @Override
+    public void channelInterestChanged(final ChannelHandlerContext ctx, final ChannelStateEvent e) throws Exception {
+        final MirrorStream stream = mirrorStream;
+        if (stream != null && ctx.getChannel().isWritable()) {
+            stream.resume();
+        }
+
+        super.channelInterestChanged(ctx, e);
+    }
+
     @Override
     public void channelDisconnected(final ChannelHandlerContext ctx, final ChannelStateEvent e) throws Exception {
         if (scheduledFuture != null) {
             scheduledFuture.cancel(true);
         }
 
-        PendingWrites.remove(ctx.getChannel());
+        final MirrorStream stream = mirrorStream;
+        if (stream != null) {
+            serialCommitNotifier.unregister(stream);
+        }
 
         super.channelDisconnected(ctx, e);
     }
@@ -289,52 +264,129 @@ public class NrtmQueryHandler extends SimpleChannelUpstreamHandler {
             throw new ChannelException();
         }
 
-        PendingWrites.increment(channel);
-
-        channel.write(message + "\n\n").addListener(LISTENER);
+        channel.write(message + "\n\n");
     }
 
-    private static final ChannelFutureListener LISTENER = new ChannelFutureListener() {
-        @Override
-        public void operationComplete(ChannelFuture future) throws Exception {
-            PendingWrites.decrement(future.getChannel());
+    /**
+     * Streams the serials of a mirror query without ever waiting for the client: serials are written while the channel
+     * is writable, and the stream is resumed when the channel becomes writable again ({@link #channelInterestChanged}),
+     * on the keepalive schedule and when new serials are committed.
+     */
+    private final class MirrorStream implements Runnable {
+        private final Query query;
+        private final Channel channel;
+        private final AtomicInteger resumeRequests = new AtomicInteger();
+        private final AtomicBoolean commitRefreshScheduled = new AtomicBoolean();
+
+        private volatile int endSerial;
+
+        // only accessed by the thread resuming the stream
+        private int nextSerial;
+        private int batchBegin;
+        private boolean written;
+        private boolean ended;
+
+        private MirrorStream(final Query query, final Channel channel) {
+            this.query = query;
+            this.channel = channel;
+            this.nextSerial = query.getSerialBegin();
+            this.batchBegin = nextSerial;
+            this.endSerial = query.getSerialEnd();
         }
-    };
-
-    static final class PendingWrites {
 
-        private static final ChannelLocal<AtomicInteger> PENDING_WRITES = new ChannelLocal<>();
-        private static final int MAX_PENDING_WRITES = 16;
-
-        static void add(final Channel channel) {
-            PENDING_WRITES.set(channel, new AtomicInteger());
+        private void resume(final int endSerial) {
+            this.endSerial = Math.max(this.endSerial, endSerial);
+            resume();
         }
 
-        static void remove(final Channel channel) {
-            PENDING_WRITES.remove(channel);
-        }
+        private void resume() {
+            if (resumeRequests.getAndIncrement() != 0) {
+                // another thread is writing, and will write again for this request
+                return;
+            }
 
-        static void increment(final Channel channel) {
-            final AtomicInteger pending = PENDING_WRITES.get(channel);
-            if (pending != null) {
-                pending.incrementAndGet();
+            try {
+                int requests = 1;
+                do {
+                    writeSerials();
+                    requests = resumeRequests.addAndGet(-requests);
+                } while (requests != 0);
+            } catch (RuntimeException e) {
+                resumeRequests.set(0);
+                throw e;
             }
         }
 
-        static void decrement(final Channel channel) {
-            final AtomicInteger pending = PENDING_WRITES.get(channel);
-            if (pending != null) {
-                pending.decrementAndGet();
+        // new serials committed, read them on the scheduler instead of the committing thread
+        @Override
+        public void run() {
+            if (!commitRefreshScheduled.compareAndSet(false, true)) {
+                return;
             }
+
+            clientSynchronisationScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    commitRefreshScheduled.set(false);
+                    try {
+                        resume(serialDao.getSerials().getEnd());
+                    } catch (ChannelException e) {
+                        LOGGER.debug("writeSerials: closed channel");
+                    } catch (Exception e) {
+                        LOGGER.info("Exception in commit notification:", e);
+                    }
+                }
+            }, new Date());
         }
 
-        static boolean isPending(final Channel channel) {
-            final AtomicInteger pending = PENDING_WRITES.get(channel);
-            if (pending == null) {
-                throw new ChannelException("channel removed");
+        private void writeSerials() {
+            final int version = query.getVersion();
+            final int end = endSerial;
+
+            while (nextSerial <= end) {
+                final int chunkEnd = (int) Math.min((long) nextSerial + SERIAL_CHUNK_SIZE - 1, end);
+
+                for (final NrtmSerialCache.CachedSerial cachedSerial : readSerials(nextSerial, chunkEnd)) {
+                    if (!channel.isWritable()) {
+                        // the client is behind, continue when the channel becomes writable again
+                        nextSerial = cachedSerial.getSerialId();
+                        return;
+                    }
+
+                    final SerialEntry serialEntry = cachedSerial.getSerialEntry();
+                    if (isSerialEntryQueriedSourceType(query.getSource(), serialEntry.getRpslObject())) {
+                        final String payload = cachedSerial.getPayload(version);
+                        if (payload != null) {
+                            final String operation = serialEntry.getOperation().toString();
+                            final String message;
+                            if (version == NrtmServer.NRTM_VERSION) {
+                                message = operation + " " + cachedSerial.getSerialId();
+                            } else {
+                                message = operation;
+                            }
+
+                            writeMessage(channel, message);
+                            writeMessage(channel, payload);
+                            written = true;
+                        }
+                    }
+                }
+
+                nextSerial = chunkEnd + 1;
             }
 
-            return (pending.get() > MAX_PENDING_WRITES);
+            if (query.isKeepalive()) {
+                if (written && keepaliveEndOfStream) {
+                    writeMessage(channel, String.format("%%END %d - %d", batchBegin, end));
+                }
+
+                written = false;
+                batchBegin = nextSerial;
+            } else if (!ended) {
+                ended = true;
+                writeMessage(channel, String.format("%%END %s", query.getSource()));
+                channel.write(ChannelBuffers.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+            }
         }
     }
 }
@@ -1,7 +1,6 @@
 package net.ripe.db.whois.nrtm;
 
 import net.ripe.db.whois.common.dao.SerialDao;
-import net.ripe.db.whois.common.rpsl.Dummifier;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,8 +11,9 @@ import org.springframework.stereotype.Component;
 public class NrtmQueryHandlerFactory {
 
     private final SerialDao serialDao;
-    private final Dummifier dummifier;
+    private final NrtmSerialCache serialCache;
     private final TaskScheduler clientSynchronisationScheduler;
+    private final NrtmSerialCommitNotifier serialCommitNotifier;
     private final NrtmLog nrtmLog;
     private final String version;
     private final String source;
@@ -25,16 +25,18 @@ public class NrtmQueryHandlerFactory {
     public NrtmQueryHandlerFactory(
             @Qualifier("jdbcSlaveSerialDao") final SerialDao serialDao,
             final NrtmLog nrtmLog,
-            @Qualifier("dummifierNrtm") final Dummifier dummifier,
+            final NrtmSerialCache serialCache,
             @Qualifier("clientSynchronisationScheduler") final TaskScheduler clientSynchronisationScheduler,
+            final NrtmSerialCommitNotifier serialCommitNotifier,
             @Value("${application.version}") final String version,
             @Value("${whois.source}") final String source,
             @Value("${whois.nonauth.source}") final String nonAuthSource,
             @Value("${nrtm.update.interval:60}") final long updateInterval,
             @Value("${nrtm.keepalive.end.of.stream:false}") final boolean keepaliveEndOfStream) {
         this.serialDao = serialDao;
-        this.dummifier = dummifier;
+        this.serialCache = serialCache;
         this.clientSynchronisationScheduler = clientSynchronisationScheduler;
+        this.serialCommitNotifier = serialCommitNotifier;
         this.nrtmLog = nrtmLog;
         this.version = version;
         this.source = source;
@@ -46,8 +48,9 @@ public class NrtmQueryHandlerFactory {
     public NrtmQueryHandler getInstance() {
         return new NrtmQueryHandler(
             serialDao,
-            dummifier,
+            serialCache,
             clientSynchronisationScheduler,
+            serialCommitNotifier,
             nrtmLog,
             version,
             source,
@@ -0,0 +1,136 @@
+package net.ripe.db.whois.nrtm;
+
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.domain.serials.SerialEntry;
+import net.ripe.db.whois.common.rpsl.Dummifier;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.CheckForNull;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ring buffer of recently read serials, shared by all NRTM clients.
+ * <p/>
+ * Mirrors mostly tail the head of the serial stream, so they all read the same serials. Each serial is read from the
+ * database once, and dummified and rendered once per NRTM version; older serials that have been overwritten in the
+ * ring are read from the database again.
+ */
+@Component
+public class NrtmSerialCache {
+    private final Dummifier dummifier;
+    private final AtomicReferenceArray<CachedSerial> serials;
+
+    @Autowired
+    public NrtmSerialCache(
+            @Qualifier("dummifierNrtm") final Dummifier dummifier,
+            @Value("${nrtm.serial.cache.size:10000}") final int size) {
+        this.dummifier = dummifier;
+        this.serials = new AtomicReferenceArray<>(Math.max(size, 1));
+    }
+
+    /**
+     * @return the serials between <code>serialBegin</code> and <code>serialEnd</code> (inclusive), in serial order,
+     * or null if not every serial in the range is cached.
+     */
+    @CheckForNull
+    public List<CachedSerial> getRange(final int serialBegin, final int serialEnd) {
+        if (serialEnd - serialBegin >= serials.length()) {
+            return null;
+        }
+
+        final List<CachedSerial> result = Lists.newArrayListWithExpectedSize(serialEnd - serialBegin + 1);
+        for (int serialId = serialBegin; serialId <= serialEnd; serialId++) {
+            final CachedSerial cachedSerial = serials.get(index(serialId));
+            if (cachedSerial == null || cachedSerial.serialId != serialId) {
+                return null;
+            }
+
+            result.add(cachedSerial);
+        }
+
+        return result;
+    }
+
+    /**
+     * Cache the existing serials read from the database for a range.
+     * <p/>
+     * The absence of a serial is not cached, as serials may be committed out of order: a serial that is missing
+     * now can still become visible, and must then be read by every mirror.
+     *
+     * @return the cached existing serials, in serial order.
+     */
+    public List<CachedSerial> putRange(final List<SerialEntry> serialEntries) {
+        final List<CachedSerial> result = Lists.newArrayListWithExpectedSize(serialEntries.size());
+
+        for (final SerialEntry serialEntry : serialEntries) {
+            final CachedSerial cachedSerial = new CachedSerial(serialEntry.getSerialId(), serialEntry);
+            put(cachedSerial);
+            result.add(cachedSerial);
+        }
+
+        return result;
+    }
+
+    private void put(final CachedSerial cachedSerial) {
+        serials.set(index(cachedSerial.serialId), cachedSerial);
+    }
+
+    private int index(final int serialId) {
+        return Math.floorMod(serialId, serials.length());
+    }
+
+    public final class CachedSerial {
+        private final int serialId;
+        private final SerialEntry serialEntry;
+        private final AtomicReferenceArray<Optional<String>> payloads = new AtomicReferenceArray<>(NrtmServer.NRTM_VERSION + 1);
+
+        private CachedSerial(final int serialId, final SerialEntry serialEntry) {
+            this.serialId = serialId;
+            this.serialEntry = serialEntry;
+        }
+
+        public int getSerialId() {
+            return serialId;
+        }
+
+        public SerialEntry getSerialEntry() {
+            return serialEntry;
+        }
+
+        /**
+         * @return the dummified object as written to clients using NRTM <code>version</code>, or null if the object
+         * is not sent to them.
+         */
+        @CheckForNull
+        public String getPayload(final int version) {
+            if (version < 0 || version >= payloads.length()) {
+                return render(version);
+            }
+
+            Optional<String> payload = payloads.get(version);
+            if (payload == null) {
+                // rendering twice on a race is harmless
+                payload = Optional.ofNullable(render(version));
+                payloads.set(version, payload);
+            }
+
+            return payload.orElse(null);
+        }
+
+        @CheckForNull
+        private String render(final int version) {
+            final RpslObject rpslObject = serialEntry.getRpslObject();
+            if (!dummifier.isAllowed(version, rpslObject)) {
+                return null;
+            }
+
+            return dummifier.dummify(version, rpslObject).toString().trim();
+        }
+    }
+}
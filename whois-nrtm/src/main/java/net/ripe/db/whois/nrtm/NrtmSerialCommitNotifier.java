@@ -0,0 +1,36 @@
+package net.ripe.db.whois.nrtm;
+
+import net.ripe.db.whois.common.dao.SerialChangeListener;
+import net.ripe.db.whois.common.source.SourceConfiguration;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Notifies keepalive NRTM streams of serials committed in this process, so they do not have to wait for the next
+ * scheduled update. Serials committed elsewhere are still picked up on the keepalive schedule.
+ */
+@Component
+public class NrtmSerialCommitNotifier implements SerialChangeListener {
+    private final Set<Runnable> streams = ConcurrentHashMap.newKeySet();
+
+    void register(final Runnable stream) {
+        streams.add(stream);
+    }
+
+    void unregister(final Runnable stream) {
+        streams.remove(stream);
+    }
+
+    @Override
+    public void serialsCommitted(final SourceConfiguration sourceConfiguration) {
+        if (sourceConfiguration.getSource().isGrs()) {
+            return;
+        }
+
+        for (final Runnable stream : streams) {
+            stream.run();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package net.ripe.db.whois.nrtm.client;
 
 
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Uninterruptibles;
 import net.ripe.db.whois.common.MaintenanceMode;
 import net.ripe.db.whois.common.aspects.RetryFor;
@@ -17,15 +18,21 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.CheckForNull;
 import java.io.IOException;
 import java.net.UnknownHostException;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.UnresolvedAddressException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -40,18 +47,24 @@ class NrtmClientFactory {
     private final RpslObjectUpdateDao rpslObjectUpdateDao;
     private final NrtmClientDao nrtmClientDao;
     private final MaintenanceMode maintenanceMode;
+    private final int batchSize;
+    private final long batchMillis;
 
     @Autowired
     public NrtmClientFactory(final SourceContext sourceContext,
                              final SerialDao serialDao,
                              final RpslObjectUpdateDao rpslObjectUpdateDao,
                              final NrtmClientDao nrtmClientDao,
-                             final MaintenanceMode maintenanceMode) {
+                             final MaintenanceMode maintenanceMode,
+                             @Value("${nrtm.import.batch.size:1}") final int batchSize,
+                             @Value("${nrtm.import.batch.millis:1000}") final long batchMillis) {
         this.sourceContext = sourceContext;
         this.serialDao = serialDao;
         this.rpslObjectUpdateDao = rpslObjectUpdateDao;
         this.nrtmClientDao = nrtmClientDao;
         this.maintenanceMode = maintenanceMode;
+        this.batchSize = Math.max(batchSize, 1);
+        this.batchMillis = batchMillis;
     }
 
     public NrtmClient createNrtmClient(final NrtmSource nrtmSource) {
@@ -174,26 +187,67 @@ class NrtmClientFactory {
             writer.writeLine(line);
         }
 
+        /**
+         * Serials are applied in batches of up to <code>batchSize</code>, each in a single transaction. A batch is
+         * applied as soon as it is full, has been collected for <code>batchMillis</code>, or no more serials are
+         * available without waiting for the server, so a trickle of serials is applied immediately.
+         */
         private void readUpdates() throws IOException {
+            final List<SerialUpdate> batch = Lists.newArrayListWithCapacity(batchSize);
+            long batchStarted = 0;
+
             while (true) {
-                if (maintenanceMode.allowUpdate()) {
-                    final OperationSerial operationSerial = readOperationAndSerial();
-                    final RpslObject object = readObject();
-                    update(operationSerial.getOperation(), operationSerial.getSerial(), object);
-                } else {
+                if (!maintenanceMode.allowUpdate()) {
                     Uninterruptibles.sleepUninterruptibly(1, TimeUnit.SECONDS);
+                    continue;
+                }
+
+                if (!batch.isEmpty() && (batch.size() >= batchSize || System.currentTimeMillis() - batchStarted >= batchMillis || !reader.isReady())) {
+                    update(batch);
+                    batch.clear();
+                }
+
+                final OperationSerial operationSerial = readOperationAndSerial();
+                if (operationSerial == null) {
+                    continue;
+                }
+
+                final RpslObject object = readObject();
+                if (batch.isEmpty()) {
+                    batchStarted = System.currentTimeMillis();
                 }
+
+                batch.add(new SerialUpdate(operationSerial.getOperation(), operationSerial.getSerial(), object));
             }
         }
 
         public void update(final Operation operation, final int serialId, final RpslObject rpslObject) {
+            update(Collections.singletonList(new SerialUpdate(operation, serialId, rpslObject)));
+        }
+
+        /**
+         * Apply consecutive serials in serial order, all or none. Serials that have already been applied (e.g. by an
+         * earlier connection) are skipped, so a batch that is rolled back is read and applied again after reconnecting.
+         */
+        @Transactional
+        private void update(final List<SerialUpdate> updates) {
+            final Map<Integer, Integer> appliedSerials = nrtmClientDao.getObjectIdsBySerial(
+                    updates.get(0).getSerialId(),
+                    updates.get(updates.size() - 1).getSerialId());
+
+            for (final SerialUpdate update : updates) {
+                update(update.getOperation(), update.getSerialId(), update.getRpslObject(), appliedSerials);
+            }
+        }
+
+        private void update(final Operation operation, final int serialId, final RpslObject rpslObject, final Map<Integer, Integer> appliedSerials) {
             try {
                 switch (operation) {
                     case UPDATE:
                         try {
                             final RpslObjectUpdateInfo updateInfo = rpslObjectUpdateDao.lookupObject(rpslObject.getType(), rpslObject.getKey().toString());
 
-                            if (!nrtmClientDao.objectExistsWithSerial(serialId, updateInfo.getObjectId())) {
+                            if (!isApplied(appliedSerials, serialId, updateInfo)) {
                                 nrtmClientDao.updateObject(rpslObject, updateInfo, serialId);
                             } else {
                                 LOGGER.warn("Already applied serial {}", serialId);
@@ -206,7 +260,7 @@ class NrtmClientFactory {
                     case DELETE:
                         try {
                             final RpslObjectUpdateInfo updateInfo = rpslObjectUpdateDao.lookupObject(rpslObject.getType(), rpslObject.getKey().toString());
-                            if (!nrtmClientDao.objectExistsWithSerial(serialId, updateInfo.getObjectId())) {
+                            if (!isApplied(appliedSerials, serialId, updateInfo)) {
                                 nrtmClientDao.deleteObject(updateInfo, serialId);
                             } else {
                                 LOGGER.warn("Already applied serial {}", serialId);
@@ -222,15 +276,20 @@ class NrtmClientFactory {
             }
         }
 
+        private boolean isApplied(final Map<Integer, Integer> appliedSerials, final int serialId, final RpslObjectUpdateInfo updateInfo) {
+            final Integer objectId = appliedSerials.get(serialId);
+            return objectId != null && objectId == updateInfo.getObjectId();
+        }
+
         private final Pattern OPERATION_AND_SERIAL_PATTERN = Pattern.compile("^(ADD|DEL)[ ](\\d+)$");
 
+        @CheckForNull
         private OperationSerial readOperationAndSerial() throws IOException {
-
-            Matcher matcher;
-            do {
-                final String line = readLineWithExpected("");
-                matcher = OPERATION_AND_SERIAL_PATTERN.matcher(line);
-            } while (!matcher.find());
+            final String line = readLineWithExpected("");
+            final Matcher matcher = OPERATION_AND_SERIAL_PATTERN.matcher(line);
+            if (!matcher.find()) {
+                return null;
+            }
 
             final Operation operation = Operation.getByName(matcher.group(1));
             final String serial = matcher.group(2);
@@ -265,5 +324,29 @@ class NrtmClientFactory {
                 return serial;
             }
         }
+
+        private final class SerialUpdate {
+            private final Operation operation;
+            private final int serialId;
+            private final RpslObject rpslObject;
+
+            private SerialUpdate(final Operation operation, final int serialId, final RpslObject rpslObject) {
+                this.operation = operation;
+                this.serialId = serialId;
+                this.rpslObject = rpslObject;
+            }
+
+            private Operation getOperation() {
+                return operation;
+            }
+
+            private int getSerialId() {
+                return serialId;
+            }
+
+            private RpslObject getRpslObject() {
+                return rpslObject;
+            }
+        }
     }
 }
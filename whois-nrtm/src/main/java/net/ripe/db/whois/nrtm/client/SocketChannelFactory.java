@@ -34,33 +34,50 @@ public class SocketChannelFactory {
 
         public Reader(final SocketChannel socketChannel) {
             this.socketChannel = socketChannel;
+            // nothing buffered yet
+            buffer.flip();
         }
 
         public String readLine() throws IOException {
             final StringBuilder builder = new StringBuilder();
 
-            if (buffer.position() > 0) {
-                if (readLineFromBuffer(builder)) {
-                    return builder.toString();
-                }
-            }
+            while (!readLineFromBuffer(builder)) {
+                buffer.clear();
 
-            for (;;) {
-                final int length = socketChannel.read(buffer);
-                if (length == 0) {
-                    continue;
-                }
+                int length;
+                do {
+                    length = socketChannel.read(buffer);
+                } while (length == 0);
+
+                buffer.flip();
 
                 if (length == -1) {
                     throw new IOException("End of stream");
                 }
+            }
 
-                buffer.flip();
+            return builder.toString();
+        }
 
+        /**
+         * @return true if {@link #readLine()} can make progress without waiting for the other side, i.e. if data is
+         * buffered or already available on the socket.
+         */
+        public boolean isReady() throws IOException {
+            if (buffer.hasRemaining()) {
+                return true;
+            }
 
-                if (readLineFromBuffer(builder)) {
-                    return builder.toString();
-                }
+            socketChannel.configureBlocking(false);
+            try {
+                buffer.clear();
+                final int length = socketChannel.read(buffer);
+                buffer.flip();
+
+                // end of stream is reported by the next readLine()
+                return length != 0;
+            } finally {
+                socketChannel.configureBlocking(true);
             }
         }
 
@@ -68,21 +85,14 @@ public class SocketChannelFactory {
             while (buffer.hasRemaining()) {
                 byte next = buffer.get();
                 if (next == '\n') {
-                    if (buffer.position() == buffer.limit()) {
-                        // no more bytes in buffer
-                        buffer.clear();
-                    }
                     return true;
                 }
 
                 builder.append((char)next);
             }
 
-            // no more bytes in buffer
-            buffer.clear();
             return false;
         }
-
     }
 
     public static class Writer {
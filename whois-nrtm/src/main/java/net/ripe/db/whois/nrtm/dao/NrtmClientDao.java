@@ -3,6 +3,8 @@ package net.ripe.db.whois.nrtm.dao;
 import net.ripe.db.whois.common.dao.RpslObjectUpdateInfo;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 
+import java.util.Map;
+
 public interface NrtmClientDao {
 
     RpslObjectUpdateInfo createObject(RpslObject object, int serialId);
@@ -12,4 +14,10 @@ public interface NrtmClientDao {
     void deleteObject(RpslObjectUpdateInfo info, int serialId);
 
     boolean objectExistsWithSerial(int serialId, int objectId);
+
+    /**
+     * @return the object id of every serial between <code>serialBegin</code> and <code>serialEnd</code> (inclusive)
+     * that has already been applied, keyed by serial id.
+     */
+    Map<Integer, Integer> getObjectIdsBySerial(int serialBegin, int serialEnd);
 }
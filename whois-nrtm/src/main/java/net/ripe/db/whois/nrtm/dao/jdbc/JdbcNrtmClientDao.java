@@ -1,16 +1,22 @@
 package net.ripe.db.whois.nrtm.dao.jdbc;
 
+import com.google.common.collect.Maps;
 import net.ripe.db.whois.common.DateTimeProvider;
 import net.ripe.db.whois.common.dao.RpslObjectUpdateInfo;
+import net.ripe.db.whois.common.dao.jdbc.SerialChangePublisher;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.nrtm.dao.NrtmClientDao;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
 
 import static net.ripe.db.whois.common.dao.jdbc.JdbcRpslObjectOperations.copyToHistoryAndUpdateSerials;
 import static net.ripe.db.whois.common.dao.jdbc.JdbcRpslObjectOperations.deleteFromLastAndSetSerials;
@@ -25,11 +31,15 @@ public class JdbcNrtmClientDao implements NrtmClientDao {
 
     private final JdbcTemplate jdbcTemplate;
     private final DateTimeProvider dateTimeProvider;
+    private final SerialChangePublisher serialChangePublisher;
 
     @Autowired
-    public JdbcNrtmClientDao(@Qualifier("sourceAwareDataSource") final DataSource dataSource, final DateTimeProvider dateTimeProvider) {
+    public JdbcNrtmClientDao(@Qualifier("sourceAwareDataSource") final DataSource dataSource,
+                             final DateTimeProvider dateTimeProvider,
+                             final SerialChangePublisher serialChangePublisher) {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
         this.dateTimeProvider = dateTimeProvider;
+        this.serialChangePublisher = serialChangePublisher;
     }
 
     @Override
@@ -37,6 +47,7 @@ public class JdbcNrtmClientDao implements NrtmClientDao {
         final RpslObjectUpdateInfo rpslObjectInfo = insertIntoLastAndSetSerials(dateTimeProvider, jdbcTemplate, object, serialId);
 
         insertIntoTables(jdbcTemplate, rpslObjectInfo, object);
+        serialChangePublisher.serialsChanged();
         return rpslObjectInfo;
     }
 
@@ -46,6 +57,7 @@ public class JdbcNrtmClientDao implements NrtmClientDao {
         insertIntoTables(jdbcTemplate, rpslObjectInfo, object);
         copyToHistoryAndUpdateSerials(jdbcTemplate, rpslObjectInfo);
         final int newSequenceId = updateLastAndSetSerials(dateTimeProvider, jdbcTemplate, rpslObjectInfo, object, serialId);
+        serialChangePublisher.serialsChanged();
         return new RpslObjectUpdateInfo(rpslObjectInfo.getObjectId(), newSequenceId, rpslObjectInfo.getObjectType(), rpslObjectInfo.getKey());
     }
 
@@ -54,6 +66,7 @@ public class JdbcNrtmClientDao implements NrtmClientDao {
         deleteFromTables(jdbcTemplate, rpslObjectInfo);
         copyToHistoryAndUpdateSerials(jdbcTemplate, rpslObjectInfo);
         deleteFromLastAndSetSerials(dateTimeProvider, jdbcTemplate, rpslObjectInfo, serialId);
+        serialChangePublisher.serialsChanged();
     }
 
     @Override
@@ -64,4 +77,19 @@ public class JdbcNrtmClientDao implements NrtmClientDao {
                 serialId, objectId);
         return found > 0;
     }
+
+    @Override
+    public Map<Integer, Integer> getObjectIdsBySerial(final int serialBegin, final int serialEnd) {
+        final Map<Integer, Integer> objectIds = Maps.newHashMap();
+        jdbcTemplate.query(
+                "SELECT serial_id, object_id FROM serials WHERE serial_id BETWEEN ? AND ?",
+                new RowCallbackHandler() {
+                    @Override
+                    public void processRow(final ResultSet rs) throws SQLException {
+                        objectIds.put(rs.getInt(1), rs.getInt(2));
+                    }
+                },
+                serialBegin, serialEnd);
+        return objectIds;
+    }
 }
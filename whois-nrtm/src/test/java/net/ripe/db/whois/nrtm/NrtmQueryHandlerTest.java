@@ -1,12 +1,15 @@
 package net.ripe.db.whois.nrtm;
 
-import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.common.collect.Lists;
 import net.ripe.db.whois.common.dao.SerialDao;
 import net.ripe.db.whois.common.domain.serials.Operation;
 import net.ripe.db.whois.common.domain.serials.SerialEntry;
 import net.ripe.db.whois.common.domain.serials.SerialRange;
 import net.ripe.db.whois.common.rpsl.DummifierNrtm;
 import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.common.source.Source;
+import net.ripe.db.whois.common.source.SourceConfiguration;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelException;
 import org.jboss.netty.channel.ChannelFuture;
@@ -16,6 +19,7 @@ import org.jboss.netty.channel.MessageEvent;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatcher;
 import org.mockito.InOrder;
 import org.mockito.Mock;
@@ -25,20 +29,24 @@ import org.mockito.stubbing.Answer;
 import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.scheduling.TaskScheduler;
 
+import javax.sql.DataSource;
 import java.net.InetSocketAddress;
+import java.util.Date;
+import java.util.List;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
 import static net.ripe.db.whois.nrtm.NrtmQueryHandlerTest.StringMatcher.instanceofString;
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -67,6 +75,9 @@ public class NrtmQueryHandlerTest {
     private static final RpslObject inetnum = RpslObject.parse("inetnum:10.0.0.1");
     private static final RpslObject person = RpslObject.parse("person:one\nnic-hdl:ONE");
 
+    private final List<SerialEntry> serialEntries = Lists.newArrayList();
+    private final NrtmSerialCommitNotifier serialCommitNotifier = new NrtmSerialCommitNotifier();
+
     private NrtmQueryHandler subject;
 
     @Before
@@ -74,12 +85,27 @@ public class NrtmQueryHandlerTest {
         when(contextMock.getChannel()).thenReturn(channelMock);
         when(channelMock.getRemoteAddress()).thenReturn(new InetSocketAddress(0));
         when(channelMock.isOpen()).thenReturn(true);
+        when(channelMock.isWritable()).thenReturn(true);
         when(channelMock.write(any())).thenReturn(channelFutureMock);
         when(serialDaoMock.getSerials()).thenReturn(new SerialRange(1, 2));
-        when(serialDaoMock.getByIdForNrtm(1)).thenReturn(new SerialEntry(Operation.UPDATE, true, 1, 1000, 1000, inetnum.toByteArray()));
+        serialEntries.add(SerialEntry.createSerialEntryWithoutTimestamps(1, Operation.UPDATE, true, 1, inetnum.toByteArray()));
+        serialEntries.add(SerialEntry.createSerialEntryWithoutTimestamps(2, Operation.UPDATE, true, 2, person.toByteArray()));
+        when(serialDaoMock.getByIdRangeForNrtm(anyInt(), anyInt())).thenAnswer(new Answer<List<SerialEntry>>() {
+            @Override
+            public List<SerialEntry> answer(InvocationOnMock invocation) throws Throwable {
+                final int serialBegin = (Integer) invocation.getArguments()[0];
+                final int serialEnd = (Integer) invocation.getArguments()[1];
+                final List<SerialEntry> result = Lists.newArrayList();
+                for (final SerialEntry serialEntry : serialEntries) {
+                    if (serialEntry.getSerialId() >= serialBegin && serialEntry.getSerialId() <= serialEnd) {
+                        result.add(serialEntry);
+                    }
+                }
+                return result;
+            }
+        });
         when(dummifierMock.isAllowed(NrtmServer.NRTM_VERSION, inetnum)).thenReturn(true);
         when(dummifierMock.dummify(NrtmServer.NRTM_VERSION, inetnum)).thenReturn(inetnum);
-        when(serialDaoMock.getByIdForNrtm(2)).thenReturn(new SerialEntry(Operation.UPDATE, true, 2, 1000, 1000, person.toByteArray()));
         when(dummifierMock.isAllowed(NrtmServer.NRTM_VERSION, person)).thenReturn(false);
 
         when(mySchedulerMock.scheduleAtFixedRate(any(Runnable.class), anyLong())).thenAnswer(new Answer<ScheduledFuture<?>>() {
@@ -91,8 +117,7 @@ public class NrtmQueryHandlerTest {
             }
         });
 
-        subject = new NrtmQueryHandler(serialDaoMock, dummifierMock, mySchedulerMock, nrtmLogMock, VERSION, SOURCE, NONAUTH_SOURCE, UPDATE_INTERVAL, KEEPALIVE_END_OF_STREAM);
-        NrtmQueryHandler.PendingWrites.add(channelMock);
+        subject = new NrtmQueryHandler(serialDaoMock, new NrtmSerialCache(dummifierMock, 100), mySchedulerMock, serialCommitNotifier, nrtmLogMock, VERSION, SOURCE, NONAUTH_SOURCE, UPDATE_INTERVAL, KEEPALIVE_END_OF_STREAM);
     }
 
     @Test
@@ -168,7 +193,7 @@ public class NrtmQueryHandlerTest {
 
     @Test
     public void keepaliveEndOfStreamIndicator() {
-        subject = new NrtmQueryHandler(serialDaoMock, dummifierMock, mySchedulerMock, nrtmLogMock, VERSION, SOURCE, NONAUTH_SOURCE, UPDATE_INTERVAL, true);
+        subject = new NrtmQueryHandler(serialDaoMock, new NrtmSerialCache(dummifierMock, 100), mySchedulerMock, serialCommitNotifier, nrtmLogMock, VERSION, SOURCE, NONAUTH_SOURCE, UPDATE_INTERVAL, true);
 
         when(messageEventMock.getMessage()).thenReturn("-g RIPE:3:1-LAST -k");
 
@@ -255,53 +280,76 @@ public class NrtmQueryHandlerTest {
     }
 
     @Test
-    public void throttleChannelKeepaliveQuery() {
-        setPending(channelMock);
+    public void throttleChannelKeepaliveQuery() throws Exception {
+        when(channelMock.isWritable()).thenReturn(false);
         when(messageEventMock.getMessage()).thenReturn("-g RIPE:3:1-LAST -k");
 
-        messageReceived();
-        unsetPending(channelMock);
+        subject.messageReceived(contextMock, messageEventMock);
 
         verify(channelMock).write("%START Version: 3 RIPE 1-2\n\n");
         verify(channelMock, atMost(1)).write(any(String.class));
         verify(mySchedulerMock).scheduleAtFixedRate(any(Runnable.class), anyLong());
+
+        when(channelMock.isWritable()).thenReturn(true);
+        subject.channelInterestChanged(contextMock, channelStateEventMock);
+
+        verify(channelMock).write("ADD 1\n\n");
+        verify(channelMock).write(inetnum.toString() + "\n");
+    }
+
+    @Test
+    public void throttleChannelMirrorQuery() throws Exception {
+        when(channelMock.isWritable()).thenReturn(false);
+        when(messageEventMock.getMessage()).thenReturn("-g RIPE:3:1-2");
+
+        subject.messageReceived(contextMock, messageEventMock);
+
+        verify(channelMock, times(1)).write(argThat(instanceofString()));
+        verify(channelMock, never()).write(ChannelBuffers.EMPTY_BUFFER);
+
+        when(channelMock.isWritable()).thenReturn(true);
+        subject.channelInterestChanged(contextMock, channelStateEventMock);
+
+        verify(channelMock).write("ADD 1\n\n");
+        verify(channelMock).write("%END RIPE\n\n");
+        verify(channelMock).write(ChannelBuffers.EMPTY_BUFFER);
+    }
+
+    @Test
+    public void keepaliveSerialsCommitted() {
+        when(messageEventMock.getMessage()).thenReturn("-g RIPE:3:1-LAST -k");
+        subject.messageReceived(contextMock, messageEventMock);
+
+        final RpslObject route = RpslObject.parse("route: 10.0.0.0/8\norigin: AS3333");
+        serialEntries.add(SerialEntry.createSerialEntryWithoutTimestamps(3, Operation.UPDATE, true, 3, route.toByteArray()));
+        when(serialDaoMock.getSerials()).thenReturn(new SerialRange(1, 3));
+        when(dummifierMock.isAllowed(NrtmServer.NRTM_VERSION, route)).thenReturn(true);
+        when(dummifierMock.dummify(NrtmServer.NRTM_VERSION, route)).thenReturn(route);
+
+        serialCommitNotifier.serialsCommitted(new SourceConfiguration(Source.master(SOURCE), mock(DataSource.class)));
+
+        final ArgumentCaptor<Runnable> refresh = ArgumentCaptor.forClass(Runnable.class);
+        verify(mySchedulerMock).schedule(refresh.capture(), any(Date.class));
+        refresh.getValue().run();
+
+        verify(channelMock).write("ADD 3\n\n");
+        verify(channelMock).write(route.toString() + "\n");
     }
 
     // TODO: [ES] slow unit test (takes ~10s)
     @Test
     public void retryForAnnotation() {
-        when(serialDaoMock.getByIdForNrtm(any(Integer.class))).thenThrow(CannotGetJdbcConnectionException.class);
+        when(serialDaoMock.getByIdRangeForNrtm(anyInt(), anyInt())).thenThrow(CannotGetJdbcConnectionException.class);
         when(messageEventMock.getMessage()).thenReturn("-g RIPE:3:1-LAST");
 
         try {
             subject.messageReceived(contextMock, messageEventMock);
             fail();
         } catch (CannotGetJdbcConnectionException e) {
-            verify(serialDaoMock, times(10)).getByIdForNrtm(1);
+            verify(serialDaoMock, times(10)).getByIdRangeForNrtm(1, 2);
         }
     }
 
-    private void setPending(final Channel channelMock) {
-        NrtmQueryHandler.PendingWrites.add(channelMock);
-        while (!NrtmQueryHandler.PendingWrites.isPending(channelMock)) {
-            NrtmQueryHandler.PendingWrites.increment(channelMock);
-        }
-    }
-
-    private void unsetPending(final Channel channelMock) {
-        Uninterruptibles.sleepUninterruptibly(1, TimeUnit.SECONDS);
-        NrtmQueryHandler.PendingWrites.decrement(channelMock);
-    }
-
-    private void messageReceived() {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                subject.messageReceived(contextMock, messageEventMock);
-            }
-        }).start();
-    }
-
     /**
      * Check that an argument is an instanceof String.
      * any(String.class) is also matched by Object.class, if the method accepts Object.
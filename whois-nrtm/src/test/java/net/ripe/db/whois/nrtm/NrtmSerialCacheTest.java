@@ -0,0 +1,100 @@
+package net.ripe.db.whois.nrtm;
+
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.domain.serials.Operation;
+import net.ripe.db.whois.common.domain.serials.SerialEntry;
+import net.ripe.db.whois.common.rpsl.Dummifier;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NrtmSerialCacheTest {
+    @Mock Dummifier dummifier;
+
+    private final RpslObject inetnum = RpslObject.parse("inetnum: 10.0.0.0 - 10.0.0.255\nsource: TEST");
+    private final RpslObject person = RpslObject.parse("person: one\nnic-hdl: ONE-TEST\nsource: TEST");
+
+    private NrtmSerialCache subject;
+
+    @Before
+    public void setup() {
+        subject = new NrtmSerialCache(dummifier, 10);
+
+        when(dummifier.isAllowed(NrtmServer.NRTM_VERSION, inetnum)).thenReturn(true);
+        when(dummifier.dummify(NrtmServer.NRTM_VERSION, inetnum)).thenReturn(inetnum);
+        when(dummifier.isAllowed(NrtmServer.NRTM_VERSION, person)).thenReturn(false);
+    }
+
+    @Test
+    public void range_not_cached() {
+        assertThat(subject.getRange(1, 3), is(nullValue()));
+    }
+
+    @Test
+    public void range_cached() {
+        subject.putRange(Lists.newArrayList(serialEntry(1, inetnum), serialEntry(2, person), serialEntry(3, inetnum)));
+
+        final List<NrtmSerialCache.CachedSerial> cachedSerials = subject.getRange(1, 3);
+        assertThat(cachedSerials, hasSize(3));
+        assertThat(cachedSerials.get(0).getSerialId(), is(1));
+        assertThat(cachedSerials.get(2).getSerialId(), is(3));
+
+        assertThat(subject.getRange(2, 2), hasSize(1));
+        assertThat(subject.getRange(3, 4), is(nullValue()));
+    }
+
+    @Test
+    public void missing_serials_not_cached() {
+        subject.putRange(Lists.newArrayList(serialEntry(2, inetnum), serialEntry(4, person)));
+
+        assertThat(subject.getRange(2, 2), hasSize(1));
+        assertThat(subject.getRange(1, 2), is(nullValue()));
+        assertThat(subject.getRange(2, 4), is(nullValue()));
+
+        // serial 3 committed after serial 4
+        subject.putRange(Lists.newArrayList(serialEntry(3, inetnum), serialEntry(4, person)));
+
+        assertThat(subject.getRange(2, 4), hasSize(3));
+    }
+
+    @Test
+    public void overwritten_serials_not_cached() {
+        subject.putRange(Lists.newArrayList(serialEntry(1, inetnum), serialEntry(2, inetnum)));
+        subject.putRange(Lists.newArrayList(serialEntry(11, inetnum)));
+
+        assertThat(subject.getRange(1, 1), is(nullValue()));
+        assertThat(subject.getRange(2, 2), hasSize(1));
+        assertThat(subject.getRange(2, 11), is(nullValue()));
+    }
+
+    @Test
+    public void payload_rendered_once() {
+        final List<NrtmSerialCache.CachedSerial> cachedSerials = subject.putRange(Lists.newArrayList(serialEntry(1, inetnum), serialEntry(2, person)));
+
+        assertThat(cachedSerials.get(0).getPayload(NrtmServer.NRTM_VERSION), is(inetnum.toString().trim()));
+        assertThat(subject.getRange(1, 1).get(0).getPayload(NrtmServer.NRTM_VERSION), is(inetnum.toString().trim()));
+        assertThat(cachedSerials.get(1).getPayload(NrtmServer.NRTM_VERSION), is(nullValue()));
+        assertThat(cachedSerials.get(1).getPayload(NrtmServer.NRTM_VERSION), is(nullValue()));
+
+        verify(dummifier, times(1)).dummify(NrtmServer.NRTM_VERSION, inetnum);
+        verify(dummifier, times(1)).isAllowed(NrtmServer.NRTM_VERSION, person);
+    }
+
+    private static SerialEntry serialEntry(final int serialId, final RpslObject rpslObject) {
+        return SerialEntry.createSerialEntryWithoutTimestamps(serialId, Operation.UPDATE, true, serialId, rpslObject.toByteArray());
+    }
+}
@@ -50,6 +50,17 @@ public class SocketChannelFactoryTest {
         assertThat(reader.readLine(), is("ccc"));
     }
 
+    @Test
+    public void ready_while_lines_buffered() throws Exception {
+        mockRead("aaa\nbbb\n");
+
+        SocketChannelFactory.Reader reader = SocketChannelFactory.createReader(socketChannel);
+
+        assertThat(reader.readLine(), is("aaa"));
+        assertThat(reader.isReady(), is(true));
+        assertThat(reader.readLine(), is("bbb"));
+    }
+
     @Test
     public void write_line() throws Exception {
         mockWrite("aaa\n");
@@ -70,6 +70,22 @@ public class JdbcNrtmClientDaoIntegrationTest extends AbstractDaoIntegrationTest
         assertThat(subject.objectExistsWithSerial(2462345, object.getObjectId()), is(true));
     }
 
+    @Test
+    public void getObjectIdsBySerial() {
+        final RpslObject object = databaseHelper.updateObject(databaseHelper.addObject(RpslObject.parse("aut-num: AS2345")));
+
+        assertThat(subject.getObjectIdsBySerial(2462345, 2462346).isEmpty(), is(true));
+
+        databaseHelper.getWhoisTemplate().update("" +
+                "INSERT INTO serials(serial_id, object_id, sequence_id, atlast, operation) " +
+                "VALUES (2462345, ?, 2, 1, ?)",
+                object.getObjectId(), Operation.UPDATE.getCode());
+
+        final Map<Integer, Integer> objectIds = subject.getObjectIdsBySerial(2462345, 2462346);
+        assertThat(objectIds.size(), is(1));
+        assertThat(objectIds.get(2462345), is(object.getObjectId()));
+    }
+
     @Test
     public void deleteObject() {
         final RpslObject object = databaseHelper.updateObject(databaseHelper.addObject(RpslObject.parse("person: Test Person\nnic-hdl: TP1-TEST")));
@@ -0,0 +1,173 @@
+package net.ripe.db.whois.nrtm.integration;
+
+import com.jayway.awaitility.Awaitility;
+import com.jayway.awaitility.Duration;
+import net.ripe.db.whois.common.IntegrationTest;
+import net.ripe.db.whois.common.MaintenanceMode;
+import net.ripe.db.whois.common.dao.SerialDao;
+import net.ripe.db.whois.common.dao.jdbc.DatabaseHelper;
+import net.ripe.db.whois.common.rpsl.AttributeType;
+import net.ripe.db.whois.common.rpsl.ObjectType;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.common.source.Source;
+import net.ripe.db.whois.nrtm.NrtmChannelsRegistry;
+import net.ripe.db.whois.nrtm.NrtmServer;
+import net.ripe.db.whois.nrtm.client.NrtmImporter;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+
+import static net.ripe.db.whois.common.domain.CIString.ciString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@Category(IntegrationTest.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class NrtmClientBatchTestIntegration extends AbstractNrtmIntegrationBase {
+
+    private static final RpslObject MNTNER = RpslObject.parse("" +
+            "mntner: OWNER-MNT\n" +
+            "source: TEST");
+
+    private static final RpslObject TEST1_MNT = RpslObject.parse("" +
+            "mntner: TEST1-MNT\n" +
+            "descr: creation\n" +
+            "source: TEST");
+
+    private static final RpslObject TEST1_MNT_UPDATED = RpslObject.parse("" +
+            "mntner: TEST1-MNT\n" +
+            "descr: modification\n" +
+            "source: TEST");
+
+    private static final RpslObject TEST2_MNT = RpslObject.parse("" +
+            "mntner: TEST2-MNT\n" +
+            "source: TEST");
+
+    private static final RpslObject TEST3_MNT = RpslObject.parse("" +
+            "mntner: TEST3-MNT\n" +
+            "source: TEST");
+
+    @Autowired private NrtmImporter nrtmImporter;
+    @Autowired private NrtmChannelsRegistry nrtmChannelsRegistry;
+    @Autowired private MaintenanceMode maintenanceMode;
+    @Autowired private SerialDao serialDao;
+
+    @BeforeClass
+    public static void beforeClass() {
+        DatabaseHelper.addGrsDatabases("1-GRS");
+        System.setProperty("nrtm.update.interval", "1");
+        System.setProperty("nrtm.enabled", "true");
+        System.setProperty("nrtm.import.sources", "1-GRS");
+        System.setProperty("nrtm.import.enabled", "true");
+        System.setProperty("nrtm.import.batch.size", "3");
+        System.setProperty("nrtm.import.batch.millis", "10000");
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        System.clearProperty("nrtm.import.batch.size");
+        System.clearProperty("nrtm.import.batch.millis");
+    }
+
+    @Before
+    public void before() {
+        databaseHelper.addObject(MNTNER);
+        databaseHelper.addObjectToSource("1-GRS", MNTNER);
+
+        nrtmServer.start();
+    }
+
+    @After
+    public void after() {
+        nrtmImporter.stop(true);
+        nrtmServer.stop(true);
+    }
+
+    @Test
+    public void batches_spanning_commits_applied() {
+        // 5 serials are applied as a batch of 3 and a batch of 2
+        databaseHelper.addObject(TEST1_MNT);
+        databaseHelper.addObject(TEST2_MNT);
+        databaseHelper.updateObject(TEST1_MNT_UPDATED);
+        databaseHelper.addObject(TEST3_MNT);
+        databaseHelper.deleteObject(TEST2_MNT);
+
+        startNrtmImporterAndApplyUpdates();
+
+        Awaitility.waitAtMost(Duration.FIVE_SECONDS).until(() -> getGrsSerialEnd() == serialDao.getSerials().getEnd());
+
+        objectExists(ObjectType.MNTNER, "TEST1-MNT", true);
+        objectExists(ObjectType.MNTNER, "TEST2-MNT", false);
+        objectExists(ObjectType.MNTNER, "TEST3-MNT", true);
+        assertThat(lookupGrsObject(ObjectType.MNTNER, "TEST1-MNT").getValueForAttribute(AttributeType.DESCR), is(ciString("modification")));
+    }
+
+    @Test
+    public void failure_in_batch_rolled_back_and_resumed() {
+        // the client never sees TEST2-MNT being added, so deleting it fails in the middle of the next batch
+        final RpslObject missing = databaseHelper.addObject(TEST2_MNT);
+        databaseHelper.getWhoisTemplate().update("delete from serials where object_id = ?", missing.getObjectId());
+
+        databaseHelper.addObject(TEST1_MNT);
+        databaseHelper.deleteObject(TEST2_MNT);
+        databaseHelper.addObject(TEST3_MNT);
+
+        final int grsSerialEnd = getGrsSerialEnd();
+
+        startNrtmImporterAndApplyUpdates();
+
+        // the client stops and disconnects, and the serials before the failure are rolled back
+        Awaitility.waitAtMost(Duration.FIVE_SECONDS).until(() -> nrtmChannelsRegistry.size() == 0);
+
+        assertThat(getGrsSerialEnd(), is(grsSerialEnd));
+        objectExists(ObjectType.MNTNER, "TEST1-MNT", false);
+        objectExists(ObjectType.MNTNER, "TEST3-MNT", false);
+
+        // after repairing the mirror, the client resumes from the first serial of the failed batch
+        databaseHelper.addObjectToSource("1-GRS", TEST2_MNT);
+        nrtmImporter.stop(true);
+        nrtmImporter.start();
+
+        Awaitility.waitAtMost(Duration.FIVE_SECONDS).until(() -> getGrsSerialEnd() == serialDao.getSerials().getEnd());
+
+        objectExists(ObjectType.MNTNER, "TEST1-MNT", true);
+        objectExists(ObjectType.MNTNER, "TEST2-MNT", false);
+        objectExists(ObjectType.MNTNER, "TEST3-MNT", true);
+    }
+
+    // hold back the client until all serials are available, so batches are filled independent of timing
+    private void startNrtmImporterAndApplyUpdates() {
+        maintenanceMode.set("READONLY,READONLY");
+
+        System.setProperty("nrtm.import.1-GRS.source", "TEST");
+        System.setProperty("nrtm.import.1-GRS.host", "localhost");
+        System.setProperty("nrtm.import.1-GRS.port", Integer.toString(NrtmServer.getPort()));
+        nrtmImporter.start();
+
+        Awaitility.waitAtMost(Duration.FIVE_SECONDS).until(() -> nrtmChannelsRegistry.size() == 1);
+        maintenanceMode.set("FULL,FULL");
+    }
+
+    private int getGrsSerialEnd() {
+        try {
+            sourceContext.setCurrent(Source.master("1-GRS"));
+            return serialDao.getSerials().getEnd();
+        } finally {
+            sourceContext.removeCurrentSource();
+        }
+    }
+
+    private RpslObject lookupGrsObject(final ObjectType type, final String key) {
+        try {
+            sourceContext.setCurrent(Source.master("1-GRS"));
+            return databaseHelper.lookupObject(type, key);
+        } finally {
+            sourceContext.removeCurrentSource();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package net.ripe.db.whois.query.handler;
+
+/**
+ * Orders the accounting of personal objects of queries executed concurrently on the same connection, so each query
+ * sees the personal objects accounted by the queries received before it.
+ */
+public interface AccountingTurn {
+    AccountingTurn NONE = new AccountingTurn() {
+        @Override
+        public void await() {
+        }
+    };
+
+    /**
+     * Wait until the personal objects returned by the earlier queries have been accounted.
+     */
+    void await();
+}
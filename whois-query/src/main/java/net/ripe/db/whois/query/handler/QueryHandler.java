@@ -40,6 +40,14 @@ public class QueryHandler {
     }
 
     public void streamResults(final Query query, final InetAddress remoteAddress, final int contextId, final ResponseHandler responseHandler) {
+        streamResults(query, remoteAddress, contextId, responseHandler, AccountingTurn.NONE);
+    }
+
+    /**
+     * @param accountingTurn awaited before the remaining personal objects are looked up, for queries executed ahead
+     *                       of earlier queries on the same connection.
+     */
+    public void streamResults(final Query query, final InetAddress remoteAddress, final int contextId, final ResponseHandler responseHandler, final AccountingTurn accountingTurn) {
         new Runnable() {
             private final Stopwatch stopwatch = Stopwatch.createStarted();
 
@@ -118,6 +126,7 @@ public class QueryHandler {
                         if (responseObject instanceof RpslObject) {
                             if (useAcl && accessControlListManager.requiresAcl((RpslObject) responseObject, sourceContext.getCurrentSource())) {
                                 if (accountingLimit == -1) {
+                                    accountingTurn.await();
                                     accountingLimit = accessControlListManager.getPersonalObjects(accountingAddress);
                                 }
 
@@ -45,6 +45,10 @@ public class ConnectionStateHandler extends SimpleChannelUpstreamHandler impleme
         }
     }
 
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
     @Override
     public void handleDownstream(final ChannelHandlerContext ctx, final ChannelEvent e) {
         ctx.sendDownstream(e);
@@ -34,10 +34,12 @@ public class ExceptionHandler extends SimpleChannelUpstreamHandler {
 
     @Override
     public void exceptionCaught(final ChannelHandlerContext ctx, final ExceptionEvent event) {
-        final Throwable cause = event.getCause();
+        handleException(event.getChannel(), event.getCause(), query);
+    }
+
+    void handleException(final Channel channel, final Throwable cause, final String query) {
         LOGGER.debug("Caught exception", cause);
 
-        final Channel channel = event.getChannel();
         if (cause instanceof ClosedChannelException) {
             LOGGER.debug("Channel closed", cause);
         } else if (cause instanceof QueryException) {
@@ -2,6 +2,8 @@ package net.ripe.db.whois.query.pipeline;
 
 import net.ripe.db.whois.common.Message;
 import net.ripe.db.whois.common.domain.ResponseObject;
+import net.ripe.db.whois.common.rpsl.RpslAttribute;
+import net.ripe.db.whois.common.rpsl.RpslObject;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBufferOutputStream;
 import org.jboss.netty.buffer.ChannelBuffers;
@@ -12,17 +14,27 @@ import org.jboss.netty.handler.codec.oneone.OneToOneEncoder;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 
 @ChannelHandler.Sharable
 @Component
 public class WhoisEncoder extends OneToOneEncoder {
     private static final int DEFAULT_BUFFER_SIZE = 1024;
+    private static final int ATTRIBUTE_VALUE_COLUMN = 16;
     private static final byte[] OBJECT_TERMINATOR = {'\n'};
 
     @Override
     protected Object encode(final ChannelHandlerContext ctx, final Channel channel, final Object msg) throws IOException {
-        if (msg instanceof ResponseObject) {
+        if (msg instanceof RpslObject) {
+            final RpslObject rpslObject = (RpslObject) msg;
+            final ChannelBuffer result = ChannelBuffers.dynamicBuffer(getEstimatedSize(rpslObject));
+
+            rpslObject.writeTo(new ChannelBufferWriter(result));
+            result.writeBytes(OBJECT_TERMINATOR);
+
+            return result;
+        } else if (msg instanceof ResponseObject) {
             final ChannelBuffer result = ChannelBuffers.dynamicBuffer(DEFAULT_BUFFER_SIZE);
             final ChannelBufferOutputStream out = new ChannelBufferOutputStream(result);
 
@@ -36,4 +48,52 @@ public class WhoisEncoder extends OneToOneEncoder {
 
         return msg;
     }
+
+    // formatting pads keys to the value column and may reflow continuation lines, so this is only an estimate
+    private static int getEstimatedSize(final RpslObject rpslObject) {
+        int size = OBJECT_TERMINATOR.length;
+        for (final RpslAttribute attribute : rpslObject.getAttributes()) {
+            size += Math.max(attribute.getKey().length() + 1, ATTRIBUTE_VALUE_COLUMN) + attribute.getValueLength() + 1;
+        }
+        return size;
+    }
+
+    /**
+     * Writes characters as ISO-8859-1 directly into a channel buffer, like the OutputStreamWriter used by
+     * {@link RpslObject#writeTo(java.io.OutputStream)}, but without allocating an encoder and its byte buffer per object.
+     */
+    private static final class ChannelBufferWriter extends Writer {
+        private final ChannelBuffer buffer;
+
+        private ChannelBufferWriter(final ChannelBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(final int c) {
+            buffer.writeByte(c < 0x100 ? c : '?');
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) {
+            for (int i = off; i < off + len; i++) {
+                write(cbuf[i]);
+            }
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len) {
+            for (int i = off; i < off + len; i++) {
+                write(str.charAt(i));
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
@@ -5,47 +5,127 @@ import net.ripe.db.whois.common.pipeline.ChannelUtil;
 import net.ripe.db.whois.query.domain.QueryCompletionInfo;
 import net.ripe.db.whois.query.domain.QueryException;
 import net.ripe.db.whois.query.domain.ResponseHandler;
+import net.ripe.db.whois.query.handler.AccountingTurn;
 import net.ripe.db.whois.query.handler.QueryHandler;
 import net.ripe.db.whois.query.query.Query;
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelDownstreamHandler;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.jboss.netty.channel.Channels.succeededFuture;
+
 /**
  * The worker threads are asynchronously pushing data down the Netty pipeline.
  * Make sure IO threads can handle the flow.
+ * <p/>
+ * On keep-alive connections queries are executed ahead on the look-ahead executor, up to {@link #MAX_PENDING_QUERIES}
+ * at a time, while the results of earlier queries are still being written. Results are written in the order the
+ * queries were received, and any other downstream event (warnings for a later query, closing the channel) is held
+ * back until the results of all queries received before it have been written. A query executed ahead only looks up the
+ * personal objects its client may still query once the queries received before it have accounted theirs.
  */
-public class WhoisServerHandler extends SimpleChannelUpstreamHandler {
+public class WhoisServerHandler extends SimpleChannelUpstreamHandler implements ChannelDownstreamHandler {
+    private static final int MAX_PENDING_QUERIES = 16;
+    private static final int MAX_BUFFERED_RESPONSES = 1024;
+    private static final long POLL_MILLIS = 100;
+    private static final Object END_OF_RESULTS = new Object();
+
     private final QueryHandler queryHandler;
-    private boolean closed;
+    private final ExecutorService lookAheadExecutor;
+
+    // pending queries, and the downstream events sent after them, in order
+    private final Deque<Object> pending = new ArrayDeque<>();
+    private int pendingQueries;
+    private CountDownLatch lastQueryAccounted;
+    private Thread writingThread;
+
+    private volatile boolean closed;
 
-    public WhoisServerHandler(final QueryHandler queryHandler) {
+    public WhoisServerHandler(final QueryHandler queryHandler, @Nullable final ExecutorService lookAheadExecutor) {
         this.queryHandler = queryHandler;
+        this.lookAheadExecutor = lookAheadExecutor;
     }
 
     @Override
     public void messageReceived(final ChannelHandlerContext ctx, final MessageEvent event) {
         final Query query = (Query) event.getMessage();
         final Channel channel = event.getChannel();
-        queryHandler.streamResults(query, ChannelUtil.getRemoteAddress(channel), channel.getId(), new ResponseHandler() {
-            @Override
-            public String getApi() {
-                return "QRY";
-            }
 
-            @Override
-            public void handle(final ResponseObject responseObject) {
-                if (closed) { // Prevent hammering a closed channel
-                    throw new QueryException(QueryCompletionInfo.DISCONNECTED);
+        if (lookAheadExecutor == null || !isKeepAlive(ctx)) {
+            streamResults(query, channel, new ResponseHandler() {
+                @Override
+                public String getApi() {
+                    return "QRY";
+                }
+
+                @Override
+                public void handle(final ResponseObject responseObject) {
+                    writeResponse(channel, responseObject);
                 }
+            });
+
+            channel.getPipeline().sendDownstream(new QueryCompletedEvent(channel));
+            return;
+        }
 
-                channel.write(responseObject);
+        final PendingQuery pendingQuery;
+        final boolean lookAheadExhausted;
+        synchronized (this) {
+            pendingQuery = new PendingQuery(query, channel, lastQueryAccounted);
+            lastQueryAccounted = pendingQuery.accounted;
+            pending.add(pendingQuery);
+            lookAheadExhausted = ++pendingQueries >= MAX_PENDING_QUERIES;
+        }
+
+        try {
+            lookAheadExecutor.execute(pendingQuery);
+        } catch (RejectedExecutionException ignored) {
+            // the query is executed when its results are written
+        }
+
+        if (lookAheadExhausted) {
+            writePending(ctx);
+        } else {
+            // queued behind the queries already received, so those are executed ahead before anything is written
+            channel.getPipeline().sendUpstream(new WritePendingEvent(channel));
+        }
+    }
+
+    @Override
+    public void handleUpstream(final ChannelHandlerContext ctx, final ChannelEvent e) throws Exception {
+        if (e instanceof WritePendingEvent) {
+            writePending(ctx);
+        } else {
+            super.handleUpstream(ctx, e);
+        }
+    }
+
+    @Override
+    public void handleDownstream(final ChannelHandlerContext ctx, final ChannelEvent e) {
+        synchronized (this) {
+            if (!pending.isEmpty() && writingThread != Thread.currentThread()) {
+                pending.add(e);
+                return;
             }
-        });
+        }
 
-        channel.getPipeline().sendDownstream(new QueryCompletedEvent(channel));
+        ctx.sendDownstream(e);
     }
 
     @Override
@@ -53,4 +133,214 @@ public class WhoisServerHandler extends SimpleChannelUpstreamHandler {
         closed = true;
         super.channelClosed(ctx, e);
     }
+
+    private static boolean isKeepAlive(final ChannelHandlerContext ctx) {
+        final ConnectionStateHandler connectionStateHandler = ctx.getPipeline().get(ConnectionStateHandler.class);
+        return connectionStateHandler != null && connectionStateHandler.isKeepAlive();
+    }
+
+    private void streamResults(final Query query, final Channel channel, final ResponseHandler responseHandler) {
+        queryHandler.streamResults(query, ChannelUtil.getRemoteAddress(channel), channel.getId(), responseHandler);
+    }
+
+    private void writeResponse(final Channel channel, final ResponseObject responseObject) {
+        if (closed) { // Prevent hammering a closed channel
+            throw new QueryException(QueryCompletionInfo.DISCONNECTED);
+        }
+
+        channel.write(responseObject);
+    }
+
+    private void writePending(final ChannelHandlerContext ctx) {
+        synchronized (this) {
+            if (writingThread != null) {
+                return;
+            }
+
+            writingThread = Thread.currentThread();
+        }
+
+        try {
+            while (true) {
+                final Object next;
+                synchronized (this) {
+                    next = pending.peek();
+                    if (next == null) {
+                        return;
+                    }
+
+                    if (!(next instanceof PendingQuery)) {
+                        pending.remove();
+                    }
+                }
+
+                if (next instanceof PendingQuery) {
+                    ((PendingQuery) next).writeResults(ctx);
+
+                    synchronized (this) {
+                        pending.remove();
+                        pendingQueries--;
+                    }
+                } else {
+                    ctx.sendDownstream((ChannelEvent) next);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                writingThread = null;
+            }
+        }
+    }
+
+    private final class PendingQuery implements Runnable, AccountingTurn {
+        private final Query query;
+        private final Channel channel;
+        private final CountDownLatch previousQueryAccounted;
+        private final CountDownLatch accounted = new CountDownLatch(1);
+        private final BlockingQueue<Object> results = new ArrayBlockingQueue<>(MAX_BUFFERED_RESPONSES);
+        private final AtomicBoolean started = new AtomicBoolean();
+        private RuntimeException failure;
+
+        private PendingQuery(final Query query, final Channel channel, @Nullable final CountDownLatch previousQueryAccounted) {
+            this.query = query;
+            this.channel = channel;
+            this.previousQueryAccounted = previousQueryAccounted;
+        }
+
+        @Override
+        public void await() {
+            if (previousQueryAccounted == null) {
+                return;
+            }
+
+            try {
+                while (!previousQueryAccounted.await(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (closed) {
+                        throw new QueryException(QueryCompletionInfo.DISCONNECTED);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new QueryException(QueryCompletionInfo.DISCONNECTED);
+            }
+        }
+
+        private void execute(final ResponseHandler responseHandler) {
+            try {
+                queryHandler.streamResults(query, ChannelUtil.getRemoteAddress(channel), channel.getId(), responseHandler, this);
+            } finally {
+                // the personal objects are accounted once the query completes, also if it failed
+                accounted.countDown();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!started.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                execute(new ResponseHandler() {
+                    @Override
+                    public String getApi() {
+                        return "QRY";
+                    }
+
+                    @Override
+                    public void handle(final ResponseObject responseObject) {
+                        buffer(responseObject);
+                    }
+                });
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+
+            try {
+                buffer(END_OF_RESULTS);
+            } catch (QueryException ignored) {
+                // channel closed, nobody is waiting for the results
+            }
+        }
+
+        private void buffer(final Object result) {
+            try {
+                while (!results.offer(result, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (closed) {
+                        throw new QueryException(QueryCompletionInfo.DISCONNECTED);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new QueryException(QueryCompletionInfo.DISCONNECTED);
+            }
+        }
+
+        private void writeResults(final ChannelHandlerContext ctx) {
+            try {
+                if (started.compareAndSet(false, true)) {
+                    // not picked up by the look-ahead executor yet
+                    execute(new ResponseHandler() {
+                        @Override
+                        public String getApi() {
+                            return "QRY";
+                        }
+
+                        @Override
+                        public void handle(final ResponseObject responseObject) {
+                            writeResponse(channel, responseObject);
+                        }
+                    });
+                } else {
+                    writeBufferedResults();
+                }
+
+                channel.getPipeline().sendDownstream(new QueryCompletedEvent(channel));
+            } catch (RuntimeException e) {
+                ctx.getPipeline().get(ExceptionHandler.class).handleException(channel, e, query.toString());
+            }
+        }
+
+        private void writeBufferedResults() {
+            try {
+                while (true) {
+                    final Object result = results.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (result == END_OF_RESULTS) {
+                        break;
+                    }
+
+                    if (result != null) {
+                        writeResponse(channel, (ResponseObject) result);
+                    } else if (closed) {
+                        throw new QueryException(QueryCompletionInfo.DISCONNECTED);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new QueryException(QueryCompletionInfo.DISCONNECTED);
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private static final class WritePendingEvent implements ChannelEvent {
+        private final Channel channel;
+
+        private WritePendingEvent(final Channel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public Channel getChannel() {
+            return channel;
+        }
+
+        @Override
+        public ChannelFuture getFuture() {
+            return succeededFuture(channel);
+        }
+    }
 }
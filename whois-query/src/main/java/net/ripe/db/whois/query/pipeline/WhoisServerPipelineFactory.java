@@ -19,8 +19,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -35,6 +38,7 @@ public class WhoisServerPipelineFactory implements ChannelPipelineFactory {
     private static final int MEMORY_SIZE_UNLIMITED = 0;
 
     @Value("${application.version}") private String version;
+    @Value("${query.lookahead.threads:0}") private int lookAheadThreads;
 
     private final ReadTimeoutHandler readTimeoutHandler = new ReadTimeoutHandler(TIMER, TIMEOUT_SECONDS, TimeUnit.SECONDS);
     private final WriteTimeoutHandler writeTimeoutHandler = new WriteTimeoutHandler(TIMER, TIMEOUT_SECONDS, TimeUnit.SECONDS);
@@ -51,6 +55,8 @@ public class WhoisServerPipelineFactory implements ChannelPipelineFactory {
         }
     }));
 
+    private ExecutorService lookAheadExecutor;
+
     private final MaintenanceHandler maintenanceHandler;
     private final ConnectionPerIpLimitHandler connectionPerIpLimitHandler;
     private final QueryChannelsRegistry queryChannelsRegistry;
@@ -76,9 +82,28 @@ public class WhoisServerPipelineFactory implements ChannelPipelineFactory {
         this.queryHandler = queryHandler;
     }
 
+    @PostConstruct
+    private void createLookAheadExecutor() {
+        if (lookAheadThreads > 0) {
+            lookAheadExecutor = Executors.newFixedThreadPool(lookAheadThreads, new ThreadFactory() {
+                private final ThreadGroup threadGroup = new ThreadGroup("lookahead-pool");
+                private final AtomicInteger threadNumber = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    return new Thread(threadGroup, r, "lookahead-thread-" + threadNumber.incrementAndGet());
+                }
+            });
+        }
+    }
+
     @PreDestroy
     private void destroyExecutionHandler() {
         executionHandler.releaseExternalResources();
+
+        if (lookAheadExecutor != null) {
+            lookAheadExecutor.shutdownNow();
+        }
     }
 
     @Override
@@ -105,7 +130,7 @@ public class WhoisServerPipelineFactory implements ChannelPipelineFactory {
         pipeline.addLast("connection-state", new ConnectionStateHandler());
 
         pipeline.addLast("served-by", new ServedByHandler(version));
-        pipeline.addLast("whois", new WhoisServerHandler(queryHandler));
+        pipeline.addLast("whois", new WhoisServerHandler(queryHandler, lookAheadExecutor));
 
         return pipeline;
     }
@@ -2,6 +2,7 @@ package net.ripe.db.whois.query.pipeline;
 
 import net.ripe.db.whois.common.Message;
 import net.ripe.db.whois.common.domain.ResponseObject;
+import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.query.QueryMessages;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
@@ -68,4 +69,19 @@ public class WhoisEncoderTest {
 
         assertThat(toString(result), is("\n"));
     }
+
+    @Test
+    public void encode_RpslObject() throws IOException {
+        final RpslObject rpslObject = RpslObject.parse("" +
+                "mntner: DEV-MNT\n" +
+                "descr:  \u00e9t\u00e9 \u20ac\n" +
+                "+       continued\n" +
+                "remarks:\n" +
+                "*mt:    DEV-MNT\n" +
+                "source: TEST");
+
+        final ChannelBuffer result = encode(rpslObject);
+
+        assertThat(result.toString(StandardCharsets.ISO_8859_1), is(new String(rpslObject.toByteArray(), StandardCharsets.ISO_8859_1) + "\n"));
+    }
 }
@@ -1,17 +1,29 @@
 package net.ripe.db.whois.query.pipeline;
 
 import com.google.common.net.InetAddresses;
+import net.ripe.db.whois.common.DateTimeProvider;
+import net.ripe.db.whois.common.domain.IpRanges;
 import net.ripe.db.whois.common.domain.ResponseObject;
 import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.common.source.BasicSourceContext;
+import net.ripe.db.whois.common.source.Source;
 import net.ripe.db.whois.query.domain.QueryCompletionInfo;
 import net.ripe.db.whois.query.domain.QueryException;
 import net.ripe.db.whois.query.domain.ResponseHandler;
+import net.ripe.db.whois.query.acl.AccessControlListManager;
+import net.ripe.db.whois.query.acl.IpResourceConfiguration;
+import net.ripe.db.whois.query.dao.AccessControlListDao;
+import net.ripe.db.whois.query.executor.QueryExecutor;
+import net.ripe.db.whois.query.handler.AccountingTurn;
 import net.ripe.db.whois.query.handler.QueryHandler;
+import net.ripe.db.whois.query.handler.WhoisLog;
+import net.ripe.db.whois.query.support.TestPersonalObjectAccounting;
 import net.ripe.db.whois.query.query.Query;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEvent;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelStateEvent;
@@ -20,12 +32,19 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
@@ -35,8 +54,12 @@ import static org.junit.Assert.fail;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -63,7 +86,7 @@ public class WhoisServerHandlerTest {
         when(channel.getRemoteAddress()).thenReturn(new InetSocketAddress(inetAddress, 80));
         when(channel.getPipeline()).thenReturn(pipeline);
 
-        doNothing().when(queryHandler).streamResults(any(Query.class), eq(inetAddress), eq(0), argThat(new BaseMatcher<ResponseHandler>() {
+        final BaseMatcher<ResponseHandler> writesResponse = new BaseMatcher<ResponseHandler>() {
             @Override
             public boolean matches(final Object o) {
                 ((ResponseHandler) o).handle(responseObject);
@@ -73,7 +96,10 @@ public class WhoisServerHandlerTest {
             @Override
             public void describeTo(final Description description) {
             }
-        }));
+        };
+
+        doNothing().when(queryHandler).streamResults(any(Query.class), eq(inetAddress), eq(0), argThat(writesResponse));
+        doNothing().when(queryHandler).streamResults(any(Query.class), eq(inetAddress), eq(0), argThat(writesResponse), any(AccountingTurn.class));
     }
 
     @Test
@@ -108,4 +134,94 @@ public class WhoisServerHandlerTest {
             assertThat(e.getMessages(), hasSize(0));
         }
     }
+
+    @Test
+    public void messageReceived_keep_alive_written_in_order() throws Exception {
+        final ExecutorService lookAheadExecutor = Executors.newSingleThreadExecutor();
+        try {
+            final WhoisServerHandler pipelinedSubject = new WhoisServerHandler(queryHandler, lookAheadExecutor);
+            final ConnectionStateHandler connectionStateHandler = mock(ConnectionStateHandler.class);
+            when(connectionStateHandler.isKeepAlive()).thenReturn(true);
+            when(ctx.getPipeline()).thenReturn(pipeline);
+            when(pipeline.get(ConnectionStateHandler.class)).thenReturn(connectionStateHandler);
+            when(messageEvent.getMessage()).thenReturn(Query.parse("10.0.0.0"), Query.parse("10.0.0.1"));
+
+            pipelinedSubject.messageReceived(ctx, messageEvent);
+            pipelinedSubject.messageReceived(ctx, messageEvent);
+
+            final ChannelEvent closeEvent = mock(ChannelEvent.class);
+            pipelinedSubject.handleDownstream(ctx, closeEvent);
+            verify(ctx, never()).sendDownstream(closeEvent);
+
+            final ArgumentCaptor<ChannelEvent> writePendingEvents = ArgumentCaptor.forClass(ChannelEvent.class);
+            verify(pipeline, times(2)).sendUpstream(writePendingEvents.capture());
+            pipelinedSubject.handleUpstream(ctx, writePendingEvents.getValue());
+
+            final InOrder inOrder = inOrder(channel, pipeline, ctx);
+            inOrder.verify(channel).write(responseObject);
+            inOrder.verify(pipeline).sendDownstream(any(QueryCompletedEvent.class));
+            inOrder.verify(channel).write(responseObject);
+            inOrder.verify(pipeline).sendDownstream(any(QueryCompletedEvent.class));
+            inOrder.verify(ctx).sendDownstream(closeEvent);
+        } finally {
+            lookAheadExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void messageReceived_keep_alive_personal_objects_accounted_in_order() throws Exception {
+        final int nrQueries = 3;
+        final ExecutorService lookAheadExecutor = Executors.newFixedThreadPool(nrQueries);
+        try {
+            final IpResourceConfiguration ipResourceConfiguration = mock(IpResourceConfiguration.class);
+            when(ipResourceConfiguration.getLimit(any(InetAddress.class))).thenReturn(1);
+            final AccessControlListManager accessControlListManager = new AccessControlListManager(mock(DateTimeProvider.class), ipResourceConfiguration, mock(AccessControlListDao.class), new TestPersonalObjectAccounting(), mock(IpRanges.class));
+
+            final BasicSourceContext sourceContext = mock(BasicSourceContext.class);
+            when(sourceContext.getCurrentSource()).thenReturn(Source.slave("RIPE"));
+
+            final RpslObject person = RpslObject.parse("person: Test Person\nnic-hdl: TP1-TEST");
+            final CountDownLatch allExecuting = new CountDownLatch(nrQueries);
+            final QueryExecutor queryExecutor = mock(QueryExecutor.class);
+            when(queryExecutor.supports(any(Query.class))).thenReturn(true);
+            when(queryExecutor.isAclSupported()).thenReturn(true);
+            doAnswer(new Answer<Void>() {
+                @Override
+                public Void answer(final InvocationOnMock invocation) throws Throwable {
+                    // all queries are executed ahead before any of them returns a personal object
+                    allExecuting.countDown();
+                    allExecuting.await(10, TimeUnit.SECONDS);
+                    ((ResponseHandler) invocation.getArguments()[1]).handle(person);
+                    return null;
+                }
+            }).when(queryExecutor).execute(any(Query.class), any(ResponseHandler.class));
+
+            final QueryHandler aclQueryHandler = new QueryHandler(mock(WhoisLog.class), accessControlListManager, sourceContext, queryExecutor);
+            final WhoisServerHandler pipelinedSubject = new WhoisServerHandler(aclQueryHandler, lookAheadExecutor);
+            final ConnectionStateHandler connectionStateHandler = mock(ConnectionStateHandler.class);
+            when(connectionStateHandler.isKeepAlive()).thenReturn(true);
+            final ExceptionHandler exceptionHandler = mock(ExceptionHandler.class);
+            when(ctx.getPipeline()).thenReturn(pipeline);
+            when(pipeline.get(ConnectionStateHandler.class)).thenReturn(connectionStateHandler);
+            when(pipeline.get(ExceptionHandler.class)).thenReturn(exceptionHandler);
+            when(messageEvent.getMessage()).thenReturn(Query.parse("TP1-TEST"));
+
+            for (int i = 0; i < nrQueries; i++) {
+                pipelinedSubject.messageReceived(ctx, messageEvent);
+            }
+
+            final ArgumentCaptor<ChannelEvent> writePendingEvents = ArgumentCaptor.forClass(ChannelEvent.class);
+            verify(pipeline, times(nrQueries)).sendUpstream(writePendingEvents.capture());
+            pipelinedSubject.handleUpstream(ctx, writePendingEvents.getValue());
+
+            verify(channel, times(1)).write(person);
+            final ArgumentCaptor<Throwable> failures = ArgumentCaptor.forClass(Throwable.class);
+            verify(exceptionHandler, times(nrQueries - 1)).handleException(eq(channel), failures.capture(), any(String.class));
+            for (final Throwable failure : failures.getAllValues()) {
+                assertThat(((QueryException) failure).getCompletionInfo(), is(QueryCompletionInfo.BLOCKED));
+            }
+        } finally {
+            lookAheadExecutor.shutdownNow();
+        }
+    }
 }
@@ -89,7 +89,8 @@ public class Latin1Conversion {
         try {
             final ByteBuffer encoded = charsetEncoder.encode(CharBuffer.wrap(value));
 
-            final RpslObject rpslObject = RpslObject.parse(encoded.array());
+            // values are decoded from the parsed bytes on demand, so parse a copy of the bytes converted below
+            final RpslObject rpslObject = RpslObject.parse(encoded.array().clone());
             final String convertedRpslObject = new String(encoded.array(), StandardCharsets.ISO_8859_1);
             final boolean globalSubstitution = !convertedRpslObject.equals(value);
 
@@ -96,6 +96,18 @@ public class Ipv6Resource extends IpInterval<Ipv6Resource> implements Comparable
         Validate.isTrue(compare(beginMsb, beginLsb, endMsb, endLsb) <= 0, "Begin must be before end");
     }
 
+    /**
+     * Constructs a new IPv6 interval from the most and least significant 64 bits of its begin and end (both inclusive).
+     */
+    public Ipv6Resource(final long beginMsb, final long beginLsb, final long endMsb, final long endLsb) {
+        Validate.isTrue(compare(beginMsb, beginLsb, endMsb, endLsb) <= 0, "Begin must be before end");
+
+        this.beginMsb = beginMsb;
+        this.beginLsb = beginLsb;
+        this.endMsb = endMsb;
+        this.endLsb = endLsb;
+    }
+
     public static Ipv6Resource parse(final InetAddress ipv6Address) {
         final long[] res = byteArrayToLongArray(ipv6Address.getAddress());
         return new Ipv6Resource(res[0], res[1], IPV6_BITCOUNT);
@@ -178,6 +190,22 @@ public class Ipv6Resource extends IpInterval<Ipv6Resource> implements Comparable
         return twoUnsignedLongToBigInteger(endMsb, endLsb);
     }
 
+    public long beginMsb() {
+        return beginMsb;
+    }
+
+    public long beginLsb() {
+        return beginLsb;
+    }
+
+    public long endMsb() {
+        return endMsb;
+    }
+
+    public long endLsb() {
+        return endLsb;
+    }
+
     private static long[] byteArrayToLongArray(final byte[] address) {
         Validate.isTrue(address.length == 16, "Address has to be 16 bytes long");
         final long[] res = new long[2];
@@ -635,6 +635,26 @@ public enum AttributeType implements Documented {
         }
     }
 
+    // attribute types by the length of their name, to look up a type from raw bytes without creating a String
+    private static final AttributeType[][] TYPES_BY_NAME_LENGTH;
+
+    static {
+        int maxLength = 0;
+        for (final AttributeType type : AttributeType.values()) {
+            maxLength = Math.max(maxLength, type.getName().length());
+        }
+
+        TYPES_BY_NAME_LENGTH = new AttributeType[maxLength + 1][0];
+        for (final AttributeType type : AttributeType.values()) {
+            final String name = type.getName();
+            if (getByNameOrNull(name) == type) {
+                final AttributeType[] types = TYPES_BY_NAME_LENGTH[name.length()];
+                TYPES_BY_NAME_LENGTH[name.length()] = Arrays.copyOf(types, types.length + 1);
+                TYPES_BY_NAME_LENGTH[name.length()][types.length] = type;
+            }
+        }
+    }
+
     private static final class Builder {
         private final String name;
         private final String flag;
@@ -790,4 +810,35 @@ public enum AttributeType implements Documented {
 
         return TYPE_NAMES.get(ciString(nameOrNull));
     }
+
+    /**
+     * Look up an attribute type by its full name (case insensitive), read as ISO-8859-1 from <code>buf</code>.
+     *
+     * @return the attribute type, or null if the bytes are not the full name of an attribute type (they may still be a short hand).
+     */
+    @CheckForNull
+    static AttributeType getByNameOrNull(final byte[] buf, final int offset, final int length) {
+        if (length >= TYPES_BY_NAME_LENGTH.length) {
+            return null;
+        }
+
+        nextType:
+        for (final AttributeType type : TYPES_BY_NAME_LENGTH[length]) {
+            final String name = type.getName();
+            for (int i = 0; i < length; i++) {
+                int c = buf[offset + i] & 0xff;
+                if (c >= 'A' && c <= 'Z') {
+                    c += 'a' - 'A';
+                }
+
+                if (c != name.charAt(i)) {
+                    continue nextType;
+                }
+            }
+
+            return type;
+        }
+
+        return null;
+    }
 }
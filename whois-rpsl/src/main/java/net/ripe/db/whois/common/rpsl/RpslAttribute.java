@@ -11,6 +11,7 @@ import javax.annotation.concurrent.Immutable;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Set;
 
@@ -24,7 +25,10 @@ public final class RpslAttribute {
 
     private final AttributeType type;
     private final String key;
-    private final String value;     // non-clean, contains EOL comments too
+    private String value;     // non-clean, contains EOL comments too
+    private final byte[] blob;     // value bytes, when parsed from a blob
+    private final int offset;
+    private final int length;
     private String cleanComment;
 
     private int hash;
@@ -36,10 +40,17 @@ public final class RpslAttribute {
 
     public RpslAttribute(final AttributeType attributeType, final String value) {
         Validate.notNull(attributeType, "Attribute has no type");
-        Validate.notNull(value, "Attribute " + attributeType.getName() + " has no value");
+        if (value == null) {
+            // not using Validate.notNull, so the message is only built when needed
+            throw new IllegalArgumentException("Attribute " + attributeType.getName() + " has no value");
+        }
+
         this.key = attributeType.getName();
         this.value = value;
         this.type = attributeType;
+        this.blob = null;
+        this.offset = 0;
+        this.length = value.length();
     }
 
     public RpslAttribute(final String key, final CIString value) {
@@ -48,10 +59,30 @@ public final class RpslAttribute {
 
     public RpslAttribute(final String key, final String value) {
         Validate.notNull(key, "Attribute has no key");
-        Validate.notNull(value, "Attribute " + key + " has no value");
+        if (value == null) {
+            throw new IllegalArgumentException("Attribute " + key + " has no value");
+        }
+
         this.key = key.toLowerCase();
         this.value = value;
         this.type = AttributeType.getByNameOrNull(this.key);
+        this.blob = null;
+        this.offset = 0;
+        this.length = value.length();
+    }
+
+    /**
+     * The value is read from <code>length</code> bytes of <code>blob</code> at <code>offset</code> (ISO-8859-1), and
+     * only decoded when asked for: an attribute that is only written out is never decoded.
+     *
+     * @param key the lower-case key, the type name for known attribute types.
+     */
+    RpslAttribute(final String key, @CheckForNull final AttributeType attributeType, final byte[] blob, final int offset, final int length) {
+        this.key = key;
+        this.type = attributeType;
+        this.blob = blob;
+        this.offset = offset;
+        this.length = length;
     }
 
     public String getKey() {
@@ -59,12 +90,29 @@ public final class RpslAttribute {
     }
 
     public String getValue() {
-        return value;
+        String result = value;
+        if (result == null) {
+            result = new String(blob, offset, length, StandardCharsets.ISO_8859_1);
+            value = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return the length of the value, without decoding it.
+     */
+    public int getValueLength() {
+        return length;
+    }
+
+    // the character at index of the value, without decoding it
+    private char charAt(final int index) {
+        return blob != null ? (char) (blob[offset + index] & 0xff) : value.charAt(index);
     }
 
     public String getCleanComment() {
         if (cleanValues == null) {
-            extractCleanValueAndComment(value);
+            extractCleanValueAndComment();
         }
         return cleanComment;
     }
@@ -84,7 +132,7 @@ public final class RpslAttribute {
     // TODO: [AH] should NOT return empty values; however, that behavior breaks validateSyntax() as it also relies on this method, and can't validate list structure if empty values are silently omitted
     public Set<CIString> getCleanValues() {
         if (cleanValues == null) {
-            extractCleanValueAndComment(value);
+            extractCleanValueAndComment();
         }
 
         return cleanValues;
@@ -129,9 +177,9 @@ public final class RpslAttribute {
         }
     }
 
-    private void extractCleanValueAndComment(final String value) {
-        final StringBuilder cleanedValue = new StringBuilder(value.length());
-        final StringBuilder commentValue = new StringBuilder(value.length());
+    private void extractCleanValueAndComment() {
+        final StringBuilder cleanedValue = new StringBuilder(length);
+        final StringBuilder commentValue = new StringBuilder(length);
 
         boolean comment = false;
         boolean space = false;
@@ -139,7 +187,8 @@ public final class RpslAttribute {
         boolean valueWritten = false;
         boolean commentWritten = false;
 
-        for (final char c : value.toCharArray()) {
+        for (int i = 0; i < length; i++) {
+            final char c = charAt(i);
             if (c == '\n') {
                 newline = true;
                 space = true;
@@ -228,12 +277,12 @@ public final class RpslAttribute {
 
     public void writeAttributeValueTo(final Writer writer) throws IOException {
         final int column = key.startsWith("*") ? LEADING_CHARS_SHORTHAND : LEADING_CHARS;
-        final char[] chars = value.toCharArray();
 
         int leadColumn = key.length() + 1;
         int spaces = 0;
 
-        for (final char c : chars) {
+        for (int i = 0; i < length; i++) {
+            final char c = charAt(i);
             if (leadColumn == 0 && spaces == 0 && c == '+') {
                 writer.write(c);
                 leadColumn++;
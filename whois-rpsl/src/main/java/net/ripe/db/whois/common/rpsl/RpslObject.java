@@ -83,6 +83,7 @@ public class RpslObject implements Identifiable, ResponseObject {
         return new RpslObject(RpslObjectBuilder.getAttributes(input));
     }
 
+    // input is not copied and must not be changed afterwards, see RpslObjectBuilder.getAttributes(byte[])
     public static RpslObject parse(final byte[] input) {
         return new RpslObject(RpslObjectBuilder.getAttributes(input));
     }
@@ -49,6 +49,7 @@ public class RpslObjectBuilder {
         return getAttributes(input.getBytes(StandardCharsets.ISO_8859_1));
     }
 
+    // attribute values are read from buf on demand, so buf must not be changed afterwards
     public static List<RpslAttribute> getAttributes(final byte[] buf) {
         Validate.notNull(buf, "Object can not be null");
 
@@ -75,7 +76,15 @@ public class RpslObjectBuilder {
             if (!readKey) throw new IllegalArgumentException("No key found");
             if (start == pos) throw new IllegalArgumentException("Read zero sized key");
 
-            final String key = new String(buf, start, pos - start, StandardCharsets.ISO_8859_1);
+            // reuse the name of a known attribute type rather than creating a new key
+            AttributeType attributeType = AttributeType.getByNameOrNull(buf, start, pos - start);
+            final String key;
+            if (attributeType != null) {
+                key = attributeType.getName();
+            } else {
+                key = new String(buf, start, pos - start, StandardCharsets.ISO_8859_1).toLowerCase();
+                attributeType = AttributeType.getByNameOrNull(key);
+            }
 
             // skip over ':' and continue reading the attribute value
             start = ++pos;
@@ -105,8 +114,8 @@ public class RpslObjectBuilder {
                 stop = pos;
             }
 
-            final String value = new String(buf, start, stop - start, StandardCharsets.ISO_8859_1);
-            newAttributes.add(new RpslAttribute(key, value));
+            // the value is only decoded when asked for
+            newAttributes.add(new RpslAttribute(key, attributeType, buf, start, stop - start));
         }
 
         return newAttributes;
@@ -1,10 +1,13 @@
 package net.ripe.db.whois.common;
 
+import net.ripe.db.whois.common.rpsl.AttributeType;
+import net.ripe.db.whois.common.rpsl.RpslAttribute;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import org.junit.Test;
 
 import java.nio.charset.StandardCharsets;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
@@ -84,6 +87,14 @@ public class Latin1ConversionTest {
                 RpslObject.parse("person: Test Person\nnic-hdl: TP1-TEST\nsource: TEST")));
     }
 
+    @Test
+    public void substituted_attributes_detected() {
+        final Latin1ConversionResult result = Latin1Conversion.convert("person: Test\u00a0Person\nnic-hdl: TP1-TEST\nsource: TEST");
+
+        assertThat(result.isGlobalSubstitution(), is(false));
+        assertThat(result.getSubstitutedAttributes(), contains(new RpslAttribute(AttributeType.PERSON, "Test Person")));
+    }
+
     @Test
     public void unicode_umlaut_substituted_correctly() {
         assertThat(
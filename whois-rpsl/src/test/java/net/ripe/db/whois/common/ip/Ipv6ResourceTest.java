@@ -418,4 +418,21 @@ public class Ipv6ResourceTest {
     public void invalid_prefix_length() {
         Ipv6Resource.parse("2001::/129");
     }
+
+    @Test
+    public void msb_and_lsb() {
+        subject = Ipv6Resource.parse("2001:db8::/32");
+
+        final Ipv6Resource copy = new Ipv6Resource(subject.beginMsb(), subject.beginLsb(), subject.endMsb(), subject.endLsb());
+
+        assertThat(copy, is(subject));
+        assertThat(copy.toString(), is("2001:db8::/32"));
+        assertThat(subject.beginLsb(), is(0L));
+        assertThat(subject.endLsb(), is(~0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void msb_and_lsb_begin_after_end() {
+        new Ipv6Resource(~0L, 0L, 0L, 0L);
+    }
 }
@@ -2,7 +2,10 @@ package net.ripe.db.whois.common.rpsl;
 
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class AttributeTypeTest {
@@ -22,6 +25,19 @@ public class AttributeTypeTest {
         }
     }
 
+    @Test
+    public void getByNameOrNull_from_bytes() {
+        for (AttributeType attributeType : AttributeType.values()) {
+            final byte[] bytes = (" " + attributeType.getName().toUpperCase() + ":").getBytes(StandardCharsets.ISO_8859_1);
+            assertThat("by name " + attributeType.toString(), AttributeType.getByNameOrNull(bytes, 1, bytes.length - 2), is(attributeType));
+        }
+
+        final byte[] bytes = "*as: mntner-x".getBytes(StandardCharsets.ISO_8859_1);
+        assertThat(AttributeType.getByNameOrNull(bytes, 0, 3), is(nullValue()));
+        assertThat(AttributeType.getByNameOrNull(bytes, 5, 8), is(nullValue()));
+        assertThat(AttributeType.getByNameOrNull(bytes, 5, 6), is(AttributeType.MNTNER));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void getByName_throws_on_unknown() {
         AttributeType.getByName("BOOOYAKAAAA!!!");
@@ -2,11 +2,49 @@ package net.ripe.db.whois.common.rpsl;
 
 import org.junit.Test;
 
+import java.util.List;
+
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class RpslObjectBuilderTest {
 
+    @Test
+    public void attribute_keys() {
+        final List<RpslAttribute> attributes = RpslObjectBuilder.getAttributes(
+                "MNTNER: OWNER-MNT\n" +
+                "*mt: OWNER-MNT\n" +
+                "Unknown: test\n" +
+                "source: TEST");
+
+        assertThat(attributes.get(0).getKey(), is("mntner"));
+        assertThat(attributes.get(0).getType(), is(AttributeType.MNTNER));
+        assertThat(attributes.get(1).getKey(), is("*mt"));
+        assertThat(attributes.get(1).getType(), is(AttributeType.MNTNER));
+        assertThat(attributes.get(2).getKey(), is("unknown"));
+        assertThat(attributes.get(2).getType(), is(nullValue()));
+        assertThat(attributes.get(3).getValue(), is(" TEST"));
+    }
+
+    @Test
+    public void attribute_values_read_from_blob() {
+        final List<RpslAttribute> attributes = RpslObjectBuilder.getAttributes(
+                "mntner: OWNER-MNT\n" +
+                "remarks:   first # comment\n" +
+                "+  second\r\n" +
+                "source: TEST");
+
+        final RpslAttribute remarks = attributes.get(1);
+        final RpslAttribute expected = new RpslAttribute(AttributeType.REMARKS, "   first # comment\n+  second");
+        assertThat(remarks.getValueLength(), is(expected.getValue().length()));
+        assertThat(remarks.toString(), is(expected.toString()));
+        assertThat(remarks.getCleanValue(), is(expected.getCleanValue()));
+        assertThat(remarks.getCleanComment(), is("comment"));
+        assertThat(remarks.getValue(), is(expected.getValue()));
+        assertThat(remarks, is(expected));
+    }
+
     @Test
     public void remove_attribute_type_no_match() {
         assertThat(
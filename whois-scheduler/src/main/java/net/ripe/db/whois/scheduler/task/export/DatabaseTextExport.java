@@ -21,4 +21,10 @@ public class DatabaseTextExport implements DailyScheduledTask {
     public void run() {
         rpslObjectsExporter.export();
     }
+
+    @Scheduled(cron = "0 30 * * * *")
+    @SchedulerLock(name = "DatabaseTextExport")
+    public void runIncremental() {
+        rpslObjectsExporter.exportChanges();
+    }
 }
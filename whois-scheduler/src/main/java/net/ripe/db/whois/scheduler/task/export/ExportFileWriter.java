@@ -1,5 +1,6 @@
 package net.ripe.db.whois.scheduler.task.export;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import net.ripe.db.whois.common.domain.Tag;
 import net.ripe.db.whois.common.rpsl.ObjectType;
@@ -9,52 +10,67 @@ import net.ripe.db.whois.query.domain.TagResponseObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.GZIPOutputStream;
 
+/**
+ * Objects are written to a gzipped segment per object type in the segment dir, and the export files are concatenated
+ * from the terms and conditions and the segments of their object types by {@link #writeExportFiles()}. Concatenated
+ * gzip members are a valid gzip file, so segments are copied without compressing them again, and the segments of
+ * object types that were not written to are reused as they are.
+ */
 public class ExportFileWriter {
     private static final Logger LOGGER = LoggerFactory.getLogger(ExportFileWriter.class);
 
     private final File baseDir;
+    private final File segmentDir;
     private final FilenameStrategy filenameStrategy;
     private final DecorationStrategy decorationStrategy;
     private final ExportFilter exportFilter;
-    private final Map<String, Writer> writerMap = Maps.newHashMap();
+    private final ExecutorService compressionExecutor;
+    private final Map<ObjectType, Writer> segmentWriters = Maps.newEnumMap(ObjectType.class);
 
+    /**
+     * @param compressionExecutor compresses blocks of the segments in parallel if not null.
+     */
     public ExportFileWriter(final File baseDir,
+                            final File segmentDir,
                             final FilenameStrategy filenameStrategy,
                             final DecorationStrategy decorationStrategy,
-                            final ExportFilter exportFilter) {
+                            final ExportFilter exportFilter,
+                            @Nullable final ExecutorService compressionExecutor) {
+        if (!baseDir.isDirectory()) {
+            throw new IllegalArgumentException("Not a directory: " + baseDir.getAbsolutePath());
+        }
+
         this.baseDir = baseDir;
+        this.segmentDir = segmentDir;
         this.filenameStrategy = filenameStrategy;
         this.decorationStrategy = decorationStrategy;
         this.exportFilter = exportFilter;
-
-        for (final ObjectType objectType : ObjectType.values()) {
-            final String filename = filenameStrategy.getFilename(objectType);
-            if (filename != null) {
-                try {
-                    getWriter(filename);
-                } catch (IOException e) {
-                    throw new RuntimeException("Initializing: " + filename, e);
-                }
-            }
-        }
+        this.compressionExecutor = compressionExecutor;
     }
 
     public void write(final RpslObject object, final List<Tag> tags) throws IOException {
         if (exportFilter.shouldExport(object)) {
-            final String filename = filenameStrategy.getFilename(object.getType());
+            final ObjectType objectType = object.getType();
+            final String filename = filenameStrategy.getFilename(objectType);
             if (filename != null) {
-                final Writer writer = getWriter(filename);
+                final Writer writer = getSegmentWriter(objectType, filename);
 
                 final RpslObject decoratedObject = decorationStrategy.decorate(object);
                 if (decoratedObject != null) {
@@ -71,31 +87,77 @@ public class ExportFileWriter {
     }
 
     public void close() {
-        for (final Map.Entry<String, Writer> entry : writerMap.entrySet()) {
+        for (final Map.Entry<ObjectType, Writer> entry : segmentWriters.entrySet()) {
             final Writer writer = entry.getValue();
             try {
                 writer.flush();
                 writer.close();
             } catch (IOException e) {
-                LOGGER.error("Closing {}/{}", baseDir, entry.getKey());
+                LOGGER.error("Closing {}/{}", segmentDir, entry.getKey().getName());
+            }
+        }
+    }
+
+    /**
+     * Write the export files from the segments; segments must have been closed.
+     */
+    public void writeExportFiles() throws IOException {
+        final Map<String, List<ObjectType>> objectTypesByFilename = Maps.newLinkedHashMap();
+        for (final ObjectType objectType : ObjectType.values()) {
+            final String filename = filenameStrategy.getFilename(objectType);
+            if (filename != null) {
+                objectTypesByFilename.computeIfAbsent(filename, k -> Lists.newArrayList()).add(objectType);
+            }
+        }
+
+        final byte[] termsAndConditions = gzip(QueryMessages.termsAndConditionsDump().toString());
+        for (final Map.Entry<String, List<ObjectType>> entry : objectTypesByFilename.entrySet()) {
+            final String filename = entry.getKey();
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(baseDir, filename + ".gz")))) {
+                out.write(termsAndConditions);
+
+                for (final ObjectType objectType : entry.getValue()) {
+                    final File segment = getSegment(objectType, filename);
+                    if (segment.exists()) {
+                        Files.copy(segment.toPath(), out);
+                    }
+                }
             }
         }
     }
 
-    private Writer getWriter(final String filename) throws IOException {
-        Writer writer = writerMap.get(filename);
+    private Writer getSegmentWriter(final ObjectType objectType, final String filename) throws IOException {
+        Writer writer = segmentWriters.get(objectType);
         if (writer == null) {
-            final File file = new File(baseDir, filename + ".gz");
-            final FileOutputStream fileOutputStream = new FileOutputStream(file);
+            final File segment = getSegment(objectType, filename);
+            final File dir = segment.getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Unable to create directory: " + dir.getAbsolutePath());
+            }
+
+            final FileOutputStream fileOutputStream = new FileOutputStream(segment);
             try {
-                writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(fileOutputStream), StandardCharsets.ISO_8859_1));
-                writer.write(QueryMessages.termsAndConditionsDump().toString());
-                writerMap.put(filename, writer);
+                final OutputStream gzipOutputStream = compressionExecutor == null ? new GZIPOutputStream(fileOutputStream) : new ParallelGzipOutputStream(fileOutputStream, compressionExecutor);
+                writer = new BufferedWriter(new OutputStreamWriter(gzipOutputStream, StandardCharsets.ISO_8859_1));
+                segmentWriters.put(objectType, writer);
             } catch (IOException e) {
                 fileOutputStream.close();
+                throw e;
             }
         }
 
         return writer;
     }
+
+    private File getSegment(final ObjectType objectType, final String filename) {
+        return new File(new File(segmentDir, objectType.getName()), filename + ".gz");
+    }
+
+    private static byte[] gzip(final String text) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(out)) {
+            gzipOutputStream.write(text.getBytes(StandardCharsets.ISO_8859_1));
+        }
+        return out.toByteArray();
+    }
 }
@@ -11,10 +11,12 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.FileCopyUtils;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import static net.ripe.db.whois.common.rpsl.ObjectType.AUT_NUM;
 import static net.ripe.db.whois.common.rpsl.ObjectType.ROUTE;
@@ -51,12 +53,21 @@ class ExportFileWriterFactory {
         this.nonAuthSource = nonAuthSource;
     }
 
-    public List<ExportFileWriter> createExportFileWriters(final File baseDir, final int lastSerial) {
-        final File fullDir = new File(baseDir, legacyExternalExportDir);
-        final File fullDirNew = new File(baseDir, externalExportDir);
-        final File splitDir = new File(baseDir, legacyExternalExportDir + File.separator + SPLITFILE_FOLDERNAME);
-        final File splitDirNew = new File(baseDir, externalExportDir + File.separator + SPLITFILE_FOLDERNAME);
-        final File internalDir = new File(baseDir, internalExportDir + File.separator + SPLITFILE_FOLDERNAME);
+    /**
+     * @param segmentDir holds the segments the export files are written from, in the same directory structure.
+     */
+    public List<ExportFileWriter> createExportFileWriters(final File baseDir, final File segmentDir, final int lastSerial, @Nullable final ExecutorService compressionExecutor) {
+        final String full = legacyExternalExportDir;
+        final String fullNew = externalExportDir;
+        final String split = legacyExternalExportDir + File.separator + SPLITFILE_FOLDERNAME;
+        final String splitNew = externalExportDir + File.separator + SPLITFILE_FOLDERNAME;
+        final String internal = internalExportDir + File.separator + SPLITFILE_FOLDERNAME;
+
+        final File fullDir = new File(baseDir, full);
+        final File fullDirNew = new File(baseDir, fullNew);
+        final File splitDir = new File(baseDir, split);
+        final File splitDirNew = new File(baseDir, splitNew);
+        final File internalDir = new File(baseDir, internal);
 
         initDirs(fullDirNew, fullDir, splitDirNew, splitDir, internalDir);
 
@@ -78,18 +89,24 @@ class ExportFileWriterFactory {
         final ExportFilter sourceFilter = new ExportFilter.SourceExportFilter(source, ImmutableSet.copyOf(ObjectType.values()));
         final ExportFilter nonAuthSourceFilter = new ExportFilter.SourceExportFilter(nonAuthSource, Sets.immutableEnumSet(AUT_NUM, ROUTE, ROUTE6), false);
 
+        final File fullSegmentDir = new File(segmentDir, full);
+        final File fullSegmentDirNew = new File(segmentDir, fullNew);
+        final File splitSegmentDir = new File(segmentDir, split);
+        final File splitSegmentDirNew = new File(segmentDir, splitNew);
+        final File internalSegmentDir = new File(segmentDir, internal);
+
         return Lists.newArrayList(
-                new ExportFileWriter(fullDir, singleFile, new DecorationStrategy.DummifyLegacy(dummifierNrtm), sourceFilter),
-                new ExportFileWriter(splitDir, splitFile, new DecorationStrategy.DummifyLegacy(dummifierNrtm), sourceFilter),
-                new ExportFileWriter(fullDirNew, singleFile, new DecorationStrategy.DummifyCurrent(dummifierCurrent), sourceFilter),
-                new ExportFileWriter(splitDirNew, splitFile, new DecorationStrategy.DummifyCurrent(dummifierCurrent), sourceFilter),
-                new ExportFileWriter(internalDir, splitFile, new DecorationStrategy.None(), sourceFilter),
-
-                new ExportFileWriter(fullDir, nonAuthSingleFile, new DecorationStrategy.DummifyLegacy(dummifierNrtm), nonAuthSourceFilter),
-                new ExportFileWriter(splitDir, nonAuthSplitFile, new DecorationStrategy.DummifyLegacy(dummifierNrtm), nonAuthSourceFilter),
-                new ExportFileWriter(fullDirNew, nonAuthSingleFile, new DecorationStrategy.DummifyCurrent(dummifierCurrent), nonAuthSourceFilter),
-                new ExportFileWriter(splitDirNew, nonAuthSplitFile, new DecorationStrategy.DummifyCurrent(dummifierCurrent), nonAuthSourceFilter),
-                new ExportFileWriter(internalDir, nonAuthSplitFile, new DecorationStrategy.None(), nonAuthSourceFilter)
+                new ExportFileWriter(fullDir, fullSegmentDir, singleFile, new DecorationStrategy.DummifyLegacy(dummifierNrtm), sourceFilter, compressionExecutor),
+                new ExportFileWriter(splitDir, splitSegmentDir, splitFile, new DecorationStrategy.DummifyLegacy(dummifierNrtm), sourceFilter, compressionExecutor),
+                new ExportFileWriter(fullDirNew, fullSegmentDirNew, singleFile, new DecorationStrategy.DummifyCurrent(dummifierCurrent), sourceFilter, compressionExecutor),
+                new ExportFileWriter(splitDirNew, splitSegmentDirNew, splitFile, new DecorationStrategy.DummifyCurrent(dummifierCurrent), sourceFilter, compressionExecutor),
+                new ExportFileWriter(internalDir, internalSegmentDir, splitFile, new DecorationStrategy.None(), sourceFilter, compressionExecutor),
+
+                new ExportFileWriter(fullDir, fullSegmentDir, nonAuthSingleFile, new DecorationStrategy.DummifyLegacy(dummifierNrtm), nonAuthSourceFilter, compressionExecutor),
+                new ExportFileWriter(splitDir, splitSegmentDir, nonAuthSplitFile, new DecorationStrategy.DummifyLegacy(dummifierNrtm), nonAuthSourceFilter, compressionExecutor),
+                new ExportFileWriter(fullDirNew, fullSegmentDirNew, nonAuthSingleFile, new DecorationStrategy.DummifyCurrent(dummifierCurrent), nonAuthSourceFilter, compressionExecutor),
+                new ExportFileWriter(splitDirNew, splitSegmentDirNew, nonAuthSplitFile, new DecorationStrategy.DummifyCurrent(dummifierCurrent), nonAuthSourceFilter, compressionExecutor),
+                new ExportFileWriter(internalDir, internalSegmentDir, nonAuthSplitFile, new DecorationStrategy.None(), nonAuthSourceFilter, compressionExecutor)
         );
     }
 
@@ -0,0 +1,120 @@
+package net.ripe.db.whois.scheduler.task.export;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip output stream that compresses fixed size blocks on an executor, each block into a gzip member of its own.
+ * <p/>
+ * Concatenated gzip members are a valid gzip file (RFC 1952), read as a single stream by gunzip and
+ * {@link java.util.zip.GZIPInputStream}. Members are written in order; at most {@link #MAX_PENDING_BLOCKS} blocks are
+ * compressed ahead of the underlying stream.
+ */
+class ParallelGzipOutputStream extends OutputStream {
+    static final int BLOCK_SIZE = 256 * 1024;
+    private static final int MAX_PENDING_BLOCKS = 4;
+
+    private final OutputStream out;
+    private final ExecutorService executor;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int blockLength;
+    private boolean closed;
+
+    ParallelGzipOutputStream(final OutputStream out, final ExecutorService executor) {
+        this.out = out;
+        this.executor = executor;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        block[blockLength++] = (byte) b;
+        if (blockLength == BLOCK_SIZE) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(final byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            final int length = Math.min(len, BLOCK_SIZE - blockLength);
+            System.arraycopy(b, off, block, blockLength, length);
+            blockLength += length;
+            off += length;
+            len -= length;
+
+            if (blockLength == BLOCK_SIZE) {
+                submitBlock();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (blockLength > 0) {
+            submitBlock();
+        }
+
+        while (!pending.isEmpty()) {
+            writeMember(pending.remove());
+        }
+
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        try {
+            flush();
+        } finally {
+            for (final Future<byte[]> member : pending) {
+                member.cancel(true);
+            }
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        final byte[] data = block;
+        final int length = blockLength;
+        pending.add(executor.submit(() -> compress(data, length)));
+
+        block = new byte[BLOCK_SIZE];
+        blockLength = 0;
+
+        while (!pending.isEmpty() && (pending.size() > MAX_PENDING_BLOCKS || pending.peek().isDone())) {
+            writeMember(pending.remove());
+        }
+    }
+
+    private void writeMember(final Future<byte[]> member) throws IOException {
+        try {
+            out.write(Uninterruptibles.getUninterruptibly(member));
+        } catch (ExecutionException e) {
+            throw new IOException("Compressing block", e.getCause());
+        }
+    }
+
+    private static byte[] compress(final byte[] data, final int length) throws IOException {
+        final ByteArrayOutputStream member = new ByteArrayOutputStream(length / 4 + 64);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(member)) {
+            gzipOutputStream.write(data, 0, length);
+        }
+        return member.toByteArray();
+    }
+}
@@ -1,8 +1,12 @@
 package net.ripe.db.whois.scheduler.task.export;
 
 import com.google.common.base.Stopwatch;
-import net.ripe.db.whois.common.dao.TagsDao;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import net.ripe.db.whois.common.domain.Tag;
+import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.scheduler.task.export.dao.ExportCallbackHandler;
 import net.ripe.db.whois.scheduler.task.export.dao.ExportDao;
@@ -15,45 +19,86 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.FileCopyUtils;
 import org.springframework.util.FileSystemUtils;
 
+import javax.annotation.CheckForNull;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
+/**
+ * Objects are exported to a segment per export file and object type, kept in the segments dir together with the
+ * serial they were exported at. An incremental export only exports the object types changed since that serial, and
+ * reuses the segments of the other object types.
+ */
 @Component
 class RpslObjectsExporter {
     private static final Logger LOGGER = LoggerFactory.getLogger(RpslObjectsExporter.class);
+    private static final String SEGMENTS_SERIAL_FILENAME = "CURRENTSERIAL";
 
     private final ExportFileWriterFactory exportFileWriterFactory;
     private final ExportDao exportDao;
-    private final TagsDao tagsDao;
     private final File exportDir;
     private final File tmpDir;
+    private final File segmentsDir;
+    private final File segmentsTmpDir;
 
     private final AtomicBoolean exporting = new AtomicBoolean();
     private final boolean enabled;
+    private final boolean incrementalEnabled;
 
     @Autowired
     public RpslObjectsExporter(final ExportFileWriterFactory exportFileWriterFactory,
                                final ExportDao exportDao,
-                               final TagsDao tagsDao,
                                @Value("${dir.rpsl.export}") final String exportDirName,
                                @Value("${dir.rpsl.export.tmp}") final String tmpDirName,
-                               @Value("${rpsl.export.enabled:true}") final boolean enabled) {
+                               @Value("${dir.rpsl.export.segments}") final String segmentsDirName,
+                               @Value("${rpsl.export.enabled:true}") final boolean enabled,
+                               @Value("${rpsl.export.incremental.enabled:false}") final boolean incrementalEnabled) {
         this.exportFileWriterFactory = exportFileWriterFactory;
         this.exportDao = exportDao;
-        this.tagsDao = tagsDao;
         this.enabled = enabled;
+        this.incrementalEnabled = incrementalEnabled;
 
         exportDir = new File(exportDirName);
         tmpDir = new File(tmpDirName);
+        segmentsDir = new File(segmentsDirName);
+        segmentsTmpDir = new File(segmentsDirName + "_tmp");
 
         initDirs();
     }
 
     public void export() {
+        export(false);
+    }
+
+    /**
+     * Export the object types changed since the previous export, or everything if there are no segments of a previous
+     * export.
+     */
+    public void exportChanges() {
+        if (incrementalEnabled) {
+            export(true);
+        }
+    }
+
+    private void export(final boolean incremental) {
         if (!enabled) {
             return;
         }
@@ -66,11 +111,21 @@ class RpslObjectsExporter {
             final Stopwatch stopwatch = Stopwatch.createStarted();
 
             initDirs();
-            exportToFiles();
+            if (!exportToFiles(incremental ? getSegmentsSerial() : null)) {
+                Validate.isTrue(FileSystemUtils.deleteRecursively(tmpDir), "Recursive delete failed: ", tmpDir);
+                Validate.isTrue(FileSystemUtils.deleteRecursively(segmentsTmpDir), "Recursive delete failed: ", segmentsTmpDir);
+                LOGGER.info("Database unchanged since previous export in {}", exportDir);
+                return;
+            }
 
             Validate.isTrue(FileSystemUtils.deleteRecursively(exportDir), "Recursive delete failed: ", exportDir);
             Validate.isTrue(tmpDir.renameTo(exportDir), "Rename failed: ", tmpDir);
 
+            if (segmentsDir.exists()) {
+                Validate.isTrue(FileSystemUtils.deleteRecursively(segmentsDir), "Recursive delete failed: ", segmentsDir);
+            }
+            Validate.isTrue(segmentsTmpDir.renameTo(segmentsDir), "Rename failed: ", segmentsTmpDir);
+
             LOGGER.info("Database export complete after {} in {}", stopwatch.stop().toString(), exportDir);
         } finally {
             exporting.set(false);
@@ -95,48 +150,153 @@ class RpslObjectsExporter {
 
         Validate.isTrue(tmpDir.mkdirs(), "Unable to create temp dir: ", tmpDir);
         LOGGER.info("Created: {}", tmpDir);
+
+        if (segmentsTmpDir.exists()) {
+            Validate.isTrue(FileSystemUtils.deleteRecursively(segmentsTmpDir), "Unable to remove temp dir: ", segmentsTmpDir);
+        }
+
+        Validate.isTrue(segmentsTmpDir.mkdirs(), "Unable to create temp dir: ", segmentsTmpDir);
     }
 
+    @CheckForNull
+    private Integer getSegmentsSerial() {
+        final File serialFile = new File(segmentsDir, SEGMENTS_SERIAL_FILENAME);
+        if (!serialFile.exists()) {
+            return null;
+        }
+
+        try {
+            return Integer.parseInt(new String(FileCopyUtils.copyToByteArray(serialFile), StandardCharsets.ISO_8859_1).trim());
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.warn("Unable to read serial of segments in {}: {}", segmentsDir, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * @param previousSerial the serial of the segments to reuse, or null to export everything.
+     * @return false if nothing changed since <code>previousSerial</code>.
+     */
     @Transactional(isolation = Isolation.REPEATABLE_READ, propagation = Propagation.REQUIRES_NEW)
-    private void exportToFiles() {
+    private boolean exportToFiles(@CheckForNull final Integer previousSerial) {
         final int maxSerial = exportDao.getMaxSerial();
         LOGGER.info("Max serial: {}", maxSerial);
 
-        final List<ExportFileWriter> exportFileWriters = exportFileWriterFactory.createExportFileWriters(tmpDir, maxSerial);
+        final Set<ObjectType> objectTypes;
+        if (previousSerial == null || previousSerial > maxSerial) {
+            objectTypes = EnumSet.allOf(ObjectType.class);
+        } else if (previousSerial == maxSerial) {
+            return false;
+        } else {
+            objectTypes = exportDao.getObjectTypesChangedSince(previousSerial);
+            LOGGER.info("Object types changed since serial {}: {}", previousSerial, objectTypes);
+            linkUnchangedSegments(objectTypes);
+        }
+
+        final ExecutorService compressionExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactoryBuilder()
+                .setNameFormat("export-gzip-%d")
+                .setDaemon(true)
+                .build());
+
         try {
-            final TextFileExporter textFileExporter = new TextFileExporter(exportFileWriters);
+            final List<ExportFileWriter> exportFileWriters = exportFileWriterFactory.createExportFileWriters(tmpDir, segmentsTmpDir, maxSerial, compressionExecutor);
             try {
-                exportDao.exportObjects(textFileExporter);
+                final TextFileExporter textFileExporter = new TextFileExporter(exportFileWriters);
+                try {
+                    if (objectTypes.size() == ObjectType.values().length) {
+                        exportDao.exportObjects(textFileExporter);
+                    } else {
+                        exportDao.exportObjects(textFileExporter, objectTypes);
+                    }
+                    textFileExporter.finish();
+                } finally {
+                    textFileExporter.shutdown();
+                    textFileExporter.logNrExported();
+                }
             } finally {
-                textFileExporter.logNrExported();
+                for (final ExportFileWriter exportFileWriter : exportFileWriters) {
+                    exportFileWriter.close();
+                }
             }
-        } finally {
+
             for (final ExportFileWriter exportFileWriter : exportFileWriters) {
-                exportFileWriter.close();
+                exportFileWriter.writeExportFiles();
             }
+
+            FileCopyUtils.copy(String.valueOf(maxSerial).getBytes(StandardCharsets.ISO_8859_1), new File(segmentsTmpDir, SEGMENTS_SERIAL_FILENAME));
+        } catch (IOException e) {
+            throw new RuntimeException("Writing export files", e);
+        } finally {
+            compressionExecutor.shutdownNow();
         }
+
+        return true;
     }
 
-    private final class TextFileExporter implements ExportCallbackHandler {
+    /**
+     * Segments are never written to once complete, so they are shared with the previous export by hard links.
+     */
+    private void linkUnchangedSegments(final Set<ObjectType> changedObjectTypes) {
+        if (!segmentsDir.exists()) {
+            return;
+        }
+
+        final Path source = segmentsDir.toPath();
+        final Path target = segmentsTmpDir.toPath();
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (final Iterator<Path> iterator = paths.filter(Files::isRegularFile).iterator(); iterator.hasNext(); ) {
+                final Path segment = iterator.next();
+                final ObjectType objectType = ObjectType.getByNameOrNull(segment.getParent().getFileName().toString());
+                if (objectType == null || changedObjectTypes.contains(objectType)) {
+                    continue;
+                }
+
+                final Path link = target.resolve(source.relativize(segment));
+                Files.createDirectories(link.getParent());
+                try {
+                    Files.createLink(link, segment);
+                } catch (IOException | UnsupportedOperationException e) {
+                    Files.copy(segment, link);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Linking segments from " + segmentsDir, e);
+        }
+    }
+
+    /**
+     * Objects are read on the calling thread and handed to the export file writers in batches. Every writer decorates
+     * and writes the batches in order on a thread of its own, so the writers run in parallel.
+     */
+    private static final class TextFileExporter implements ExportCallbackHandler {
         private static final int LOG_EVERY = 500000;
-        private final Iterable<ExportFileWriter> exportFileWriters;
+        private static final int BATCH_SIZE = 1000;
+        private static final int MAX_PENDING_BATCHES = 8;
+
+        private final List<ExportFileWriter> exportFileWriters;
+        private final List<ExecutorService> writerExecutors;
+        private final Deque<List<Future<?>>> pendingBatches = new ArrayDeque<>();
 
+        private List<ExportedObject> batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
         private int lastLogged = -1;
         private int nrExported = 0;
 
-        private TextFileExporter(final Iterable<ExportFileWriter> exportFileWriters) {
+        private TextFileExporter(final List<ExportFileWriter> exportFileWriters) {
             this.exportFileWriters = exportFileWriters;
+            this.writerExecutors = Lists.newArrayListWithCapacity(exportFileWriters.size());
+            for (int i = 0; i < exportFileWriters.size(); i++) {
+                writerExecutors.add(Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("export-writer-" + i)
+                        .setDaemon(true)
+                        .build()));
+            }
         }
 
         @Override
-        public void exportObject(final RpslObject object) {
-            final List<Tag> tags = tagsDao.getTags(object.getObjectId());
-            for (final ExportFileWriter exportFileWriter : exportFileWriters) {
-                try {
-                    exportFileWriter.write(object, tags);
-                } catch (IOException e) {
-                    throw new RuntimeException("Exporting to " + exportFileWriter, e);
-                }
+        public void exportObject(final RpslObject object, final List<Tag> tags) {
+            batch.add(new ExportedObject(object, tags));
+            if (batch.size() >= BATCH_SIZE) {
+                submitBatch();
             }
 
             if (++nrExported % LOG_EVERY == 0) {
@@ -144,6 +304,79 @@ class RpslObjectsExporter {
             }
         }
 
+        private void submitBatch() {
+            final List<ExportedObject> exportedObjects = batch;
+            batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+
+            final List<Future<?>> futures = Lists.newArrayListWithCapacity(exportFileWriters.size());
+            for (int i = 0; i < exportFileWriters.size(); i++) {
+                final ExportFileWriter exportFileWriter = exportFileWriters.get(i);
+                futures.add(writerExecutors.get(i).submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (final ExportedObject exportedObject : exportedObjects) {
+                            try {
+                                exportFileWriter.write(exportedObject.object, exportedObject.tags);
+                            } catch (IOException e) {
+                                throw new RuntimeException("Exporting to " + exportFileWriter, e);
+                            }
+                        }
+                    }
+                }));
+            }
+
+            pendingBatches.add(futures);
+            while (pendingBatches.size() > MAX_PENDING_BATCHES) {
+                awaitBatch(pendingBatches.remove());
+            }
+        }
+
+        private void awaitBatch(final List<Future<?>> futures) {
+            for (final Future<?> future : futures) {
+                try {
+                    Uninterruptibles.getUninterruptibly(future);
+                } catch (ExecutionException e) {
+                    Throwables.throwIfUnchecked(e.getCause());
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        }
+
+        /**
+         * Wait until every object has been written.
+         */
+        public void finish() {
+            if (!batch.isEmpty()) {
+                submitBatch();
+            }
+
+            while (!pendingBatches.isEmpty()) {
+                awaitBatch(pendingBatches.remove());
+            }
+        }
+
+        /**
+         * Stop the writer threads, so the export file writers can be closed.
+         */
+        public void shutdown() {
+            for (final ExecutorService writerExecutor : writerExecutors) {
+                writerExecutor.shutdownNow();
+            }
+
+            for (final ExecutorService writerExecutor : writerExecutors) {
+                while (true) {
+                    try {
+                        if (writerExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                            break;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
         public void logNrExported() {
             if (lastLogged != nrExported) {
                 LOGGER.info("Exported {} objects", nrExported);
@@ -151,4 +384,14 @@ class RpslObjectsExporter {
             }
         }
     }
+
+    private static final class ExportedObject {
+        private final RpslObject object;
+        private final List<Tag> tags;
+
+        private ExportedObject(final RpslObject object, final List<Tag> tags) {
+            this.object = object;
+            this.tags = tags;
+        }
+    }
 }
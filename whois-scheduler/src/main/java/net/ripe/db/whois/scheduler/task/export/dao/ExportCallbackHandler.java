@@ -1,7 +1,10 @@
 package net.ripe.db.whois.scheduler.task.export.dao;
 
+import net.ripe.db.whois.common.domain.Tag;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 
+import java.util.List;
+
 public interface ExportCallbackHandler {
-    void exportObject(RpslObject object);
+    void exportObject(RpslObject object, List<Tag> tags);
 }
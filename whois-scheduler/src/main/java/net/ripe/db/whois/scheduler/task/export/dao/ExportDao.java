@@ -1,7 +1,18 @@
 package net.ripe.db.whois.scheduler.task.export.dao;
 
+import net.ripe.db.whois.common.rpsl.ObjectType;
+
+import java.util.Set;
+
 public interface ExportDao {
     int getMaxSerial();
 
+    /**
+     * @return the types of the objects created, modified or deleted after serial <code>serialId</code>.
+     */
+    Set<ObjectType> getObjectTypesChangedSince(int serialId);
+
     void exportObjects(ExportCallbackHandler exportCallbackHandler);
+
+    void exportObjects(ExportCallbackHandler exportCallbackHandler, Set<ObjectType> objectTypes);
 }
@@ -1,6 +1,11 @@
 package net.ripe.db.whois.scheduler.task.export.dao;
 
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
 import net.ripe.db.whois.common.dao.jdbc.JdbcStreamingHelper;
+import net.ripe.db.whois.common.dao.jdbc.domain.ObjectTypeIds;
+import net.ripe.db.whois.common.domain.Tag;
+import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,6 +18,13 @@ import org.springframework.stereotype.Repository;
 import javax.sql.DataSource;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static net.ripe.db.whois.common.domain.CIString.ciString;
 
 @Repository
 class JdbcExportDao implements ExportDao {
@@ -30,18 +42,60 @@ class JdbcExportDao implements ExportDao {
         return jdbcTemplate.queryForObject("SELECT max(serial_id) FROM serials", Integer.class);
     }
 
+    @Override
+    public Set<ObjectType> getObjectTypesChangedSince(final int serialId) {
+        final Set<ObjectType> objectTypes = EnumSet.noneOf(ObjectType.class);
+
+        jdbcTemplate.query("" +
+                        "SELECT DISTINCT last.object_type " +
+                        "FROM serials " +
+                        "JOIN last ON last.object_id = serials.object_id " +
+                        "WHERE serials.serial_id > ?",
+                (RowCallbackHandler) rs -> objectTypes.add(ObjectTypeIds.getType(rs.getInt(1))),
+                serialId);
+
+        return objectTypes;
+    }
+
     @Override
     public void exportObjects(final ExportCallbackHandler exportCallbackHandler) {
+        exportObjects(exportCallbackHandler, "");
+    }
+
+    @Override
+    public void exportObjects(final ExportCallbackHandler exportCallbackHandler, final Set<ObjectType> objectTypes) {
+        if (objectTypes.isEmpty()) {
+            return;
+        }
+
+        exportObjects(exportCallbackHandler, "AND last.object_type IN (" +
+                Joiner.on(',').join(objectTypes.stream().map(ObjectTypeIds::getId).collect(Collectors.toList())) +
+                ") ");
+    }
+
+    private void exportObjects(final ExportCallbackHandler exportCallbackHandler, final String objectTypeCondition) {
+        final ExportRowCallbackHandler rowCallbackHandler = new ExportRowCallbackHandler(exportCallbackHandler);
+
+        // tags are joined in the same ordered pass, one row per tag, instead of being queried per object
         JdbcStreamingHelper.executeStreaming(jdbcTemplate,
-                "SELECT object_id, object " +
+                "SELECT last.object_id, last.object, tags.tag_id, tags.data " +
                         "FROM last " +
-                        "WHERE sequence_id != 0 ",
-                new ExportRowCallbackHandler(exportCallbackHandler));
+                        "LEFT JOIN tags ON tags.object_id = last.object_id " +
+                        "WHERE last.sequence_id != 0 " +
+                        objectTypeCondition +
+                        "ORDER BY last.object_id",
+                rowCallbackHandler);
+
+        rowCallbackHandler.exportCurrentObject();
     }
 
     private static final class ExportRowCallbackHandler implements RowCallbackHandler {
         private final ExportCallbackHandler exportCallbackHandler;
 
+        private int objectId = -1;
+        private RpslObject object;
+        private List<Tag> tags = Collections.emptyList();
+
         private ExportRowCallbackHandler(final ExportCallbackHandler exportCallbackHandler) {
             this.exportCallbackHandler = exportCallbackHandler;
         }
@@ -49,15 +103,33 @@ class JdbcExportDao implements ExportDao {
         @Override
         public void processRow(final ResultSet rs) throws SQLException {
             final int objectId = rs.getInt(1);
-            RpslObject object = null;
-            try {
-                object = RpslObject.parse(objectId, rs.getBytes(2));
-            } catch (RuntimeException e) {
-                LOGGER.warn("Unable to parse RPSL object with object_id: {}, {}", objectId, e.toString());
+            if (objectId != this.objectId) {
+                exportCurrentObject();
+                this.objectId = objectId;
+
+                try {
+                    object = RpslObject.parse(objectId, rs.getBytes(2));
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Unable to parse RPSL object with object_id: {}, {}", objectId, e.toString());
+                    return;
+                }
             }
 
+            final String tagId = rs.getString(3);
+            if (object != null && tagId != null) {
+                if (tags.isEmpty()) {
+                    tags = Lists.newArrayListWithExpectedSize(2);
+                }
+
+                tags.add(new Tag(ciString(tagId), objectId, rs.getString(4)));
+            }
+        }
+
+        private void exportCurrentObject() {
             if (object != null) {
-                exportCallbackHandler.exportObject(object);
+                exportCallbackHandler.exportObject(object, tags);
+                object = null;
+                tags = Collections.emptyList();
             }
         }
     }
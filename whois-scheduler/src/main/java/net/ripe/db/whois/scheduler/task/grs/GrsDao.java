@@ -10,11 +10,16 @@ import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.common.source.Source;
+import net.ripe.db.whois.common.source.SourceConfiguration;
 import net.ripe.db.whois.common.source.SourceContext;
 import org.slf4j.Logger;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.CheckForNull;
 import java.sql.ResultSet;
@@ -38,6 +43,7 @@ class GrsDao {
 
     private JdbcTemplate masterJdbcTemplate;
     private JdbcTemplate slaveJdbcTemplate;
+    private TransactionTemplate masterTransactionTemplate;
 
     GrsDao(final Logger logger, final DateTimeProvider dateTimeProvider, final CIString sourceName, final SourceContext sourceContext) {
         this.logger = logger;
@@ -48,15 +54,30 @@ class GrsDao {
 
     private void ensureInitialized() {
         if (masterJdbcTemplate == null) {
-            final JdbcTemplate masterJdbcTemplate = sourceContext.getSourceConfiguration(Source.master(sourceName)).getJdbcTemplate();
+            final SourceConfiguration masterSourceConfiguration = sourceContext.getSourceConfiguration(Source.master(sourceName));
+            final JdbcTemplate masterJdbcTemplate = masterSourceConfiguration.getJdbcTemplate();
             final JdbcTemplate slaveJdbcTemplate = sourceContext.getSourceConfiguration(Source.slave(sourceName)).getJdbcTemplate();
             JdbcRpslObjectOperations.sanityCheck(masterJdbcTemplate);
             JdbcRpslObjectOperations.sanityCheck(slaveJdbcTemplate);
+            this.masterTransactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(masterSourceConfiguration.getDataSource()));
             this.masterJdbcTemplate = masterJdbcTemplate;
             this.slaveJdbcTemplate = slaveJdbcTemplate;
         }
     }
 
+    /**
+     * Execute the updates made by <code>runnable</code> in a single transaction on the master database.
+     */
+    void executeInTransaction(final Runnable runnable) {
+        ensureInitialized();
+        masterTransactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                runnable.run();
+            }
+        });
+    }
+
     void cleanDatabase() {
         ensureInitialized();
         JdbcRpslObjectOperations.truncateTables(masterJdbcTemplate);
@@ -0,0 +1,89 @@
+package net.ripe.db.whois.scheduler.task.grs;
+
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import net.ripe.db.whois.common.domain.CIString;
+import net.ripe.db.whois.common.rpsl.ObjectType;
+import net.ripe.db.whois.common.rpsl.RpslAttribute;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+
+import javax.annotation.CheckForNull;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+import static net.ripe.db.whois.common.domain.CIString.ciString;
+
+/**
+ * 64-bit fingerprints of the objects in a GRS source as last written or confirmed by an import, keyed by type and
+ * primary key, so objects that did not change since the previous dump are skipped without reading them from the
+ * database.
+ * <p/>
+ * Two objects with the same fingerprint are equal according to {@link RpslObject#equals(Object)}, barring hash
+ * collisions. Not thread safe: a source is imported by one thread at a time.
+ */
+class GrsObjectFingerprints {
+    private final Map<ObjectType, Map<CIString, Fingerprint>> fingerprints = Maps.newEnumMap(ObjectType.class);
+
+    static long fingerprint(final RpslObject rpslObject) {
+        final Hasher hasher = Hashing.farmHashFingerprint64().newHasher();
+
+        for (final RpslAttribute attribute : rpslObject.getAttributes()) {
+            if (attribute.getType() == null) {
+                hasher.putByte((byte) 0).putString(attribute.getKey(), StandardCharsets.UTF_8);
+            } else {
+                hasher.putByte((byte) 1).putInt(attribute.getType().ordinal());
+                for (final CIString value : attribute.getCleanValues()) {
+                    hasher.putByte((byte) 2).putString(value.toLowerCase(), StandardCharsets.UTF_8);
+                }
+            }
+        }
+
+        return hasher.hash().asLong();
+    }
+
+    /**
+     * @return the object id of the object with the same type and primary key, if its fingerprint is <code>fingerprint</code>.
+     */
+    @CheckForNull
+    Integer getObjectId(final ObjectType type, final String pkey, final long fingerprint) {
+        final Map<CIString, Fingerprint> fingerprintsForType = fingerprints.get(type);
+        if (fingerprintsForType == null) {
+            return null;
+        }
+
+        final Fingerprint stored = fingerprintsForType.get(ciString(pkey));
+        return stored != null && stored.fingerprint == fingerprint ? stored.objectId : null;
+    }
+
+    void put(final ObjectType type, final String pkey, final int objectId, final long fingerprint) {
+        fingerprints.computeIfAbsent(type, k -> Maps.newHashMap()).put(ciString(pkey), new Fingerprint(objectId, fingerprint));
+    }
+
+    void putAll(final GrsObjectFingerprints other) {
+        for (final Map.Entry<ObjectType, Map<CIString, Fingerprint>> entry : other.fingerprints.entrySet()) {
+            fingerprints.computeIfAbsent(entry.getKey(), k -> Maps.newHashMap()).putAll(entry.getValue());
+        }
+    }
+
+    void removeObjectIds(final Set<Integer> objectIds) {
+        for (final Map<CIString, Fingerprint> fingerprintsForType : fingerprints.values()) {
+            fingerprintsForType.values().removeIf(stored -> objectIds.contains(stored.objectId));
+        }
+    }
+
+    void clear() {
+        fingerprints.clear();
+    }
+
+    private static final class Fingerprint {
+        private final int objectId;
+        private final long fingerprint;
+
+        private Fingerprint(final int objectId, final long fingerprint) {
+            this.objectId = objectId;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -2,7 +2,11 @@ package net.ripe.db.whois.scheduler.task.grs;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.grs.AuthoritativeResource;
 import net.ripe.db.whois.common.rpsl.AttributeSanitizer;
 import net.ripe.db.whois.common.rpsl.AttributeType;
@@ -19,8 +23,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.CheckForNull;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -28,18 +32,41 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Imports a dump in three stages: the dump is read on a parser thread, the objects in it are parsed, filtered and
+ * sanitized in chunks on all cores, and the chunks are compared with the database and written in dump order, one
+ * transaction per chunk, on the importing thread.
+ * <p/>
+ * Objects that are unchanged since the previous import of the source in this process are recognised by their
+ * {@link GrsObjectFingerprints fingerprint}, and skipped without reading them from the database.
+ */
 @Component
 class GrsSourceImporter {
     private static final Logger LOGGER = LoggerFactory.getLogger(GrsSourceImporter.class);
 
     private static final Joiner LINE_JOINER = Joiner.on("");
     private static final int LOG_EVERY_NR_HANDLED = 100000;
+    private static final int CHUNK_SIZE = 500;
+    private static final long POLL_MILLIS = 100;
 
     private final AttributeSanitizer sanitizer;
     private final ResourceTagger resourceTagger;
     private final SourceContext sourceContext;
+    private final int nrPrepareThreads = Runtime.getRuntime().availableProcessors();
+    private final Map<CIString, GrsObjectFingerprints> fingerprintsBySource = new ConcurrentHashMap<>();
 
     private Path downloadDir;
 
@@ -77,6 +104,7 @@ class GrsSourceImporter {
 
     private void acquireAndUpdateGrsData(final GrsSource grsSource, final boolean rebuild, final AuthoritativeResource authoritativeData) {
         final Logger logger = grsSource.getLogger();
+        final GrsObjectFingerprints fingerprints = fingerprintsBySource.computeIfAbsent(grsSource.getName(), k -> new GrsObjectFingerprints());
 
         new Runnable() {
             private final RpslAttribute sourceAttribute = new RpslAttribute(AttributeType.SOURCE, grsSource.getName().toUpperCase());
@@ -84,7 +112,7 @@ class GrsSourceImporter {
             private int nrCreated;
             private int nrUpdated;
             private int nrDeleted;
-            private int nrIgnored;
+            private final AtomicInteger nrIgnored = new AtomicInteger();
 
             private Set<Integer> currentObjectIds;
             private Set<Integer> incompletelyIndexedObjectIds = Sets.newHashSet();
@@ -103,6 +131,7 @@ class GrsSourceImporter {
 
                 if (rebuild) {
                     grsSource.getDao().cleanDatabase();
+                    fingerprints.clear();
                     currentObjectIds = Collections.emptySet();
                     logger.info("Rebuilding database");
                 } else {
@@ -117,118 +146,256 @@ class GrsSourceImporter {
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 } finally {
-                    logger.info("created {} / updated {} / deleted {} / ignored {} in {}", nrCreated, nrUpdated, nrDeleted, nrIgnored, stopwatch.stop());
+                    logger.info("created {} / updated {} / deleted {} / ignored {} in {}", nrCreated, nrUpdated, nrDeleted, nrIgnored.get(), stopwatch.stop());
                 }
 
                 updateIndexes();
             }
 
             private void importObjects(final File dumpFile) throws IOException {
-                grsSource.handleObjects(dumpFile, new ObjectHandler() {
-                    @Override
-                    public void handle(final List<String> lines) {
-                        final String rpslObjectString = LINE_JOINER.join(lines);
+                final BlockingQueue<Future<List<RpslObject>>> chunks = new ArrayBlockingQueue<>(2 * nrPrepareThreads);
+                final ExecutorService parseExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat(String.format("grs-parse-%s", grsSource.getName()))
+                        .setDaemon(true)
+                        .build());
+                final ExecutorService prepareExecutor = Executors.newFixedThreadPool(nrPrepareThreads, new ThreadFactoryBuilder()
+                        .setNameFormat(String.format("grs-prepare-%s-%%d", grsSource.getName()))
+                        .setDaemon(true)
+                        .build());
 
-                        final RpslObject rpslObject;
+                try {
+                    final Future<Void> parser = parseExecutor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            readObjects(dumpFile, prepareExecutor, chunks);
+                            return null;
+                        }
+                    });
+
+                    while (true) {
+                        final Future<List<RpslObject>> chunk;
                         try {
-                            rpslObject = RpslObject.parse(rpslObjectString);
-                        } catch (RuntimeException e) {
-                            logger.info("Unable to parse input as object: {}\n\n{}\n", e.getMessage(), rpslObjectString);
-                            return;
+                            chunk = chunks.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IllegalStateException("Interrupted", e);
                         }
 
-                        handle(FILTER_CHANGED_FUNCTION.apply(rpslObject));
+                        if (chunk != null) {
+                            writeObjects(getResult(chunk));
+                        } else if (parser.isDone() && chunks.isEmpty()) {
+                            getResult(parser);
+                            break;
+                        }
+                    }
+                } finally {
+                    parseExecutor.shutdownNow();
+                    prepareExecutor.shutdownNow();
+                    for (final Future<List<RpslObject>> chunk : chunks) {
+                        chunk.cancel(true);
+                    }
+                }
+            }
+
+            private <T> T getResult(final Future<T> future) throws IOException {
+                try {
+                    return Uninterruptibles.getUninterruptibly(future);
+                } catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+
+            private void readObjects(final File dumpFile, final ExecutorService prepareExecutor, final BlockingQueue<Future<List<RpslObject>>> chunks) throws IOException {
+                final List<Object> chunk = Lists.newArrayListWithCapacity(CHUNK_SIZE);
+
+                grsSource.handleObjects(dumpFile, new ObjectHandler() {
+                    @Override
+                    public void handle(final List<String> lines) {
+                        // the lines may be reused by the source
+                        add(LINE_JOINER.join(lines));
                     }
 
                     @Override
                     public void handle(final RpslObject rpslObject) {
-                        if (rpslObject.getType() == null) {
-                            logger.debug("Unknown type: \n\n{}\n", rpslObject);
-                            nrIgnored++;
-                        } else {
-                            final ObjectMessages messages = new ObjectMessages();
-                            final RpslObject filteredObject = filterObject(rpslObject);
-                            final RpslObject cleanObject = sanitizer.sanitize(filteredObject, messages);
-                            final RpslAttribute typeAttribute = cleanObject.getTypeAttribute();
-                            typeAttribute.validateSyntax(cleanObject.getType(), messages);
-                            if (messages.hasErrors()) {
-                                logger.debug("Errors for object with key {}: {}", typeAttribute, messages);
-                                nrIgnored++;
-                            } else if (authoritativeData.isMaintainedInRirSpace(cleanObject)) {
-                                createOrUpdate(cleanObject);
+                        add(rpslObject);
+                    }
+
+                    private void add(final Object object) {
+                        chunk.add(object);
+                        if (chunk.size() >= CHUNK_SIZE) {
+                            submitChunk(chunk, prepareExecutor, chunks);
+                            chunk.clear();
+                        }
+                    }
+                });
+
+                if (!chunk.isEmpty()) {
+                    submitChunk(chunk, prepareExecutor, chunks);
+                }
+            }
+
+            private void submitChunk(final List<Object> objects, final ExecutorService prepareExecutor, final BlockingQueue<Future<List<RpslObject>>> chunks) {
+                final List<Object> chunk = Lists.newArrayList(objects);
+                final Future<List<RpslObject>> preparedChunk = prepareExecutor.submit(new Callable<List<RpslObject>>() {
+                    @Override
+                    public List<RpslObject> call() {
+                        final List<RpslObject> result = Lists.newArrayListWithCapacity(chunk.size());
+                        for (final Object object : chunk) {
+                            final RpslObject preparedObject = object instanceof String ? prepare((String) object) : prepare((RpslObject) object);
+                            if (preparedObject != null) {
+                                result.add(preparedObject);
                             }
                         }
+                        return result;
                     }
+                });
+
+                try {
+                    chunks.put(preparedChunk);
+                } catch (InterruptedException e) {
+                    preparedChunk.cancel(true);
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted", e);
+                }
+            }
+
+            @CheckForNull
+            private RpslObject prepare(final String rpslObjectString) {
+                final RpslObject rpslObject;
+                try {
+                    rpslObject = RpslObject.parse(rpslObjectString);
+                } catch (RuntimeException e) {
+                    logger.info("Unable to parse input as object: {}\n\n{}\n", e.getMessage(), rpslObjectString);
+                    return null;
+                }
 
-                    private RpslObject filterObject(final RpslObject rpslObject) {
-                        final ObjectTemplate objectTemplate = ObjectTemplate.getTemplate(rpslObject.getType());
+                return prepare(FILTER_CHANGED_FUNCTION.apply(rpslObject));
+            }
 
-                        final RpslObjectBuilder builder = new RpslObjectBuilder(rpslObject);
+            @CheckForNull
+            private RpslObject prepare(final RpslObject rpslObject) {
+                if (rpslObject.getType() == null) {
+                    logger.debug("Unknown type: \n\n{}\n", rpslObject);
+                    nrIgnored.incrementAndGet();
+                    return null;
+                }
 
-                        for (int i = 0; i < builder.size(); i++) {
-                            final RpslAttribute rpslAttribute = builder.get(i);
-                            final AttributeType attributeType = rpslAttribute.getType();
+                final ObjectMessages messages = new ObjectMessages();
+                final RpslObject filteredObject = filterObject(rpslObject);
+                final RpslObject cleanObject = sanitizer.sanitize(filteredObject, messages);
+                final RpslAttribute typeAttribute = cleanObject.getTypeAttribute();
+                typeAttribute.validateSyntax(cleanObject.getType(), messages);
+                if (messages.hasErrors()) {
+                    logger.debug("Errors for object with key {}: {}", typeAttribute, messages);
+                    nrIgnored.incrementAndGet();
+                    return null;
+                }
 
-                            if (attributeType == null || !objectTemplate.hasAttribute(attributeType)) {
-                                logger.debug("Ignoring attribute in object {}: {}", rpslObject.getFormattedKey(), rpslAttribute);
-                                builder.remove(i--);
+                return authoritativeData.isMaintainedInRirSpace(cleanObject) ? cleanObject : null;
+            }
 
-                            } else  if (attributeType.equals(AttributeType.SOURCE)) {
-                                builder.remove(i--);
-                            }
-                        }
+            private RpslObject filterObject(final RpslObject rpslObject) {
+                final ObjectTemplate objectTemplate = ObjectTemplate.getTemplate(rpslObject.getType());
+
+                final RpslObjectBuilder builder = new RpslObjectBuilder(rpslObject);
+
+                for (int i = 0; i < builder.size(); i++) {
+                    final RpslAttribute rpslAttribute = builder.get(i);
+                    final AttributeType attributeType = rpslAttribute.getType();
 
-                        // best not to sort to avoid reordering remarks: attributes
-                        builder.append(sourceAttribute);
+                    if (attributeType == null || !objectTemplate.hasAttribute(attributeType)) {
+                        logger.debug("Ignoring attribute in object {}: {}", rpslObject.getFormattedKey(), rpslAttribute);
+                        builder.remove(i--);
 
-                        return builder.get();
+                    } else  if (attributeType.equals(AttributeType.SOURCE)) {
+                        builder.remove(i--);
                     }
+                }
 
-                    @Transactional
-                    private void createOrUpdate(final RpslObject importedObject) {
-                        final String pkey = importedObject.getKey().toString();
-                        final ObjectType type = importedObject.getType();
-                        final GrsObjectInfo grsObjectInfo = grsSource.getDao().find(pkey, type);
+                // best not to sort to avoid reordering remarks: attributes
+                builder.append(sourceAttribute);
 
-                        if (grsObjectInfo == null) {
-                            if (type == ObjectType.PERSON && grsSource.getDao().find(pkey, ObjectType.ROLE) != null) {
-                                return;
-                            }
+                return builder.get();
+            }
 
-                            if (type == ObjectType.ROLE && grsSource.getDao().find(pkey, ObjectType.PERSON) != null) {
-                                return;
-                            }
+            private void writeObjects(final List<RpslObject> importedObjects) {
+                if (importedObjects.isEmpty()) {
+                    return;
+                }
 
-                            create(importedObject);
-                        } else {
-                            currentObjectIds.remove(grsObjectInfo.getObjectId());
-                            if (!grsObjectInfo.getRpslObject().equals(importedObject)) {
-                                update(importedObject, grsObjectInfo);
-                            }
+                // only remember fingerprints of committed objects
+                final GrsObjectFingerprints writtenFingerprints = new GrsObjectFingerprints();
+                grsSource.getDao().executeInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (final RpslObject importedObject : importedObjects) {
+                            createOrUpdate(importedObject, writtenFingerprints);
                         }
+                    }
+                });
 
-                        final int nrImported = nrCreated + nrUpdated;
-                        if ((nrImported % LOG_EVERY_NR_HANDLED == 0) && (nrImported > 0)) {
-                            logger.info("Imported {} objects", nrImported);
-                        }
+                fingerprints.putAll(writtenFingerprints);
+            }
+
+            private void createOrUpdate(final RpslObject importedObject, final GrsObjectFingerprints writtenFingerprints) {
+                final String pkey = importedObject.getKey().toString();
+                final ObjectType type = importedObject.getType();
+                final long fingerprint = GrsObjectFingerprints.fingerprint(importedObject);
+
+                final Integer unchangedObjectId = fingerprints.getObjectId(type, pkey, fingerprint);
+                if (unchangedObjectId != null && currentObjectIds.remove(unchangedObjectId)) {
+                    return;
+                }
+
+                final GrsObjectInfo grsObjectInfo = grsSource.getDao().find(pkey, type);
+
+                if (grsObjectInfo == null) {
+                    if (type == ObjectType.PERSON && grsSource.getDao().find(pkey, ObjectType.ROLE) != null) {
+                        return;
                     }
 
-                    private void create(final RpslObject importedObject) {
-                        final GrsDao.UpdateResult updateResult = grsSource.getDao().createObject(importedObject);
-                        if (updateResult.hasMissingReferences()) {
-                            incompletelyIndexedObjectIds.add(updateResult.getObjectId());
-                        }
-                        nrCreated++;
+                    if (type == ObjectType.ROLE && grsSource.getDao().find(pkey, ObjectType.PERSON) != null) {
+                        return;
                     }
 
-                    private void update(final RpslObject importedObject, final GrsObjectInfo grsObjectInfo) {
-                        final GrsDao.UpdateResult updateResult = grsSource.getDao().updateObject(grsObjectInfo, importedObject);
-                        if (updateResult.hasMissingReferences()) {
-                            incompletelyIndexedObjectIds.add(updateResult.getObjectId());
-                        }
-                        nrUpdated++;
+                    final int objectId = create(importedObject);
+                    writtenFingerprints.put(type, pkey, objectId, fingerprint);
+                } else {
+                    currentObjectIds.remove(grsObjectInfo.getObjectId());
+                    if (!grsObjectInfo.getRpslObject().equals(importedObject)) {
+                        update(importedObject, grsObjectInfo);
                     }
-                });
+                    writtenFingerprints.put(type, pkey, grsObjectInfo.getObjectId(), fingerprint);
+                }
+
+                final int nrImported = nrCreated + nrUpdated;
+                if ((nrImported % LOG_EVERY_NR_HANDLED == 0) && (nrImported > 0)) {
+                    logger.info("Imported {} objects", nrImported);
+                }
+            }
+
+            private int create(final RpslObject importedObject) {
+                final GrsDao.UpdateResult updateResult = grsSource.getDao().createObject(importedObject);
+                if (updateResult.hasMissingReferences()) {
+                    incompletelyIndexedObjectIds.add(updateResult.getObjectId());
+                }
+                nrCreated++;
+                return updateResult.getObjectId();
+            }
+
+            private void update(final RpslObject importedObject, final GrsObjectInfo grsObjectInfo) {
+                final GrsDao.UpdateResult updateResult = grsSource.getDao().updateObject(grsObjectInfo, importedObject);
+                if (updateResult.hasMissingReferences()) {
+                    incompletelyIndexedObjectIds.add(updateResult.getObjectId());
+                }
+                nrUpdated++;
             }
 
             private void deleteNotFoundInImport() {
@@ -246,6 +413,8 @@ class GrsSourceImporter {
                         logger.error("Deleting object with id: {}", objectId, e);
                     }
                 }
+
+                fingerprints.removeObjectIds(currentObjectIds);
             }
 
             private void updateIndexes() {
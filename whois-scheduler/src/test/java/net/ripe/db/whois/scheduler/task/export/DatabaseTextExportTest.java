@@ -19,4 +19,11 @@ public class DatabaseTextExportTest {
 
         verify(rpslObjectsExporter).export();
     }
+
+    @Test
+    public void runIncremental() {
+        subject.runIncremental();
+
+        verify(rpslObjectsExporter).exportChanges();
+    }
 }
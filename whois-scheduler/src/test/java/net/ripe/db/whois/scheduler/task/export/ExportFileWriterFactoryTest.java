@@ -26,6 +26,7 @@ public class ExportFileWriterFactoryTest {
     private static final int LAST_SERIAL = 1234;
 
     @Rule public TemporaryFolder folder = new TemporaryFolder();
+    @Rule public TemporaryFolder segmentFolder = new TemporaryFolder();
 
     @Mock
     DummifierNrtm dummifierNrtm;
@@ -40,12 +41,12 @@ public class ExportFileWriterFactoryTest {
     @Test(expected = IllegalStateException.class)
     public void createExportFileWriters_existing_dir() throws IOException {
         folder.newFolder("dbase");
-        subject.createExportFileWriters(folder.getRoot(), LAST_SERIAL);
+        subject.createExportFileWriters(folder.getRoot(), segmentFolder.getRoot(), LAST_SERIAL, null);
     }
 
     @Test
     public void createExportFileWriters() {
-        final List<ExportFileWriter> exportFileWriters = subject.createExportFileWriters(folder.getRoot(), LAST_SERIAL);
+        final List<ExportFileWriter> exportFileWriters = subject.createExportFileWriters(folder.getRoot(), segmentFolder.getRoot(), LAST_SERIAL, null);
         assertThat(exportFileWriters.isEmpty(), Matchers.is(false));
 
         final File[] files = folder.getRoot().listFiles();
@@ -78,13 +79,13 @@ public class ExportFileWriterFactoryTest {
 
     @Test
     public void isExportDir_created() {
-        subject.createExportFileWriters(folder.getRoot(), LAST_SERIAL);
+        subject.createExportFileWriters(folder.getRoot(), segmentFolder.getRoot(), LAST_SERIAL, null);
         assertThat(subject.isExportDir(folder.getRoot()), Matchers.is(true));
     }
 
     @Test
     public void isLastSerialFile_created() throws IOException {
-        subject.createExportFileWriters(folder.getRoot(), LAST_SERIAL);
+        subject.createExportFileWriters(folder.getRoot(), segmentFolder.getRoot(), LAST_SERIAL, null);
 
         final File currentSerialFile = new File(folder.getRoot(), "dbase/RIPE.CURRENTSERIAL");
         assertThat(currentSerialFile.exists(), Matchers.is(true));
@@ -33,6 +33,7 @@ import static org.mockito.Mockito.when;
 @RunWith(MockitoJUnitRunner.class)
 public class ExportFileWriterTest {
     @Rule public TemporaryFolder folder = new TemporaryFolder();
+    @Rule public TemporaryFolder segmentFolder = new TemporaryFolder();
 
     @Mock FilenameStrategy filenameStrategy;
     @Mock DecorationStrategy decorationStrategy;
@@ -58,7 +59,7 @@ public class ExportFileWriterTest {
 
         when(exportFilter.shouldExport(any(RpslObject.class))).thenReturn(true);
 
-        subject = new ExportFileWriter(folder.getRoot(), filenameStrategy, decorationStrategy, exportFilter);
+        subject = new ExportFileWriter(folder.getRoot(), segmentFolder.getRoot(), filenameStrategy, decorationStrategy, exportFilter, null);
     }
 
     @SuppressWarnings("unchecked")
@@ -71,6 +72,7 @@ public class ExportFileWriterTest {
         subject.write(RpslObject.parse("inetnum: 193.0.0.0 - 193.0.0.10"), Collections.EMPTY_LIST);
         subject.write(RpslObject.parse("route: 193.0.0.0 - 193.0.0.10\norigin: AS12"), Lists.newArrayList(new Tag(CIString.ciString("foo"), 3, "bar")));
         subject.close();
+        subject.writeExportFiles();
 
         final File[] files = folder.getRoot().listFiles();
         Assert.assertNotNull(files);
@@ -100,6 +102,25 @@ public class ExportFileWriterTest {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void segments_not_written_to_are_kept() throws IOException {
+        subject.write(RpslObject.parse("mntner: DEV-MNT1"), Collections.EMPTY_LIST);
+        subject.write(RpslObject.parse("inetnum: 193.0.0.0 - 193.0.0.10"), Collections.EMPTY_LIST);
+        subject.close();
+        subject.writeExportFiles();
+
+        final ExportFileWriter next = new ExportFileWriter(folder.getRoot(), segmentFolder.getRoot(), filenameStrategy, decorationStrategy, exportFilter, null);
+        next.write(RpslObject.parse("inetnum: 193.0.0.0 - 193.0.0.20"), Collections.EMPTY_LIST);
+        next.close();
+        next.writeExportFiles();
+
+        checkFile(new File(folder.getRoot(), "mntner.gz"), "" +
+                "mntner:         DEV-MNT1\n");
+        checkFile(new File(folder.getRoot(), "inetnum.gz"), "" +
+                "inetnum:        193.0.0.0 - 193.0.0.20\n");
+    }
+
     private void checkFile(final File file, final String expectedContents) throws IOException {
         final String content = FileCopyUtils.copyToString(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), StandardCharsets.ISO_8859_1));
         Assert.assertThat(content, Matchers.is(QueryMessages.termsAndConditionsDump() + "\n" + expectedContents));
@@ -107,6 +128,6 @@ public class ExportFileWriterTest {
 
     @Test(expected = RuntimeException.class)
     public void unexisting_folder() throws IOException {
-        new ExportFileWriter(new File(folder.getRoot().getAbsolutePath() + "does not exist"), filenameStrategy, decorationStrategy, exportFilter);
+        new ExportFileWriter(new File(folder.getRoot().getAbsolutePath() + "does not exist"), segmentFolder.getRoot(), filenameStrategy, decorationStrategy, exportFilter, null);
     }
 }
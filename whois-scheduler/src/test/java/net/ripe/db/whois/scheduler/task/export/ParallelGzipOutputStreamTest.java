@@ -0,0 +1,71 @@
+package net.ripe.db.whois.scheduler.task.export;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.util.FileCopyUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ParallelGzipOutputStreamTest {
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void empty() throws IOException {
+        assertThat(gunzip(gzip(new byte[0])), is(new byte[0]));
+    }
+
+    @Test
+    public void multiple_blocks_read_as_single_stream() throws IOException {
+        final byte[] data = new byte[10 * ParallelGzipOutputStream.BLOCK_SIZE + 123];
+        new Random(1).nextBytes(data);
+
+        assertThat(gunzip(gzip(data)), is(data));
+    }
+
+    @Test
+    public void single_bytes() throws IOException {
+        final byte[] data = new byte[ParallelGzipOutputStream.BLOCK_SIZE + 1];
+        new Random(2).nextBytes(data);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream subject = new ParallelGzipOutputStream(out, executor)) {
+            for (final byte b : data) {
+                subject.write(b);
+            }
+        }
+
+        assertThat(gunzip(out.toByteArray()), is(data));
+    }
+
+    private byte[] gzip(final byte[] data) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream subject = new ParallelGzipOutputStream(out, executor)) {
+            // write in odd sized pieces so blocks are filled across writes
+            for (int offset = 0; offset < data.length; offset += 10007) {
+                subject.write(data, offset, Math.min(10007, data.length - offset));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(final byte[] data) throws IOException {
+        if (data.length == 0) {
+            return data;
+        }
+        return FileCopyUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(data)));
+    }
+}
@@ -1,8 +1,9 @@
 package net.ripe.db.whois.scheduler.task.export;
 
 import com.google.common.collect.Lists;
-import net.ripe.db.whois.common.dao.TagsDao;
+import com.google.common.collect.Sets;
 import net.ripe.db.whois.common.domain.Tag;
+import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.scheduler.task.export.dao.ExportCallbackHandler;
 import net.ripe.db.whois.scheduler.task.export.dao.ExportDao;
@@ -24,10 +25,11 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -36,11 +38,11 @@ public class RpslObjectsToTextExporterTest {
 
     @Mock ExportFileWriterFactory exportFileWriterFactory;
     @Mock ExportDao exportDao;
-    @Mock TagsDao tagsDao;
 
     RpslObjectsExporter subject;
     File exportDir;
     File tmpDir;
+    File segmentsDir;
 
     @Before
     public void setUp() throws Exception {
@@ -49,10 +51,11 @@ public class RpslObjectsToTextExporterTest {
 
         final String exportdirName = exportDir.getAbsolutePath();
         final String tmpDirName = tmpDir.getAbsolutePath();
+        segmentsDir = new File(folder.getRoot(), "export_segments");
 
         when(exportFileWriterFactory.isExportDir(any(File.class))).thenReturn(true);
 
-        subject = new RpslObjectsExporter(exportFileWriterFactory, exportDao, tagsDao, exportdirName, tmpDirName, true);
+        subject = new RpslObjectsExporter(exportFileWriterFactory, exportDao, exportdirName, tmpDirName, segmentsDir.getAbsolutePath(), true, true);
     }
 
     @Test(expected = RuntimeException.class)
@@ -69,7 +72,54 @@ public class RpslObjectsToTextExporterTest {
 
         subject.export();
 
-        Mockito.verify(exportFileWriterFactory).createExportFileWriters(tmpDir, maxSerial);
+        Mockito.verify(exportFileWriterFactory).createExportFileWriters(eq(tmpDir), any(File.class), eq(maxSerial), any(ExecutorService.class));
+    }
+
+    @Test
+    public void export_changes() {
+        when(exportDao.getMaxSerial()).thenReturn(10);
+        subject.export();
+
+        when(exportDao.getMaxSerial()).thenReturn(12);
+        when(exportDao.getObjectTypesChangedSince(10)).thenReturn(Sets.immutableEnumSet(ObjectType.MNTNER));
+        subject.exportChanges();
+
+        Mockito.verify(exportDao).exportObjects(any(ExportCallbackHandler.class));
+        Mockito.verify(exportDao).exportObjects(any(ExportCallbackHandler.class), eq(Sets.immutableEnumSet(ObjectType.MNTNER)));
+        Mockito.verify(exportFileWriterFactory).createExportFileWriters(eq(tmpDir), any(File.class), eq(12), any(ExecutorService.class));
+        Assert.assertThat(tmpDir.exists(), Matchers.is(false));
+        Assert.assertThat(new File(segmentsDir, "CURRENTSERIAL").exists(), Matchers.is(true));
+    }
+
+    @Test
+    public void export_changes_without_previous_export() {
+        when(exportDao.getMaxSerial()).thenReturn(10);
+
+        subject.exportChanges();
+
+        Mockito.verify(exportDao).exportObjects(any(ExportCallbackHandler.class));
+        Mockito.verify(exportDao, Mockito.never()).getObjectTypesChangedSince(Mockito.anyInt());
+    }
+
+    @Test
+    public void export_changes_unchanged() {
+        when(exportDao.getMaxSerial()).thenReturn(10);
+        subject.export();
+
+        subject.exportChanges();
+
+        Mockito.verify(exportFileWriterFactory).createExportFileWriters(eq(tmpDir), any(File.class), eq(10), any(ExecutorService.class));
+        Assert.assertThat(exportDir.exists(), Matchers.is(true));
+        Assert.assertThat(tmpDir.exists(), Matchers.is(false));
+    }
+
+    @Test
+    public void export_changes_disabled() {
+        subject = new RpslObjectsExporter(exportFileWriterFactory, exportDao, exportDir.getAbsolutePath(), tmpDir.getAbsolutePath(), segmentsDir.getAbsolutePath(), true, false);
+
+        subject.exportChanges();
+
+        Mockito.verifyZeroInteractions(exportDao);
     }
 
     @Test
@@ -85,7 +135,7 @@ public class RpslObjectsToTextExporterTest {
         @SuppressWarnings("unchecked")
         final List<Tag> emptyList = Collections.EMPTY_LIST;
 
-        when(exportFileWriterFactory.createExportFileWriters(tmpDir, 0)).thenReturn(Lists.newArrayList(exportFileWriter1, exportFileWriter2));
+        when(exportFileWriterFactory.createExportFileWriters(eq(tmpDir), any(File.class), eq(0), any(ExecutorService.class))).thenReturn(Lists.newArrayList(exportFileWriter1, exportFileWriter2));
 
         final RpslObject rpslObject1 = RpslObject.parse(2, "mntner: DEV-MNT1");
         final RpslObject rpslObject2 = RpslObject.parse(3, "mntner: DEV-MNT2");
@@ -96,24 +146,24 @@ public class RpslObjectsToTextExporterTest {
                 ExportCallbackHandler exportCallbackHandler = (ExportCallbackHandler) invocation.getArguments()[0];
 
                 for (final RpslObject rpslObject : Lists.newArrayList(rpslObject1, rpslObject2)) {
-                    exportCallbackHandler.exportObject(rpslObject);
+                    exportCallbackHandler.exportObject(rpslObject, emptyList);
                 }
 
                 return null;
             }
         }).when(exportDao).exportObjects(any(ExportCallbackHandler.class));
 
-        when(tagsDao.getTags(anyInt())).thenReturn(emptyList);
-
         subject.export();
 
         Mockito.verify(exportFileWriter1).write(rpslObject1, emptyList);
         Mockito.verify(exportFileWriter1).write(rpslObject2, emptyList);
         Mockito.verify(exportFileWriter1).close();
+        Mockito.verify(exportFileWriter1).writeExportFiles();
 
         Mockito.verify(exportFileWriter2).write(rpslObject1, emptyList);
         Mockito.verify(exportFileWriter2).write(rpslObject2, emptyList);
         Mockito.verify(exportFileWriter2).close();
+        Mockito.verify(exportFileWriter2).writeExportFiles();
     }
 
     @Test
@@ -122,7 +172,7 @@ public class RpslObjectsToTextExporterTest {
         @SuppressWarnings("unchecked")
         final List<Tag> emptyList = Collections.EMPTY_LIST;
 
-        when(exportFileWriterFactory.createExportFileWriters(tmpDir, 0)).thenReturn(Lists.newArrayList(exportFileWriter));
+        when(exportFileWriterFactory.createExportFileWriters(eq(tmpDir), any(File.class), eq(0), any(ExecutorService.class))).thenReturn(Lists.newArrayList(exportFileWriter));
 
         final RpslObject rpslObject1 = RpslObject.parse(2, "mntner: DEV-MNT1");
         final RpslObject rpslObject2 = RpslObject.parse(3, "mntner: DEV-MNT2");
@@ -132,7 +182,7 @@ public class RpslObjectsToTextExporterTest {
             public Void answer(InvocationOnMock invocation) throws Throwable {
                 ExportCallbackHandler exportCallbackHandler = (ExportCallbackHandler) invocation.getArguments()[0];
                 for (final RpslObject rpslObject : Lists.newArrayList(rpslObject1, rpslObject2)) {
-                    exportCallbackHandler.exportObject(rpslObject);
+                    exportCallbackHandler.exportObject(rpslObject, emptyList);
                 }
 
                 return null;
@@ -141,8 +191,6 @@ public class RpslObjectsToTextExporterTest {
 
         Mockito.doThrow(IOException.class).when(exportFileWriter).write(rpslObject1, emptyList);
 
-        when(tagsDao.getTags(2)).thenReturn(emptyList);
-
         try {
             subject.export();
             Assert.fail("Expected exception");
@@ -152,6 +200,7 @@ public class RpslObjectsToTextExporterTest {
         Mockito.verify(exportFileWriter).write(rpslObject1, emptyList);
         Mockito.verify(exportFileWriter, Mockito.never()).write(rpslObject2, emptyList);
         Mockito.verify(exportFileWriter).close();
+        Mockito.verify(exportFileWriter, Mockito.never()).writeExportFiles();
     }
 
     @Test
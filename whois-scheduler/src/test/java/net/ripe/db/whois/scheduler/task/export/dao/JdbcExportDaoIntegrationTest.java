@@ -1,18 +1,27 @@
 package net.ripe.db.whois.scheduler.task.export.dao;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.jayway.awaitility.Awaitility;
 import net.ripe.db.whois.common.IntegrationTest;
+import net.ripe.db.whois.common.domain.Tag;
+import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.scheduler.AbstractSchedulerIntegrationTest;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.IntStream;
 
+import static net.ripe.db.whois.common.domain.CIString.ciString;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
@@ -34,7 +43,7 @@ public class JdbcExportDaoIntegrationTest extends AbstractSchedulerIntegrationTe
         databaseHelper.addObject(RpslObject.parse("mntner: DEV-MNT"));
         final AtomicBoolean callback = new AtomicBoolean();
 
-        subject.exportObjects(invocation -> callback.set(true));
+        subject.exportObjects((object, tags) -> callback.set(true));
 
         Awaitility.await().until(() -> true);
     }
@@ -44,7 +53,7 @@ public class JdbcExportDaoIntegrationTest extends AbstractSchedulerIntegrationTe
         databaseHelper.addObject(RpslObject.parse("mntner: DEV-MNT"));
 
         try {
-            subject.exportObjects(invocation -> { throw new RuntimeException("Oops"); });
+            subject.exportObjects((object, tags) -> { throw new RuntimeException("Oops"); });
             fail("Should throw exception");
         } catch (RuntimeException ignored) {
             // expected
@@ -61,7 +70,7 @@ public class JdbcExportDaoIntegrationTest extends AbstractSchedulerIntegrationTe
             databaseHelper.addObject(object);
         });
 
-        subject.exportObjects(object -> {
+        subject.exportObjects((object, tags) -> {
             if (!objects.remove(object)) {
                 fail("Object not in set: " + object);
             }
@@ -69,4 +78,45 @@ public class JdbcExportDaoIntegrationTest extends AbstractSchedulerIntegrationTe
 
         assertThat(objects, hasSize(0));
     }
+
+    @Test
+    public void exportObjects_with_tags() {
+        final RpslObject tagged = databaseHelper.addObject(RpslObject.parse("mntner: TAGGED-MNT"));
+        final RpslObject untagged = databaseHelper.addObject(RpslObject.parse("mntner: UNTAGGED-MNT"));
+        databaseHelper.getWhoisTemplate().update("INSERT INTO tags(object_id, tag_id, data) VALUES (?, 'unref', '28'), (?, 'foo', 'bar')",
+                tagged.getObjectId(), tagged.getObjectId());
+
+        final Map<RpslObject, List<Tag>> exported = Maps.newHashMap();
+        subject.exportObjects((object, tags) -> exported.put(object, Lists.newArrayList(tags)));
+
+        assertThat(exported.size(), is(2));
+        assertThat(exported.get(tagged), containsInAnyOrder(
+                new Tag(ciString("unref"), tagged.getObjectId(), "28"),
+                new Tag(ciString("foo"), tagged.getObjectId(), "bar")));
+        assertThat(exported.get(untagged), hasSize(0));
+    }
+
+    @Test
+    public void getObjectTypesChangedSince() {
+        databaseHelper.addObject(RpslObject.parse("mntner: DEV-MNT"));
+        final RpslObject person = databaseHelper.addObject(RpslObject.parse("person: Test Person\nnic-hdl: TP1-TEST"));
+        final int serial = subject.getMaxSerial();
+
+        databaseHelper.addObject(RpslObject.parse("role: Test Role\nnic-hdl: TR1-TEST"));
+        databaseHelper.deleteObject(person);
+
+        assertThat(subject.getObjectTypesChangedSince(serial), containsInAnyOrder(ObjectType.ROLE, ObjectType.PERSON));
+        assertThat(subject.getObjectTypesChangedSince(subject.getMaxSerial()), hasSize(0));
+    }
+
+    @Test
+    public void exportObjects_of_types() {
+        final RpslObject mntner = databaseHelper.addObject(RpslObject.parse("mntner: DEV-MNT"));
+        databaseHelper.addObject(RpslObject.parse("person: Test Person\nnic-hdl: TP1-TEST"));
+
+        final List<RpslObject> exported = Lists.newArrayList();
+        subject.exportObjects((object, tags) -> exported.add(object), Sets.immutableEnumSet(ObjectType.MNTNER));
+
+        assertThat(exported, contains(mntner));
+    }
 }
@@ -0,0 +1,51 @@
+package net.ripe.db.whois.scheduler.task.grs;
+
+import com.google.common.collect.Sets;
+import net.ripe.db.whois.common.rpsl.ObjectType;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class GrsObjectFingerprintsTest {
+    private final GrsObjectFingerprints subject = new GrsObjectFingerprints();
+
+    @Test
+    public void fingerprint_equal_objects() {
+        assertThat(GrsObjectFingerprints.fingerprint(RpslObject.parse("mntner: TEST-MNT\nmnt-by: TEST-MNT # comment\nsource: TEST")),
+                is(GrsObjectFingerprints.fingerprint(RpslObject.parse("mntner:   test-mnt\nmnt-by: TEST-MNT\nsource: TEST"))));
+    }
+
+    @Test
+    public void fingerprint_different_objects() {
+        assertThat(GrsObjectFingerprints.fingerprint(RpslObject.parse("mntner: TEST-MNT\nmnt-by: TEST-MNT\nsource: TEST")),
+                is(not(GrsObjectFingerprints.fingerprint(RpslObject.parse("mntner: TEST-MNT\nmnt-by: OTHER-MNT\nsource: TEST")))));
+        assertThat(GrsObjectFingerprints.fingerprint(RpslObject.parse("mntner: TEST-MNT\nmnt-by: TEST-MNT\nsource: TEST")),
+                is(not(GrsObjectFingerprints.fingerprint(RpslObject.parse("mntner: TEST-MNT\nsource: TEST\nmnt-by: TEST-MNT")))));
+    }
+
+    @Test
+    public void get_object_id() {
+        subject.put(ObjectType.MNTNER, "TEST-MNT", 1, 100L);
+
+        assertThat(subject.getObjectId(ObjectType.MNTNER, "test-mnt", 100L), is(1));
+        assertThat(subject.getObjectId(ObjectType.MNTNER, "TEST-MNT", 101L), is(nullValue()));
+        assertThat(subject.getObjectId(ObjectType.PERSON, "TEST-MNT", 100L), is(nullValue()));
+    }
+
+    @Test
+    public void put_all_and_remove_object_ids() {
+        final GrsObjectFingerprints other = new GrsObjectFingerprints();
+        other.put(ObjectType.MNTNER, "ONE-MNT", 1, 100L);
+        other.put(ObjectType.MNTNER, "TWO-MNT", 2, 200L);
+        subject.putAll(other);
+
+        subject.removeObjectIds(Sets.newHashSet(1));
+
+        assertThat(subject.getObjectId(ObjectType.MNTNER, "ONE-MNT", 100L), is(nullValue()));
+        assertThat(subject.getObjectId(ObjectType.MNTNER, "TWO-MNT", 200L), is(2));
+    }
+}
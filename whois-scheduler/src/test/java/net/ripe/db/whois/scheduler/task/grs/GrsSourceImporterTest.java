@@ -12,6 +12,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -30,6 +31,7 @@ import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -66,6 +68,14 @@ public class GrsSourceImporterTest {
             }
         });
 
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(grsDao).executeInTransaction(any(Runnable.class));
+
         when(grsDao.createObject(any(RpslObject.class))).thenReturn(updateResultCreate);
         when(grsDao.updateObject(any(GrsObjectInfo.class), any(RpslObject.class))).thenReturn(updateResultUpdate);
 
@@ -362,4 +372,55 @@ public class GrsSourceImporterTest {
 
         verify(grsDao).deleteObject(3);
     }
+
+    @Test
+    public void handle_objects_in_chunks_in_dump_order() throws IOException {
+        when(grsSource.getName()).thenReturn(ciString("APNIC-GRS"));
+        when(authoritativeResource.isMaintainedInRirSpace(any(RpslObject.class))).thenReturn(true);
+
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                final ObjectHandler objectHandler = (ObjectHandler) invocation.getArguments()[1];
+                for (int i = 0; i < 1001; i++) {
+                    objectHandler.handle(RpslObject.parse("mntner: MNT-" + i));
+                }
+                return null;
+            }
+        }).when(grsSource).handleObjects(any(File.class), any(ObjectHandler.class));
+
+        subject.grsImport(grsSource, false);
+
+        final InOrder inOrder = inOrder(grsDao);
+        for (int i = 0; i < 1001; i++) {
+            inOrder.verify(grsDao).createObject(RpslObject.parse("mntner: MNT-" + i + "\nsource: APNIC-GRS"));
+        }
+        verify(grsDao, times(3)).executeInTransaction(any(Runnable.class));
+    }
+
+    @Test
+    public void unchanged_object_skipped_on_next_import() throws IOException {
+        when(grsSource.getName()).thenReturn(ciString("APNIC-GRS"));
+        when(grsDao.getCurrentObjectIds()).thenReturn(Lists.newArrayList(1));
+        when(authoritativeResource.isMaintainedInRirSpace(any(RpslObject.class))).thenReturn(true);
+
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                final ObjectHandler objectHandler = (ObjectHandler) invocation.getArguments()[1];
+                objectHandler.handle(RpslObject.parse("mntner: NOOP-MNT\n"));
+                return null;
+            }
+        }).when(grsSource).handleObjects(any(File.class), any(ObjectHandler.class));
+
+        final GrsObjectInfo grsObjectInfo = new GrsObjectInfo(1, 1, RpslObject.parse("mntner: NOOP-MNT\nsource: APNIC-GRS"));
+        when(grsDao.find("NOOP-MNT", ObjectType.MNTNER)).thenReturn(grsObjectInfo);
+
+        subject.grsImport(grsSource, false);
+        subject.grsImport(grsSource, false);
+
+        verify(grsDao, times(1)).find("NOOP-MNT", ObjectType.MNTNER);
+        verify(grsDao, never()).updateObject(any(GrsObjectInfo.class), any(RpslObject.class));
+        verify(grsDao, never()).deleteObject(anyInt());
+    }
 }
@@ -0,0 +1,108 @@
+package net.ripe.db.whois.update.dao;
+
+import net.ripe.db.whois.common.DateTimeProvider;
+import net.ripe.db.whois.common.domain.Timestamp;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Outgoing mail waiting to be delivered. A message is stored once per digest, so identical messages to the same
+ * recipient that are still waiting are not queued twice.
+ */
+@Repository
+public class MailOutboxDao {
+    private final JdbcTemplate jdbcTemplate;
+    private final DateTimeProvider dateTimeProvider;
+
+    @Autowired
+    public MailOutboxDao(
+            @Qualifier("mailupdatesDataSource") final DataSource dataSource,
+            final DateTimeProvider dateTimeProvider) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.dateTimeProvider = dateTimeProvider;
+    }
+
+    public void addMessage(final String recipient, final String digest, final byte[] message) {
+        jdbcTemplate.update("" +
+                        "INSERT INTO mail_outbox (recipient, digest, message, next_attempt) " +
+                        "VALUES (?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE id = id",
+                recipient,
+                digest,
+                message,
+                now());
+    }
+
+    /**
+     * Claim messages that are due, for <code>claimSeconds</code>: messages not deleted or rescheduled by then (e.g. the
+     * claiming host died) are due again.
+     */
+    public List<OutboxMessage> claimMessages(final int limit, final int claimSeconds) {
+        final String uuid = UUID.randomUUID().toString();
+        final long now = now();
+
+        final int rows = jdbcTemplate.update("" +
+                        "UPDATE mail_outbox " +
+                        "SET claim_uuid = ?, next_attempt = ? " +
+                        "WHERE next_attempt <= ? " +
+                        "ORDER BY id " +
+                        "LIMIT ?",
+                uuid,
+                now + claimSeconds,
+                now,
+                limit);
+
+        if (rows == 0) {
+            return Collections.emptyList();
+        }
+
+        return jdbcTemplate.query("SELECT id, attempts, message FROM mail_outbox WHERE claim_uuid = ? ORDER BY id",
+                (rs, rowNum) -> new OutboxMessage(rs.getInt("id"), rs.getInt("attempts"), rs.getBytes("message")),
+                uuid);
+    }
+
+    public void deleteMessage(final int id) {
+        jdbcTemplate.update("DELETE FROM mail_outbox WHERE id = ?", id);
+    }
+
+    public void rescheduleMessage(final int id, final int delaySeconds) {
+        jdbcTemplate.update("UPDATE mail_outbox SET claim_uuid = NULL, attempts = attempts + 1, next_attempt = ? WHERE id = ?",
+                now() + delaySeconds,
+                id);
+    }
+
+    private long now() {
+        return Timestamp.from(dateTimeProvider.getCurrentDateTime()).getValue();
+    }
+
+    public static final class OutboxMessage {
+        private final int id;
+        private final int attempts;
+        private final byte[] message;
+
+        public OutboxMessage(final int id, final int attempts, final byte[] message) {
+            this.id = id;
+            this.attempts = attempts;
+            this.message = message;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public byte[] getMessage() {
+            return message;
+        }
+    }
+}
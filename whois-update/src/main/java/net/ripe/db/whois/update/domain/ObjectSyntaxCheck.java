@@ -0,0 +1,22 @@
+package net.ripe.db.whois.update.domain;
+
+import net.ripe.db.whois.common.rpsl.ObjectMessages;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+
+public class ObjectSyntaxCheck {
+    private final RpslObject sanitizedObject;
+    private final ObjectMessages messages;
+
+    public ObjectSyntaxCheck(final RpslObject sanitizedObject, final ObjectMessages messages) {
+        this.sanitizedObject = sanitizedObject;
+        this.messages = messages;
+    }
+
+    public RpslObject getSanitizedObject() {
+        return sanitizedObject;
+    }
+
+    public ObjectMessages getMessages() {
+        return messages;
+    }
+}
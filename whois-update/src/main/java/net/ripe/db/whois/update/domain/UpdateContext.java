@@ -22,6 +22,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
+// updates of a request may be handled on different threads, each changing the context of its own update only
 public class UpdateContext {
     private static final AtomicInteger NEXT_NR_SINCE_RESTART = new AtomicInteger();
 
@@ -32,6 +33,7 @@ public class UpdateContext {
     private final Map<CIString, GeneratedKey> generatedKeys = Maps.newHashMap();
     private final Map<Update, Context> contexts = Maps.newLinkedHashMap();
     private final Map<DnsCheckRequest, DnsCheckResponse> dnsCheckResponses = Maps.newHashMap();
+    private final Map<Update, ObjectSyntaxCheck> syntaxChecks = Maps.newHashMap();
     private final Map<String, String> ssoTranslation = Maps.newHashMap();
     private final LoggerContext loggerContext;
 
@@ -100,6 +102,15 @@ public class UpdateContext {
         return dnsCheckResponses.get(dnsCheckRequest);
     }
 
+    public void addSyntaxCheck(final Update update, final ObjectSyntaxCheck syntaxCheck) {
+        syntaxChecks.put(update, syntaxCheck);
+    }
+
+    @CheckForNull
+    public ObjectSyntaxCheck getSyntaxCheck(final Update update) {
+        return syntaxChecks.get(update);
+    }
+
     public void addMessage(final UpdateContainer updateContainer, final Message message) {
         getOrCreateContext(updateContainer).objectMessages.addMessage(message);
         loggerContext.logMessage(updateContainer, message);
@@ -192,7 +203,7 @@ public class UpdateContext {
         }
     }
 
-    public void addGlobalMessage(final Message message) {
+    public synchronized void addGlobalMessage(final Message message) {
         globalMessages.add(message);
     }
 
@@ -202,7 +213,7 @@ public class UpdateContext {
 
     // TODO [AK] Used by velocity templates, add test cases!
     @SuppressWarnings("UnusedDeclaration")
-    Set<Update> getUpdates() {
+    synchronized Set<Update> getUpdates() {
         final Set<Update> updates = contexts.keySet();
         final Set<Update> result = Sets.newLinkedHashSetWithExpectedSize(updates.size());
         for (final Update update : result) {
@@ -233,7 +244,7 @@ public class UpdateContext {
         }
     }
 
-    public void addGeneratedKey(final UpdateContainer updateContainer, final CIString keyPlaceholder, final GeneratedKey generatedKey) {
+    public synchronized void addGeneratedKey(final UpdateContainer updateContainer, final CIString keyPlaceholder, final GeneratedKey generatedKey) {
         final Update update = updateContainer.getUpdate();
         if (placeHolderForUpdate.put(update, keyPlaceholder) != null) {
             throw new IllegalStateException("Multiple place holders for update: " + update.getSubmittedObject().getFormattedKey());
@@ -242,7 +253,7 @@ public class UpdateContext {
         generatedKeys.put(keyPlaceholder, generatedKey);
     }
 
-    public void failedUpdate(final UpdateContainer updateContainer, final Message... messages) {
+    public synchronized void failedUpdate(final UpdateContainer updateContainer, final Message... messages) {
         final Update update = updateContainer.getUpdate();
         final CIString placeHolder = placeHolderForUpdate.remove(update);
         if (placeHolder != null) {
@@ -259,11 +270,11 @@ public class UpdateContext {
     }
 
     @CheckForNull
-    public GeneratedKey getGeneratedKey(final CIString keyPlaceholder) {
+    public synchronized GeneratedKey getGeneratedKey(final CIString keyPlaceholder) {
         return generatedKeys.get(keyPlaceholder);
     }
 
-    public Ack createAck() {
+    public synchronized Ack createAck() {
         final List<UpdateResult> updateResults = Lists.newArrayList();
 
         for (final Update update : contexts.keySet()) {
@@ -291,12 +302,21 @@ public class UpdateContext {
         return new UpdateResult(originalObject, updatedObject, context.action, context.status, context.objectMessages, context.retryCount, dryRun);
     }
 
-    public void prepareForReattempt(final UpdateContainer update) {
+    /**
+     * Add <code>updates</code> not added yet to the ack, in order, before they are handled on different threads.
+     */
+    public synchronized void addUpdates(final Iterable<Update> updates) {
+        for (final Update update : updates) {
+            getOrCreateContext(update);
+        }
+    }
+
+    public synchronized void prepareForReattempt(final UpdateContainer update) {
         final Context context = contexts.remove(update.getUpdate());
         getOrCreateContext(update).retryCount = context.retryCount + 1;
     }
 
-    private Context getOrCreateContext(final UpdateContainer updateContainer) {
+    private synchronized Context getOrCreateContext(final UpdateContainer updateContainer) {
         final Update update = updateContainer.getUpdate();
 
         Context context = contexts.get(update);
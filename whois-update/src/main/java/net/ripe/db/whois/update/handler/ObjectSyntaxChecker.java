@@ -0,0 +1,140 @@
+package net.ripe.db.whois.update.handler;
+
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.rpsl.AttributeSanitizer;
+import net.ripe.db.whois.common.rpsl.ObjectMessages;
+import net.ripe.db.whois.common.rpsl.ObjectTemplate;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.update.domain.ObjectSyntaxCheck;
+import net.ripe.db.whois.update.domain.Operation;
+import net.ripe.db.whois.update.domain.Update;
+import net.ripe.db.whois.update.domain.UpdateContext;
+import net.ripe.db.whois.update.domain.UpdateRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sanitizes and validates the structure and syntax of submitted objects.
+ * <p/>
+ * These checks depend on the submitted object only, so the objects in a request are checked up front on a worker pool,
+ * and the results are used when the updates are handled in order. Authentication and business rules still run in
+ * order, as they depend on the updates before them.
+ */
+@Component
+public class ObjectSyntaxChecker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObjectSyntaxChecker.class);
+
+    private final AttributeSanitizer attributeSanitizer;
+    private final int nrThreads;
+
+    private ExecutorService executorService;
+
+    @Autowired
+    public ObjectSyntaxChecker(final AttributeSanitizer attributeSanitizer,
+                               @Value("${update.syntax.check.threads:4}") final int nrThreads) {
+        this.attributeSanitizer = attributeSanitizer;
+        this.nrThreads = nrThreads;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (nrThreads > 1) {
+            executorService = Executors.newFixedThreadPool(nrThreads, new ThreadFactory() {
+                final AtomicInteger threadNum = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(r, String.format("ObjectSyntaxChecker-%s", threadNum.incrementAndGet()));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+
+    public void checkAll(final UpdateRequest updateRequest, final UpdateContext updateContext) {
+        final List<Update> updates = Lists.newArrayList();
+        for (final Update update : updateRequest.getUpdates()) {
+            if (!Operation.DELETE.equals(update.getOperation())) {
+                updates.add(update);
+            }
+        }
+
+        if (executorService == null || updates.size() < 2) {
+            return;
+        }
+
+        final List<Future<ObjectSyntaxCheck>> futures = Lists.newArrayListWithCapacity(updates.size());
+        try {
+            for (final Update update : updates) {
+                futures.add(executorService.submit(new Callable<ObjectSyntaxCheck>() {
+                    @Override
+                    public ObjectSyntaxCheck call() {
+                        return check(update.getSubmittedObject());
+                    }
+                }));
+            }
+        } catch (RejectedExecutionException e) {
+            // shutting down, remaining objects are checked when handled
+            LOGGER.debug("Syntax check rejected: {}", e.getMessage());
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                updateContext.addSyntaxCheck(updates.get(i), futures.get(i).get());
+            } catch (ExecutionException e) {
+                // checked again when handled, so the failure is reported for the update
+                LOGGER.debug("Syntax check failed: {}", e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the sanitized object, with its messages added to the update.
+     */
+    public RpslObject check(final Update update, final UpdateContext updateContext) {
+        ObjectSyntaxCheck syntaxCheck = updateContext.getSyntaxCheck(update);
+        if (syntaxCheck == null) {
+            syntaxCheck = check(update.getSubmittedObject());
+        }
+
+        updateContext.getMessages(update).addAll(syntaxCheck.getMessages());
+        return syntaxCheck.getSanitizedObject();
+    }
+
+    private ObjectSyntaxCheck check(final RpslObject submittedObject) {
+        final ObjectMessages messages = new ObjectMessages();
+        final RpslObject sanitizedObject = attributeSanitizer.sanitize(submittedObject, messages);
+
+        final ObjectTemplate objectTemplate = ObjectTemplate.getTemplate(sanitizedObject.getType());
+        objectTemplate.validateStructure(sanitizedObject, messages);
+        objectTemplate.validateSyntax(sanitizedObject, messages, true);
+
+        return new ObjectSyntaxCheck(sanitizedObject, messages);
+    }
+}
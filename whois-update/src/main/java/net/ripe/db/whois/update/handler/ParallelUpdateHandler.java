@@ -0,0 +1,166 @@
+package net.ripe.db.whois.update.handler;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import net.ripe.db.whois.common.dao.UpdateLockDao;
+import net.ripe.db.whois.common.rpsl.AttributeSanitizer;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.common.source.SourceContext;
+import net.ripe.db.whois.update.domain.Keyword;
+import net.ripe.db.whois.update.domain.Origin;
+import net.ripe.db.whois.update.domain.Update;
+import net.ripe.db.whois.update.domain.UpdateContext;
+import net.ripe.db.whois.update.log.LoggerContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Authenticates and validates independent updates of a request in parallel.
+ * <p/>
+ * Updates are independent if they don't lock conflicting keys (see {@link UpdateLockKeys}): they don't reference,
+ * modify or validate against each other's objects. Consecutive independent updates are handled on a worker pool, each
+ * in its own transaction, and are written in processing order. Other updates are handled by the request thread.
+ */
+@Component
+public class ParallelUpdateHandler {
+    private final SingleUpdateHandler singleUpdateHandler;
+    private final AttributeSanitizer attributeSanitizer;
+    private final UpdateLockDao updateLockDao;
+    private final LoggerContext loggerContext;
+    private final SourceContext sourceContext;
+    private final int nrThreads;
+
+    private ExecutorService executorService;
+
+    @Autowired
+    public ParallelUpdateHandler(final SingleUpdateHandler singleUpdateHandler,
+                                 final AttributeSanitizer attributeSanitizer,
+                                 final UpdateLockDao updateLockDao,
+                                 final LoggerContext loggerContext,
+                                 final SourceContext sourceContext,
+                                 @Value("${update.parallel.threads:4}") final int nrThreads) {
+        this.singleUpdateHandler = singleUpdateHandler;
+        this.attributeSanitizer = attributeSanitizer;
+        this.updateLockDao = updateLockDao;
+        this.loggerContext = loggerContext;
+        this.sourceContext = sourceContext;
+        this.nrThreads = nrThreads;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (nrThreads > 1) {
+            executorService = Executors.newFixedThreadPool(nrThreads, new ThreadFactory() {
+                final AtomicInteger threadNum = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(r, String.format("ParallelUpdateHandler-%s", threadNum.incrementAndGet()));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Group <code>updates</code>, in processing order, into runs of updates not locking conflicting keys.
+     */
+    ParallelUpdates start(final Origin origin, final Keyword keyword, final Collection<Update> updates, final UpdateContext updateContext) {
+        final ParallelUpdates result = new ParallelUpdates(executorService, nrThreads, (update, turn) -> loggerContext.wrap(update, () -> {
+            handle(origin, keyword, update, updateContext, turn);
+            return null;
+        }));
+
+        if (executorService == null || updates.size() < 2) {
+            return result;
+        }
+
+        updateContext.addUpdates(updates);
+
+        List<Update> group = Lists.newArrayList();
+        final Map<Integer, Boolean> groupLocks = Maps.newHashMap();
+        for (final Update update : updates) {
+            final Map<Integer, Boolean> locks = getKeyLocks(update);
+            if (conflicts(groupLocks, locks)) {
+                addGroup(result, group);
+                group = Lists.newArrayList();
+                groupLocks.clear();
+            }
+
+            group.add(update);
+            for (final Map.Entry<Integer, Boolean> lock : locks.entrySet()) {
+                groupLocks.merge(lock.getKey(), lock.getValue(), Boolean::logicalOr);
+            }
+        }
+
+        addGroup(result, group);
+        return result;
+    }
+
+    private void addGroup(final ParallelUpdates parallelUpdates, final List<Update> group) {
+        if (parallelUpdates.addGroup(group)) {
+            // workers log to the update's attempt before the request thread reaches it
+            for (final Update update : group) {
+                loggerContext.logUpdateScheduled(update);
+            }
+        }
+    }
+
+    private void handle(final Origin origin, final Keyword keyword, final Update update, final UpdateContext updateContext, final UpdateTurn turn) {
+        sourceContext.setCurrentSourceToWhoisMaster();
+        try {
+            singleUpdateHandler.handle(origin, keyword, update, updateContext, turn);
+        } finally {
+            // also if the update failed before taking its key locks
+            turn.afterKeyLocks();
+            sourceContext.removeCurrentSource();
+        }
+    }
+
+    // key lock -> exclusive
+    private Map<Integer, Boolean> getKeyLocks(final Update update) {
+        final RpslObject submittedObject = update.getSubmittedObject();
+        final UpdateLockKeys lockKeys = new UpdateLockKeys(submittedObject, attributeSanitizer.sanitizeKey(submittedObject));
+
+        final Map<Integer, Boolean> result = Maps.newHashMap();
+        for (final String sharedKey : lockKeys.getSharedKeys()) {
+            result.put(updateLockDao.getKeyLock(sharedKey), false);
+        }
+
+        for (final String exclusiveKey : lockKeys.getExclusiveKeys()) {
+            result.put(updateLockDao.getKeyLock(exclusiveKey), true);
+        }
+
+        return result;
+    }
+
+    private static boolean conflicts(final Map<Integer, Boolean> groupLocks, final Map<Integer, Boolean> locks) {
+        for (final Map.Entry<Integer, Boolean> lock : locks.entrySet()) {
+            final Boolean exclusive = groupLocks.get(lock.getKey());
+            if (exclusive != null && (exclusive || lock.getValue())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,195 @@
+package net.ripe.db.whois.update.handler;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import net.ripe.db.whois.update.domain.Update;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiFunction;
+
+/**
+ * Groups of updates in a request handled on a worker pool, each group started when the request thread reaches its
+ * first update.
+ * <p/>
+ * Updates in a group take their key locks one after the other, and wait until the request thread reaches them to be
+ * written. An update holding its key locks therefore only waits for updates holding all of theirs, so updates of
+ * concurrent requests cannot deadlock on them.
+ * <p/>
+ * As a task waiting for its turn holds a worker, a request only has a window of tasks submitted at a time, so a request
+ * with many updates doesn't keep the workers from the updates of other requests.
+ */
+class ParallelUpdates {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelUpdates.class);
+
+    private final ExecutorService executorService;
+    private final int window;
+    private final BiFunction<Update, UpdateTurn, Callable<Void>> tasks;
+    private final Map<Update, Turn> turns = Maps.newHashMap();
+    private boolean rejected;
+
+    /**
+     * @param window maximum number of tasks submitted and not yet completed.
+     * @param tasks  creates the task handling an update in its turn.
+     */
+    ParallelUpdates(final ExecutorService executorService, final int window, final BiFunction<Update, UpdateTurn, Callable<Void>> tasks) {
+        this.executorService = executorService;
+        this.window = window;
+        this.tasks = tasks;
+    }
+
+    /**
+     * @return false if the updates are handled by the caller.
+     */
+    boolean addGroup(final List<Update> updates) {
+        if (updates.size() < 2) {
+            return false;
+        }
+
+        final List<Turn> group = Lists.newArrayListWithCapacity(updates.size());
+        Turn previous = null;
+        for (final Update update : updates) {
+            final Turn turn = new Turn(update, group, group.size(), previous);
+            group.add(turn);
+            turns.put(update, turn);
+            previous = turn;
+        }
+
+        return true;
+    }
+
+    /**
+     * Wait for <code>update</code> to be handled on the worker pool, rethrowing its failure.
+     *
+     * @return false if <code>update</code> must be handled by the caller.
+     */
+    boolean handle(final Update update) {
+        final Turn turn = turns.get(update);
+        if (turn == null) {
+            return false;
+        }
+
+        if (turn.index == 0) {
+            for (int index = 0; index < window && index < turn.group.size(); index++) {
+                submit(turn.group.get(index));
+            }
+        }
+
+        if (turn.future == null) {
+            return false;
+        }
+
+        try {
+            turn.complete();
+        } finally {
+            // slide the window
+            final int next = turn.index + window;
+            if (next < turn.group.size()) {
+                submit(turn.group.get(next));
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Abort the updates that haven't been handled, so workers don't wait for their turn.
+     */
+    void cancel() {
+        for (final Turn turn : turns.values()) {
+            if (turn.future != null && !turn.future.isDone()) {
+                turn.cancel();
+            }
+        }
+    }
+
+    private void submit(final Turn turn) {
+        if (rejected) {
+            return;
+        }
+
+        try {
+            turn.future = executorService.submit(tasks.apply(turn.update, turn));
+        } catch (RejectedExecutionException e) {
+            // shutting down, remaining updates are handled by the request thread
+            LOGGER.debug("Update rejected: {}", e.getMessage());
+            rejected = true;
+        }
+    }
+
+    private static final class Turn implements UpdateTurn {
+        private final Update update;
+        private final List<Turn> group;
+        private final int index;
+        private final Turn previous;
+        private final CountDownLatch keysLocked = new CountDownLatch(1);
+        private final CountDownLatch writeTurn = new CountDownLatch(1);
+        private volatile boolean cancelled;
+        private Future<Void> future;
+
+        private Turn(final Update update, final List<Turn> group, final int index, final Turn previous) {
+            this.update = update;
+            this.group = group;
+            this.index = index;
+            this.previous = previous;
+        }
+
+        @Override
+        public void beforeKeyLocks() {
+            if (previous != null) {
+                await(previous.keysLocked);
+            }
+        }
+
+        @Override
+        public void afterKeyLocks() {
+            keysLocked.countDown();
+        }
+
+        @Override
+        public void beforeWrite() {
+            await(writeTurn);
+        }
+
+        private void await(final CountDownLatch latch) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for turn", e);
+            }
+
+            if (cancelled) {
+                throw new IllegalStateException("Update cancelled");
+            }
+        }
+
+        private void complete() {
+            writeTurn.countDown();
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Throwables.throwIfUnchecked(e.getCause());
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for update", e);
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            keysLocked.countDown();
+            writeTurn.countDown();
+        }
+    }
+}
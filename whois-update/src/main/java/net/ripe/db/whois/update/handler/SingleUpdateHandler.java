@@ -6,7 +6,6 @@ import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.iptree.IpTreeUpdater;
 import net.ripe.db.whois.common.rpsl.AttributeSanitizer;
 import net.ripe.db.whois.common.rpsl.ObjectMessages;
-import net.ripe.db.whois.common.rpsl.ObjectTemplate;
 import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.common.rpsl.RpslObjectFilter;
@@ -49,6 +48,7 @@ public class SingleUpdateHandler {
     private final UpdateObjectHandler updateObjectHandler;
     private final IpTreeUpdater ipTreeUpdater;
     private final SsoTranslator ssoTranslator;
+    private final ObjectSyntaxChecker objectSyntaxChecker;
 
     @Value("#{T(net.ripe.db.whois.common.domain.CIString).ciString('${whois.source}')}")
     private CIString source;
@@ -65,7 +65,8 @@ public class SingleUpdateHandler {
                                final UpdateObjectHandler updateObjectHandler,
                                final RpslObjectDao rpslObjectDao,
                                final IpTreeUpdater ipTreeUpdater,
-                               final SsoTranslator ssoTranslator) {
+                               final SsoTranslator ssoTranslator,
+                               final ObjectSyntaxChecker objectSyntaxChecker) {
         this.attributeGenerators = attributeGenerators;
         // sort AttributeGenerators so they are executed in a predictable order
         this.attributeGenerators.sort((lhs, rhs) -> lhs.getClass().getName().compareToIgnoreCase(rhs.getClass().getName()));
@@ -77,11 +78,27 @@ public class SingleUpdateHandler {
         this.updateObjectHandler = updateObjectHandler;
         this.ipTreeUpdater = ipTreeUpdater;
         this.ssoTranslator = ssoTranslator;
+        this.objectSyntaxChecker = objectSyntaxChecker;
     }
 
-    @Transactional(isolation = Isolation.READ_COMMITTED, propagation = Propagation.REQUIRED)
     public void handle(final Origin origin, final Keyword keyword, final Update update, final UpdateContext updateContext) {
-        updateLockDao.setUpdateLock();
+        handle(origin, keyword, update, updateContext, UpdateTurn.NONE);
+    }
+
+    /**
+     * @param turn orders updates of the request handled on other threads.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED, propagation = Propagation.REQUIRED)
+    void handle(final Origin origin, final Keyword keyword, final Update update, final UpdateContext updateContext, final UpdateTurn turn) {
+        if (updateContext.isBatchUpdate()) {
+            // all updates in the batch are written in one transaction
+            updateLockDao.setUpdateLock();
+        } else {
+            final UpdateLockKeys lockKeys = new UpdateLockKeys(update.getSubmittedObject(), attributeSanitizer.sanitizeKey(update.getSubmittedObject()));
+            turn.beforeKeyLocks();
+            updateLockDao.setKeyLocks(lockKeys.getExclusiveKeys(), lockKeys.getSharedKeys());
+            turn.afterKeyLocks();
+        }
         ipTreeUpdater.updateTransactional();
 
         if (updateContext.isDryRun()) {
@@ -152,6 +169,10 @@ public class SingleUpdateHandler {
         if (updateContext.isDryRun() && !updateContext.isBatchUpdate()) {
             throw new UpdateAbortedException();
         } else {
+            if (!updateContext.isBatchUpdate()) {
+                turn.beforeWrite();
+                updateLockDao.setWriteLock();
+            }
             updateObjectHandler.execute(preparedUpdate, updateContext);
         }
     }
@@ -206,11 +227,7 @@ public class SingleUpdateHandler {
                 updateContext.addMessage(update, UpdateMessages.multipleReasonsSpecified(update.getOperation()));
             }
         } else {
-            final ObjectMessages messages = updateContext.getMessages(update);
-            updatedObject = attributeSanitizer.sanitize(updatedObject, messages);
-
-            ObjectTemplate.getTemplate(updatedObject.getType()).validateStructure(updatedObject, messages);
-            ObjectTemplate.getTemplate(updatedObject.getType()).validateSyntax(updatedObject, messages, true);
+            updatedObject = objectSyntaxChecker.check(update, updateContext);
         }
 
         return updatedObject;
@@ -0,0 +1,197 @@
+package net.ripe.db.whois.update.handler;
+
+import com.google.common.collect.Sets;
+import net.ripe.db.whois.common.domain.CIString;
+import net.ripe.db.whois.common.ip.IpInterval;
+import net.ripe.db.whois.common.ip.Ipv4Resource;
+import net.ripe.db.whois.common.ip.Ipv6Resource;
+import net.ripe.db.whois.common.rpsl.AttributeType;
+import net.ripe.db.whois.common.rpsl.ObjectType;
+import net.ripe.db.whois.common.rpsl.RpslAttribute;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.common.rpsl.attrs.Domain;
+
+import java.util.Set;
+
+import static net.ripe.db.whois.common.domain.CIString.ciString;
+
+/**
+ * Keys locked by a single update, so updates of unrelated objects run concurrently while updates that write or
+ * validate against the same objects are serialised.
+ * <p/>
+ * An update locks its own primary key exclusively, and the objects it references shared. Address space is locked in
+ * blocks (IPv4 /16, IPv6 /32) covering the resource, as the hierarchy of a resource is validated against its parents
+ * and children: resources covering more than {@link #MAX_IP_BLOCKS} blocks lock their whole address family exclusively,
+ * all others lock it shared. AS numbers are locked likewise, with as-blocks locking all of them.
+ * Sets with hierarchical names lock their parent shared.
+ * <p/>
+ * Objects with generated primary keys lock their key space, exclusively when a key is generated.
+ */
+final class UpdateLockKeys {
+    static final int MAX_IP_BLOCKS = 16;
+
+    private static final Set<ObjectType> AUTO_KEY_TYPES = Sets.immutableEnumSet(ObjectType.PERSON, ObjectType.ROLE, ObjectType.ORGANISATION, ObjectType.KEY_CERT);
+
+    private final Set<String> exclusiveKeys = Sets.newLinkedHashSet();
+    private final Set<String> sharedKeys = Sets.newLinkedHashSet();
+
+    /**
+     * @param key the sanitized primary key of <code>rpslObject</code>.
+     */
+    UpdateLockKeys(final RpslObject rpslObject, final CIString key) {
+        final ObjectType type = rpslObject.getType();
+        exclusiveKeys.add(getKey(type, key));
+
+        if (AUTO_KEY_TYPES.contains(type)) {
+            if (key.startsWith("AUTO-")) {
+                exclusiveKeys.add(getAutoKey(type));
+            } else {
+                sharedKeys.add(getAutoKey(type));
+            }
+        }
+
+        switch (type) {
+            case ROUTE:
+            case ROUTE6:
+                // routes are authorised by the aut-num of their origin
+                for (final CIString origin : rpslObject.getValuesForAttribute(AttributeType.ORIGIN)) {
+                    sharedKeys.add(getKey(ObjectType.AUT_NUM, origin));
+                }
+                addIpKeys(rpslObject);
+                break;
+            case INETNUM:
+            case INET6NUM:
+                addIpKeys(rpslObject);
+                break;
+            case DOMAIN:
+                addReverseDomainKeys(rpslObject);
+                break;
+            case AUT_NUM:
+                sharedKeys.add("asn");
+                break;
+            case AS_BLOCK:
+                exclusiveKeys.add("asn");
+                break;
+            case AS_SET:
+            case FILTER_SET:
+            case PEERING_SET:
+            case ROUTE_SET:
+            case RTR_SET:
+                addParentSetKey(type, key);
+                break;
+            default:
+                break;
+        }
+
+        for (final RpslAttribute attribute : rpslObject.getAttributes()) {
+            final AttributeType attributeType = attribute.getType();
+            if (attributeType == null || !attributeType.isReference()) {
+                continue;
+            }
+
+            for (final CIString value : attribute.getReferenceValues()) {
+                for (final ObjectType referenceType : attributeType.getReferences(value)) {
+                    sharedKeys.add(getKey(referenceType, value));
+                }
+            }
+        }
+    }
+
+    Set<String> getExclusiveKeys() {
+        return exclusiveKeys;
+    }
+
+    Set<String> getSharedKeys() {
+        return sharedKeys;
+    }
+
+    // hierarchical set names are authorised by their parent, see SetnameMustExistValidator
+    private void addParentSetKey(final ObjectType type, final CIString key) {
+        final String name = key.toString();
+        final int lastColon = name.lastIndexOf(':');
+        if (lastColon < 0) {
+            return;
+        }
+
+        final CIString parentKey = ciString(name.substring(0, lastColon));
+        if (AttributeType.AUT_NUM.isValidValue(type, parentKey)) {
+            sharedKeys.add(getKey(ObjectType.AUT_NUM, parentKey));
+        } else if (AttributeType.AS_SET.isValidValue(type, parentKey)) {
+            sharedKeys.add(getKey(ObjectType.AS_SET, parentKey));
+        } else {
+            sharedKeys.add(getKey(type, parentKey));
+        }
+    }
+
+    private void addIpKeys(final RpslObject rpslObject) {
+        final CIString value = rpslObject.getTypeAttribute().getCleanValue();
+        try {
+            switch (rpslObject.getType()) {
+                case INETNUM:
+                case ROUTE:
+                    addIpv4Keys(Ipv4Resource.parse(value));
+                    break;
+                default:
+                    addIpv6Keys(Ipv6Resource.parse(value));
+                    break;
+            }
+        } catch (IllegalArgumentException ignored) {
+            // invalid syntax, the update fails before it is written
+        }
+    }
+
+    private void addReverseDomainKeys(final RpslObject rpslObject) {
+        final IpInterval<?> reverseIp;
+        try {
+            reverseIp = Domain.parse(rpslObject.getTypeAttribute().getCleanValue()).getReverseIp();
+        } catch (IllegalArgumentException ignored) {
+            // invalid syntax, the update fails before it is written
+            return;
+        }
+
+        if (reverseIp instanceof Ipv4Resource) {
+            addIpv4Keys((Ipv4Resource) reverseIp);
+        } else if (reverseIp instanceof Ipv6Resource) {
+            addIpv6Keys((Ipv6Resource) reverseIp);
+        }
+    }
+
+    private void addIpv4Keys(final Ipv4Resource resource) {
+        addIpBlockKeys("ipv4", resource.begin() >>> 16, resource.end() >>> 16);
+    }
+
+    private void addIpv6Keys(final Ipv6Resource resource) {
+        addIpBlockKeys("ipv6", resource.beginMsb() >>> 32, resource.endMsb() >>> 32);
+    }
+
+    private void addIpBlockKeys(final String family, final long firstBlock, final long lastBlock) {
+        if (lastBlock - firstBlock >= MAX_IP_BLOCKS) {
+            exclusiveKeys.add(family);
+            return;
+        }
+
+        sharedKeys.add(family);
+        for (long block = firstBlock; block <= lastBlock; block++) {
+            exclusiveKeys.add(family + ":" + block);
+        }
+    }
+
+    static String getKey(final ObjectType type, final CIString key) {
+        return getNamespace(type) + ":" + key.toLowerCase();
+    }
+
+    private static String getAutoKey(final ObjectType type) {
+        return "auto-" + getNamespace(type);
+    }
+
+    // persons and roles share their primary keys
+    private static String getNamespace(final ObjectType type) {
+        switch (type) {
+            case PERSON:
+            case ROLE:
+                return "nic-hdl";
+            default:
+                return type.getName();
+        }
+    }
+}
@@ -21,7 +21,7 @@ import net.ripe.db.whois.update.domain.Update;
 import net.ripe.db.whois.update.domain.UpdateContext;
 import net.ripe.db.whois.update.domain.UpdateRequest;
 import net.ripe.db.whois.update.handler.response.ResponseFactory;
-import net.ripe.db.whois.update.mail.MailGateway;
+import net.ripe.db.whois.update.mail.MailOutbox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -38,19 +38,19 @@ public class UpdateNotifier {
 
     private final RpslObjectDao rpslObjectDao;
     private final ResponseFactory responseFactory;
-    private final MailGateway mailGateway;
+    private final MailOutbox mailOutbox;
     private final VersionDao versionDao;
     private final Maintainers maintainers;
 
     @Autowired
     public UpdateNotifier(final RpslObjectDao rpslObjectDao,
                           final ResponseFactory responseFactory,
-                          final MailGateway mailGateway,
+                          final MailOutbox mailOutbox,
                           final VersionDao versionDao,
                           final Maintainers maintainers) {
         this.rpslObjectDao = rpslObjectDao;
         this.responseFactory = responseFactory;
-        this.mailGateway = mailGateway;
+        this.mailOutbox = mailOutbox;
         this.versionDao = versionDao;
         this.maintainers = maintainers;
     }
@@ -73,7 +73,7 @@ public class UpdateNotifier {
             final ResponseMessage responseMessage = responseFactory.createNotification(updateContext, updateRequest.getOrigin(), notification);
             try {
                 new InternetAddress(notification.getEmail(), true);
-                mailGateway.sendEmail(notification.getEmail(), responseMessage);
+                mailOutbox.sendEmail(notification.getEmail(), responseMessage);
             } catch (final AddressException e) {
                 LOGGER.info("Failed to send notification to '{}' because it's an invalid email address", notification.getEmail());
             }
@@ -0,0 +1,125 @@
+package net.ripe.db.whois.update.handler;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import net.ripe.db.whois.common.domain.CIString;
+import net.ripe.db.whois.common.rpsl.AttributeType;
+import net.ripe.db.whois.common.rpsl.ObjectType;
+import net.ripe.db.whois.common.rpsl.RpslAttribute;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.update.domain.Operation;
+import net.ripe.db.whois.update.domain.Update;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Orders the updates in a request so objects are created before the updates referencing them, including references to
+ * generated keys (e.g. AUTO-1).
+ * <p/>
+ * Updates of the same object keep their submission order, deletes included. Otherwise updates keep their submission
+ * order where references allow. Updates in a reference cycle are appended in submission order, and are resolved by
+ * reattempting them.
+ */
+final class UpdateOrder {
+    private UpdateOrder() {
+    }
+
+    /**
+     * @param isCreate whether an update creates its object; only created objects are referenced before they exist.
+     */
+    static List<Update> sort(final Collection<Update> updates, final Predicate<Update> isCreate) {
+        final List<Update> submitted = Lists.newArrayList(updates);
+
+        final List<Set<Integer>> dependencies = Lists.newArrayListWithCapacity(submitted.size());
+        final Multimap<String, Integer> providers = ArrayListMultimap.create();
+        final Map<String, Integer> previousUpdates = Maps.newHashMap();
+        for (int index = 0; index < submitted.size(); index++) {
+            final Update update = submitted.get(index);
+            final Set<Integer> updateDependencies = Sets.newHashSet();
+            dependencies.add(updateDependencies);
+
+            final RpslObject rpslObject = update.getSubmittedObject();
+            final String key = UpdateLockKeys.getKey(rpslObject.getType(), rpslObject.getKey());
+
+            final Integer previousUpdate = previousUpdates.put(key, index);
+            if (previousUpdate != null) {
+                updateDependencies.add(previousUpdate);
+            }
+
+            if (isCreate.test(update)) {
+                providers.put(key, index);
+            }
+        }
+
+        final int[] nrDependencies = new int[submitted.size()];
+        final Multimap<Integer, Integer> dependents = ArrayListMultimap.create();
+        for (int index = 0; index < submitted.size(); index++) {
+            final Update update = submitted.get(index);
+            final Set<Integer> updateDependencies = dependencies.get(index);
+            if (update.getOperation() != Operation.DELETE) {
+                updateDependencies.addAll(getProviders(update.getSubmittedObject(), providers));
+            }
+
+            updateDependencies.remove(index);
+            for (final Integer dependency : updateDependencies) {
+                dependents.put(dependency, index);
+            }
+            nrDependencies[index] = updateDependencies.size();
+        }
+
+        final PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int index = 0; index < submitted.size(); index++) {
+            if (nrDependencies[index] == 0) {
+                ready.add(index);
+            }
+        }
+
+        final List<Update> result = Lists.newArrayListWithCapacity(submitted.size());
+        final boolean[] ordered = new boolean[submitted.size()];
+        while (!ready.isEmpty()) {
+            final int index = ready.poll();
+            result.add(submitted.get(index));
+            ordered[index] = true;
+
+            for (final Integer dependent : dependents.get(index)) {
+                if (--nrDependencies[dependent] == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        for (int index = 0; index < submitted.size(); index++) {
+            if (!ordered[index]) {
+                result.add(submitted.get(index));
+            }
+        }
+
+        return result;
+    }
+
+    private static Set<Integer> getProviders(final RpslObject rpslObject, final Multimap<String, Integer> providers) {
+        final Set<Integer> result = Sets.newHashSet();
+        for (final RpslAttribute attribute : rpslObject.getAttributes()) {
+            final AttributeType attributeType = attribute.getType();
+            if (attributeType == null || !attributeType.isReference()) {
+                continue;
+            }
+
+            for (final CIString value : attribute.getReferenceValues()) {
+                for (final ObjectType referenceType : attributeType.getReferences(value)) {
+                    result.addAll(providers.get(UpdateLockKeys.getKey(referenceType, value)));
+                }
+            }
+        }
+
+        return result;
+    }
+}
@@ -2,10 +2,15 @@ package net.ripe.db.whois.update.handler;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.dao.RpslObjectDao;
+import net.ripe.db.whois.common.domain.CIString;
+import net.ripe.db.whois.common.rpsl.AttributeSanitizer;
+import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.common.source.SourceContext;
 import net.ripe.db.whois.update.dns.DnsChecker;
 import net.ripe.db.whois.update.domain.Ack;
 import net.ripe.db.whois.update.domain.Keyword;
+import net.ripe.db.whois.update.domain.Operation;
 import net.ripe.db.whois.update.domain.Update;
 import net.ripe.db.whois.update.domain.UpdateContext;
 import net.ripe.db.whois.update.domain.UpdateMessages;
@@ -33,32 +38,44 @@ public class UpdateRequestHandler {
     private final SourceContext sourceContext;
     private final ResponseFactory responseFactory;
     private final SingleUpdateHandler singleUpdateHandler;
+    private final ParallelUpdateHandler parallelUpdateHandler;
     private final MultipleUpdateHandler multipleUpdateHandler;
     private final LoggerContext loggerContext;
     private final DnsChecker dnsChecker;
+    private final ObjectSyntaxChecker objectSyntaxChecker;
     private final SsoTranslator ssoTranslator;
     private final UpdateNotifier updateNotifier;
     private final UpdateLog updateLog;
+    private final RpslObjectDao rpslObjectDao;
+    private final AttributeSanitizer attributeSanitizer;
 
     @Autowired
     public UpdateRequestHandler(final SourceContext sourceContext,
                                 final ResponseFactory responseFactory,
                                 final SingleUpdateHandler singleUpdateHandler,
+                                final ParallelUpdateHandler parallelUpdateHandler,
                                 final MultipleUpdateHandler multipleUpdateHandler,
                                 final LoggerContext loggerContext,
                                 final DnsChecker dnsChecker,
+                                final ObjectSyntaxChecker objectSyntaxChecker,
                                 final SsoTranslator ssoTranslator,
                                 final UpdateNotifier updateNotifier,
-                                final UpdateLog updateLog) {
+                                final UpdateLog updateLog,
+                                final RpslObjectDao rpslObjectDao,
+                                final AttributeSanitizer attributeSanitizer) {
         this.sourceContext = sourceContext;
         this.responseFactory = responseFactory;
         this.singleUpdateHandler = singleUpdateHandler;
+        this.parallelUpdateHandler = parallelUpdateHandler;
         this.multipleUpdateHandler = multipleUpdateHandler;
         this.loggerContext = loggerContext;
         this.dnsChecker = dnsChecker;
+        this.objectSyntaxChecker = objectSyntaxChecker;
         this.ssoTranslator = ssoTranslator;
         this.updateNotifier = updateNotifier;
         this.updateLog = updateLog;
+        this.rpslObjectDao = rpslObjectDao;
+        this.attributeSanitizer = attributeSanitizer;
     }
 
     public UpdateResponse handle(final UpdateRequest updateRequest, final UpdateContext updateContext) {
@@ -83,6 +100,7 @@ public class UpdateRequestHandler {
             sourceContext.setCurrentSourceToWhoisMaster();
 
             dnsChecker.checkAll(updateRequest, updateContext);
+            objectSyntaxChecker.checkAll(updateRequest, updateContext);
 
             for (final Update update : updateRequest.getUpdates()) {
                 ssoTranslator.populateCacheAuthToUuid(updateContext, update);
@@ -135,6 +153,12 @@ public class UpdateRequestHandler {
         if (updates.size() == 1) {
             attemptUpdatesOneByOne(updateRequest, updateContext, updates);
         } else {
+            // the ack lists updates in submission order, whatever order they are processed in
+            updateContext.addUpdates(updates);
+
+            // referenced objects first, so only reference cycles (and dependencies other than references) need a reattempt
+            updates = UpdateOrder.sort(updates, update -> isCreate(update, updateRequest.getKeyword()));
+
             while (!updates.isEmpty()) {
                 final Collection<Update> reattemptQueue = attemptUpdatesOneByOne(updateRequest, updateContext, updates);
 
@@ -151,28 +175,49 @@ public class UpdateRequestHandler {
         }
     }
 
+    private boolean isCreate(final Update update, final Keyword keyword) {
+        if (Operation.DELETE.equals(update.getOperation())) {
+            return false;
+        }
+
+        if (Keyword.NEW.equals(keyword)) {
+            return true;
+        }
+
+        final RpslObject rpslObject = update.getSubmittedObject();
+        final CIString key = attributeSanitizer.sanitizeKey(rpslObject);
+        return key.startsWith("AUTO-") || rpslObjectDao.findByKeyOrNull(rpslObject.getType(), key) == null;
+    }
+
     private Collection<Update> attemptUpdatesOneByOne(final UpdateRequest updateRequest, final UpdateContext updateContext, final Collection<Update> updates) {
         final Collection<Update> reattemptQueue = Lists.newArrayList();
-        for (final Update update : updates) {
-            final Stopwatch stopwatch = Stopwatch.createStarted();
-
-            try {
-                loggerContext.logUpdateStarted(update);
-                singleUpdateHandler.handle(updateRequest.getOrigin(), updateRequest.getKeyword(), update, updateContext);
-                loggerContext.logUpdateCompleted(update);
-            } catch (UpdateAbortedException e) {
-                loggerContext.logUpdateCompleted(update);
-            } catch (UpdateFailedException e) {
-                updateContext.failedUpdate(update);
-                reattemptQueue.add(update);
-                loggerContext.logUpdateCompleted(update);
-            } catch (RuntimeException e) {
-                updateContext.failedUpdate(update, UpdateMessages.unexpectedError());
-                loggerContext.logUpdateFailed(update, e);
-                LOGGER.error("Updating {}", update.getSubmittedObject().getFormattedKey(), e);
-            } finally {
-                updateLog.logUpdateResult(updateRequest, updateContext, update, stopwatch.stop());
+        final ParallelUpdates parallelUpdates = parallelUpdateHandler.start(updateRequest.getOrigin(), updateRequest.getKeyword(), updates, updateContext);
+        try {
+            for (final Update update : updates) {
+                final Stopwatch stopwatch = Stopwatch.createStarted();
+
+                try {
+                    loggerContext.logUpdateStarted(update);
+                    if (!parallelUpdates.handle(update)) {
+                        singleUpdateHandler.handle(updateRequest.getOrigin(), updateRequest.getKeyword(), update, updateContext);
+                    }
+                    loggerContext.logUpdateCompleted(update);
+                } catch (UpdateAbortedException e) {
+                    loggerContext.logUpdateCompleted(update);
+                } catch (UpdateFailedException e) {
+                    updateContext.failedUpdate(update);
+                    reattemptQueue.add(update);
+                    loggerContext.logUpdateCompleted(update);
+                } catch (RuntimeException e) {
+                    updateContext.failedUpdate(update, UpdateMessages.unexpectedError());
+                    loggerContext.logUpdateFailed(update, e);
+                    LOGGER.error("Updating {}", update.getSubmittedObject().getFormattedKey(), e);
+                } finally {
+                    updateLog.logUpdateResult(updateRequest, updateContext, update, stopwatch.stop());
+                }
             }
+        } finally {
+            parallelUpdates.cancel();
         }
         return reattemptQueue;
     }
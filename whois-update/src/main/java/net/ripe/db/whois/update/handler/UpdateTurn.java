@@ -0,0 +1,27 @@
+package net.ripe.db.whois.update.handler;
+
+/**
+ * Orders the updates of a request handled on different threads, so they take their key locks and are written in
+ * processing order.
+ */
+interface UpdateTurn {
+    UpdateTurn NONE = new UpdateTurn() {
+        @Override
+        public void beforeKeyLocks() {
+        }
+
+        @Override
+        public void afterKeyLocks() {
+        }
+
+        @Override
+        public void beforeWrite() {
+        }
+    };
+
+    void beforeKeyLocks();
+
+    void afterKeyLocks();
+
+    void beforeWrite();
+}
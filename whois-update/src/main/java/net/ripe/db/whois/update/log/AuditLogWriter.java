@@ -0,0 +1,191 @@
+package net.ripe.db.whois.update.log;
+
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes audit log files on a dedicated thread, so updates don't wait for disk I/O.
+ * <p/>
+ * Files are buffered in memory and queued when closed. The writer thread takes queued files in batches, creates their
+ * directory and writes them compressed. When not started, or when the queue is full, files are written by the thread
+ * closing them instead.
+ * <p/>
+ * Files larger than {@link #MAX_BUFFERED_BYTES} are written directly by the thread writing them, so the memory held by
+ * queued files is bounded by the queue size.
+ */
+class AuditLogWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuditLogWriter.class);
+
+    static final int MAX_BUFFERED_BYTES = 64 * 1024;
+
+    private volatile BlockingQueue<PendingFile> queue;
+    private volatile Thread writerThread;
+
+    void start(final int queueSize) {
+        if (writerThread != null) {
+            throw new IllegalStateException("Already started");
+        }
+
+        if (queueSize > 0) {
+            final BlockingQueue<PendingFile> pendingFiles = new ArrayBlockingQueue<>(queueSize);
+            final Thread thread = new Thread(() -> writeQueued(pendingFiles), "AuditLogWriter");
+            thread.setDaemon(true);
+            thread.start();
+
+            queue = pendingFiles;
+            writerThread = thread;
+        }
+    }
+
+    void stop() {
+        final Thread thread = writerThread;
+        if (thread == null) {
+            return;
+        }
+
+        final BlockingQueue<PendingFile> pendingFiles = queue;
+        queue = null;
+        writerThread = null;
+
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.MINUTES.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // files queued while stopping
+        final List<PendingFile> remaining = Lists.newArrayList();
+        pendingFiles.drainTo(remaining);
+        writeAll(remaining);
+    }
+
+    OutputStream open(final File file) {
+        return new OutputStream() {
+            private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            private OutputStream direct;
+            private boolean closed;
+
+            @Override
+            public void write(final int b) throws IOException {
+                getTarget(1).write(b);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                getTarget(len).write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (direct != null) {
+                    direct.flush();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+
+                closed = true;
+                if (direct != null) {
+                    direct.close();
+                } else {
+                    submit(new PendingFile(file, buffer.toByteArray()));
+                    buffer = null;
+                }
+            }
+
+            private OutputStream getTarget(final int len) throws IOException {
+                if (closed) {
+                    throw new IOException("Stream closed");
+                }
+
+                if (direct == null && buffer.size() + len > MAX_BUFFERED_BYTES) {
+                    direct = openFile(file);
+                    buffer.writeTo(direct);
+                    buffer = null;
+                }
+
+                return direct != null ? direct : buffer;
+            }
+        };
+    }
+
+    private void submit(final PendingFile pendingFile) throws IOException {
+        final BlockingQueue<PendingFile> pendingFiles = queue;
+        if (pendingFiles == null || !pendingFiles.offer(pendingFile)) {
+            write(pendingFile);
+        }
+    }
+
+    private void writeQueued(final BlockingQueue<PendingFile> pendingFiles) {
+        final List<PendingFile> batch = Lists.newArrayList();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(pendingFiles.take());
+                pendingFiles.drainTo(batch);
+                writeAll(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException ignored) {
+            // stopping
+        }
+
+        pendingFiles.drainTo(batch);
+        writeAll(batch);
+    }
+
+    private void writeAll(final List<PendingFile> pendingFiles) {
+        for (final PendingFile pendingFile : pendingFiles) {
+            try {
+                write(pendingFile);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Unable to write audit log", e);
+            }
+        }
+    }
+
+    private static void write(final PendingFile pendingFile) throws IOException {
+        final File file = pendingFile.file;
+        try (OutputStream os = openFile(file)) {
+            os.write(pendingFile.contents);
+        } catch (IOException e) {
+            throw new IOException("Unable to write to " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private static OutputStream openFile(final File file) throws IOException {
+        final File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Unable to create directory: " + dir.getAbsolutePath());
+        }
+
+        return new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    }
+
+    private static final class PendingFile {
+        private final File file;
+        private final byte[] contents;
+
+        private PendingFile(final File file, final byte[] contents) {
+            this.file = file;
+            this.contents = contents;
+        }
+    }
+}
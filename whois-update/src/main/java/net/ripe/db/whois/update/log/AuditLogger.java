@@ -1,6 +1,7 @@
 package net.ripe.db.whois.update.log;
 
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import net.ripe.db.whois.common.DateTimeProvider;
 import net.ripe.db.whois.common.FormatHelper;
 import net.ripe.db.whois.common.Message;
@@ -38,7 +39,9 @@ import java.text.MessageFormat;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+// synchronized, as updates handled on worker threads log to the audit log of their request
 class AuditLogger {
     private static final Logger LOGGER = LoggerFactory.getLogger(AuditLogger.class);
 
@@ -49,6 +52,7 @@ class AuditLogger {
     private final Element updates;
 
     private Map<Update, Element> updateElements = Maps.newHashMap();
+    private final Set<Update> scheduledUpdates = Sets.newHashSet();
     private final Element dbupdate;
 
     AuditLogger(final DateTimeProvider dateTimeProvider, final OutputStream outputStream) {
@@ -75,7 +79,7 @@ class AuditLogger {
     }
 
     @SuppressWarnings("ThrowableResultOfMethodCallIgnored" /* Throwable is logged */)
-    public void log(final Message message, @Nullable final Throwable t) {
+    public synchronized void log(final Message message, @Nullable final Throwable t) {
         final Element typeElement = doc.createElement(message.getType().toString());
 
         final Element messageElement = doc.createElement("message");
@@ -105,15 +109,28 @@ class AuditLogger {
         messages.appendChild(typeElement);
     }
 
-    public void logDryRun() {
+    public synchronized void logDryRun() {
         dbupdate.appendChild(doc.createElement("dryRun"));
     }
 
-    public void logBatchUpdate() {
+    public synchronized void logBatchUpdate() {
         dbupdate.appendChild(doc.createElement("batchUpdate"));
     }
 
-    public void logUpdate(final Update update) {
+    /**
+     * Start the next attempt of an update handled on a worker thread, before the worker logs to it.
+     */
+    public synchronized void logUpdateScheduled(final Update update) {
+        logUpdate(update);
+        scheduledUpdates.add(update);
+    }
+
+    public synchronized void logUpdate(final Update update) {
+        if (scheduledUpdates.remove(update)) {
+            // attempt started when scheduled, keep what the worker logged
+            return;
+        }
+
         Element updateElement = createOrGetUpdateElement(update);
 
         int attempt = 1;
@@ -137,12 +154,12 @@ class AuditLogger {
         updateElement.appendChild(keyValue("object", updatedObject.toString()));
     }
 
-    public void logPreparedUpdate(final PreparedUpdate preparedUpdate) {
+    public synchronized void logPreparedUpdate(final PreparedUpdate preparedUpdate) {
         final Element updateElement = createOrGetUpdateElement(preparedUpdate.getUpdate());
         updateElement.appendChild(keyValue("updatedObject", preparedUpdate.getUpdatedObject()));
     }
 
-    public void logException(final Update update, final Throwable throwable) {
+    public synchronized void logException(final Update update, final Throwable throwable) {
         final Element updateElement = createOrGetUpdateElement(update);
 
         final Element exceptionElement = doc.createElement("exception");
@@ -157,12 +174,12 @@ class AuditLogger {
         exceptionElement.appendChild(keyValue("stacktrace", stringWriter.getBuffer().toString()));
     }
 
-    public void logDuration(final Update update, final String duration) {
+    public synchronized void logDuration(final Update update, final String duration) {
         final Element updateElement = createOrGetUpdateElement(update);
         updateElement.appendChild(keyValue("duration", duration));
     }
 
-    public void logQuery(final Update update, final StatementInfo statementInfo, final ResultInfo resultInfo) {
+    public synchronized void logQuery(final Update update, final StatementInfo statementInfo, final ResultInfo resultInfo) {
         final Element updateElement = createOrGetUpdateElement(update);
 
         final Element queryElement = doc.createElement("query");
@@ -195,12 +212,12 @@ class AuditLogger {
         }
     }
 
-    public void logString(Update update, String element, String auditMessage) {
+    public synchronized void logString(Update update, String element, String auditMessage) {
         final Element updateElement = createOrGetUpdateElement(update);
         updateElement.appendChild(keyValue(element, PasswordFilter.filterPasswordsInContents(auditMessage)));
     }
 
-    public void logAuthenticationStrategy(Update update, String authenticationStrategy, Collection<RpslObject> maintainers) {
+    public synchronized void logAuthenticationStrategy(Update update, String authenticationStrategy, Collection<RpslObject> maintainers) {
         final Element updateElement = createOrGetUpdateElement(update);
 
         final Element strategyElement = doc.createElement("AuthenticationStrategy");
@@ -212,7 +229,7 @@ class AuditLogger {
         }
     }
 
-    public void logCredentials(Update update) {
+    public synchronized void logCredentials(Update update) {
         final Element updateElement = createOrGetUpdateElement(update);
 
         final Element credentialsElement = doc.createElement("Credentials");
@@ -223,22 +240,22 @@ class AuditLogger {
         }
     }
 
-    public void logAction(final Update update, final Action action) {
+    public synchronized void logAction(final Update update, final Action action) {
         final Element updateElement = createOrGetUpdateElement(update);
         updateElement.appendChild(keyValue("action", action.getDescription()));
     }
 
-    public void logStatus(final Update update, final UpdateStatus status) {
+    public synchronized void logStatus(final Update update, final UpdateStatus status) {
         final Element updateElement = createOrGetUpdateElement(update);
         updateElement.appendChild(keyValue("status", status));
     }
 
-    public void logMessage(final Update update, final Message message) {
+    public synchronized void logMessage(final Update update, final Message message) {
         final Element updateElement = createOrGetUpdateElement(update);
         updateElement.appendChild(keyValue("message", PasswordFilter.filterPasswordsInContents(message.toString())));
     }
 
-    public void logMessage(final Update update, final RpslAttribute attribute, final Message message) {
+    public synchronized void logMessage(final Update update, final RpslAttribute attribute, final Message message) {
         final Element updateElement = createOrGetUpdateElement(update);
         updateElement.appendChild(keyValue("message", MessageFormat.format("{0} (in attribute [{1}])", PasswordFilter.filterPasswordsInContents(message.toString()), attribute.toString())));
     }
@@ -260,7 +277,7 @@ class AuditLogger {
         return element;
     }
 
-    public void close() {
+    public synchronized void close() {
         try {
             writeAndClose();
         } catch (IOException e) {
@@ -22,18 +22,22 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
-import java.io.BufferedOutputStream;
+import javax.annotation.PreDestroy;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.zip.GZIPOutputStream;
 
+/**
+ * Audit log of the update requests handled by the current thread, one directory per request.
+ * <p/>
+ * Files are written by the {@link AuditLogWriter} once complete, so the request thread doesn't wait for disk I/O.
+ */
 @Component
 public class LoggerContext {
     private static final Logger LOGGER = LoggerFactory.getLogger(LoggerContext.class);
@@ -47,13 +51,19 @@ public class LoggerContext {
     private static final ThreadLocal<Context> context = new ThreadLocal<>();
 
     private final DateTimeProvider dateTimeProvider;
+    private final AuditLogWriter auditLogWriter = new AuditLogWriter();
 
     @Value("${dir.update.audit.log}") private String baseDir;
+    @Value("${audit.log.queue.size:1024}") private int queueSize;
 
     public void setBaseDir(final String baseDir) {
         this.baseDir = baseDir;
     }
 
+    public void setQueueSize(final int queueSize) {
+        this.queueSize = queueSize;
+    }
+
     @Autowired
     public LoggerContext(final DateTimeProvider dateTimeProvider) {
         this.dateTimeProvider = dateTimeProvider;
@@ -62,6 +72,12 @@ public class LoggerContext {
     @PostConstruct
     public void start() {
         checkDirs();
+        auditLogWriter.start(queueSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        auditLogWriter.stop();
     }
 
     public void checkDirs() {
@@ -77,9 +93,10 @@ public class LoggerContext {
         return dir;
     }
 
+    // the directory is created when its first file is written
     public void init(final String folderName) {
         final LocalDateTime now = dateTimeProvider.getCurrentDateTime();
-        final File dir = getCreatedDir(baseDir + FILE_SEPARATOR + DATE_FORMAT.format(now) + FILE_SEPARATOR + trim(TIME_FORMAT.format(now) + "." + sanitize(folderName), MAXIMUM_FILENAME_LENGTH));
+        final File dir = new File(baseDir + FILE_SEPARATOR + DATE_FORMAT.format(now) + FILE_SEPARATOR + trim(TIME_FORMAT.format(now) + "." + sanitize(folderName), MAXIMUM_FILENAME_LENGTH));
         init(dir);
     }
 
@@ -89,7 +106,7 @@ public class LoggerContext {
         }
 
         final AtomicInteger fileNumber = new AtomicInteger();
-        final AuditLogger auditLogger = new AuditLogger(dateTimeProvider, getOutputstream(getFile(dir, fileNumber.getAndIncrement(), "audit.xml")));
+        final AuditLogger auditLogger = new AuditLogger(dateTimeProvider, auditLogWriter.open(getFile(dir, fileNumber.getAndIncrement(), "audit.xml")));
 
         context.set(new Context(dir, fileNumber, auditLogger));
     }
@@ -102,6 +119,29 @@ public class LoggerContext {
         }
     }
 
+    /**
+     * Wrap <code>task</code> handling <code>update</code> on another thread, so it logs to the audit log of the current
+     * request.
+     */
+    public <T> Callable<T> wrap(final Update update, final Callable<T> task) {
+        final Context parent = getContext();
+        return () -> {
+            if (context.get() != null) {
+                throw new IllegalStateException("Context not empty");
+            }
+
+            final Context ctx = new Context(parent.baseDir, parent.fileNumber, parent.auditLogger);
+            ctx.currentUpdate = update;
+            context.set(ctx);
+            try {
+                return task.call();
+            } finally {
+                // the audit log is closed by the request thread
+                context.remove();
+            }
+        };
+    }
+
     public File getFile(final String filename) {
         final Context tempContext = getContext();
         return getFile(tempContext.baseDir, tempContext.nextFileNumber(), filename);
@@ -117,7 +157,7 @@ public class LoggerContext {
 
         OutputStream os = null;
         try {
-            os = getOutputstream(file);
+            os = auditLogWriter.open(file);
             callback.log(os);
         } catch (IOException e) {
             throw new IllegalStateException("Unable to write to " + file.getAbsolutePath(), e);
@@ -128,17 +168,6 @@ public class LoggerContext {
         return file;
     }
 
-    private OutputStream getOutputstream(final File file) {
-        FileOutputStream os = null;
-        try {
-            os = new FileOutputStream(file);
-            return new GZIPOutputStream(new BufferedOutputStream(os));
-        } catch (IOException e) {
-            closeOutputStream(os);
-            throw new IllegalStateException("Unable to write to " + file.getAbsolutePath(), e);
-        }
-    }
-
     public void log(final Message message) {
         getContext().auditLogger.log(message, null);
     }
@@ -147,6 +176,14 @@ public class LoggerContext {
         getContext().auditLogger.log(message, t);
     }
 
+    /**
+     * Start the next attempt of <code>update</code> in the audit log before it is handled on another thread, which
+     * logs to it before the current thread reaches the update.
+     */
+    public void logUpdateScheduled(final Update update) {
+        getContext().auditLogger.logUpdateScheduled(update);
+    }
+
     public void logUpdateStarted(final Update update) {
         final Context ctx = getContext();
         ctx.auditLogger.logUpdate(update);
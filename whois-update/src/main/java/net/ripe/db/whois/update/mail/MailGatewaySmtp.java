@@ -20,7 +20,6 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Nullable;
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @Component
@@ -68,8 +67,7 @@ public class MailGatewaySmtp implements MailGateway {
             }
 
         try {
-            final Matcher matcher = INVALID_EMAIL_PATTERN.matcher(to);
-            if (matcher.find()) {
+            if (isRefused(to)) {
                 throw new MailSendException("Refusing outgoing email: " + text);
             }
 
@@ -80,24 +78,36 @@ public class MailGatewaySmtp implements MailGateway {
         }
     }
 
+    boolean isOutgoingMailEnabled() {
+        return outgoingMailEnabled;
+    }
+
+    static boolean isRefused(final String to) {
+        return INVALID_EMAIL_PATTERN.matcher(to).find();
+    }
+
+    void prepareMessage(final MimeMessage mimeMessage, final String to, @Nullable final String replyTo, final String subject, final String text) throws MessagingException {
+        final MimeMessageHelper message = new MimeMessageHelper(mimeMessage, MimeMessageHelper.MULTIPART_MODE_NO, "UTF-8");
+        message.setFrom(mailConfiguration.getFrom());
+        message.setTo(to);
+        if (!StringUtils.isEmpty(replyTo))
+            message.setReplyTo(replyTo);
+        message.setSubject(subject);
+        message.setText(text);
+
+        mimeMessage.addHeader("Precedence", "bulk");
+        mimeMessage.addHeader("Auto-Submitted", "auto-generated");
+
+        loggerContext.log("msg-out.txt", new MailMessageLogCallback(mimeMessage));
+    }
+
     @RetryFor(value = MailSendException.class, attempts = 20, intervalMs = 10000)
     private void sendEmailAttempt(final String to, final String replyTo, final String subject, final String text) {
         try {
             mailSender.send(new MimeMessagePreparator() {
                 @Override
                 public void prepare(final MimeMessage mimeMessage) throws MessagingException {
-                    final MimeMessageHelper message = new MimeMessageHelper(mimeMessage, MimeMessageHelper.MULTIPART_MODE_NO, "UTF-8");
-                    message.setFrom(mailConfiguration.getFrom());
-                    message.setTo(to);
-                    if (!StringUtils.isEmpty(replyTo))
-                        message.setReplyTo(replyTo);
-                    message.setSubject(subject);
-                    message.setText(text);
-
-                    mimeMessage.addHeader("Precedence", "bulk");
-                    mimeMessage.addHeader("Auto-Submitted", "auto-generated");
-
-                    loggerContext.log("msg-out.txt", new MailMessageLogCallback(mimeMessage));
+                    prepareMessage(mimeMessage, to, replyTo, subject, text);
                 }
             });
         } catch (MailSendException e) {
@@ -0,0 +1,237 @@
+package net.ripe.db.whois.update.mail;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import net.ripe.db.whois.common.ApplicationService;
+import net.ripe.db.whois.common.Message;
+import net.ripe.db.whois.common.Messages;
+import net.ripe.db.whois.update.dao.MailOutboxDao;
+import net.ripe.db.whois.update.domain.ResponseMessage;
+import net.ripe.db.whois.update.log.LoggerContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends notifications through a durable outbox, so updates don't wait for the mail relay.
+ * <p/>
+ * Messages are prepared and logged on the update thread and stored in the outbox. Sender threads claim due messages in
+ * batches, send each batch over a single connection, and retry failed messages with exponential backoff. Identical
+ * messages to the same recipient are only queued once while waiting.
+ * <p/>
+ * When the outbox is not running (mail.outbox.threads is 0), or a message can't be queued, messages are sent directly.
+ */
+@Component
+public class MailOutbox implements ApplicationService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MailOutbox.class);
+
+    private static final int CLAIM_SECONDS = 600;
+    private static final long MAX_RETRY_SECONDS = 3600;
+
+    private final LoggerContext loggerContext;
+    private final MailGatewaySmtp mailGateway;
+    private final JavaMailSender mailSender;
+    private final MailOutboxDao mailOutboxDao;
+    private final int nrThreads;
+    private final int intervalMs;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final int retrySeconds;
+
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+
+    private volatile ScheduledExecutorService senderExecutor;
+
+    @Autowired
+    public MailOutbox(final LoggerContext loggerContext,
+                      final MailGatewaySmtp mailGateway,
+                      final JavaMailSender mailSender,
+                      final MailOutboxDao mailOutboxDao,
+                      @Value("${mail.outbox.threads:2}") final int nrThreads,
+                      @Value("${mail.outbox.interval:1000}") final int intervalMs,
+                      @Value("${mail.outbox.batch.size:100}") final int batchSize,
+                      @Value("${mail.outbox.attempts:20}") final int maxAttempts,
+                      @Value("${mail.outbox.retry.seconds:10}") final int retrySeconds) {
+        this.loggerContext = loggerContext;
+        this.mailGateway = mailGateway;
+        this.mailSender = mailSender;
+        this.mailOutboxDao = mailOutboxDao;
+        this.nrThreads = nrThreads;
+        this.intervalMs = intervalMs;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retrySeconds = retrySeconds;
+    }
+
+    @Override
+    public void start() {
+        if (senderExecutor != null) {
+            throw new IllegalStateException("Already started");
+        }
+
+        if (nrThreads > 0) {
+            final ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(nrThreads);
+            for (int thread = 0; thread < nrThreads; thread++) {
+                executor.scheduleWithFixedDelay(this::deliver, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+            }
+
+            senderExecutor = executor;
+            LOGGER.info("Mail outbox started");
+        }
+    }
+
+    @Override
+    public void stop(final boolean force) {
+        final ScheduledExecutorService executor = senderExecutor;
+        if (executor == null) {
+            return;
+        }
+
+        LOGGER.info("Mail outbox stopping");
+        senderExecutor = null;
+
+        // the batches being sent are completed, messages not claimed yet stay in the outbox
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        LOGGER.info("Mail outbox stopped");
+    }
+
+    public void sendEmail(final String to, final ResponseMessage responseMessage) {
+        final ScheduledExecutorService executor = senderExecutor;
+        if (executor == null || !mailGateway.isOutgoingMailEnabled() || MailGatewaySmtp.isRefused(to)) {
+            mailGateway.sendEmail(to, responseMessage);
+            return;
+        }
+
+        try {
+            mailOutboxDao.addMessage(to, digest(to, responseMessage), prepareMessage(to, responseMessage));
+        } catch (MessagingException | IOException | DataAccessException e) {
+            loggerContext.log(new Message(Messages.Type.ERROR, "Unable to queue mail to {} with subject {}", to, responseMessage.getSubject()), e);
+            LOGGER.error("Unable to queue mail to {}, sending directly", to, e);
+            mailGateway.sendEmail(to, responseMessage);
+            return;
+        }
+
+        if (wakeUpPending.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    wakeUpPending.set(false);
+                    deliver();
+                });
+            } catch (RejectedExecutionException e) {
+                // stopping, the message is sent after the next start
+                wakeUpPending.set(false);
+            }
+        }
+    }
+
+    private byte[] prepareMessage(final String to, final ResponseMessage responseMessage) throws MessagingException, IOException {
+        final MimeMessage mimeMessage = mailSender.createMimeMessage();
+        mailGateway.prepareMessage(mimeMessage, to, responseMessage.getReplyTo(), responseMessage.getSubject(), responseMessage.getMessage());
+
+        final ByteArrayOutputStream message = new ByteArrayOutputStream();
+        mimeMessage.writeTo(message);
+        return message.toByteArray();
+    }
+
+    void deliver() {
+        try {
+            List<MailOutboxDao.OutboxMessage> outboxMessages;
+            do {
+                outboxMessages = mailOutboxDao.claimMessages(batchSize, CLAIM_SECONDS);
+                if (!outboxMessages.isEmpty()) {
+                    send(outboxMessages);
+                }
+            } while (outboxMessages.size() == batchSize && !executorShutdown());
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to deliver mail", e);
+        }
+    }
+
+    private boolean executorShutdown() {
+        final ScheduledExecutorService executor = senderExecutor;
+        return executor == null || executor.isShutdown();
+    }
+
+    private void send(final List<MailOutboxDao.OutboxMessage> outboxMessages) {
+        final Map<MimeMessage, MailOutboxDao.OutboxMessage> mimeMessages = Maps.newLinkedHashMap();
+        for (final MailOutboxDao.OutboxMessage outboxMessage : outboxMessages) {
+            try {
+                mimeMessages.put(mailSender.createMimeMessage(new ByteArrayInputStream(outboxMessage.getMessage())), outboxMessage);
+            } catch (MailException e) {
+                LOGGER.error("Dropping unreadable mail {}", outboxMessage.getId(), e);
+                mailOutboxDao.deleteMessage(outboxMessage.getId());
+            }
+        }
+
+        if (mimeMessages.isEmpty()) {
+            return;
+        }
+
+        final Set<Object> failedMessages = Sets.newIdentityHashSet();
+        try {
+            mailSender.send(mimeMessages.keySet().toArray(new MimeMessage[mimeMessages.size()]));
+        } catch (MailSendException e) {
+            // no failed messages if only closing the connection failed
+            failedMessages.addAll(e.getFailedMessages().keySet());
+            LOGGER.warn("Unable to send {} of {} mails: {}", failedMessages.size(), mimeMessages.size(), e.getMessage());
+        } catch (MailException e) {
+            failedMessages.addAll(mimeMessages.keySet());
+            LOGGER.warn("Unable to send {} mails: {}", mimeMessages.size(), e.getMessage());
+        }
+
+        for (final Map.Entry<MimeMessage, MailOutboxDao.OutboxMessage> entry : mimeMessages.entrySet()) {
+            final MailOutboxDao.OutboxMessage outboxMessage = entry.getValue();
+            if (!failedMessages.contains(entry.getKey())) {
+                mailOutboxDao.deleteMessage(outboxMessage.getId());
+            } else if (outboxMessage.getAttempts() + 1 >= maxAttempts) {
+                LOGGER.error("Giving up on mail {} after {} attempts", outboxMessage.getId(), outboxMessage.getAttempts() + 1);
+                mailOutboxDao.deleteMessage(outboxMessage.getId());
+            } else {
+                mailOutboxDao.rescheduleMessage(outboxMessage.getId(), getRetryDelay(outboxMessage.getAttempts()));
+            }
+        }
+    }
+
+    private int getRetryDelay(final int attempts) {
+        return (int) Math.min((long) retrySeconds << Math.min(attempts, 30), MAX_RETRY_SECONDS);
+    }
+
+    static String digest(final String to, final ResponseMessage responseMessage) {
+        return Hashing.sha256().newHasher()
+                .putString(to, StandardCharsets.UTF_8).putByte((byte) 0)
+                .putString(Strings.nullToEmpty(responseMessage.getReplyTo()), StandardCharsets.UTF_8).putByte((byte) 0)
+                .putString(responseMessage.getSubject(), StandardCharsets.UTF_8).putByte((byte) 0)
+                .putString(responseMessage.getMessage(), StandardCharsets.UTF_8)
+                .hash()
+                .toString();
+    }
+}
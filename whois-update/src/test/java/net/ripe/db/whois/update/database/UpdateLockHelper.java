@@ -10,6 +10,7 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.sql.DataSource;
+import java.util.Collections;
 
 @Component
 public class UpdateLockHelper {
@@ -42,4 +43,13 @@ public class UpdateLockHelper {
 
         setMntnerValue(getMntnerValue() + ".");
     }
+
+    @Transactional(isolation = Isolation.READ_COMMITTED, propagation = Propagation.REQUIRES_NEW)
+    public void testKeyLock(final String key) {
+        jdbcTemplate.queryForObject("SELECT count(*) FROM mntner", Integer.class);
+
+        updateLockDao.setKeyLocks(Collections.singleton(key), Collections.singleton("mntner:ref-mnt"));
+
+        setMntnerValue(getMntnerValue() + ".");
+    }
 }
@@ -54,6 +54,17 @@ public class UpdateLockTestIntegration extends AbstractUpdateDaoIntegrationTest
         assertThat(getMntnerValue(), is("Dot: " + StringUtils.repeat(".", threads)));
     }
 
+    @Test
+    public void test_key_lock() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int cnt = 0; cnt < threads; ++cnt) {
+            executor.execute(() -> updateLockHelper.testKeyLock("mntner:dot-mnt"));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+        assertThat(getMntnerValue(), is("Dot: " + StringUtils.repeat(".", threads)));
+    }
+
     private String getMntnerValue() {
         return whoisTemplate.queryForObject("SELECT mntner FROM mntner WHERE object_id = 1", String.class);
     }
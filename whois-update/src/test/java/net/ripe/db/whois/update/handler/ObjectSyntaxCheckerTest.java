@@ -0,0 +1,97 @@
+package net.ripe.db.whois.update.handler;
+
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.DateTimeProvider;
+import net.ripe.db.whois.common.rpsl.AttributeSanitizer;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.update.domain.Operation;
+import net.ripe.db.whois.update.domain.Paragraph;
+import net.ripe.db.whois.update.domain.Update;
+import net.ripe.db.whois.update.domain.UpdateContext;
+import net.ripe.db.whois.update.domain.UpdateRequest;
+import net.ripe.db.whois.update.log.LoggerContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.time.LocalDateTime;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ObjectSyntaxCheckerTest {
+    @Mock DateTimeProvider dateTimeProvider;
+    @Mock LoggerContext loggerContext;
+    @Mock UpdateRequest updateRequest;
+
+    private UpdateContext updateContext;
+    private ObjectSyntaxChecker subject;
+
+    @Before
+    public void setup() {
+        when(dateTimeProvider.getCurrentDateTime()).thenReturn(LocalDateTime.now());
+
+        updateContext = new UpdateContext(loggerContext);
+        subject = new ObjectSyntaxChecker(new AttributeSanitizer(dateTimeProvider), 2);
+        subject.init();
+    }
+
+    @After
+    public void teardown() {
+        subject.stop();
+    }
+
+    @Test
+    public void check_all() {
+        final Update valid = update("inetnum: 10.0.0.0/24\nnetname: TEST-NET\nsource: TEST");
+        final Update invalid = update("mntner: TEST-MNT\ninvalid: attribute\nsource: TEST");
+        when(updateRequest.getUpdates()).thenReturn(Lists.newArrayList(valid, invalid));
+
+        subject.checkAll(updateRequest, updateContext);
+
+        assertThat(updateContext.getSyntaxCheck(valid), notNullValue());
+        assertThat(updateContext.getSyntaxCheck(invalid), notNullValue());
+
+        final RpslObject sanitized = subject.check(valid, updateContext);
+        assertThat(sanitized.getKey().toString(), is("10.0.0.0 - 10.0.0.255"));
+
+        subject.check(invalid, updateContext);
+        assertThat(updateContext.getMessages(invalid).hasErrors(), is(true));
+    }
+
+    @Test
+    public void single_update_checked_when_handled() {
+        final Update update = update("inetnum: 10.0.0.0/24\nsource: TEST");
+        when(updateRequest.getUpdates()).thenReturn(Lists.newArrayList(update));
+
+        subject.checkAll(updateRequest, updateContext);
+
+        assertThat(updateContext.getSyntaxCheck(update), nullValue());
+        assertThat(subject.check(update, updateContext).getKey().toString(), is("10.0.0.0 - 10.0.0.255"));
+    }
+
+    @Test
+    public void messages_added_on_reattempt() {
+        final Update first = update("mntner: TEST-MNT\ninvalid: attribute\nsource: TEST");
+        final Update second = update("mntner: OTHER-MNT\nsource: TEST");
+        when(updateRequest.getUpdates()).thenReturn(Lists.newArrayList(first, second));
+
+        subject.checkAll(updateRequest, updateContext);
+        subject.check(first, updateContext);
+        updateContext.prepareForReattempt(first);
+        subject.check(first, updateContext);
+
+        assertThat(updateContext.getMessages(first).hasErrors(), is(true));
+    }
+
+    private static Update update(final String object) {
+        return new Update(new Paragraph(object), Operation.UNSPECIFIED, null, RpslObject.parse(object));
+    }
+}
@@ -0,0 +1,139 @@
+package net.ripe.db.whois.update.handler;
+
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.update.domain.Operation;
+import net.ripe.db.whois.update.domain.Paragraph;
+import net.ripe.db.whois.update.domain.Update;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class ParallelUpdatesTest {
+    private ExecutorService executorService;
+    private List<Update> written;
+
+    @Before
+    public void setup() {
+        executorService = Executors.newFixedThreadPool(2);
+        written = Collections.synchronizedList(Lists.newArrayList());
+    }
+
+    @After
+    public void teardown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void updates_written_in_order() {
+        final Update first = update("mntner: FIRST-MNT\nsource: TEST");
+        final Update second = update("mntner: SECOND-MNT\nsource: TEST");
+        final Update third = update("mntner: THIRD-MNT\nsource: TEST");
+
+        final ParallelUpdates subject = new ParallelUpdates(executorService, 2, (update, turn) -> () -> {
+            turn.beforeKeyLocks();
+            turn.afterKeyLocks();
+            turn.beforeWrite();
+            written.add(update);
+            return null;
+        });
+        subject.addGroup(Lists.newArrayList(first, second, third));
+
+        assertThat(subject.handle(first), is(true));
+        assertThat(subject.handle(second), is(true));
+        assertThat(subject.handle(third), is(true));
+
+        assertThat(written, contains(first, second, third));
+    }
+
+    @Test
+    public void single_update_handled_by_caller() {
+        final Update update = update("mntner: TEST-MNT\nsource: TEST");
+
+        final ParallelUpdates subject = new ParallelUpdates(executorService, 2, (u, turn) -> () -> {
+            throw new IllegalStateException("Not handled by caller");
+        });
+        subject.addGroup(Lists.newArrayList(update));
+
+        assertThat(subject.handle(update), is(false));
+    }
+
+    @Test(expected = UpdateFailedException.class)
+    public void failure_rethrown() {
+        final Update first = update("mntner: FIRST-MNT\nsource: TEST");
+        final Update second = update("mntner: SECOND-MNT\nsource: TEST");
+
+        final ParallelUpdates subject = new ParallelUpdates(executorService, 2, (update, turn) -> () -> {
+            throw new UpdateFailedException();
+        });
+        subject.addGroup(Lists.newArrayList(first, second));
+
+        subject.handle(first);
+    }
+
+    @Test
+    public void cancelled_updates_not_written() throws Exception {
+        final Update first = update("mntner: FIRST-MNT\nsource: TEST");
+        final Update second = update("mntner: SECOND-MNT\nsource: TEST");
+
+        final ParallelUpdates subject = new ParallelUpdates(executorService, 2, (update, turn) -> () -> {
+            turn.beforeWrite();
+            written.add(update);
+            return null;
+        });
+        subject.addGroup(Lists.newArrayList(first, second));
+
+        subject.handle(first);
+        subject.cancel();
+        executorService.shutdown();
+        executorService.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertThat(written, contains(first));
+    }
+
+    @Test
+    public void tasks_submitted_in_window() {
+        final List<Update> updates = Lists.newArrayList();
+        for (int i = 0; i < 5; i++) {
+            updates.add(update("mntner: TEST" + i + "-MNT\nsource: TEST"));
+        }
+
+        final AtomicInteger submitted = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+        final List<Integer> submittedAhead = Collections.synchronizedList(Lists.newArrayList());
+        final ParallelUpdates subject = new ParallelUpdates(executorService, 2, (update, turn) -> {
+            submittedAhead.add(submitted.incrementAndGet() - completed.get());
+            return () -> {
+                turn.beforeWrite();
+                written.add(update);
+                completed.incrementAndGet();
+                return null;
+            };
+        });
+        subject.addGroup(updates);
+
+        for (final Update update : updates) {
+            assertThat(subject.handle(update), is(true));
+        }
+
+        assertThat(written, is(updates));
+        assertThat(submittedAhead, everyItem(lessThanOrEqualTo(2)));
+    }
+
+    private static Update update(final String object) {
+        return new Update(new Paragraph(object), Operation.UNSPECIFIED, null, RpslObject.parse(object));
+    }
+}
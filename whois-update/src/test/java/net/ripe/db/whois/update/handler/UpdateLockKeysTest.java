@@ -0,0 +1,109 @@
+package net.ripe.db.whois.update.handler;
+
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+public class UpdateLockKeysTest {
+
+    @Test
+    public void mntner() {
+        final UpdateLockKeys subject = lockKeys("" +
+                "mntner:  TEST-MNT\n" +
+                "admin-c: TP1-TEST\n" +
+                "mnt-by:  TEST-MNT\n" +
+                "mnt-by:  OTHER-MNT\n" +
+                "source:  TEST");
+
+        assertThat(subject.getExclusiveKeys(), containsInAnyOrder("mntner:test-mnt"));
+        assertThat(subject.getSharedKeys(), containsInAnyOrder("nic-hdl:tp1-test", "mntner:test-mnt", "mntner:other-mnt"));
+    }
+
+    @Test
+    public void person_and_role_share_keys() {
+        final UpdateLockKeys person = lockKeys("person: Test Person\nnic-hdl: TP1-TEST\nsource: TEST");
+        final UpdateLockKeys role = lockKeys("role: Test Role\nnic-hdl: TP1-TEST\nsource: TEST");
+
+        assertThat(person.getExclusiveKeys(), containsInAnyOrder("nic-hdl:tp1-test"));
+        assertThat(role.getExclusiveKeys(), containsInAnyOrder("nic-hdl:tp1-test"));
+        assertThat(person.getSharedKeys(), containsInAnyOrder("auto-nic-hdl"));
+    }
+
+    @Test
+    public void generated_key() {
+        final UpdateLockKeys subject = lockKeys("person: Test Person\nnic-hdl: AUTO-1\nsource: TEST");
+
+        assertThat(subject.getExclusiveKeys(), containsInAnyOrder("nic-hdl:auto-1", "auto-nic-hdl"));
+        assertThat(subject.getSharedKeys(), not(hasItem("auto-nic-hdl")));
+    }
+
+    @Test
+    public void inetnum() {
+        final UpdateLockKeys subject = lockKeys("inetnum: 10.0.0.0 - 10.1.0.255\nsource: TEST");
+
+        assertThat(subject.getExclusiveKeys(), containsInAnyOrder("inetnum:10.0.0.0 - 10.1.0.255", "ipv4:2560", "ipv4:2561"));
+        assertThat(subject.getSharedKeys(), containsInAnyOrder("ipv4"));
+    }
+
+    @Test
+    public void inetnum_large() {
+        final UpdateLockKeys subject = lockKeys("inetnum: 10.0.0.0 - 10.255.255.255\nsource: TEST");
+
+        assertThat(subject.getExclusiveKeys(), containsInAnyOrder("inetnum:10.0.0.0 - 10.255.255.255", "ipv4"));
+    }
+
+    @Test
+    public void route() {
+        final UpdateLockKeys subject = lockKeys("route: 10.0.0.0/24\norigin: AS123\nsource: TEST");
+
+        assertThat(subject.getExclusiveKeys(), hasItem("ipv4:2560"));
+        assertThat(subject.getSharedKeys(), containsInAnyOrder("ipv4", "aut-num:as123"));
+    }
+
+    @Test
+    public void inet6num() {
+        final UpdateLockKeys subject = lockKeys("inet6num: 2001:db8::/48\nsource: TEST");
+
+        assertThat(subject.getExclusiveKeys(), hasItem("ipv6:" + 0x20010db8L));
+        assertThat(subject.getSharedKeys(), containsInAnyOrder("ipv6"));
+    }
+
+    @Test
+    public void reverse_domain() {
+        final UpdateLockKeys subject = lockKeys("domain: 0.10.in-addr.arpa\nsource: TEST");
+
+        assertThat(subject.getExclusiveKeys(), containsInAnyOrder("domain:0.10.in-addr.arpa", "ipv4:2560"));
+        assertThat(subject.getSharedKeys(), containsInAnyOrder("ipv4"));
+    }
+
+    @Test
+    public void as_block() {
+        assertThat(lockKeys("aut-num: AS123\nsource: TEST").getSharedKeys(), containsInAnyOrder("asn"));
+        assertThat(lockKeys("as-block: AS100 - AS200\nsource: TEST").getExclusiveKeys(), hasItem("asn"));
+    }
+
+    @Test
+    public void hierarchical_set() {
+        assertThat(lockKeys("as-set: AS1:AS-FOO\nsource: TEST").getSharedKeys(), hasItem("aut-num:as1"));
+        assertThat(lockKeys("route-set: AS1:RS-FOO:RS-BAR\nsource: TEST").getSharedKeys(), hasItem("route-set:as1:rs-foo"));
+        assertThat(lockKeys("filter-set: AS-FOO:FLTR-BAR\nsource: TEST").getSharedKeys(), hasItem("as-set:as-foo"));
+        assertThat(lockKeys("rtr-set: RTRS-FOO\nsource: TEST").getSharedKeys(), not(hasItem(startsWith("rtr-set:"))));
+    }
+
+    @Test
+    public void invalid_resource() {
+        final UpdateLockKeys subject = lockKeys("inetnum: invalid\nsource: TEST");
+
+        assertThat(subject.getExclusiveKeys(), containsInAnyOrder("inetnum:invalid"));
+    }
+
+    private static UpdateLockKeys lockKeys(final String object) {
+        final RpslObject rpslObject = RpslObject.parse(object);
+        return new UpdateLockKeys(rpslObject, rpslObject.getKey());
+    }
+}
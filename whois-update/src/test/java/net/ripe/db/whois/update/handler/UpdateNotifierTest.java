@@ -13,7 +13,7 @@ import net.ripe.db.whois.update.domain.UpdateContext;
 import net.ripe.db.whois.update.domain.UpdateRequest;
 import net.ripe.db.whois.update.domain.UpdateStatus;
 import net.ripe.db.whois.update.handler.response.ResponseFactory;
-import net.ripe.db.whois.update.mail.MailGateway;
+import net.ripe.db.whois.update.mail.MailOutbox;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
@@ -35,7 +35,7 @@ public class UpdateNotifierTest {
 
     @Mock RpslObjectDao rpslObjectDao;
     @Mock ResponseFactory responseFactory;
-    @Mock MailGateway mailGateway;
+    @Mock MailOutbox mailOutbox;
     @Mock ResponseMessage responseMessage;
 
     @InjectMocks UpdateNotifier subject;
@@ -46,7 +46,7 @@ public class UpdateNotifierTest {
 
         subject.sendNotifications(updateRequest, updateContext);
 
-        verifyZeroInteractions(responseFactory, mailGateway);
+        verifyZeroInteractions(responseFactory, mailOutbox);
     }
 
     @Test
@@ -56,7 +56,7 @@ public class UpdateNotifierTest {
 
         subject.sendNotifications(updateRequest, updateContext);
 
-        verifyZeroInteractions(responseFactory, mailGateway);
+        verifyZeroInteractions(responseFactory, mailOutbox);
     }
 
     @Test
@@ -85,8 +85,8 @@ public class UpdateNotifierTest {
 
         subject.sendNotifications(updateRequest, updateContext);
 
-        verify(mailGateway).sendEmail(eq("notify1@me.com"), eq(responseMessage));
-        verify(mailGateway).sendEmail(eq("notify2@me.com"), eq(responseMessage));
+        verify(mailOutbox).sendEmail(eq("notify1@me.com"), eq(responseMessage));
+        verify(mailOutbox).sendEmail(eq("notify2@me.com"), eq(responseMessage));
     }
 
     @Test
@@ -113,6 +113,6 @@ public class UpdateNotifierTest {
 
         subject.sendNotifications(updateRequest, updateContext);
 
-        verify(mailGateway, never()).sendEmail("notifies us <mailto:notify@me.com>", responseMessage);
+        verify(mailOutbox, never()).sendEmail("notifies us <mailto:notify@me.com>", responseMessage);
     }
 }
@@ -0,0 +1,95 @@
+package net.ripe.db.whois.update.handler;
+
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.update.domain.Operation;
+import net.ripe.db.whois.update.domain.Paragraph;
+import net.ripe.db.whois.update.domain.Update;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.function.Predicate;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThat;
+
+public class UpdateOrderTest {
+    private static final Predicate<Update> CREATE = update -> update.getOperation() != Operation.DELETE;
+    private static final Predicate<Update> MODIFY = update -> false;
+
+    @Test
+    public void submission_order_kept() {
+        final Update first = update("mntner: FIRST-MNT\nsource: TEST");
+        final Update second = update("mntner: SECOND-MNT\nsource: TEST");
+
+        assertThat(UpdateOrder.sort(Lists.newArrayList(first, second), CREATE), contains(first, second));
+    }
+
+    @Test
+    public void referenced_objects_first() {
+        final Update inetnum = update("inetnum: 10.0.0.0 - 10.0.0.255\nadmin-c: TP1-TEST\nmnt-by: TEST-MNT\nsource: TEST");
+        final Update mntner = update("mntner: TEST-MNT\nadmin-c: TP1-TEST\nmnt-by: TEST-MNT\nsource: TEST");
+        final Update person = update("person: Test Person\nnic-hdl: TP1-TEST\nsource: TEST");
+
+        assertThat(UpdateOrder.sort(Lists.newArrayList(inetnum, mntner, person), CREATE), contains(person, mntner, inetnum));
+    }
+
+    @Test
+    public void generated_keys_first() {
+        final Update organisation = update("organisation: AUTO-1\nadmin-c: AUTO-2\nsource: TEST");
+        final Update role = update("role: Test Role\nnic-hdl: AUTO-2\nsource: TEST");
+
+        assertThat(UpdateOrder.sort(Lists.newArrayList(organisation, role), CREATE), contains(role, organisation));
+    }
+
+    @Test
+    public void cycle_appended() {
+        final Update mntner = update("mntner: TEST-MNT\nadmin-c: TP1-TEST\nsource: TEST");
+        final Update other = update("mntner: OTHER-MNT\nsource: TEST");
+        final Update person = update("person: Test Person\nnic-hdl: TP1-TEST\nmnt-by: TEST-MNT\nsource: TEST");
+
+        assertThat(UpdateOrder.sort(Lists.newArrayList(mntner, other, person), CREATE), contains(other, mntner, person));
+    }
+
+    @Test
+    public void delete_does_not_provide_reference() {
+        final Update inetnum = update("inetnum: 10.0.0.0 - 10.0.0.255\nmnt-by: TEST-MNT\nsource: TEST");
+        final Update delete = delete("mntner: TEST-MNT\nsource: TEST");
+
+        assertThat(UpdateOrder.sort(Lists.newArrayList(inetnum, delete), CREATE), contains(inetnum, delete));
+    }
+
+    @Test
+    public void modified_objects_do_not_provide_reference() {
+        final Update inetnum = update("inetnum: 10.0.0.0 - 10.0.0.255\nmnt-by: TEST-MNT\nsource: TEST");
+        final Update mntner = update("mntner: TEST-MNT\nsource: TEST");
+
+        assertThat(UpdateOrder.sort(Lists.newArrayList(inetnum, mntner), MODIFY), contains(inetnum, mntner));
+    }
+
+    @Test
+    public void updates_of_same_object_in_submission_order() {
+        final Update person = update("person: Test Person\nnic-hdl: TP1-TEST\nmnt-by: TEST-MNT\nsource: TEST");
+        final Update delete = delete("person: Test Person\nnic-hdl: TP1-TEST\nsource: TEST");
+        final Update mntner = update("mntner: TEST-MNT\nsource: TEST");
+
+        assertThat(UpdateOrder.sort(Lists.newArrayList(person, delete, mntner), MODIFY), contains(person, delete, mntner));
+    }
+
+    @Test
+    public void create_after_delete_of_same_object() {
+        final Update delete = delete("mntner: TEST-MNT\nsource: TEST");
+        final Update inetnum = update("inetnum: 10.0.0.0 - 10.0.0.255\nmnt-by: TEST-MNT\nsource: TEST");
+        final Update mntner = update("mntner: TEST-MNT\nsource: TEST");
+
+        assertThat(UpdateOrder.sort(Lists.newArrayList(delete, inetnum, mntner), CREATE), contains(delete, mntner, inetnum));
+    }
+
+    private static Update delete(final String object) {
+        return new Update(new Paragraph(object), Operation.DELETE, Collections.singletonList("reason"), RpslObject.parse(object));
+    }
+
+    private static Update update(final String object) {
+        return new Update(new Paragraph(object), Operation.UNSPECIFIED, null, RpslObject.parse(object));
+    }
+}
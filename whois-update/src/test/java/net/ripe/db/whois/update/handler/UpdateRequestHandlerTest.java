@@ -23,15 +23,20 @@ import net.ripe.db.whois.update.sso.SsoTranslator;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -48,8 +53,11 @@ public class UpdateRequestHandlerTest {
     @Mock SourceContext sourceContext;
     @Mock ResponseFactory responseFactory;
     @Mock SingleUpdateHandler singleUpdateHandler;
+    @Mock ParallelUpdateHandler parallelUpdateHandler;
+    @Mock ParallelUpdates parallelUpdates;
     @Mock LoggerContext loggerContext;
     @Mock DnsChecker dnsChecker;
+    @Mock ObjectSyntaxChecker objectSyntaxChecker;
     @Mock UpdateNotifier updateNotifier;
     @Mock UpdateLog updateLog;
     @Mock SsoTranslator ssoTranslator;
@@ -66,6 +74,7 @@ public class UpdateRequestHandlerTest {
         when(updateRequest.getOrigin()).thenReturn(origin);
         when(updateRequest.getKeyword()).thenReturn(Keyword.NONE);
         when(updateContext.createAck()).thenReturn(ack);
+        when(parallelUpdateHandler.start(any(Origin.class), any(Keyword.class), any(Collection.class), any(UpdateContext.class))).thenReturn(parallelUpdates);
     }
 
     @Test
@@ -84,6 +93,7 @@ public class UpdateRequestHandlerTest {
         verify(sourceContext).setCurrentSourceToWhoisMaster();
         verify(sourceContext).removeCurrentSource();
         verify(dnsChecker).checkAll(updateRequest, updateContext);
+        verify(objectSyntaxChecker).checkAll(updateRequest, updateContext);
         verify(singleUpdateHandler).handle(origin, Keyword.NONE, update, updateContext);
         verify(updateNotifier).sendNotifications(updateRequest, updateContext);
     }
@@ -129,6 +139,26 @@ public class UpdateRequestHandlerTest {
         verify(singleUpdateHandler).handle(origin, Keyword.NONE, update, updateContext);
     }
 
+    @Test
+    public void ack_in_submission_order() {
+        final Update mntner = mock(Update.class);
+        when(mntner.getOperation()).thenReturn(Operation.UNSPECIFIED);
+        when(mntner.getSubmittedObject()).thenReturn(RpslObject.parse("mntner: TEST-MNT\nmnt-by: TEST-MNT"));
+        when(update.getSubmittedObject()).thenReturn(RpslObject.parse("person: Test Person\nnic-hdl: TP1-TEST\nmnt-by: TEST-MNT"));
+
+        final List<Update> updates = Lists.newArrayList(update, mntner);
+        when(updateRequest.getUpdates()).thenReturn(updates);
+        when(updateRequest.getKeyword()).thenReturn(Keyword.NEW);
+        when(ack.getUpdateStatus()).thenReturn(UpdateStatus.SUCCESS);
+
+        subject.handle(updateRequest, updateContext);
+
+        final InOrder inOrder = inOrder(updateContext, parallelUpdateHandler);
+        inOrder.verify(updateContext).addUpdates(updates);
+        inOrder.verify(parallelUpdateHandler).start(origin, Keyword.NEW, Lists.newArrayList(mntner, update), updateContext);
+        inOrder.verify(updateContext).createAck();
+    }
+
     @Test
     public void help() {
         when(responseFactory.createHelpResponse(updateContext, origin)).thenReturn("help");
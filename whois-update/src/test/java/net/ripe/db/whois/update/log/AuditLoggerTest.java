@@ -91,6 +91,20 @@ public class AuditLoggerTest {
                 "</dbupdate>\n"));
     }
 
+    @Test
+    public void logUpdateScheduled_reattempt() throws Exception {
+        subject.logUpdateScheduled(update);
+        subject.logUpdate(update);
+        subject.logUpdateScheduled(update);
+        subject.logString(update, "worker", "logged before the update started");
+        subject.logUpdate(update);
+        subject.close();
+
+        final String log = outputStream.toString("UTF-8");
+        assertThat(log, containsString("<update attempt=\"2\" time=\"2012-12-01 00:00:00\">"));
+        assertThat(log, containsString("<worker>logged before the update started</worker>"));
+    }
+
     @Test
     public void logException() throws Exception {
         subject.logUpdate(update);
@@ -27,10 +27,14 @@ import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.when;
 
@@ -90,6 +94,62 @@ public class LoggerContextTest {
         assertThat(contents, is("test"));
     }
 
+    @Test
+    public void log_by_writer_thread() throws IOException {
+        subject.remove();
+        subject.setBaseDir(folder.getRoot().getAbsolutePath());
+        subject.setQueueSize(10);
+        subject.start();
+        try {
+            subject.init("folder");
+            subject.log("test.txt", new LogCallback() {
+                @Override
+                public void log(final OutputStream outputStream) throws IOException {
+                    outputStream.write("test".getBytes());
+                }
+            });
+            subject.remove();
+        } finally {
+            subject.stop();
+        }
+
+        final File[] dirs = folder.getRoot().listFiles();
+        assertThat(dirs.length, is(1));
+        final File dir = dirs[0].listFiles()[0];
+
+        final InputStream is = new GZIPInputStream(new BufferedInputStream(new FileInputStream(new File(dir, "001.test.txt.gz"))));
+        final String contents = new String(FileCopyUtils.copyToByteArray(is), StandardCharsets.UTF_8);
+
+        assertThat(contents, is("test"));
+        assertThat(new File(dir, "000.audit.xml.gz").exists(), is(true));
+    }
+
+    @Test
+    public void log_large_file_written_directly() throws IOException {
+        subject.remove();
+        subject.setBaseDir(folder.getRoot().getAbsolutePath());
+        subject.setQueueSize(10);
+        subject.start();
+        final byte[] large = new byte[AuditLogWriter.MAX_BUFFERED_BYTES + 1];
+        final File file;
+        try {
+            subject.init("folder");
+            file = subject.log("test.txt", new LogCallback() {
+                @Override
+                public void log(final OutputStream outputStream) throws IOException {
+                    outputStream.write(large);
+                    assertThat(folder.getRoot().listFiles().length, is(1));
+                }
+            });
+            subject.remove();
+        } finally {
+            subject.stop();
+        }
+
+        final InputStream is = new GZIPInputStream(new BufferedInputStream(new FileInputStream(file)));
+        assertThat(FileCopyUtils.copyToByteArray(is).length, is(large.length));
+    }
+
     @Test(expected = IllegalStateException.class)
     public void log_throws_exception() {
         subject.log("filename", new LogCallback() {
@@ -132,6 +192,42 @@ public class LoggerContextTest {
                 "            </query>\n"));
     }
 
+    @Test
+    public void log_reattempted_update_handled_on_worker() throws Exception {
+        final String content = "mntner: DEV-ROOT-MNT";
+        when(update.getOperation()).thenReturn(Operation.UNSPECIFIED);
+        when(update.getParagraph()).thenReturn(new Paragraph(content));
+        when(update.getSubmittedObject()).thenReturn(RpslObject.parse(content));
+
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            for (int attempt = 1; attempt <= 2; attempt++) {
+                final String sql = "attempt " + attempt;
+                subject.logUpdateScheduled(update);
+                executorService.submit(subject.wrap(update, new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        subject.logQuery(new StatementInfo(sql), new ResultInfo(Collections.<List<String>>emptyList()));
+                        return null;
+                    }
+                })).get();
+
+                subject.logUpdateStarted(update);
+                subject.logUpdateCompleted(update);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        subject.remove();
+
+        final InputStream is = new GZIPInputStream(new BufferedInputStream(new FileInputStream(new File(folder.getRoot(), "000.audit.xml.gz"))));
+        final String contents = new String(FileCopyUtils.copyToByteArray(is), StandardCharsets.UTF_8);
+
+        assertThat(contents, containsString("<update attempt=\"2\""));
+        assertThat(contents, containsString("<sql><![CDATA[attempt 2]]></sql>"));
+        assertThat(contents, not(containsString("attempt 1")));
+    }
+
     @Test
     public void log_query_no_context_should_not_fail() {
         subject.logQuery(new StatementInfo("sql"), new ResultInfo(Collections.<List<String>>emptyList()));
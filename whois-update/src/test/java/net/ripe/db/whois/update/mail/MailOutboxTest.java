@@ -0,0 +1,146 @@
+package net.ripe.db.whois.update.mail;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import net.ripe.db.whois.common.Message;
+import net.ripe.db.whois.update.dao.MailOutboxDao;
+import net.ripe.db.whois.update.domain.ResponseMessage;
+import net.ripe.db.whois.update.log.LoggerContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import java.io.InputStream;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MailOutboxTest {
+    @Mock LoggerContext loggerContext;
+    @Mock MailGatewaySmtp mailGateway;
+    @Mock JavaMailSender mailSender;
+    @Mock MailOutboxDao mailOutboxDao;
+
+    private final MimeMessage first = new MimeMessage((Session) null);
+    private final MimeMessage second = new MimeMessage((Session) null);
+
+    private MailOutbox subject;
+
+    @Before
+    public void setup() {
+        subject = new MailOutbox(loggerContext, mailGateway, mailSender, mailOutboxDao, 2, 1000, 10, 3, 10);
+
+        when(mailOutboxDao.claimMessages(10, 600)).thenReturn(Lists.newArrayList(
+                new MailOutboxDao.OutboxMessage(1, 0, new byte[0]),
+                new MailOutboxDao.OutboxMessage(2, 2, new byte[0])));
+        when(mailSender.createMimeMessage(any(InputStream.class))).thenReturn(first, second);
+    }
+
+    @Test
+    public void send_directly_when_not_started() {
+        final ResponseMessage responseMessage = new ResponseMessage("subject", "message");
+
+        subject.sendEmail("to@ripe.net", responseMessage);
+
+        verify(mailGateway).sendEmail("to@ripe.net", responseMessage);
+        verifyZeroInteractions(mailOutboxDao);
+    }
+
+    @Test
+    public void send_directly_when_not_prepared() throws Exception {
+        final ResponseMessage responseMessage = new ResponseMessage("subject", "message");
+        when(mailGateway.isOutgoingMailEnabled()).thenReturn(true);
+        when(mailSender.createMimeMessage()).thenReturn(first);
+        doThrow(new MessagingException("invalid")).when(mailGateway).prepareMessage(first, "to@ripe.net", null, "subject", "message");
+
+        subject.start();
+        try {
+            subject.sendEmail("to@ripe.net", responseMessage);
+        } finally {
+            subject.stop(true);
+        }
+
+        verify(mailGateway).sendEmail("to@ripe.net", responseMessage);
+        verify(loggerContext).log(any(Message.class), any(MessagingException.class));
+        verify(mailOutboxDao, never()).addMessage(anyString(), anyString(), any(byte[].class));
+    }
+
+    @Test
+    public void send_directly_when_not_queued() throws Exception {
+        final ResponseMessage responseMessage = new ResponseMessage("subject", "message");
+        final MimeMessage mimeMessage = mock(MimeMessage.class);
+        when(mailGateway.isOutgoingMailEnabled()).thenReturn(true);
+        when(mailSender.createMimeMessage()).thenReturn(mimeMessage);
+        doThrow(new DataAccessResourceFailureException("unavailable")).when(mailOutboxDao).addMessage(eq("to@ripe.net"), anyString(), any(byte[].class));
+
+        subject.start();
+        try {
+            subject.sendEmail("to@ripe.net", responseMessage);
+        } finally {
+            subject.stop(true);
+        }
+
+        verify(mailGateway).sendEmail("to@ripe.net", responseMessage);
+        verify(loggerContext).log(any(Message.class), any(DataAccessResourceFailureException.class));
+    }
+
+    @Test
+    public void deliver() {
+        subject.deliver();
+
+        verify(mailSender).send(first, second);
+        verify(mailOutboxDao).deleteMessage(1);
+        verify(mailOutboxDao).deleteMessage(2);
+    }
+
+    @Test
+    public void deliver_failed_messages_retried() {
+        doThrow(new MailSendException(ImmutableMap.<Object, Exception>of(first, new Exception()))).when(mailSender).send(first, second);
+
+        subject.deliver();
+
+        verify(mailOutboxDao).rescheduleMessage(1, 10);
+        verify(mailOutboxDao, never()).deleteMessage(1);
+        verify(mailOutboxDao).deleteMessage(2);
+    }
+
+    @Test
+    public void deliver_gives_up_after_max_attempts() {
+        doThrow(new MailSendException(ImmutableMap.<Object, Exception>of(first, new Exception(), second, new Exception()))).when(mailSender).send(first, second);
+
+        subject.deliver();
+
+        verify(mailOutboxDao).rescheduleMessage(1, 10);
+        verify(mailOutboxDao).deleteMessage(2);
+        verify(mailOutboxDao, never()).rescheduleMessage(eq(2), anyInt());
+    }
+
+    @Test
+    public void digest_per_recipient() {
+        final ResponseMessage responseMessage = new ResponseMessage("subject", "message");
+
+        assertThat(MailOutbox.digest("one@ripe.net", responseMessage), is(MailOutbox.digest("one@ripe.net", new ResponseMessage("subject", "message"))));
+        assertThat(MailOutbox.digest("one@ripe.net", responseMessage), not(MailOutbox.digest("two@ripe.net", responseMessage)));
+        assertThat(MailOutbox.digest("one@ripe.net", responseMessage), not(MailOutbox.digest("one@ripe.net", new ResponseMessage("subject", "other"))));
+    }
+}
@@ -8,6 +8,7 @@ import net.ripe.db.whois.common.profiles.WhoisProfile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Profile;
+import org.springframework.mail.MailParseException;
 import org.springframework.mail.javamail.MimeMessagePreparator;
 import org.springframework.stereotype.Component;
 
@@ -16,6 +17,7 @@ import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Session;
 import javax.mail.internet.MimeMessage;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -35,6 +37,25 @@ public class MailSenderStub extends MailSenderBase implements Stub {
         messages.clear();
     }
 
+    @Override
+    public MimeMessage createMimeMessage() {
+        return new MimeMessage((Session) null);
+    }
+
+    @Override
+    public MimeMessage createMimeMessage(final InputStream contentStream) {
+        try {
+            return new MimeMessage(null, contentStream);
+        } catch (MessagingException e) {
+            throw new MailParseException(e);
+        }
+    }
+
+    @Override
+    public void send(final MimeMessage[] mimeMessages) {
+        messages.addAll(Arrays.asList(mimeMessages));
+    }
+
     @Override
     public void send(MimeMessagePreparator mimeMessagePreparator) {
         try {